@@ -21,6 +21,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.support.WellKnownHeadersMessage;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
@@ -28,7 +29,8 @@ import org.springframework.util.MimeType;
 
 /**
  * Lightweight type-safe header accessor avoiding object
- * creation just to access a header.
+ * creation just to access a header. The well-known integration headers are read
+ * from fields when the message is a {@link WellKnownHeadersMessage}.
  *
  * @author Gary Russell
  *
@@ -69,24 +71,62 @@ public final class StaticMessageHeaderAccessor {
 		return (value instanceof MimeType ? (MimeType) value : MimeType.valueOf(value.toString()));
 	}
 
+	/**
+	 * Return the correlation id header.
+	 * @param message the message.
+	 * @return the correlation id, or null.
+	 * @since 5.1
+	 */
+	@Nullable
+	public static Object getCorrelationId(Message<?> message) {
+		if (message instanceof WellKnownHeadersMessage) {
+			return ((WellKnownHeadersMessage<?>) message).getCorrelationId();
+		}
+		return message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+	}
+
 	@Nullable
 	public static Long getExpirationDate(Message<?> message) {
+		if (message instanceof WellKnownHeadersMessage) {
+			WellKnownHeadersMessage<?> wellKnownHeadersMessage = (WellKnownHeadersMessage<?>) message;
+			if (wellKnownHeadersMessage.isExpirationDateResolved()) {
+				return wellKnownHeadersMessage.hasExpirationDate() ? wellKnownHeadersMessage.getExpirationDate() : null;
+			}
+		}
 		return message.getHeaders().get(IntegrationMessageHeaderAccessor.EXPIRATION_DATE, Long.class);
 	}
 
 	public static int getSequenceNumber(Message<?> message) {
+		if (message instanceof WellKnownHeadersMessage) {
+			WellKnownHeadersMessage<?> wellKnownHeadersMessage = (WellKnownHeadersMessage<?>) message;
+			if (wellKnownHeadersMessage.isSequenceNumberResolved()) {
+				return wellKnownHeadersMessage.getSequenceNumber();
+			}
+		}
 		Number sequenceNumber = message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
 				Number.class);
 		return (sequenceNumber != null ? sequenceNumber.intValue() : 0);
 	}
 
 	public static int getSequenceSize(Message<?> message) {
+		if (message instanceof WellKnownHeadersMessage) {
+			WellKnownHeadersMessage<?> wellKnownHeadersMessage = (WellKnownHeadersMessage<?>) message;
+			if (wellKnownHeadersMessage.isSequenceSizeResolved()) {
+				return wellKnownHeadersMessage.getSequenceSize();
+			}
+		}
 		Number sequenceSize = message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, Number.class);
 		return (sequenceSize != null ? sequenceSize.intValue() : 0);
 	}
 
 	@Nullable
 	public static Integer getPriority(Message<?> message) {
+		if (message instanceof WellKnownHeadersMessage) {
+			WellKnownHeadersMessage<?> wellKnownHeadersMessage = (WellKnownHeadersMessage<?>) message;
+			if (wellKnownHeadersMessage.isPriorityResolved()) {
+				return wellKnownHeadersMessage.hasPriority() ? wellKnownHeadersMessage.getPriority() : null;
+			}
+		}
 		Number priority = message.getHeaders().get(IntegrationMessageHeaderAccessor.PRIORITY, Number.class);
 		return (priority != null ? priority.intValue() : null);
 	}
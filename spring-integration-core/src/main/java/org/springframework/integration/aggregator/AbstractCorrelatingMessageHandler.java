@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,17 @@
 
 package org.springframework.integration.aggregator;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.Lock;
 
@@ -43,6 +44,7 @@ import org.springframework.context.Lifecycle;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.integration.channel.NullChannel;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.handler.AbstractMessageProducingHandler;
@@ -94,11 +96,19 @@ import org.springframework.util.CollectionUtils;
 public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageProducingHandler
 		implements DiscardingMessageHandler, DisposableBean, ApplicationEventPublisherAware, Lifecycle {
 
+	/**
+	 * The header of the incremental aggregation state message with the {@link BitSet}
+	 * of the sequence numbers accumulated so far; removed when the state message is
+	 * released or discarded.
+	 */
+	private static final String ACCUMULATED_SEQUENCES =
+			AbstractCorrelatingMessageHandler.class.getName() + ".accumulatedSequences";
+
 	protected final Log logger = LogFactory.getLog(getClass());
 
 	private final Comparator<Message<?>> sequenceNumberComparator = new MessageSequenceComparator();
 
-	private final Map<UUID, ScheduledFuture<?>> expireGroupScheduledFutures = new HashMap<>();
+	private final Map<UUID, ScheduledFuture<?>> expireGroupScheduledFutures = new ConcurrentHashMap<>();
 
 	private final Set<Object> groupIds =  new HashSet<>();
 
@@ -142,6 +152,8 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 
 	private volatile boolean running;
 
+	private IncrementalAggregator<Object> incrementalAggregator;
+
 	public AbstractCorrelatingMessageHandler(MessageGroupProcessor processor, MessageGroupStore store,
 			CorrelationStrategy correlationStrategy, ReleaseStrategy releaseStrategy) {
 		Assert.notNull(processor, "'processor' must not be null");
@@ -208,6 +220,33 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 		this.outputProcessor = outputProcessor;
 	}
 
+	/**
+	 * Aggregate the groups incrementally: fold each message into a state kept in the
+	 * {@link MessageGroupStore} in place of the group's messages, so the memory and store
+	 * operations per message do not depend on the group size. The release strategy and the
+	 * output processor are replaced by the {@link IncrementalAggregator} ones and must not
+	 * be configured separately. When a group expires without
+	 * {@code sendPartialResultOnExpiry}, its state message is sent to the discard channel.
+	 * The sequence numbers accumulated are tracked in the state message, and a message with
+	 * a sequence number already accumulated in its group is discarded.
+	 * @param incrementalAggregator the {@link IncrementalAggregator} to use.
+	 * @since 5.1
+	 */
+	@SuppressWarnings("unchecked")
+	public void setIncrementalAggregator(IncrementalAggregator<?> incrementalAggregator) {
+		Assert.notNull(incrementalAggregator, "'incrementalAggregator' must not be null");
+		this.incrementalAggregator = (IncrementalAggregator<Object>) incrementalAggregator;
+		IncrementalAggregatorAdapter adapter = new IncrementalAggregatorAdapter();
+		setReleaseStrategy(adapter);
+		setOutputProcessor(adapter);
+	}
+
+	/**
+	 * Set the {@link TaskScheduler} for the {@code groupTimeout} tasks.
+	 * Consider a {@link org.springframework.integration.scheduling.TimingWheelTaskScheduler}
+	 * when there are many concurrent groups with a timeout.
+	 * @param taskScheduler the task scheduler.
+	 */
 	@Override
 	public void setTaskScheduler(TaskScheduler taskScheduler) {
 		super.setTaskScheduler(taskScheduler);
@@ -240,6 +279,13 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 			this.discardChannel = new NullChannel();
 		}
 
+		if (this.incrementalAggregator != null) {
+			Assert.state(this.releaseStrategy instanceof IncrementalAggregatorAdapter
+							&& this.outputProcessor instanceof IncrementalAggregatorAdapter,
+					"A 'releaseStrategy' and an 'outputProcessor' cannot be used together with an "
+							+ "'incrementalAggregator'.");
+		}
+
 		if (this.releasePartialSequences) {
 			Assert.isInstanceOf(SequenceSizeReleaseStrategy.class, this.releaseStrategy,
 					"Release strategy of type [" + this.releaseStrategy.getClass().getSimpleName() +
@@ -428,11 +474,14 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 				messageGroup = new SequenceAwareMessageGroup(messageGroup);
 			}
 
-			if (!messageGroup.isComplete() && messageGroup.canAdd(message)) {
+			if (!messageGroup.isComplete() && messageGroup.canAdd(message)
+					&& (this.incrementalAggregator == null || !isAccumulated(messageGroup, message))) {
 				if (this.logger.isTraceEnabled()) {
 					this.logger.trace("Adding message to group [ " + messageGroup + "]");
 				}
-				messageGroup = this.store(correlationKey, message);
+				messageGroup = this.incrementalAggregator != null
+						? accumulate(correlationKey, messageGroup, message)
+						: this.store(correlationKey, message);
 
 				if (this.releaseStrategy.canRelease(messageGroup)) {
 					Collection<Message<?>> completedMessages = null;
@@ -686,7 +735,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 
 	protected int findLastReleasedSequenceNumber(Object groupId, Collection<Message<?>> partialSequence) {
 		Message<?> lastReleasedMessage = Collections.max(partialSequence, this.sequenceNumberComparator);
-		return new IntegrationMessageHeaderAccessor(lastReleasedMessage).getSequenceNumber();
+		return StaticMessageHeaderAccessor.getSequenceNumber(lastReleasedMessage);
 	}
 
 	protected MessageGroup store(Object correlationKey, Message<?> message) {
@@ -694,6 +743,45 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 		return this.messageStore.addMessageToGroup(correlationKey, message);
 	}
 
+	private MessageGroup accumulate(Object correlationKey, MessageGroup messageGroup, Message<?> message) {
+		this.groupIds.add(correlationKey);
+		Message<?> stateMessage = messageGroup.getOne();
+		Object state = stateMessage != null
+				? stateMessage.getPayload()
+				: this.incrementalAggregator.initialState(message);
+		Object newState = this.incrementalAggregator.accumulate(state, message);
+		Assert.state(newState != null, "The 'IncrementalAggregator' must not return a null state.");
+		BitSet sequences = stateMessage != null
+				? stateMessage.getHeaders().get(ACCUMULATED_SEQUENCES, BitSet.class)
+				: null;
+		int sequenceNumber = StaticMessageHeaderAccessor.getSequenceNumber(message);
+		if (sequenceNumber > 0) {
+			sequences = sequences != null ? (BitSet) sequences.clone() : new BitSet();
+			sequences.set(sequenceNumber);
+		}
+		Message<?> newStateMessage = getMessageBuilderFactory()
+				.withPayload(newState)
+				.copyHeaders((stateMessage != null ? stateMessage : message).getHeaders())
+				.setHeader(ACCUMULATED_SEQUENCES, sequences)
+				.build();
+		if (stateMessage != null) {
+			this.messageStore.removeMessagesFromGroup(correlationKey, stateMessage);
+		}
+		return this.messageStore.addMessageToGroup(correlationKey, newStateMessage);
+	}
+
+	private static boolean isAccumulated(MessageGroup messageGroup, Message<?> message) {
+		int sequenceNumber = StaticMessageHeaderAccessor.getSequenceNumber(message);
+		if (sequenceNumber <= 0) {
+			return false;
+		}
+		Message<?> stateMessage = messageGroup.getOne();
+		BitSet sequences = stateMessage != null
+				? stateMessage.getHeaders().get(ACCUMULATED_SEQUENCES, BitSet.class)
+				: null;
+		return sequences != null && sequences.get(sequenceNumber);
+	}
+
 	protected void expireGroup(Object correlationKey, MessageGroup group) {
 		if (this.logger.isInfoEnabled()) {
 			this.logger.info("Expiring MessageGroup with correlationKey[" + correlationKey + "]");
@@ -712,7 +800,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 						+ (this.discardChannelName != null ? this.discardChannelName : this.discardChannel));
 			}
 			for (Message<?> message : group.getMessages()) {
-				discardMessage(message);
+				discardMessage(withoutAccumulatedSequences(message));
 			}
 		}
 		if (this.applicationEventPublisher != null) {
@@ -741,10 +829,24 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 			this.verifyResultCollectionConsistsOfMessages((Collection<?>) result);
 			partialSequence = (Collection<Message<?>>) result;
 		}
-		this.sendOutputs(result, message);
+		this.sendOutputs(result, withoutAccumulatedSequences(message));
 		return partialSequence;
 	}
 
+	/**
+	 * Remove the accumulated sequence numbers of the incremental aggregation state, if any,
+	 * from a message leaving this handler.
+	 */
+	private Message<?> withoutAccumulatedSequences(Message<?> message) {
+		if (message == null || !message.getHeaders().containsKey(ACCUMULATED_SEQUENCES)) {
+			return message;
+		}
+		return getMessageBuilderFactory()
+				.fromMessage(message)
+				.removeHeader(ACCUMULATED_SEQUENCES)
+				.build();
+	}
+
 	protected void verifyResultCollectionConsistsOfMessages(Collection<?> elements) {
 		Class<?> commonElementType = CollectionUtils.findCommonElementType(elements);
 		Assert.isAssignable(Message.class, commonElementType,
@@ -852,6 +954,33 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 
 	}
 
+	/**
+	 * Release strategy and output processor for the single state message of the groups
+	 * when an {@link IncrementalAggregator} is configured.
+	 */
+	private class IncrementalAggregatorAdapter implements ReleaseStrategy, MessageGroupProcessor {
+
+		IncrementalAggregatorAdapter() {
+			super();
+		}
+
+		@Override
+		public boolean canRelease(MessageGroup group) {
+			Message<?> stateMessage = group.getOne();
+			return stateMessage != null
+					&& AbstractCorrelatingMessageHandler.this.incrementalAggregator
+							.canRelease(stateMessage.getPayload());
+		}
+
+		@Override
+		public Object processMessageGroup(MessageGroup group) {
+			Message<?> stateMessage = group.getOne();
+			Assert.state(stateMessage != null, "No aggregation state for the group [" + group.getGroupId() + "]");
+			return AbstractCorrelatingMessageHandler.this.incrementalAggregator.finish(stateMessage.getPayload());
+		}
+
+	}
+
 	private class ForceReleaseMessageGroupProcessor implements MessageGroupProcessor {
 
 		ForceReleaseMessageGroupProcessor() {
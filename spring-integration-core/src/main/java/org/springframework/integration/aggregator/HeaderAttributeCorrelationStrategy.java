@@ -16,6 +16,8 @@
 
 package org.springframework.integration.aggregator;
 
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.messaging.Message;
 
 /**
@@ -28,13 +30,19 @@ public class HeaderAttributeCorrelationStrategy implements CorrelationStrategy {
 
 	private String attributeName;
 
+	private final boolean correlationId;
+
 
 	public HeaderAttributeCorrelationStrategy(String attributeName) {
 		this.attributeName = attributeName;
+		this.correlationId = IntegrationMessageHeaderAccessor.CORRELATION_ID.equals(attributeName);
 	}
 
 
 	public Object getCorrelationKey(Message<?> message) {
+		if (this.correlationId) {
+			return StaticMessageHeaderAccessor.getCorrelationId(message);
+		}
 		return message.getHeaders().get(this.attributeName);
 	}
 
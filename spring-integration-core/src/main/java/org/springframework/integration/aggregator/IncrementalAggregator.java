@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Strategy for aggregating a group by folding each message into a running state as it
+ * arrives, instead of keeping the messages until the group is released.
+ * <p>
+ * When configured on an {@link AbstractCorrelatingMessageHandler}, the
+ * {@link org.springframework.integration.store.MessageGroupStore} holds a single message
+ * per group, with the state as its payload and the headers of the group's first message.
+ * Therefore the state must be serializable with the store's serializer when a persistent
+ * store is used.
+ *
+ * @param <S> the state type.
+ *
+ * @since 5.1
+ *
+ * @see AbstractCorrelatingMessageHandler#setIncrementalAggregator(IncrementalAggregator)
+ */
+public interface IncrementalAggregator<S> {
+
+	/**
+	 * Create the state of a new group.
+	 * @param message the first message of the group; it is then passed to
+	 * {@link #accumulate(Object, Message)}.
+	 * @return the initial state.
+	 */
+	S initialState(Message<?> message);
+
+	/**
+	 * Fold the message into the state.
+	 * @param state the current state.
+	 * @param message the message.
+	 * @return the new state; may be the same (mutated) instance.
+	 */
+	S accumulate(S state, Message<?> message);
+
+	/**
+	 * Determine whether the group with this state is complete.
+	 * @param state the current state.
+	 * @return true to release the group.
+	 */
+	boolean canRelease(S state);
+
+	/**
+	 * Produce the output of a released or expired group.
+	 * @param state the final state.
+	 * @return the output payload, or a {@link Message} or message builder.
+	 */
+	Object finish(S state);
+
+}
@@ -18,7 +18,7 @@ package org.springframework.integration.aggregator;
 
 import java.util.Comparator;
 
-import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.messaging.Message;
 
 /**
@@ -30,8 +30,8 @@ public class MessageSequenceComparator implements Comparator<Message<?>> {
 
 	@Override
 	public int compare(Message<?> o1, Message<?> o2) {
-		int sequenceNumber1 = new IntegrationMessageHeaderAccessor(o1).getSequenceNumber();
-		int sequenceNumber2 = new IntegrationMessageHeaderAccessor(o2).getSequenceNumber();
+		int sequenceNumber1 = StaticMessageHeaderAccessor.getSequenceNumber(o1);
+		int sequenceNumber2 = StaticMessageHeaderAccessor.getSequenceNumber(o2);
 
 		return Integer.compare(sequenceNumber1, sequenceNumber2);
 	}
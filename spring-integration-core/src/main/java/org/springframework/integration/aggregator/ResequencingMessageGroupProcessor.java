@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,12 +22,16 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
-import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SequenceWindowMessageGroup;
 import org.springframework.messaging.Message;
 
 /**
  * This class implements all the strategy interfaces needed for a default resequencer.
+ * <p>
+ * The group is sorted on each release, unless it is a {@link SequenceWindowMessageGroup}
+ * which is kept in sequence order, so only the released run is visited.
  *
  * @author Iwein Fuld
  * @author Dave Syer
@@ -39,6 +43,11 @@ public class ResequencingMessageGroupProcessor implements MessageGroupProcessor
 	private final Comparator<Message<?>> comparator = new MessageSequenceComparator();
 
 	public Object processMessageGroup(MessageGroup group) {
+		if (group instanceof SequenceWindowMessageGroup) {
+			List<Message<?>> partialSequence = ((SequenceWindowMessageGroup) group).getContiguousSequence();
+			return partialSequence.isEmpty() ? null : partialSequence;
+		}
+
 		Collection<Message<?>> messages = group.getMessages();
 
 		if (messages.size() > 0) {
@@ -63,6 +72,6 @@ public class ResequencingMessageGroupProcessor implements MessageGroupProcessor
 	}
 
 	private Integer extractSequenceNumber(Message<?> message) {
-		return new IntegrationMessageHeaderAccessor(message).getSequenceNumber();
+		return StaticMessageHeaderAccessor.getSequenceNumber(message);
 	}
 }
@@ -16,7 +16,7 @@
 
 package org.springframework.integration.channel;
 
-import java.util.ArrayDeque;
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
@@ -414,12 +414,12 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 		}
 
-		Deque<ChannelInterceptor> interceptorStack = null;
+		InterceptorPipeline pipeline = this.interceptors.getPipeline();
+		boolean interceptorsApplied = false;
 		boolean sent = false;
 		boolean metricsProcessed = false;
 		MetricsContext metrics = null;
 		boolean countsEnabled = this.countsEnabled;
-		ChannelInterceptorList interceptors = this.interceptors;
 		AbstractMessageChannelMetrics channelMetrics = this.channelMetrics;
 		SampleFacade sample = null;
 		try {
@@ -430,12 +430,12 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			if (debugEnabled) {
 				logger.debug("preSend on channel '" + this + "', message: " + message);
 			}
-			if (interceptors.getSize() > 0) {
-				interceptorStack = new ArrayDeque<>();
-				message = interceptors.preSend(message, this, interceptorStack);
+			if (pipeline.hasInterceptors()) {
+				message = pipeline.preSend(message, this);
 				if (message == null) {
 					return false;
 				}
+				interceptorsApplied = true;
 			}
 			if (countsEnabled) {
 				metrics = channelMetrics.beforeSend();
@@ -456,9 +456,9 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			if (debugEnabled) {
 				logger.debug("postSend (sent=" + sent + ") on channel '" + this + "', message: " + message);
 			}
-			if (interceptorStack != null) {
-				interceptors.postSend(message, this, sent);
-				interceptors.afterSendCompletion(message, this, sent, null, interceptorStack);
+			if (interceptorsApplied) {
+				pipeline.postSend(message, this, sent);
+				pipeline.afterSendCompletion(message, this, sent, null, pipeline.size());
 			}
 			return sent;
 		}
@@ -469,8 +469,8 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 				}
 				channelMetrics.afterSend(metrics, false);
 			}
-			if (interceptorStack != null) {
-				interceptors.afterSendCompletion(message, this, sent, e, interceptorStack);
+			if (interceptorsApplied) {
+				pipeline.afterSendCompletion(message, this, sent, e, pipeline.size());
 			}
 			throw IntegrationUtils.wrapInDeliveryExceptionIfNecessary(message,
 					() -> "failed to send Message to channel '" + this.getComponentName() + "'", e);
@@ -556,15 +556,20 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 
 		private volatile int size;
 
+		private volatile InterceptorPipeline pipeline;
+
 		public ChannelInterceptorList(Log logger) {
 			this.logger = logger;
+			this.pipeline = new InterceptorPipeline(this.interceptors, logger);
 		}
 
 		public boolean set(List<ChannelInterceptor> interceptors) {
 			synchronized (this.interceptors) {
 				this.interceptors.clear();
 				this.size = interceptors.size();
-				return this.interceptors.addAll(interceptors);
+				boolean changed = this.interceptors.addAll(interceptors);
+				rebuildPipeline();
+				return changed;
 			}
 		}
 
@@ -572,14 +577,35 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			return this.size;
 		}
 
+		/**
+		 * Return the immutable {@link InterceptorPipeline} compiled from the current
+		 * interceptors; it is rebuilt each time the interceptors are changed.
+		 * @return the pipeline.
+		 * @since 5.1
+		 */
+		public InterceptorPipeline getPipeline() {
+			return this.pipeline;
+		}
+
 		public boolean add(ChannelInterceptor interceptor) {
-			this.size++;
-			return this.interceptors.add(interceptor);
+			synchronized (this.interceptors) {
+				this.size++;
+				boolean added = this.interceptors.add(interceptor);
+				rebuildPipeline();
+				return added;
+			}
 		}
 
 		public void add(int index, ChannelInterceptor interceptor) {
-			this.size++;
-			this.interceptors.add(index, interceptor);
+			synchronized (this.interceptors) {
+				this.size++;
+				this.interceptors.add(index, interceptor);
+				rebuildPipeline();
+			}
+		}
+
+		private void rebuildPipeline() {
+			this.pipeline = new InterceptorPipeline(this.interceptors, this.logger);
 		}
 
 		public Message<?> preSend(Message<?> message, MessageChannel channel,
@@ -665,21 +691,201 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		}
 
 		public boolean remove(ChannelInterceptor interceptor) {
-			if (this.interceptors.remove(interceptor)) {
-				this.size--;
+			synchronized (this.interceptors) {
+				if (this.interceptors.remove(interceptor)) {
+					this.size--;
+					rebuildPipeline();
+					return true;
+				}
+				else {
+					return false;
+				}
+			}
+		}
+
+		public ChannelInterceptor remove(int index) {
+			synchronized (this.interceptors) {
+				ChannelInterceptor removed = this.interceptors.remove(index);
+				if (removed != null) {
+					this.size--;
+					rebuildPipeline();
+				}
+				return removed;
+			}
+		}
+
+	}
+
+	/**
+	 * An immutable snapshot of the channel interceptors, compiled when the interceptors
+	 * change. Instead of tracking the invoked interceptors in a {@link Deque}, callers
+	 * pass the number of interceptors whose {@code preSend()}/{@code preReceive()}
+	 * succeeded; the completion callbacks are skipped entirely when no interceptor
+	 * overrides them.
+	 * @since 5.1
+	 */
+	protected static final class InterceptorPipeline {
+
+		private final Log logger;
+
+		private final ChannelInterceptor[] interceptors;
+
+		private final boolean afterSendCompletionRequired;
+
+		private final boolean afterReceiveCompletionRequired;
+
+		InterceptorPipeline(List<ChannelInterceptor> interceptors, Log logger) {
+			this.logger = logger;
+			this.interceptors = interceptors.toArray(new ChannelInterceptor[0]);
+			boolean afterSendCompletion = false;
+			boolean afterReceiveCompletion = false;
+			for (ChannelInterceptor interceptor : this.interceptors) {
+				afterSendCompletion |= overrides(interceptor, "afterSendCompletion",
+						Message.class, MessageChannel.class, boolean.class, Exception.class);
+				afterReceiveCompletion |= overrides(interceptor, "afterReceiveCompletion",
+						Message.class, MessageChannel.class, Exception.class);
+			}
+			this.afterSendCompletionRequired = afterSendCompletion;
+			this.afterReceiveCompletionRequired = afterReceiveCompletion;
+		}
+
+		private static boolean overrides(ChannelInterceptor interceptor, String methodName,
+				Class<?>... parameterTypes) {
+
+			try {
+				Method method = interceptor.getClass().getMethod(methodName, parameterTypes);
+				return !ChannelInterceptor.class.equals(method.getDeclaringClass());
+			}
+			catch (NoSuchMethodException | SecurityException e) {
 				return true;
 			}
-			else {
-				return false;
+		}
+
+		public boolean hasInterceptors() {
+			return this.interceptors.length > 0;
+		}
+
+		public int size() {
+			return this.interceptors.length;
+		}
+
+		/**
+		 * Apply {@code preSend()} of all the interceptors. If one of them returns null,
+		 * or throws an exception, {@code afterSendCompletion()} is invoked on those
+		 * already applied before returning null or rethrowing the exception.
+		 * @param message the message.
+		 * @param channel the channel.
+		 * @return the message to send, or null if the send is precluded.
+		 */
+		public Message<?> preSend(Message<?> message, MessageChannel channel) {
+			Message<?> messageToSend = message;
+			for (int i = 0; i < this.interceptors.length; i++) {
+				ChannelInterceptor interceptor = this.interceptors[i];
+				try {
+					messageToSend = interceptor.preSend(messageToSend, channel);
+				}
+				catch (RuntimeException e) {
+					afterSendCompletion(message, channel, false, e, i);
+					throw e;
+				}
+				if (messageToSend == null) {
+					if (this.logger.isDebugEnabled()) {
+						this.logger.debug(interceptor.getClass().getSimpleName()
+								+ " returned null from preSend, i.e. precluding the send.");
+					}
+					afterSendCompletion(null, channel, false, null, i);
+					return null;
+				}
 			}
+			return messageToSend;
 		}
 
-		public ChannelInterceptor remove(int index) {
-			ChannelInterceptor removed = this.interceptors.remove(index);
-			if (removed != null) {
-				this.size--;
+		public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+			for (ChannelInterceptor interceptor : this.interceptors) {
+				interceptor.postSend(message, channel, sent);
+			}
+		}
+
+		/**
+		 * Invoke {@code afterSendCompletion()} in reverse order on the first
+		 * {@code applied} interceptors.
+		 * @param message the message.
+		 * @param channel the channel.
+		 * @param sent the send result.
+		 * @param ex the exception, if any.
+		 * @param applied the number of interceptors whose {@code preSend()} succeeded.
+		 */
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex,
+				int applied) {
+
+			if (this.afterSendCompletionRequired) {
+				for (int i = applied - 1; i >= 0; i--) {
+					ChannelInterceptor interceptor = this.interceptors[i];
+					try {
+						interceptor.afterSendCompletion(message, channel, sent, ex);
+					}
+					catch (Exception ex2) {
+						this.logger.error("Exception from afterSendCompletion in " + interceptor, ex2);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Apply {@code preReceive()} of all the interceptors. If one of them returns false,
+		 * or throws an exception, {@code afterReceiveCompletion()} is invoked on those
+		 * already applied before returning false or rethrowing the exception.
+		 * @param channel the channel.
+		 * @return true if the receive may proceed.
+		 */
+		public boolean preReceive(MessageChannel channel) {
+			for (int i = 0; i < this.interceptors.length; i++) {
+				boolean proceed;
+				try {
+					proceed = this.interceptors[i].preReceive(channel);
+				}
+				catch (RuntimeException e) {
+					afterReceiveCompletion(null, channel, e, i);
+					throw e;
+				}
+				if (!proceed) {
+					afterReceiveCompletion(null, channel, null, i);
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+			for (ChannelInterceptor interceptor : this.interceptors) {
+				message = interceptor.postReceive(message, channel);
+				if (message == null) {
+					return null;
+				}
+			}
+			return message;
+		}
+
+		/**
+		 * Invoke {@code afterReceiveCompletion()} in reverse order on the first
+		 * {@code applied} interceptors.
+		 * @param message the message.
+		 * @param channel the channel.
+		 * @param ex the exception, if any.
+		 * @param applied the number of interceptors whose {@code preReceive()} succeeded.
+		 */
+		public void afterReceiveCompletion(Message<?> message, MessageChannel channel, Exception ex, int applied) {
+			if (this.afterReceiveCompletionRequired) {
+				for (int i = applied - 1; i >= 0; i--) {
+					ChannelInterceptor interceptor = this.interceptors[i];
+					try {
+						interceptor.afterReceiveCompletion(message, channel, ex);
+					}
+					catch (Exception ex2) {
+						this.logger.error("Exception from afterReceiveCompletion in " + interceptor, ex2);
+					}
+				}
 			}
-			return removed;
 		}
 
 	}
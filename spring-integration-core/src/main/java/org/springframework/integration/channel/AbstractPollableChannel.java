@@ -16,17 +16,17 @@
 
 package org.springframework.integration.channel;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.integration.support.management.PollableChannelManagement;
 import org.springframework.integration.support.management.metrics.CounterFacade;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.PollableChannel;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.ExecutorChannelInterceptor;
-import org.springframework.util.CollectionUtils;
+import org.springframework.util.Assert;
 
 /**
  * Base class for all pollable channels.
@@ -37,7 +37,7 @@ import org.springframework.util.CollectionUtils;
  * @author Artem Bilan
  */
 public abstract class AbstractPollableChannel extends AbstractMessageChannel
-		implements PollableChannel, PollableChannelManagement, ExecutorChannelInterceptorAware {
+		implements BatchPollableChannel, PollableChannelManagement, ExecutorChannelInterceptorAware {
 
 	private volatile int executorInterceptorsSize;
 
@@ -90,20 +90,19 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel
 	 */
 	@Override
 	public Message<?> receive(long timeout) {
-		ChannelInterceptorList interceptorList = getInterceptors();
-		Deque<ChannelInterceptor> interceptorStack = null;
+		InterceptorPipeline pipeline = getInterceptors().getPipeline();
+		boolean interceptorsApplied = false;
 		boolean counted = false;
 		boolean countsEnabled = isCountsEnabled();
 		try {
 			if (logger.isTraceEnabled()) {
 				logger.trace("preReceive on channel '" + this + "'");
 			}
-			if (interceptorList.getSize() > 0) {
-				interceptorStack = new ArrayDeque<>();
-
-				if (!interceptorList.preReceive(this, interceptorStack)) {
+			if (pipeline.hasInterceptors()) {
+				if (!pipeline.preReceive(this)) {
 					return null;
 				}
+				interceptorsApplied = true;
 			}
 			Message<?> message = this.doReceive(timeout);
 			if (countsEnabled && message != null) {
@@ -119,9 +118,9 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel
 			else if (logger.isTraceEnabled()) {
 				logger.trace("postReceive on channel '" + this + "', message is null");
 			}
-			if (!CollectionUtils.isEmpty(interceptorStack)) {
-				message = interceptorList.postReceive(message, this);
-				interceptorList.afterReceiveCompletion(message, this, null, interceptorStack);
+			if (interceptorsApplied) {
+				message = pipeline.postReceive(message, this);
+				pipeline.afterReceiveCompletion(message, this, null, pipeline.size());
 			}
 			return message;
 		}
@@ -139,8 +138,103 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel
 				}
 				getMetrics().afterError();
 			}
-			if (!CollectionUtils.isEmpty(interceptorStack)) {
-				interceptorList.afterReceiveCompletion(null, this, e, interceptorStack);
+			if (interceptorsApplied) {
+				pipeline.afterReceiveCompletion(null, this, e, pipeline.size());
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Receive up to {@code maxMessages} messages from this channel in one operation.
+	 * Interceptors are applied in a batch-aware form: {@code preReceive()} and
+	 * {@code afterReceiveCompletion()} are invoked once for the whole batch, the latter with
+	 * a {@code null} message, whereas {@code postReceive()} is invoked for each received
+	 * message. Messages for which {@code postReceive()} returns null or throws an exception
+	 * are removed from the result; such an exception is logged and passed to
+	 * {@code afterReceiveCompletion()}, and it is only rethrown if no message is left.
+	 * @param maxMessages the maximum number of messages to receive.
+	 * @param timeout the timeout in milliseconds to wait for the first message.
+	 * @return the received messages.
+	 * @since 5.1
+	 * @see #doReceiveBatch(int, long)
+	 */
+	@Override
+	public List<Message<?>> receiveBatch(int maxMessages, long timeout) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be a positive integer");
+		InterceptorPipeline pipeline = getInterceptors().getPipeline();
+		boolean interceptorsApplied = false;
+		boolean counted = false;
+		boolean countsEnabled = isCountsEnabled();
+		try {
+			if (logger.isTraceEnabled()) {
+				logger.trace("preReceive (batch of " + maxMessages + ") on channel '" + this + "'");
+			}
+			if (pipeline.hasInterceptors()) {
+				if (!pipeline.preReceive(this)) {
+					return Collections.emptyList();
+				}
+				interceptorsApplied = true;
+			}
+			List<Message<?>> messages = doReceiveBatch(maxMessages, timeout);
+			if (countsEnabled && !messages.isEmpty()) {
+				for (int i = 0; i < messages.size(); i++) {
+					if (getMetricsCaptor() != null) {
+						incrementReceiveCounter();
+					}
+					getMetrics().afterReceive();
+				}
+				counted = true;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("postReceive on channel '" + this + "', " + messages.size() + " message(s)");
+			}
+			if (interceptorsApplied) {
+				RuntimeException failure = null;
+				Iterator<Message<?>> iterator = messages.iterator();
+				while (iterator.hasNext()) {
+					Message<?> message = iterator.next();
+					try {
+						message = pipeline.postReceive(message, this);
+					}
+					catch (RuntimeException e) {
+						// the rest of the batch has left the channel too, so keep intercepting it
+						logger.error("postReceive failed on channel '" + this + "' for " + message, e);
+						if (failure == null) {
+							failure = e;
+						}
+						else {
+							failure.addSuppressed(e);
+						}
+						message = null;
+					}
+					if (message == null) {
+						iterator.remove();
+					}
+				}
+				if (failure != null && messages.isEmpty()) {
+					throw failure;
+				}
+				pipeline.afterReceiveCompletion(null, this, failure, pipeline.size());
+			}
+			return messages;
+		}
+		catch (RuntimeException e) {
+			if (countsEnabled && !counted) {
+				if (getMetricsCaptor() != null) {
+					getMetricsCaptor().counterBuilder(RECEIVE_COUNTER_NAME)
+							.tag("name", getComponentName() == null ? "unknown" : getComponentName())
+							.tag("type", "channel")
+							.tag("result", "failure")
+							.tag("exception", e.getClass().getSimpleName())
+							.description("Messages received")
+							.build()
+							.increment();
+				}
+				getMetrics().afterError();
+			}
+			if (interceptorsApplied) {
+				pipeline.afterReceiveCompletion(null, this, e, pipeline.size());
 			}
 			throw e;
 		}
@@ -220,4 +314,28 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel
 	 */
 	protected abstract Message<?> doReceive(long timeout);
 
+	/**
+	 * Receive up to {@code maxMessages} messages; the returned list must be mutable.
+	 * The default implementation waits for the first message according to the
+	 * {@code timeout} and then calls {@link #doReceive(long)} with a zero timeout until
+	 * the channel is empty or {@code maxMessages} is reached. Subclasses are encouraged
+	 * to override this to take the whole batch in one operation.
+	 * @param maxMessages the maximum number of messages.
+	 * @param timeout the timeout for the first message.
+	 * @return the messages.
+	 * @since 5.1
+	 */
+	protected List<Message<?>> doReceiveBatch(int maxMessages, long timeout) {
+		List<Message<?>> messages = new ArrayList<>();
+		Message<?> message = doReceive(timeout);
+		while (message != null) {
+			messages.add(message);
+			if (messages.size() == maxMessages) {
+				break;
+			}
+			message = doReceive(0);
+		}
+		return messages;
+	}
+
 }
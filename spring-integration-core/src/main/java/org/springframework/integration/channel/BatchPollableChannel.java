@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.List;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.PollableChannel;
+
+/**
+ * A {@link PollableChannel} that can hand out several messages in a single receive
+ * operation, typically draining its underlying queue under one lock acquisition.
+ *
+ * @since 5.1
+ */
+public interface BatchPollableChannel extends PollableChannel {
+
+	/**
+	 * Receive up to {@code maxMessages} messages from this channel. If the channel is
+	 * empty, wait for the first message according to the {@code timeout} semantics of
+	 * {@link PollableChannel#receive(long)}; any further messages are only taken if they
+	 * are immediately available.
+	 * @param maxMessages the maximum number of messages to receive; must be positive.
+	 * @param timeout the timeout in milliseconds to wait for the first message.
+	 * @return the received messages; never null, but may be empty.
+	 */
+	List<Message<?>> receiveBatch(int maxMessages, long timeout);
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.dispatcher.LoadBalancingStrategy;
+import org.springframework.integration.dispatcher.PartitionedDispatcher;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link AbstractExecutorChannel} implementation for partitioned message dispatching.
+ * A partition key is determined for each message and hashed onto one of a fixed number of
+ * partitions, each of them served by its own single thread. Messages with the same key are
+ * therefore handled in the order they have been sent, whereas messages with different keys
+ * can be handled in parallel.
+ * <p>
+ * The partition key is determined by a {@link Function}, a SpEL {@link Expression} or,
+ * by default, the {@link IntegrationMessageHeaderAccessor#CORRELATION_ID} header.
+ * <p>
+ * The partition threads are created on the first send and stopped when the channel is
+ * destroyed.
+ *
+ * @since 5.1
+ *
+ * @see PartitionedDispatcher
+ */
+public class PartitionedChannel extends AbstractExecutorChannel implements DisposableBean {
+
+	private final Expression partitionKeyExpression;
+
+	private ThreadFactory threadFactory;
+
+	private EvaluationContext evaluationContext;
+
+	/**
+	 * Create a channel with the provided number of partitions, using the
+	 * {@link IntegrationMessageHeaderAccessor#CORRELATION_ID} header as the partition key.
+	 * @param partitionCount the number of partitions (threads).
+	 */
+	public PartitionedChannel(int partitionCount) {
+		this(partitionCount, StaticMessageHeaderAccessor::getCorrelationId);
+	}
+
+	/**
+	 * Create a channel with the provided number of partitions and a function to
+	 * determine the partition key of a message.
+	 * @param partitionCount the number of partitions (threads).
+	 * @param partitionKeyFunction the partition key function.
+	 */
+	public PartitionedChannel(int partitionCount, Function<Message<?>, Object> partitionKeyFunction) {
+		super(null);
+		this.partitionKeyExpression = null;
+		this.dispatcher = new PartitionedDispatcher(partitionCount, partitionKeyFunction);
+	}
+
+	/**
+	 * Create a channel with the provided number of partitions and a SpEL expression
+	 * to determine the partition key of a message; the expression is evaluated against
+	 * the message as the root object.
+	 * @param partitionCount the number of partitions (threads).
+	 * @param partitionKeyExpression the partition key expression.
+	 */
+	public PartitionedChannel(int partitionCount, Expression partitionKeyExpression) {
+		super(null);
+		Assert.notNull(partitionKeyExpression, "'partitionKeyExpression' must not be null");
+		this.partitionKeyExpression = partitionKeyExpression;
+		this.dispatcher = new PartitionedDispatcher(partitionCount, this::evaluatePartitionKey);
+	}
+
+	/**
+	 * Set a {@link ThreadFactory} for the partition threads. By default a
+	 * {@link CustomizableThreadFactory} with the {@code [beanName]-partition-thread-}
+	 * prefix is used.
+	 * @param threadFactory the {@link ThreadFactory} to use.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Specify whether the channel's dispatcher should have failover enabled.
+	 * By default, it will. Set this value to 'false' to disable it.
+	 * @param failover The failover boolean.
+	 */
+	public void setFailover(boolean failover) {
+		getDispatcher().setFailover(failover);
+	}
+
+	/**
+	 * Provide a {@link LoadBalancingStrategy} for the subscribers within each partition.
+	 * @param loadBalancingStrategy The load balancing strategy implementation.
+	 */
+	public void setLoadBalancingStrategy(LoadBalancingStrategy loadBalancingStrategy) {
+		getDispatcher().setLoadBalancingStrategy(loadBalancingStrategy);
+	}
+
+	public int getPartitionCount() {
+		return getDispatcher().getPartitionCount();
+	}
+
+	@Override
+	protected PartitionedDispatcher getDispatcher() {
+		return (PartitionedDispatcher) this.dispatcher;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		PartitionedDispatcher partitionedDispatcher = getDispatcher();
+		if (this.threadFactory == null) {
+			String prefix = getComponentName() != null ? getComponentName() + "-" : "";
+			this.threadFactory = new CustomizableThreadFactory(prefix + "partition-thread-");
+		}
+		partitionedDispatcher.setThreadFactory(this.threadFactory);
+		partitionedDispatcher.setErrorHandler(
+				new MessagePublishingErrorHandler(new BeanFactoryChannelResolver(getBeanFactory())));
+		if (this.maxSubscribers == null) {
+			this.maxSubscribers =
+					getIntegrationProperty(IntegrationProperties.CHANNELS_MAX_UNICAST_SUBSCRIBERS, Integer.class);
+		}
+		partitionedDispatcher.setMaxSubscribers(this.maxSubscribers);
+		partitionedDispatcher.setMessageHandlingTaskDecorator(task -> {
+			if (PartitionedChannel.this.executorInterceptorsSize > 0) {
+				return new MessageHandlingTask(task);
+			}
+			else {
+				return task;
+			}
+		});
+		if (this.partitionKeyExpression != null) {
+			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		getDispatcher().shutdown();
+	}
+
+	private Object evaluatePartitionKey(Message<?> message) {
+		if (this.evaluationContext == null) {
+			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		}
+		return this.partitionKeyExpression.getValue(this.evaluationContext, message);
+	}
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * An unbounded {@link BlockingQueue} for messages with a small, bounded range of integer
+ * {@link IntegrationMessageHeaderAccessor#PRIORITY priorities}. Each priority level has its
+ * own FIFO bucket guarded by its own lock, so {@code offer} and {@code poll} are O(1) and
+ * producers of different priorities do not contend with each other. A bitmap of non-empty
+ * buckets lets consumers find the highest priority level without scanning.
+ * <p>
+ * Messages are received highest priority first and in FIFO order within the same priority,
+ * the same as with the default {@link PriorityChannel} comparator. Messages without a
+ * priority header are treated as priority {@code 0}; priorities outside of the configured
+ * range are clamped to the nearest bound.
+ *
+ * @since 5.1
+ */
+public class PriorityBucketQueue extends AbstractQueue<Message<?>> implements BlockingQueue<Message<?>> {
+
+	private static final int MAX_LEVELS = Long.SIZE;
+
+	private static final long NON_EMPTY_BUCKET_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final int minPriority;
+
+	private final int maxPriority;
+
+	private final Bucket[] buckets;
+
+	private final AtomicLong nonEmptyBuckets = new AtomicLong();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * One permit per message that is in the queue and not yet claimed by a consumer.
+	 */
+	private final Semaphore available = new Semaphore(0);
+
+	/**
+	 * Create a queue for the provided (inclusive) priority range.
+	 * @param minPriority the lowest priority.
+	 * @param maxPriority the highest priority; at most 64 levels are supported.
+	 */
+	public PriorityBucketQueue(int minPriority, int maxPriority) {
+		Assert.isTrue(minPriority <= maxPriority, "'minPriority' must not be greater than 'maxPriority'");
+		Assert.isTrue((long) maxPriority - minPriority < MAX_LEVELS,
+				"No more than " + MAX_LEVELS + " priority levels are supported");
+		this.minPriority = minPriority;
+		this.maxPriority = maxPriority;
+		this.buckets = new Bucket[maxPriority - minPriority + 1];
+		for (int i = 0; i < this.buckets.length; i++) {
+			this.buckets[i] = new Bucket();
+		}
+	}
+
+	public int getMinPriority() {
+		return this.minPriority;
+	}
+
+	public int getMaxPriority() {
+		return this.maxPriority;
+	}
+
+	@Override
+	public boolean offer(Message<?> message) {
+		Assert.notNull(message, "'message' must not be null");
+		int index = indexOf(message);
+		Bucket bucket = this.buckets[index];
+		bucket.lock.lock();
+		try {
+			bucket.messages.add(message);
+			if (bucket.messages.size() == 1) {
+				this.nonEmptyBuckets.accumulateAndGet(1L << index, (bits, bit) -> bits | bit);
+			}
+		}
+		finally {
+			bucket.lock.unlock();
+		}
+		this.size.incrementAndGet();
+		this.available.release();
+		return true;
+	}
+
+	@Override
+	public boolean offer(Message<?> message, long timeout, TimeUnit unit) {
+		return offer(message);
+	}
+
+	@Override
+	public void put(Message<?> message) {
+		offer(message);
+	}
+
+	@Override
+	public Message<?> poll() {
+		if (!this.available.tryAcquire()) {
+			return null;
+		}
+		return takeClaimed();
+	}
+
+	@Override
+	public Message<?> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!this.available.tryAcquire(timeout, unit)) {
+			return null;
+		}
+		return takeClaimed();
+	}
+
+	@Override
+	public Message<?> take() throws InterruptedException {
+		this.available.acquire();
+		return takeClaimed();
+	}
+
+	@Override
+	public Message<?> peek() {
+		for (int index = this.buckets.length - 1; index >= 0; index--) {
+			Bucket bucket = this.buckets[index];
+			bucket.lock.lock();
+			try {
+				Message<?> message = bucket.messages.peek();
+				if (message != null) {
+					return message;
+				}
+			}
+			finally {
+				bucket.lock.unlock();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message<?>> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message<?>> c, int maxElements) {
+		Assert.notNull(c, "'c' must not be null");
+		Assert.isTrue(c != this, "Cannot drain a queue to itself");
+		int claimed = this.available.drainPermits();
+		if (claimed > maxElements) {
+			this.available.release(claimed - maxElements);
+			claimed = maxElements;
+		}
+		int remaining = claimed;
+		while (remaining > 0) {
+			int index = awaitNonEmptyBucket();
+			Bucket bucket = this.buckets[index];
+			bucket.lock.lock();
+			try {
+				while (remaining > 0 && !bucket.messages.isEmpty()) {
+					c.add(bucket.messages.poll());
+					remaining--;
+				}
+				if (bucket.messages.isEmpty()) {
+					clearBit(index);
+				}
+			}
+			finally {
+				bucket.lock.unlock();
+			}
+		}
+		this.size.addAndGet(-claimed);
+		return claimed;
+	}
+
+	/**
+	 * Remove the provided message if it has not been claimed by a consumer yet.
+	 * @param o the message to remove.
+	 * @return true if the message was removed.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Message) || !this.available.tryAcquire()) {
+			return false;
+		}
+		int index = indexOf((Message<?>) o);
+		Bucket bucket = this.buckets[index];
+		boolean removed;
+		bucket.lock.lock();
+		try {
+			removed = bucket.messages.remove(o);
+			if (removed && bucket.messages.isEmpty()) {
+				clearBit(index);
+			}
+		}
+		finally {
+			bucket.lock.unlock();
+		}
+		if (removed) {
+			this.size.decrementAndGet();
+		}
+		else {
+			this.available.release();
+		}
+		return removed;
+	}
+
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Return a snapshot iterator in reception order; removal is not supported.
+	 * @return the iterator.
+	 */
+	@Override
+	public Iterator<Message<?>> iterator() {
+		List<Message<?>> snapshot = new ArrayList<>(size());
+		for (int index = this.buckets.length - 1; index >= 0; index--) {
+			Bucket bucket = this.buckets[index];
+			bucket.lock.lock();
+			try {
+				snapshot.addAll(bucket.messages);
+			}
+			finally {
+				bucket.lock.unlock();
+			}
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	/**
+	 * Take a message for which a permit has already been acquired. Such a message is
+	 * guaranteed to be present in one of the buckets, but a concurrent consumer may empty
+	 * the bucket we pick first, in which case we retry.
+	 */
+	private Message<?> takeClaimed() {
+		while (true) {
+			int index = awaitNonEmptyBucket();
+			Bucket bucket = this.buckets[index];
+			bucket.lock.lock();
+			try {
+				Message<?> message = bucket.messages.poll();
+				if (message != null) {
+					if (bucket.messages.isEmpty()) {
+						clearBit(index);
+					}
+					this.size.decrementAndGet();
+					return message;
+				}
+			}
+			finally {
+				bucket.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Find the highest non-empty bucket for a consumer that holds a claim. The bit of a
+	 * bucket is set before its messages are published, so a claimed message is always
+	 * visible in the bitmap; the wait is only a safeguard against burning a core if that
+	 * is ever not the case.
+	 */
+	private int awaitNonEmptyBucket() {
+		int index;
+		while ((index = highestNonEmptyBucket()) < 0) {
+			LockSupport.parkNanos(this, NON_EMPTY_BUCKET_PARK_NANOS);
+		}
+		return index;
+	}
+
+	private int highestNonEmptyBucket() {
+		long bits = this.nonEmptyBuckets.get();
+		return bits == 0 ? -1 : MAX_LEVELS - 1 - Long.numberOfLeadingZeros(bits);
+	}
+
+	private void clearBit(int index) {
+		this.nonEmptyBuckets.accumulateAndGet(~(1L << index), (bits, mask) -> bits & mask);
+	}
+
+	private int indexOf(Message<?> message) {
+		Integer priority = StaticMessageHeaderAccessor.getPriority(message);
+		int value = priority != null ? priority : 0;
+		return Math.min(Math.max(value, this.minPriority), this.maxPriority) - this.minPriority;
+	}
+
+	private static final class Bucket {
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final ArrayDeque<Message<?>> messages = new ArrayDeque<>();
+
+		Bucket() {
+			super();
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,10 +17,13 @@
 package org.springframework.integration.channel;
 
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.integration.store.MessageGroupQueue;
 import org.springframework.integration.store.PriorityCapableChannelMessageStore;
 import org.springframework.integration.util.UpperBound;
@@ -42,7 +45,7 @@ public class PriorityChannel extends QueueChannel {
 
 	private final AtomicLong sequenceCounter = new AtomicLong();
 
-	private final boolean useMessageStore;
+	private final boolean wrapMessages;
 
 	/**
 	 * Create a channel with an unbounded queue. Message priority will be
@@ -87,7 +90,27 @@ public class PriorityChannel extends QueueChannel {
 	public PriorityChannel(int capacity, Comparator<Message<?>> comparator) {
 		super(new PriorityBlockingQueue<>(11, new SequenceFallbackComparator(comparator)));
 		this.upperBound = new UpperBound(capacity);
-		this.useMessageStore = false;
+		this.wrapMessages = true;
+	}
+
+	/**
+	 * Create a channel with the specified queue capacity, storing messages in one FIFO
+	 * bucket per priority level in the provided (inclusive) range instead of a
+	 * {@link PriorityBlockingQueue}. Offer and poll are then O(1) and producers of
+	 * different priorities do not contend on a single lock. If the capacity is a
+	 * non-positive value, the queue will be unbounded. Message priority is based on
+	 * the value of {@link IntegrationMessageHeaderAccessor#getPriority()}; values outside
+	 * of the range are clamped to the nearest bound.
+	 * @param capacity The capacity.
+	 * @param minPriority the lowest priority.
+	 * @param maxPriority the highest priority; at most 64 levels are supported.
+	 * @since 5.1
+	 * @see PriorityBucketQueue
+	 */
+	public PriorityChannel(int capacity, int minPriority, int maxPriority) {
+		super(new PriorityBucketQueue(minPriority, maxPriority));
+		this.upperBound = new UpperBound(capacity);
+		this.wrapMessages = false;
 	}
 
 	/**
@@ -109,7 +132,7 @@ public class PriorityChannel extends QueueChannel {
 	public PriorityChannel(MessageGroupQueue messageGroupQueue) {
 		super(messageGroupQueue);
 		this.upperBound = new UpperBound(0);
-		this.useMessageStore = true;
+		this.wrapMessages = false;
 	}
 
 	@Override
@@ -122,7 +145,7 @@ public class PriorityChannel extends QueueChannel {
 		if (!this.upperBound.tryAcquire(timeout)) {
 			return false;
 		}
-		if (!this.useMessageStore) {
+		if (this.wrapMessages) {
 			message = new MessageWrapper(message);
 		}
 		return super.doSend(message, 0);
@@ -132,7 +155,7 @@ public class PriorityChannel extends QueueChannel {
 	protected Message<?> doReceive(long timeout) {
 		Message<?> message = super.doReceive(timeout);
 		if (message != null) {
-			if (!this.useMessageStore) {
+			if (this.wrapMessages) {
 				message = ((MessageWrapper) message).getRootMessage();
 			}
 			this.upperBound.release();
@@ -140,6 +163,20 @@ public class PriorityChannel extends QueueChannel {
 		return message;
 	}
 
+	@Override
+	protected List<Message<?>> doReceiveBatch(int maxMessages, long timeout) {
+		List<Message<?>> messages = super.doReceiveBatch(maxMessages, timeout);
+		if (!messages.isEmpty()) {
+			if (this.wrapMessages) {
+				for (ListIterator<Message<?>> iterator = messages.listIterator(); iterator.hasNext(); ) {
+					iterator.set(((MessageWrapper) iterator.next()).getRootMessage());
+				}
+			}
+			this.upperBound.release(messages.size());
+		}
+		return messages;
+	}
+
 	private static final class SequenceFallbackComparator implements Comparator<Message<?>> {
 
 		private final Comparator<Message<?>> targetComparator;
@@ -155,8 +192,8 @@ public class PriorityChannel extends QueueChannel {
 				compareResult = this.targetComparator.compare(message1, message2);
 			}
 			else {
-				Integer priority1 = new IntegrationMessageHeaderAccessor(message1).getPriority();
-				Integer priority2 = new IntegrationMessageHeaderAccessor(message2).getPriority();
+				Integer priority1 = StaticMessageHeaderAccessor.getPriority(((MessageWrapper) message1).getRootMessage());
+				Integer priority2 = StaticMessageHeaderAccessor.getPriority(((MessageWrapper) message2).getRootMessage());
 
 				priority1 = priority1 != null ? priority1 : 0;
 				priority2 = priority2 != null ? priority2 : 0;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.channel;
 import java.util.concurrent.Executor;
 
 import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.dispatcher.BroadcastCompletionPolicy;
 import org.springframework.integration.dispatcher.BroadcastingDispatcher;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.util.ErrorHandlingTaskExecutor;
@@ -43,6 +44,12 @@ public class PublishSubscribeChannel extends AbstractExecutorChannel {
 
 	private volatile int minSubscribers;
 
+	private volatile BroadcastCompletionPolicy completionPolicy;
+
+	private volatile int quorum;
+
+	private volatile long completionTimeout = -1;
+
 	/**
 	 * Create a PublishSubscribeChannel that will use an {@link Executor}
 	 * to invoke the handlers. If this is null, each invocation will occur in
@@ -126,6 +133,47 @@ public class PublishSubscribeChannel extends AbstractExecutorChannel {
 		getDispatcher().setMinSubscribers(minSubscribers);
 	}
 
+	/**
+	 * Invoke the subscribers in parallel and wait until the {@link BroadcastCompletionPolicy}
+	 * is satisfied, so the latency of {@link #send(org.springframework.messaging.Message)}
+	 * is that of the slowest subscriber rather than the sum of all of them. The
+	 * subscribers run on the {@link Executor}, which is required for this mode; the
+	 * policy is validated and applied when the channel is initialized. Failures are
+	 * thrown to the sender in an
+	 * {@link org.springframework.integration.dispatcher.AggregateMessageDeliveryException},
+	 * rather than handled by the {@link ErrorHandler}, unless 'ignoreFailures' is true.
+	 * @param completionPolicy the completion policy.
+	 * @since 5.1
+	 * @see #setQuorum(int)
+	 * @see #setCompletionTimeout(long)
+	 */
+	public void setCompletionPolicy(BroadcastCompletionPolicy completionPolicy) {
+		this.completionPolicy = completionPolicy;
+	}
+
+	/**
+	 * Set the number of subscribers which must handle the message successfully with
+	 * the {@link BroadcastCompletionPolicy#QUORUM} policy. Default: 0 - a majority of
+	 * the subscribers.
+	 * @param quorum the quorum.
+	 * @since 5.1
+	 */
+	public void setQuorum(int quorum) {
+		this.quorum = quorum;
+		getDispatcher().setQuorum(quorum);
+	}
+
+	/**
+	 * Set the maximum time in milliseconds to wait for the {@link BroadcastCompletionPolicy}
+	 * to be satisfied. Required for the {@link BroadcastCompletionPolicy#TIMEOUT} policy.
+	 * Default: -1 - wait indefinitely.
+	 * @param completionTimeout the timeout.
+	 * @since 5.1
+	 */
+	public void setCompletionTimeout(long completionTimeout) {
+		this.completionTimeout = completionTimeout;
+	}
+
 	/**
 	 * Callback method for initialization.
 	 * @throws Exception the exception.
@@ -148,7 +196,10 @@ public class PublishSubscribeChannel extends AbstractExecutorChannel {
 			getDispatcher().setIgnoreFailures(this.ignoreFailures);
 			getDispatcher().setApplySequence(this.applySequence);
 			getDispatcher().setMinSubscribers(this.minSubscribers);
+			getDispatcher().setQuorum(this.quorum);
 		}
+		getDispatcher().setCompletionTimeout(this.completionTimeout);
+		getDispatcher().setCompletionPolicy(this.completionPolicy);
 		if (this.maxSubscribers == null) {
 			Integer maxSubscribers =
 					getIntegrationProperty(IntegrationProperties.CHANNELS_MAX_BROADCAST_SUBSCRIBERS, Integer.class);
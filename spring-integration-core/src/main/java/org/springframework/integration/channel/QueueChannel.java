@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.support.management.QueueChannelManagement;
 import org.springframework.messaging.Message;
@@ -42,7 +43,7 @@ import org.springframework.util.Assert;
  * @author Artem Bilan
  */
 public class QueueChannel extends AbstractPollableChannel implements QueueChannelOperations,
-		QueueChannelManagement {
+		QueueChannelManagement, DisposableBean {
 
 	private final Queue<Message<?>> queue;
 
@@ -145,6 +146,41 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 		}
 	}
 
+	/**
+	 * Wait for the first message according to the {@code timeout} and then drain any
+	 * immediately available messages from a {@link BlockingQueue} in a single
+	 * {@link BlockingQueue#drainTo(java.util.Collection, int)} operation. With a zero
+	 * timeout the whole batch is drained in one operation.
+	 * @since 5.1
+	 */
+	@Override
+	protected List<Message<?>> doReceiveBatch(int maxMessages, long timeout) {
+		if (!(this.queue instanceof BlockingQueue)) {
+			return super.doReceiveBatch(maxMessages, timeout);
+		}
+		BlockingQueue<Message<?>> blockingQueue = (BlockingQueue<Message<?>>) this.queue;
+		List<Message<?>> messages = new ArrayList<>(Math.min(maxMessages, 16));
+		if (timeout == 0) {
+			blockingQueue.drainTo(messages, maxMessages);
+			return messages;
+		}
+		try {
+			Message<?> message = timeout > 0
+					? blockingQueue.poll(timeout, TimeUnit.MILLISECONDS)
+					: blockingQueue.take();
+			if (message != null) {
+				messages.add(message);
+				if (maxMessages > 1) {
+					blockingQueue.drainTo(messages, maxMessages - 1);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return messages;
+	}
+
 	@Override
 	public List<Message<?>> clear() {
 		List<Message<?>> clearedMessages = new ArrayList<Message<?>>();
@@ -192,4 +228,11 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 		}
 	}
 
+	@Override
+	public void destroy() throws Exception {
+		if (this.queue instanceof DisposableBean) {
+			((DisposableBean) this.queue).destroy();
+		}
+	}
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import org.springframework.integration.util.RingBufferBlockingQueue;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+import org.springframework.messaging.Message;
+
+/**
+ * A {@link QueueChannel} backed by a preallocated, lock-free {@link RingBufferBlockingQueue}.
+ * Unlike the default {@link java.util.concurrent.LinkedBlockingQueue}, no node is allocated
+ * per message and producers do not contend with consumers on a lock.
+ * <p>
+ * The capacity is always bounded and rounded up to the next power of two.
+ * Threads blocked in {@code send()} or {@code receive()} wait according to the
+ * {@link WaitStrategy} ({@link WaitStrategy#PARK} by default).
+ * Messages removed by {@link #purge(org.springframework.integration.core.MessageSelector)}
+ * keep occupying their slots until the consumers pass them.
+ *
+ * @since 5.1
+ */
+public class RingBufferQueueChannel extends QueueChannel {
+
+	private final RingBufferBlockingQueue<Message<?>> ringBuffer;
+
+	/**
+	 * Create a channel with the specified capacity and {@link WaitStrategy#PARK}.
+	 * @param capacity the capacity; rounded up to the next power of two.
+	 */
+	public RingBufferQueueChannel(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Create a channel with the specified capacity and {@link WaitStrategy}.
+	 * @param capacity the capacity; rounded up to the next power of two.
+	 * @param waitStrategy the {@link WaitStrategy} for blocked senders and receivers.
+	 */
+	public RingBufferQueueChannel(int capacity, WaitStrategy waitStrategy) {
+		this(new RingBufferBlockingQueue<>(capacity, waitStrategy));
+	}
+
+	private RingBufferQueueChannel(RingBufferBlockingQueue<Message<?>> ringBuffer) {
+		super(ringBuffer);
+		this.ringBuffer = ringBuffer;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return this.ringBuffer.getWaitStrategy();
+	}
+
+}
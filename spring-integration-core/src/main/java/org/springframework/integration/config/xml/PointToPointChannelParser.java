@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,7 +27,9 @@ import org.springframework.integration.channel.FixedSubscriberChannel;
 import org.springframework.integration.channel.PriorityChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.channel.RendezvousChannel;
+import org.springframework.integration.channel.RingBufferQueueChannel;
 import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
 import org.springframework.util.StringUtils;
 import org.springframework.util.xml.DomUtils;
 
@@ -52,7 +54,41 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 
 		// configure a queue-based channel if any queue sub-element is defined
 		String channel = element.getAttribute(ID_ATTRIBUTE);
-		if ((queueElement = DomUtils.getChildElementByTagName(element, "queue")) != null) {
+		queueElement = DomUtils.getChildElementByTagName(element, "queue");
+		String ringBuffer = queueElement != null ? queueElement.getAttribute("ring-buffer").trim() : "";
+		if (StringUtils.hasText(ringBuffer) && !"false".equalsIgnoreCase(ringBuffer)) {
+			if ("true".equalsIgnoreCase(ringBuffer)) {
+				builder = BeanDefinitionBuilder.genericBeanDefinition(RingBufferQueueChannel.class);
+			}
+			else {
+				// a placeholder: the channel type is chosen when the value is resolved
+				builder = BeanDefinitionBuilder.genericBeanDefinition(PointToPointChannelParser.class)
+						.setFactoryMethod("createQueueChannel")
+						.addConstructorArgValue(ringBuffer);
+			}
+			if (!parseQueueCapacity(builder, queueElement)) {
+				parserContext.getReaderContext().error(
+						"The 'capacity' attribute is required when 'ring-buffer' is provided.", element);
+			}
+			if (StringUtils.hasText(queueElement.getAttribute("ref"))
+					|| StringUtils.hasText(queueElement.getAttribute("message-store"))) {
+				parserContext.getReaderContext().error(
+						"The 'ref' and 'message-store' attributes are not allowed when 'ring-buffer' is provided.",
+						element);
+			}
+			String waitStrategy = queueElement.getAttribute("wait-strategy");
+			if (StringUtils.hasText(waitStrategy)) {
+				builder.addConstructorArgValue(waitStrategy);
+			}
+			else if (!"true".equalsIgnoreCase(ringBuffer)) {
+				builder.addConstructorArgValue(WaitStrategy.PARK);
+			}
+		}
+		else if (queueElement != null) {
+			if (StringUtils.hasText(queueElement.getAttribute("wait-strategy"))) {
+				parserContext.getReaderContext().error(
+						"The 'wait-strategy' attribute is only allowed when 'ring-buffer' is true.", element);
+			}
 			builder = BeanDefinitionBuilder.genericBeanDefinition(QueueChannel.class);
 			boolean hasStoreRef = this.parseStoreRef(builder, queueElement, channel, false);
 			boolean hasQueueRef = this.parseQueueRef(builder, queueElement);
@@ -83,6 +119,25 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 			if (StringUtils.hasText(comparatorRef)) {
 				builder.addConstructorArgReference(comparatorRef);
 			}
+			String minPriority = queueElement.getAttribute("min-priority");
+			String maxPriority = queueElement.getAttribute("max-priority");
+			if (StringUtils.hasText(minPriority) || StringUtils.hasText(maxPriority)) {
+				if (!StringUtils.hasText(minPriority) || !StringUtils.hasText(maxPriority)) {
+					parserContext.getReaderContext().error(
+							"Both 'min-priority' and 'max-priority' must be provided for a bucketed priority queue.",
+							element);
+				}
+				if (StringUtils.hasText(comparatorRef)
+						|| StringUtils.hasText(queueElement.getAttribute("message-store"))) {
+					parserContext.getReaderContext().error("The 'min-priority' and 'max-priority' attributes"
+							+ " are not allowed with a 'comparator' or a 'message-store'.", element);
+				}
+				if (!hasCapacity) {
+					builder.addConstructorArgValue(0);
+				}
+				builder.addConstructorArgValue(minPriority);
+				builder.addConstructorArgValue(maxPriority);
+			}
 			if (parseStoreRef(builder, queueElement, channel, true)) {
 				if (StringUtils.hasText(comparatorRef)) {
 					parserContext.getReaderContext().error(
@@ -198,4 +253,16 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 		return false;
 	}
 
+	/**
+	 * Factory method for a {@code <queue/>} whose {@code ring-buffer} attribute is a
+	 * placeholder, so the channel type is only known once the value is resolved.
+	 * @param ringBuffer whether a {@link RingBufferQueueChannel} is required.
+	 * @param capacity the channel capacity.
+	 * @param waitStrategy the {@link WaitStrategy} for a {@link RingBufferQueueChannel}.
+	 * @return the channel.
+	 */
+	static QueueChannel createQueueChannel(boolean ringBuffer, int capacity, WaitStrategy waitStrategy) {
+		return ringBuffer ? new RingBufferQueueChannel(capacity, waitStrategy) : new QueueChannel(capacity);
+	}
+
 }
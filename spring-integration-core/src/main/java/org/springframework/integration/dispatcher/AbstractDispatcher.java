@@ -53,6 +53,8 @@ public abstract class AbstractDispatcher implements MessageDispatcher {
 
 	private volatile MessageHandler theOneHandler;
 
+	private volatile MessageHandler[] handlerSnapshot = new MessageHandler[0];
+
 	/**
 	 * Set the maximum subscribers allowed by this dispatcher.
 	 * @param maxSubscribers The maximum number of subscribers allowed.
@@ -88,6 +90,7 @@ public abstract class AbstractDispatcher implements MessageDispatcher {
 		else {
 			this.theOneHandler = null;
 		}
+		this.handlerSnapshot = this.handlers.toArray(new MessageHandler[0]);
 		return added;
 	}
 
@@ -106,9 +109,22 @@ public abstract class AbstractDispatcher implements MessageDispatcher {
 		else {
 			this.theOneHandler = null;
 		}
+		this.handlerSnapshot = this.handlers.toArray(new MessageHandler[0]);
 		return removed;
 	}
 
+	/**
+	 * Return an array snapshot of this dispatcher's handlers, in the same order as
+	 * {@link #getHandlers()}. The snapshot is rebuilt whenever a handler is added or
+	 * removed, so callers can iterate it without allocating; it must not be modified.
+	 * Subclasses which override {@link #getHandlers()} should override this method too.
+	 * @return the handlers snapshot.
+	 * @since 5.1
+	 */
+	protected MessageHandler[] getHandlerSnapshot() {
+		return this.handlerSnapshot;
+	}
+
 	protected boolean tryOptimizedDispatch(Message<?> message) {
 		MessageHandler handler = this.theOneHandler;
 		if (handler != null) {
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dispatcher;
+
+/**
+ * The condition a {@link BroadcastingDispatcher} in the parallel mode waits for before
+ * the dispatch returns to the caller.
+ *
+ * @since 5.1
+ *
+ * @see BroadcastingDispatcher#setCompletionPolicy(BroadcastCompletionPolicy)
+ */
+public enum BroadcastCompletionPolicy {
+
+	/**
+	 * Wait for all the handlers; any failure is reported to the caller.
+	 */
+	ALL,
+
+	/**
+	 * Return as soon as one handler has handled the message successfully;
+	 * fail if none could.
+	 */
+	FIRST,
+
+	/**
+	 * Return as soon as the configured quorum (a majority by default) of handlers has
+	 * handled the message successfully; fail if the quorum can no longer be reached.
+	 */
+	QUORUM,
+
+	/**
+	 * Wait for all the handlers, but no longer than the completion timeout; the handlers
+	 * which have not completed by then are not considered as failed.
+	 */
+	TIMEOUT
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,12 @@
 
 package org.springframework.integration.dispatcher;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
@@ -27,8 +30,10 @@ import org.springframework.integration.MessageDispatchingException;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilderFactory;
 import org.springframework.integration.support.MessageDecorator;
+import org.springframework.integration.support.MessagingExceptionWrapper;
 import org.springframework.integration.support.utils.IntegrationUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.MessageHandlingRunnable;
@@ -46,6 +51,11 @@ import org.springframework.util.Assert;
  * <p>
  * If the 'requireSubscribers' flag is set to <code>true</code>, the sent message is considered as non-dispatched
  * and rejected to the caller with the {@code "Dispatcher has no subscribers"} {@link MessageDispatchingException}.
+ * <p>
+ * When a {@link BroadcastCompletionPolicy} is set, the handlers are invoked in parallel on the
+ * Executor, which is then required, and the caller waits until the policy is satisfied.
+ * Failures are then reported to the caller in an {@link AggregateMessageDeliveryException},
+ * unless 'ignoreFailures' is <code>true</code>.
  *
  * @author Mark Fisher
  * @author Iwein Fuld
@@ -71,6 +81,12 @@ public class BroadcastingDispatcher extends AbstractDispatcher implements BeanFa
 
 	private volatile MessageHandlingTaskDecorator messageHandlingTaskDecorator = task -> task;
 
+	private volatile BroadcastCompletionPolicy completionPolicy;
+
+	private volatile int quorum;
+
+	private volatile long completionTimeout = -1;
+
 	private BeanFactory beanFactory;
 
 
@@ -126,6 +142,50 @@ public class BroadcastingDispatcher extends AbstractDispatcher implements BeanFa
 		this.minSubscribers = minSubscribers;
 	}
 
+	/**
+	 * Set the {@link BroadcastCompletionPolicy} to invoke the handlers in parallel and wait
+	 * for the policy to be satisfied before returning. The handlers run on the Executor,
+	 * which is required for this mode; the caller blocks while waiting, so the Executor
+	 * must not be shared with the callers. The {@link BroadcastCompletionPolicy#TIMEOUT}
+	 * policy also requires the {@link #setCompletionTimeout(long) completionTimeout} to be
+	 * set beforehand. Default: null - no parallel mode.
+	 * @param completionPolicy the completion policy.
+	 * @since 5.1
+	 */
+	public void setCompletionPolicy(BroadcastCompletionPolicy completionPolicy) {
+		Assert.state(completionPolicy == null || this.executor != null,
+				"An 'executor' is required for the 'completionPolicy'");
+		Assert.state(completionPolicy != BroadcastCompletionPolicy.TIMEOUT || this.completionTimeout >= 0,
+				"A 'completionTimeout' is required for the TIMEOUT completion policy");
+		this.completionPolicy = completionPolicy;
+	}
+
+	/**
+	 * Set the number of handlers which must handle the message successfully for the
+	 * {@link BroadcastCompletionPolicy#QUORUM} policy. Default: 0 - a majority of the
+	 * current subscribers.
+	 * @param quorum the quorum.
+	 * @since 5.1
+	 */
+	public void setQuorum(int quorum) {
+		Assert.isTrue(quorum >= 0, "'quorum' must not be negative");
+		this.quorum = quorum;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds to wait for the completion policy to be
+	 * satisfied. When exceeded, a {@link MessageDeliveryException} is thrown, except for the
+	 * {@link BroadcastCompletionPolicy#TIMEOUT} policy, for which it is required.
+	 * Default: -1 - wait indefinitely.
+	 * @param completionTimeout the timeout.
+	 * @since 5.1
+	 */
+	public void setCompletionTimeout(long completionTimeout) {
+		Assert.state(completionTimeout >= 0 || this.completionPolicy != BroadcastCompletionPolicy.TIMEOUT,
+				"A 'completionTimeout' is required for the TIMEOUT completion policy");
+		this.completionTimeout = completionTimeout;
+	}
+
 	public void setMessageHandlingTaskDecorator(MessageHandlingTaskDecorator messageHandlingTaskDecorator) {
 		Assert.notNull(messageHandlingTaskDecorator, "'messageHandlingTaskDecorator' must not be null.");
 		this.messageHandlingTaskDecorator = messageHandlingTaskDecorator;
@@ -160,26 +220,26 @@ public class BroadcastingDispatcher extends AbstractDispatcher implements BeanFa
 		if (this.applySequence) {
 			sequenceId = message.getHeaders().getId();
 		}
-		for (MessageHandler handler : handlers) {
-			if (this.applySequence) {
-				messageToSend = getMessageBuilderFactory()
-						.fromMessage(message)
-						.pushSequenceDetails(sequenceId, sequenceNumber++, sequenceSize)
-						.build();
-				if (message instanceof MessageDecorator) {
-					messageToSend = ((MessageDecorator) message).decorateMessage(messageToSend);
+		BroadcastCompletionPolicy completionPolicy = this.completionPolicy;
+		if (completionPolicy != null && sequenceSize > 0) {
+			dispatched = dispatchInParallel(message, sequenceId, completionPolicy);
+		}
+		else {
+			for (MessageHandler handler : handlers) {
+				if (this.applySequence) {
+					messageToSend = sequenceMessage(message, sequenceId, sequenceNumber++, sequenceSize);
 				}
-			}
 
-			if (this.executor != null) {
-				Runnable task = createMessageHandlingTask(handler, messageToSend);
-				this.executor.execute(task);
-				dispatched++;
-			}
-			else {
-				if (this.invokeHandler(handler, messageToSend)) {
+				if (this.executor != null) {
+					Runnable task = createMessageHandlingTask(handler, messageToSend);
+					this.executor.execute(task);
 					dispatched++;
 				}
+				else {
+					if (this.invokeHandler(handler, messageToSend)) {
+						dispatched++;
+					}
+				}
 			}
 		}
 		if (dispatched == 0 && this.minSubscribers == 0 && logger.isDebugEnabled()) {
@@ -193,6 +253,131 @@ public class BroadcastingDispatcher extends AbstractDispatcher implements BeanFa
 		return dispatched >= this.minSubscribers;
 	}
 
+	private Message<?> sequenceMessage(Message<?> message, UUID sequenceId, int sequenceNumber, int sequenceSize) {
+		Message<?> messageToSend = getMessageBuilderFactory()
+				.fromMessage(message)
+				.pushSequenceDetails(sequenceId, sequenceNumber, sequenceSize)
+				.build();
+		if (message instanceof MessageDecorator) {
+			messageToSend = ((MessageDecorator) message).decorateMessage(messageToSend);
+		}
+		return messageToSend;
+	}
+
+	private int dispatchInParallel(Message<?> message, UUID sequenceId, BroadcastCompletionPolicy completionPolicy) {
+		long timeout = this.completionTimeout;
+		MessageHandler[] handlers = getHandlerSnapshot();
+		int size = handlers.length;
+		if (size == 0) {
+			return 0;
+		}
+		int required;
+		switch (completionPolicy) {
+			case FIRST:
+				required = 1;
+				break;
+			case QUORUM:
+				required = this.quorum > 0 ? Math.min(this.quorum, size) : size / 2 + 1;
+				break;
+			default:
+				required = size;
+		}
+		ParallelDispatch parallelDispatch = new ParallelDispatch(size, required);
+		int sequenceNumber = 1;
+		for (MessageHandler handler : handlers) {
+			Message<?> messageToSend = this.applySequence
+					? sequenceMessage(message, sequenceId, sequenceNumber++, size)
+					: message;
+			Runnable task = createParallelTask(handler, messageToSend, parallelDispatch);
+			try {
+				this.executor.execute(task);
+			}
+			catch (RuntimeException e) {
+				parallelDispatch.failed(new MessageDeliveryException(messageToSend,
+						"Failed to submit Message to the Executor", e));
+			}
+		}
+
+		boolean completed;
+		try {
+			completed = parallelDispatch.await(timeout);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(message, "Interrupted while waiting for the subscribers", e);
+		}
+
+		List<Exception> failures = parallelDispatch.getFailures();
+		int succeeded = parallelDispatch.getSucceeded();
+		if (this.ignoreFailures) {
+			if (this.logger.isWarnEnabled()) {
+				for (Exception failure : failures) {
+					this.logger.warn("Suppressing Exception since 'ignoreFailures' is set to TRUE.", failure);
+				}
+				if (!completed && completionPolicy != BroadcastCompletionPolicy.TIMEOUT) {
+					this.logger.warn("Completion policy [" + completionPolicy + "] not satisfied within "
+							+ timeout + " ms: " + succeeded + " of " + size + " subscribers handled the message");
+				}
+			}
+		}
+		else if (!completed && completionPolicy != BroadcastCompletionPolicy.TIMEOUT) {
+			String description = "Completion policy [" + completionPolicy + "] not satisfied within " + timeout
+					+ " ms: " + succeeded + " of " + size + " subscribers handled the message";
+			if (failures.isEmpty()) {
+				throw new MessageDeliveryException(message, description);
+			}
+			throw new AggregateMessageDeliveryException(message, description, failures);
+		}
+		else if (!failures.isEmpty() && (succeeded < required || required == size)) {
+			throw new AggregateMessageDeliveryException(message,
+					"Failed to deliver Message to " + failures.size() + " of " + size
+							+ " subscribers with the completion policy [" + completionPolicy + "]", failures);
+		}
+		return succeeded;
+	}
+
+	private Runnable createParallelTask(MessageHandler handler, Message<?> message,
+			ParallelDispatch parallelDispatch) {
+
+		MessageHandlingRunnable task = new MessageHandlingRunnable() {
+
+			@Override
+			public void run() {
+				handler.handleMessage(message);
+			}
+
+			@Override
+			public Message<?> getMessage() {
+				return message;
+			}
+
+			@Override
+			public MessageHandler getMessageHandler() {
+				return handler;
+			}
+
+		};
+
+		Runnable decoratedTask = this.messageHandlingTaskDecorator.decorate(task);
+		return () -> {
+			try {
+				decoratedTask.run();
+				parallelDispatch.succeeded();
+			}
+			catch (Exception e) {
+				Exception failure = e instanceof MessagingExceptionWrapper ? (Exception) e.getCause() : e;
+				parallelDispatch.failed(
+						IntegrationUtils.wrapInDeliveryExceptionIfNecessary(message,
+								() -> "Dispatcher failed to deliver Message", failure));
+			}
+			catch (Error e) { //NOSONAR - ok, we re-throw below
+				parallelDispatch.failed(new MessageDeliveryException(message,
+						"Dispatcher failed to deliver Message", e));
+				throw e;
+			}
+		};
+	}
+
 
 	private Runnable createMessageHandlingTask(final MessageHandler handler, final Message<?> message) {
 		MessageHandlingRunnable task = new MessageHandlingRunnable() {
@@ -238,4 +423,82 @@ public class BroadcastingDispatcher extends AbstractDispatcher implements BeanFa
 		}
 	}
 
+	/**
+	 * The state of a single parallel dispatch: the caller waits on it until the completion
+	 * policy is satisfied or can no longer be satisfied.
+	 */
+	private final class ParallelDispatch {
+
+		private final int total;
+
+		private final int required;
+
+		private final List<Exception> failures = new ArrayList<>();
+
+		private int succeeded;
+
+		private boolean returned;
+
+		ParallelDispatch(int total, int required) {
+			this.total = total;
+			this.required = required;
+		}
+
+		synchronized void succeeded() {
+			this.succeeded++;
+			notifyAll();
+		}
+
+		synchronized void failed(Exception failure) {
+			if (this.returned) {
+				if (BroadcastingDispatcher.this.logger.isWarnEnabled()) {
+					BroadcastingDispatcher.this.logger.warn("Subscriber failed after the dispatch has completed",
+							failure);
+				}
+			}
+			else {
+				this.failures.add(failure);
+				notifyAll();
+			}
+		}
+
+		synchronized boolean await(long timeout) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+			try {
+				while (!isComplete()) {
+					if (timeout < 0) {
+						wait();
+					}
+					else {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							return false;
+						}
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					}
+				}
+				return true;
+			}
+			finally {
+				this.returned = true;
+			}
+		}
+
+		private boolean isComplete() {
+			int failed = this.failures.size();
+			return this.succeeded + failed == this.total
+					|| (this.required < this.total
+							&& (this.succeeded >= this.required || this.total - failed < this.required));
+		}
+
+		synchronized List<Exception> getFailures() {
+			return new ArrayList<>(this.failures);
+		}
+
+		synchronized int getSucceeded() {
+			return this.succeeded;
+		}
+
+	}
+
 }
@@ -34,4 +34,19 @@ public interface LoadBalancingStrategy {
 
 	Iterator<MessageHandler> getHandlerIterator(Message<?> message, Collection<MessageHandler> handlers);
 
+	/**
+	 * Return the index of the handler to try first if this strategy only rotates the
+	 * handlers, i.e. they are then tried in their original order, wrapping around at the
+	 * end. A dispatcher can then iterate its own handlers without calling
+	 * {@link #getHandlerIterator(Message, Collection)}.
+	 * @param message the message.
+	 * @param size the number of handlers.
+	 * @return the index of the first handler, or a negative value if this strategy does
+	 * not only rotate the handlers (default).
+	 * @since 5.1
+	 */
+	default int getHandlerStartIndex(Message<?> message, int size) {
+		return -1;
+	}
+
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dispatcher;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+import org.springframework.integration.util.ErrorHandlingTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * An {@link AbstractDispatcher} implementation which distributes messages over a fixed
+ * number of partitions, each of them being a {@link UnicastingDispatcher} on top of its
+ * own single-threaded executor. The partition is selected from the hash code of the key
+ * returned by the {@code partitionKeyFunction}, so messages with the same key are always
+ * handled on the same thread, in the order they have been dispatched, while messages with
+ * different keys are handled in parallel.
+ * <p>
+ * A message with a {@code null} key is dispatched to the first partition.
+ * <p>
+ * The partitions (and their threads) are created lazily on the first dispatch; the
+ * {@link #shutdown()} must be called to release the threads.
+ *
+ * @since 5.1
+ */
+public class PartitionedDispatcher extends AbstractDispatcher {
+
+	private final UnicastingDispatcher[] partitions;
+
+	private final ExecutorService[] executors;
+
+	private final Function<Message<?>, Object> partitionKeyFunction;
+
+	private final Object lifecycleMonitor = new Object();
+
+	private ThreadFactory threadFactory = new CustomizableThreadFactory("partition-thread-");
+
+	private ErrorHandler errorHandler;
+
+	private MessageHandlingTaskDecorator messageHandlingTaskDecorator = task -> task;
+
+	private boolean failover = true;
+
+	private LoadBalancingStrategy loadBalancingStrategy;
+
+	private volatile boolean populated;
+
+	/**
+	 * Create a dispatcher for the provided number of partitions.
+	 * @param partitionCount the number of partitions (threads).
+	 * @param partitionKeyFunction the function to determine the partition key of a message.
+	 */
+	public PartitionedDispatcher(int partitionCount, Function<Message<?>, Object> partitionKeyFunction) {
+		Assert.isTrue(partitionCount > 0, "'partitionCount' must be greater than 0");
+		Assert.notNull(partitionKeyFunction, "'partitionKeyFunction' must not be null");
+		this.partitions = new UnicastingDispatcher[partitionCount];
+		this.executors = new ExecutorService[partitionCount];
+		this.partitionKeyFunction = partitionKeyFunction;
+	}
+
+	/**
+	 * Set a {@link ThreadFactory} for the partition threads.
+	 * Defaults to a {@link CustomizableThreadFactory} with the {@code partition-thread-} prefix.
+	 * @param threadFactory the {@link ThreadFactory} to use.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set an {@link ErrorHandler} for exceptions thrown by handlers on the partition threads.
+	 * @param errorHandler the {@link ErrorHandler} to use.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	public void setMessageHandlingTaskDecorator(MessageHandlingTaskDecorator messageHandlingTaskDecorator) {
+		Assert.notNull(messageHandlingTaskDecorator, "'messageHandlingTaskDecorator' must not be null.");
+		this.messageHandlingTaskDecorator = messageHandlingTaskDecorator;
+	}
+
+	/**
+	 * Specify whether the partition dispatchers should failover when a single
+	 * {@link MessageHandler} throws an Exception. The default value is {@code true}.
+	 * @param failover The failover boolean.
+	 * @see UnicastingDispatcher#setFailover(boolean)
+	 */
+	public void setFailover(boolean failover) {
+		this.failover = failover;
+	}
+
+	/**
+	 * Provide a {@link LoadBalancingStrategy} for the partition dispatchers.
+	 * @param loadBalancingStrategy The load balancing strategy implementation.
+	 * @see UnicastingDispatcher#setLoadBalancingStrategy(LoadBalancingStrategy)
+	 */
+	public void setLoadBalancingStrategy(LoadBalancingStrategy loadBalancingStrategy) {
+		this.loadBalancingStrategy = loadBalancingStrategy;
+	}
+
+	public int getPartitionCount() {
+		return this.partitions.length;
+	}
+
+	@Override
+	public synchronized boolean addHandler(MessageHandler handler) {
+		boolean added = super.addHandler(handler);
+		if (added && this.populated) {
+			for (UnicastingDispatcher partition : this.partitions) {
+				partition.addHandler(handler);
+			}
+		}
+		return added;
+	}
+
+	@Override
+	public synchronized boolean removeHandler(MessageHandler handler) {
+		boolean removed = super.removeHandler(handler);
+		if (removed && this.populated) {
+			for (UnicastingDispatcher partition : this.partitions) {
+				partition.removeHandler(handler);
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean dispatch(Message<?> message) {
+		populatePartitionsIfNecessary();
+		return this.partitions[partitionFor(message)].dispatch(message);
+	}
+
+	/**
+	 * Shut down the partition executors; messages already dispatched are still handled.
+	 */
+	public void shutdown() {
+		synchronized (this.lifecycleMonitor) {
+			for (ExecutorService executor : this.executors) {
+				if (executor != null) {
+					executor.shutdown();
+				}
+			}
+		}
+	}
+
+	private int partitionFor(Message<?> message) {
+		Object partitionKey = this.partitionKeyFunction.apply(message);
+		if (partitionKey == null) {
+			return 0;
+		}
+		return Math.floorMod(partitionKey.hashCode(), this.partitions.length);
+	}
+
+	private void populatePartitionsIfNecessary() {
+		if (!this.populated) {
+			synchronized (this) {
+				if (!this.populated) {
+					synchronized (this.lifecycleMonitor) {
+						for (int i = 0; i < this.partitions.length; i++) {
+							this.executors[i] = Executors.newSingleThreadExecutor(this.threadFactory);
+							this.partitions[i] = createPartition(this.executors[i]);
+						}
+					}
+					this.populated = true;
+				}
+			}
+		}
+	}
+
+	private UnicastingDispatcher createPartition(ExecutorService executorService) {
+		UnicastingDispatcher partition =
+				new UnicastingDispatcher(this.errorHandler != null
+						? new ErrorHandlingTaskExecutor(executorService, this.errorHandler)
+						: executorService);
+		partition.setFailover(this.failover);
+		if (this.loadBalancingStrategy != null) {
+			partition.setLoadBalancingStrategy(this.loadBalancingStrategy);
+		}
+		partition.setMessageHandlingTaskDecorator(this.messageHandlingTaskDecorator);
+		for (MessageHandler handler : getHandlers()) {
+			partition.addHandler(handler);
+		}
+		return partition;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -82,6 +82,15 @@ public class RoundRobinLoadBalancingStrategy implements LoadBalancingStrategy {
 		};
 	}
 
+	/**
+	 * Returns the next start index, as {@link #getHandlerIterator(Message, Collection)}
+	 * does, so dispatchers can rotate over their handlers without building an iterator.
+	 */
+	@Override
+	public int getHandlerStartIndex(Message<?> message, int size) {
+		return getNextHandlerStartIndex(size);
+	}
+
 	/**
 	 * Keeps track of the last index over multiple dispatches. Each invocation
 	 * of this method will increment the index by one, overflowing at
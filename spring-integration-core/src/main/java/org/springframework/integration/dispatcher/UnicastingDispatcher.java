@@ -132,12 +132,20 @@ public class UnicastingDispatcher extends AbstractDispatcher {
 		if (tryOptimizedDispatch(message)) {
 			return true;
 		}
+		LoadBalancingStrategy loadBalancingStrategy = this.loadBalancingStrategy;
+		MessageHandler[] handlers = getHandlerSnapshot();
+		int start = loadBalancingStrategy != null
+				? loadBalancingStrategy.getHandlerStartIndex(message, handlers.length)
+				: 0;
+		if (start >= 0) {
+			return doDispatchOverSnapshot(message, handlers, start);
+		}
 		boolean success = false;
 		Iterator<MessageHandler> handlerIterator = this.getHandlerIterator(message);
 		if (!handlerIterator.hasNext()) {
 			throw new MessageDispatchingException(message, "Dispatcher has no subscribers");
 		}
-		List<RuntimeException> exceptions = new ArrayList<RuntimeException>();
+		List<RuntimeException> exceptions = null;
 		while (!success && handlerIterator.hasNext()) {
 			MessageHandler handler = handlerIterator.next();
 			try {
@@ -147,6 +155,9 @@ public class UnicastingDispatcher extends AbstractDispatcher {
 			catch (Exception e) {
 				@SuppressWarnings("deprecation")
 				RuntimeException runtimeException = wrapExceptionIfNecessary(message, e);
+				if (exceptions == null) {
+					exceptions = new ArrayList<>();
+				}
 				exceptions.add(runtimeException);
 				this.handleExceptions(exceptions, message, !handlerIterator.hasNext());
 			}
@@ -154,6 +165,36 @@ public class UnicastingDispatcher extends AbstractDispatcher {
 		return success;
 	}
 
+	/**
+	 * Dispatch over the handler array snapshot, starting from the index provided by the
+	 * {@link LoadBalancingStrategy#getHandlerStartIndex(Message, int)}, if any. Nothing
+	 * is allocated unless a handler throws an exception.
+	 */
+	private boolean doDispatchOverSnapshot(Message<?> message, MessageHandler[] handlers, int start) {
+		int size = handlers.length;
+		if (size == 0) {
+			throw new MessageDispatchingException(message, "Dispatcher has no subscribers");
+		}
+		List<RuntimeException> exceptions = null;
+		for (int i = 0; i < size; i++) {
+			int index = (start + i) % size;
+			try {
+				handlers[index].handleMessage(message);
+				return true; // we have a winner.
+			}
+			catch (Exception e) {
+				@SuppressWarnings("deprecation")
+				RuntimeException runtimeException = wrapExceptionIfNecessary(message, e);
+				if (exceptions == null) {
+					exceptions = new ArrayList<>(size);
+				}
+				exceptions.add(runtimeException);
+				this.handleExceptions(exceptions, message, i == size - 1);
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Returns the iterator that will be used to loop over the handlers.
 	 * Delegates to a {@link LoadBalancingStrategy} if available. Otherwise,
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.dsl;
 import org.springframework.integration.aggregator.AggregatingMessageHandler;
 import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
 import org.springframework.integration.aggregator.ExpressionEvaluatingMessageGroupProcessor;
+import org.springframework.integration.aggregator.IncrementalAggregator;
 import org.springframework.integration.aggregator.MessageGroupProcessor;
 import org.springframework.integration.aggregator.MethodInvokingMessageGroupProcessor;
 
@@ -85,6 +86,19 @@ public class AggregatorSpec extends CorrelationHandlerSpec<AggregatorSpec, Aggre
 		return _this();
 	}
 
+	/**
+	 * Aggregate the groups incrementally, keeping only a running state in the message store.
+	 * Replaces the release strategy and the output processor.
+	 * @param incrementalAggregator the {@link IncrementalAggregator}.
+	 * @return the aggregator spec.
+	 * @since 5.1
+	 * @see AggregatingMessageHandler#setIncrementalAggregator(IncrementalAggregator)
+	 */
+	public AggregatorSpec incrementalAggregator(IncrementalAggregator<?> incrementalAggregator) {
+		this.handler.setIncrementalAggregator(incrementalAggregator);
+		return _this();
+	}
+
 	/**
 	 * @param expireGroupsUponCompletion the expireGroupsUponCompletion.
 	 * @return the aggregator spec.
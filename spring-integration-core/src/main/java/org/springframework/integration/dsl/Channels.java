@@ -71,6 +71,14 @@ public class Channels {
 		return MessageChannels.queue(id, messageGroupStore, groupId);
 	}
 
+	public RingBufferQueueChannelSpec ringBuffer(int capacity) {
+		return MessageChannels.ringBuffer(capacity);
+	}
+
+	public RingBufferQueueChannelSpec ringBuffer(String id, int capacity) {
+		return MessageChannels.ringBuffer(id, capacity);
+	}
+
 	public PriorityChannelSpec priority() {
 		return MessageChannels.priority();
 	}
@@ -121,6 +129,13 @@ public class Channels {
 		return MessageChannels.executor(id, executor);
 	}
 
+	public PartitionedChannelSpec partitioned(int partitionCount) {
+		return MessageChannels.partitioned(partitionCount);
+	}
+
+	public PartitionedChannelSpec partitioned(String id, int partitionCount) {
+		return MessageChannels.partitioned(id, partitionCount);
+	}
 
 	public FluxMessageChannelSpec flux() {
 		return MessageChannels.flux();
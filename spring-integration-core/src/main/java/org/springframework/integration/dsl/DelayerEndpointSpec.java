@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,28 @@ public final class DelayerEndpointSpec extends ConsumerEndpointSpec<DelayerEndpo
 		return _this();
 	}
 
+	/**
+	 * @param indexedRelease true to release the messages from a time-ordered index.
+	 * @return the endpoint spec.
+	 * @since 5.1
+	 * @see DelayHandler#setIndexedRelease(boolean)
+	 */
+	public DelayerEndpointSpec indexedRelease(boolean indexedRelease) {
+		this.handler.setIndexedRelease(indexedRelease);
+		return _this();
+	}
+
+	/**
+	 * @param releaseBatchSize the maximum number of messages released by a single task.
+	 * @return the endpoint spec.
+	 * @since 5.1
+	 * @see DelayHandler#setReleaseBatchSize(int)
+	 */
+	public DelayerEndpointSpec releaseBatchSize(int releaseBatchSize) {
+		this.handler.setReleaseBatchSize(releaseBatchSize);
+		return _this();
+	}
+
 	/**
 	 * Configure a list of {@link Advice} objects that will be applied, in nested order,
 	 * when delayed messages are sent.
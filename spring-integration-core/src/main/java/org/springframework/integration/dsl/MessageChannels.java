@@ -72,6 +72,14 @@ public final class MessageChannels {
 		return queue(messageGroupStore, groupId).id(id);
 	}
 
+	public static RingBufferQueueChannelSpec ringBuffer(int capacity) {
+		return new RingBufferQueueChannelSpec(capacity);
+	}
+
+	public static RingBufferQueueChannelSpec ringBuffer(String id, int capacity) {
+		return ringBuffer(capacity).id(id);
+	}
+
 	public static ExecutorChannelSpec executor(Executor executor) {
 		return new ExecutorChannelSpec(executor);
 	}
@@ -80,6 +88,14 @@ public final class MessageChannels {
 		return executor(executor).id(id);
 	}
 
+	public static PartitionedChannelSpec partitioned(int partitionCount) {
+		return new PartitionedChannelSpec(partitionCount);
+	}
+
+	public static PartitionedChannelSpec partitioned(String id, int partitionCount) {
+		return partitioned(partitionCount).id(id);
+	}
+
 	public static RendezvousChannelSpec rendezvous() {
 		return new RendezvousChannelSpec();
 	}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dsl;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+import org.springframework.expression.Expression;
+import org.springframework.integration.channel.PartitionedChannel;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * @since 5.1
+ */
+public class PartitionedChannelSpec extends LoadBalancingChannelSpec<PartitionedChannelSpec, PartitionedChannel> {
+
+	private final int partitionCount;
+
+	private Function<Message<?>, Object> partitionKeyFunction;
+
+	private Expression partitionKeyExpression;
+
+	private ThreadFactory threadFactory;
+
+	PartitionedChannelSpec(int partitionCount) {
+		this.partitionCount = partitionCount;
+	}
+
+	/**
+	 * Use the value of the provided header as the partition key.
+	 * @param headerName the header name.
+	 * @return the spec.
+	 */
+	public PartitionedChannelSpec partitionKeyHeader(String headerName) {
+		Assert.hasText(headerName, "'headerName' must not be empty");
+		return partitionKey(message -> message.getHeaders().get(headerName));
+	}
+
+	/**
+	 * Use a SpEL expression evaluated against the message to determine the partition key.
+	 * @param partitionKeyExpression the expression.
+	 * @return the spec.
+	 */
+	public PartitionedChannelSpec partitionKeyExpression(String partitionKeyExpression) {
+		return partitionKeyExpression(PARSER.parseExpression(partitionKeyExpression));
+	}
+
+	/**
+	 * Use a SpEL expression evaluated against the message to determine the partition key.
+	 * @param partitionKeyExpression the expression.
+	 * @return the spec.
+	 */
+	public PartitionedChannelSpec partitionKeyExpression(Expression partitionKeyExpression) {
+		Assert.notNull(partitionKeyExpression, "'partitionKeyExpression' must not be null");
+		this.partitionKeyExpression = partitionKeyExpression;
+		this.partitionKeyFunction = null;
+		return this;
+	}
+
+	/**
+	 * Use a function to determine the partition key of a message.
+	 * @param partitionKeyFunction the function.
+	 * @return the spec.
+	 */
+	public PartitionedChannelSpec partitionKey(Function<Message<?>, Object> partitionKeyFunction) {
+		Assert.notNull(partitionKeyFunction, "'partitionKeyFunction' must not be null");
+		this.partitionKeyFunction = partitionKeyFunction;
+		this.partitionKeyExpression = null;
+		return this;
+	}
+
+	public PartitionedChannelSpec threadFactory(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+		return this;
+	}
+
+	@Override
+	protected PartitionedChannel doGet() {
+		if (this.partitionKeyExpression != null) {
+			this.channel = new PartitionedChannel(this.partitionCount, this.partitionKeyExpression);
+		}
+		else if (this.partitionKeyFunction != null) {
+			this.channel = new PartitionedChannel(this.partitionCount, this.partitionKeyFunction);
+		}
+		else {
+			this.channel = new PartitionedChannel(this.partitionCount);
+		}
+		this.channel.setLoadBalancingStrategy(this.loadBalancingStrategy);
+		if (this.failover != null) {
+			this.channel.setFailover(this.failover);
+		}
+		if (this.maxSubscribers != null) {
+			this.channel.setMaxSubscribers(this.maxSubscribers);
+		}
+		if (this.threadFactory != null) {
+			this.channel.setThreadFactory(this.threadFactory);
+		}
+		return super.doGet();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -133,6 +133,19 @@ public final class PollerSpec extends IntegrationComponentSpec<PollerSpec, Polle
 		return this;
 	}
 
+	/**
+	 * Take up to {@code maxMessagesPerPoll} messages from a batch-capable channel
+	 * in a single operation per poll.
+	 * @param batchReceive true to enable batch receive.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see PollerMetadata#setBatchReceive(boolean)
+	 */
+	public PollerSpec batchReceive(boolean batchReceive) {
+		this.target.setBatchReceive(batchReceive);
+		return this;
+	}
+
 	/**
 	 * Specify AOP {@link Advice}s for the {@code pollingTask}.
 	 * @param advice the {@link Advice}s to use.
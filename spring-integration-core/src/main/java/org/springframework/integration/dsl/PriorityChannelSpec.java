@@ -37,6 +37,10 @@ public class PriorityChannelSpec extends MessageChannelSpec<PriorityChannelSpec,
 
 	private MessageGroupQueue messageGroupQueue;
 
+	private Integer minPriority;
+
+	private Integer maxPriority;
+
 	PriorityChannelSpec() {
 		super();
 	}
@@ -51,6 +55,21 @@ public class PriorityChannelSpec extends MessageChannelSpec<PriorityChannelSpec,
 		return this;
 	}
 
+	/**
+	 * Store messages in one FIFO bucket per priority level in the provided (inclusive)
+	 * range instead of a {@link java.util.concurrent.PriorityBlockingQueue}.
+	 * @param minPriority the lowest priority.
+	 * @param maxPriority the highest priority.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see org.springframework.integration.channel.PriorityBucketQueue
+	 */
+	public PriorityChannelSpec priorityRange(int minPriority, int maxPriority) {
+		this.minPriority = minPriority;
+		this.maxPriority = maxPriority;
+		return this;
+	}
+
 	public PriorityChannelSpec messageStore(PriorityCapableChannelMessageStore messageGroupStore, Object groupId) {
 		this.messageGroupQueue = new MessageGroupQueue(messageGroupStore, groupId);
 		this.messageGroupQueue.setPriority(true);
@@ -61,10 +80,15 @@ public class PriorityChannelSpec extends MessageChannelSpec<PriorityChannelSpec,
 	protected PriorityChannel doGet() {
 		Assert.state(!(this.comparator != null && this.messageGroupQueue != null),
 				"Only one of 'comparator' or 'messageGroupStore' can be specified.");
+		Assert.state(this.minPriority == null || (this.comparator == null && this.messageGroupQueue == null),
+				"The 'priorityRange' cannot be combined with a 'comparator' or 'messageGroupStore'.");
 
 		if (this.messageGroupQueue != null) {
 			this.channel = new PriorityChannel(this.messageGroupQueue);
 		}
+		else if (this.minPriority != null) {
+			this.channel = new PriorityChannel(this.capacity, this.minPriority, this.maxPriority);
+		}
 		else {
 			this.channel = new PriorityChannel(this.capacity, this.comparator);
 		}
@@ -19,6 +19,7 @@ package org.springframework.integration.dsl;
 import java.util.concurrent.Executor;
 
 import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.dispatcher.BroadcastCompletionPolicy;
 import org.springframework.util.ErrorHandler;
 
 /**
@@ -65,4 +66,38 @@ public class PublishSubscribeChannelSpec<S extends PublishSubscribeChannelSpec<S
 		return _this();
 	}
 
+	/**
+	 * Invoke the subscribers in parallel and wait for the completion policy.
+	 * @param completionPolicy the completion policy.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see PublishSubscribeChannel#setCompletionPolicy(BroadcastCompletionPolicy)
+	 */
+	public S completionPolicy(BroadcastCompletionPolicy completionPolicy) {
+		this.channel.setCompletionPolicy(completionPolicy);
+		return _this();
+	}
+
+	/**
+	 * @param quorum the quorum for the {@link BroadcastCompletionPolicy#QUORUM} policy.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see PublishSubscribeChannel#setQuorum(int)
+	 */
+	public S quorum(int quorum) {
+		this.channel.setQuorum(quorum);
+		return _this();
+	}
+
+	/**
+	 * @param completionTimeout the time in milliseconds to wait for the completion policy.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see PublishSubscribeChannel#setCompletionTimeout(long)
+	 */
+	public S completionTimeout(long completionTimeout) {
+		this.channel.setCompletionTimeout(completionTimeout);
+		return _this();
+	}
+
 }
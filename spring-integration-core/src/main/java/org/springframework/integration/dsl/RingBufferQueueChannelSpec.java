@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dsl;
+
+import org.springframework.integration.channel.RingBufferQueueChannel;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+import org.springframework.util.Assert;
+
+/**
+ * @since 5.1
+ */
+public class RingBufferQueueChannelSpec extends MessageChannelSpec<RingBufferQueueChannelSpec, RingBufferQueueChannel> {
+
+	private final int capacity;
+
+	private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+	RingBufferQueueChannelSpec(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public RingBufferQueueChannelSpec waitStrategy(WaitStrategy waitStrategy) {
+		Assert.notNull(waitStrategy, "'waitStrategy' must not be null");
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+
+	@Override
+	protected RingBufferQueueChannel doGet() {
+		this.channel = new RingBufferQueueChannel(this.capacity, this.waitStrategy);
+		return super.doGet();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.endpoint;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
@@ -245,6 +246,9 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	private boolean doPoll() {
 		IntegrationResourceHolder holder = this.bindResourceHolderIfNecessary(
 				this.getResourceKey(), this.getResourceToBind());
+		if (isBatchReceive()) {
+			return doPollBatch(holder);
+		}
 		Message<?> message = null;
 		try {
 			message = this.receiveMessage();
@@ -290,6 +294,71 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 		return result;
 	}
 
+	private boolean doPollBatch(IntegrationResourceHolder holder) {
+		List<Message<?>> messages;
+		try {
+			messages = this.receiveMessages(this.maxMessagesPerPoll <= 0
+					? Integer.MAX_VALUE
+					: (int) Math.min(this.maxMessagesPerPoll, Integer.MAX_VALUE));
+		}
+		catch (Exception e) {
+			if (Thread.interrupted()) {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Poll interrupted - during stop()? : " + e.getMessage());
+				}
+				return false;
+			}
+			else {
+				throw (RuntimeException) e;
+			}
+		}
+		if (messages.isEmpty()) {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Received no Messages during the batch poll, returning 'false'");
+			}
+			return false;
+		}
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Batch poll resulted in " + messages.size() + " Message(s)");
+		}
+		/*
+		 * Within a transaction the first failure is rethrown as is: the rollback restores the
+		 * whole batch. Outside of a transaction the messages have already left the channel, so
+		 * each failure goes to the error handler on its own and the batch continues; without an
+		 * error handler the messages not handled yet are logged before the failure is rethrown.
+		 */
+		boolean transactional = TransactionSynchronizationManager.isActualTransactionActive();
+		for (int i = 0; i < messages.size(); i++) {
+			Message<?> message = messages.get(i);
+			if (holder != null) {
+				holder.setMessage(message);
+			}
+			try {
+				this.handleMessage(message);
+			}
+			catch (Exception e) {
+				MessagingException exception = e instanceof MessagingException
+						? new MessagingExceptionWrapper(message, (MessagingException) e)
+						: new MessagingException(message, e);
+				if (transactional) {
+					throw exception;
+				}
+				if (this.errorHandler == null) {
+					rejectUnprocessed(messages.subList(i + 1, messages.size()), exception);
+					throw exception;
+				}
+				this.errorHandler.handleError(exception);
+			}
+		}
+		return true;
+	}
+
+	private void rejectUnprocessed(List<Message<?>> unprocessed, MessagingException cause) {
+		for (Message<?> message : unprocessed) {
+			this.logger.error("Batch poll failed before handling " + message, cause);
+		}
+	}
+
 	/**
 	 * Obtain the next message (if one is available). MAY return null
 	 * if no message is immediately available.
@@ -297,6 +366,31 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	 */
 	protected abstract Message<?> receiveMessage();
 
+	/**
+	 * Return true if this endpoint receives a batch of up to {@code maxMessagesPerPoll}
+	 * messages via {@link #receiveMessages(int)} in a single poll task invocation
+	 * (and therefore within a single transaction, if any) instead of calling
+	 * {@link #receiveMessage()} once per message.
+	 * @return true for batch receive; false by default.
+	 * @since 5.1
+	 */
+	protected boolean isBatchReceive() {
+		return false;
+	}
+
+	/**
+	 * Obtain up to {@code maxMessages} messages in one operation. Only called when
+	 * {@link #isBatchReceive()} returns true. The default implementation delegates to
+	 * {@link #receiveMessage()}.
+	 * @param maxMessages the maximum number of messages.
+	 * @return the messages; never null.
+	 * @since 5.1
+	 */
+	protected List<Message<?>> receiveMessages(int maxMessages) {
+		Message<?> message = receiveMessage();
+		return message != null ? Collections.singletonList(message) : Collections.emptyList();
+	}
+
 	/**
 	 * Handle a message.
 	 * @param message The message.
@@ -371,12 +465,13 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 		@Override
 		public void run() {
 			AbstractPollingEndpoint.this.taskExecutor.execute(() -> {
+				boolean batchReceive = isBatchReceive();
 				int count = 0;
 				while (AbstractPollingEndpoint.this.initialized
 						&& (AbstractPollingEndpoint.this.maxMessagesPerPoll <= 0
 						|| count < AbstractPollingEndpoint.this.maxMessagesPerPoll)) {
 					try {
-						if (!Poller.this.pollingTask.call()) {
+						if (!Poller.this.pollingTask.call() || batchReceive) {
 							break;
 						}
 						count++;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.context.Lifecycle;
+import org.springframework.integration.channel.BatchPollableChannel;
 import org.springframework.integration.channel.ExecutorChannelInterceptorAware;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.router.MessageRouter;
@@ -56,6 +57,8 @@ public class PollingConsumer extends AbstractPollingEndpoint implements Integrat
 
 	private volatile long receiveTimeout = 1000;
 
+	private volatile boolean batchReceive;
+
 	public PollingConsumer(PollableChannel inputChannel, MessageHandler handler) {
 		Assert.notNull(inputChannel, "inputChannel must not be null");
 		Assert.notNull(handler, "handler must not be null");
@@ -74,6 +77,19 @@ public class PollingConsumer extends AbstractPollingEndpoint implements Integrat
 		this.receiveTimeout = receiveTimeout;
 	}
 
+	/**
+	 * Set to true to take up to {@code maxMessagesPerPoll} messages from the input channel
+	 * in a single {@link BatchPollableChannel#receiveBatch(int, long)} operation per poll,
+	 * instead of one {@code receive()} per message. The whole batch is then handled within
+	 * one invocation of the poller's advice chain (and transaction, if any). Ignored if the
+	 * input channel is not a {@link BatchPollableChannel}.
+	 * @param batchReceive true to enable batch receive.
+	 * @since 5.1
+	 */
+	public void setBatchReceive(boolean batchReceive) {
+		this.batchReceive = batchReceive;
+	}
+
 	@Override
 	public MessageChannel getInputChannel() {
 		return this.inputChannel;
@@ -192,6 +208,17 @@ public class PollingConsumer extends AbstractPollingEndpoint implements Integrat
 				: this.inputChannel.receive();
 	}
 
+	@Override
+	protected boolean isBatchReceive() {
+		return this.batchReceive && this.inputChannel instanceof BatchPollableChannel;
+	}
+
+	@Override
+	protected List<Message<?>> receiveMessages(int maxMessages) {
+		return ((BatchPollableChannel) this.inputChannel)
+				.receiveBatch(maxMessages, this.receiveTimeout >= 0 ? this.receiveTimeout : -1);
+	}
+
 	@Override
 	protected Object getResourceToBind() {
 		return this.inputChannel;
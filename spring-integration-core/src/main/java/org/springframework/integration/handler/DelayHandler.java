@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,11 @@ package org.springframework.integration.handler;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.aopalliance.aop.Advice;
@@ -34,6 +37,7 @@ import org.springframework.expression.Expression;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupMetadata;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageStore;
@@ -71,6 +75,11 @@ import org.springframework.util.CollectionUtils;
  * seconds from the current time). If the value is a Date, it will be
  * delayed at least until that Date occurs (i.e. the delay in that case is
  * equivalent to {@code headerDate.getTime() - new Date().getTime()}).
+ * <p>
+ * By default, a task is scheduled for each delayed message. With the
+ * {@code indexedRelease} option, only a time-ordered index of the message ids is kept
+ * in memory, and the due messages are loaded from the {@link MessageGroupStore} and
+ * released in batches by a single scheduled task.
  *
  * @author Mark Fisher
  * @author Artem Bilan
@@ -102,6 +111,18 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 
 	private EvaluationContext evaluationContext;
 
+	private final ConcurrentSkipListSet<ReleaseIndexEntry> releaseIndex = new ConcurrentSkipListSet<>();
+
+	private final Object releaseMonitor = new Object();
+
+	private volatile boolean indexedRelease;
+
+	private volatile int releaseBatchSize = 100;
+
+	private ScheduledFuture<?> releaseFuture;
+
+	private long releaseFutureTime = Long.MAX_VALUE;
+
 	/**
 	 * Create a DelayHandler with the given 'messageGroupId' that is used as 'key' for {@link MessageGroup}
 	 * to store delayed Messages in the {@link MessageGroupStore}. The sending of Messages after
@@ -205,6 +226,34 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		this.delayedAdviceChain = delayedAdviceChain;
 	}
 
+	/**
+	 * Set to {@code true} to keep only a time-ordered index of the delayed message ids
+	 * in memory instead of scheduling a task for each message.
+	 * A single task releases the due messages in batches of the
+	 * {@link #setReleaseBatchSize(int) releaseBatchSize}, loading them from the
+	 * {@link MessageGroupStore} by id. On {@link #reschedulePersistedMessages()} the
+	 * persisted messages are read one by one to build the index and are not retained.
+	 * With the {@link SimpleMessageStore} the index refers to the stored messages,
+	 * which are on the heap anyway.
+	 * @param indexedRelease true to release the messages from the index.
+	 * @since 5.1
+	 */
+	public void setIndexedRelease(boolean indexedRelease) {
+		this.indexedRelease = indexedRelease;
+	}
+
+	/**
+	 * Set the maximum number of messages released by a single task in the
+	 * {@link #setIndexedRelease(boolean) indexedRelease} mode; the rest of the due
+	 * messages are released by the next task. Defaults to 100.
+	 * @param releaseBatchSize the batch size.
+	 * @since 5.1
+	 */
+	public void setReleaseBatchSize(int releaseBatchSize) {
+		Assert.isTrue(releaseBatchSize > 0, "'releaseBatchSize' must be greater than 0");
+		this.releaseBatchSize = releaseBatchSize;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "delayer";
@@ -332,6 +381,12 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 			this.messageStore.addMessageToGroup(this.messageGroupId, delayedMessage);
 		}
 
+		long releaseTime = messageWrapper.getRequestDate() + delay;
+
+		if (this.indexedRelease) {
+			indexForRelease(delayedMessage, releaseTime);
+			return;
+		}
 
 		Runnable releaseTask;
 
@@ -351,7 +406,59 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 			};
 		}
 
-		getTaskScheduler().schedule(releaseTask, new Date(messageWrapper.getRequestDate() + delay));
+		getTaskScheduler().schedule(releaseTask, new Date(releaseTime));
+	}
+
+	private void indexForRelease(Message<?> delayedMessage, long releaseTime) {
+		this.releaseIndex.add(new ReleaseIndexEntry(releaseTime, delayedMessage.getHeaders().getId(),
+				this.messageStore instanceof SimpleMessageStore ? delayedMessage : null));
+		scheduleRelease(releaseTime);
+	}
+
+	private void scheduleRelease(long releaseTime) {
+		synchronized (this.releaseMonitor) {
+			if (releaseTime < this.releaseFutureTime) {
+				if (this.releaseFuture != null) {
+					this.releaseFuture.cancel(false);
+				}
+				this.releaseFutureTime = releaseTime;
+				this.releaseFuture = getTaskScheduler().schedule(this::releaseDueMessages, new Date(releaseTime));
+			}
+		}
+	}
+
+	/**
+	 * Release up to {@link #releaseBatchSize} due messages from the index
+	 * and schedule the next release for the earliest remaining one.
+	 */
+	private void releaseDueMessages() {
+		synchronized (this.releaseMonitor) {
+			this.releaseFuture = null;
+			this.releaseFutureTime = Long.MAX_VALUE;
+		}
+		long now = System.currentTimeMillis();
+		try {
+			for (int i = 0; i < this.releaseBatchSize; i++) {
+				ReleaseIndexEntry entry = this.releaseIndex.pollFirst();
+				if (entry == null) {
+					break;
+				}
+				if (entry.releaseTime > now) {
+					this.releaseIndex.add(entry);
+					break;
+				}
+				Message<?> message = entry.message != null ? entry.message : getMessageById(entry.messageId);
+				if (message != null) {
+					releaseMessage(message);
+				}
+			}
+		}
+		finally {
+			Iterator<ReleaseIndexEntry> iterator = this.releaseIndex.iterator();
+			if (iterator.hasNext()) {
+				scheduleRelease(iterator.next().releaseTime);
+			}
+		}
 	}
 
 	private Message<?> getMessageById(UUID messageId) {
@@ -420,6 +527,10 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 	 */
 	@Override
 	public synchronized void reschedulePersistedMessages() {
+		if (this.indexedRelease) {
+			getTaskScheduler().schedule(this::indexPersistedMessages, new Date());
+			return;
+		}
 		MessageGroup messageGroup = this.messageStore.getMessageGroup(this.messageGroupId);
 		for (final Message<?> message : messageGroup.getMessages()) {
 			getTaskScheduler().schedule((Runnable) () -> {
@@ -436,6 +547,38 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		}
 	}
 
+	private void indexPersistedMessages() {
+		MessageGroupMetadata metadata = null;
+		if (!(this.messageStore instanceof SimpleMessageStore)) {
+			try {
+				metadata = this.messageStore.getGroupMetadata(this.messageGroupId);
+			}
+			catch (UnsupportedOperationException e) {
+				// the store can't provide the message ids, so read the group below
+			}
+		}
+		if (metadata != null) {
+			for (UUID messageId : metadata.getMessageIds()) {
+				Message<?> message = getMessageById(messageId);
+				if (message != null) {
+					indexPersistedMessage(message);
+				}
+			}
+		}
+		else {
+			for (Message<?> message : this.messageStore.getMessageGroup(this.messageGroupId).getMessages()) {
+				indexPersistedMessage(message);
+			}
+		}
+	}
+
+	private void indexPersistedMessage(Message<?> message) {
+		long requestDate = message.getPayload() instanceof DelayedMessageWrapper
+				? ((DelayedMessageWrapper) message.getPayload()).getRequestDate()
+				: System.currentTimeMillis();
+		indexForRelease(message, requestDate + Math.max(determineDelayForMessage(message), 0));
+	}
+
 	/**
 	 * Handles {@link ContextRefreshedEvent} to invoke {@link #reschedulePersistedMessages}
 	 * as late as possible after application context startup.
@@ -477,6 +620,33 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 	}
 
 
+	/**
+	 * An entry of the release index: ordered by the release time, then by the message id.
+	 * Holds the message itself only for the {@link SimpleMessageStore}.
+	 */
+	private static final class ReleaseIndexEntry implements Comparable<ReleaseIndexEntry> {
+
+		private final long releaseTime;
+
+		private final UUID messageId;
+
+		private final Message<?> message;
+
+		ReleaseIndexEntry(long releaseTime, UUID messageId, Message<?> message) {
+			this.releaseTime = releaseTime;
+			this.messageId = messageId;
+			this.message = message;
+		}
+
+		@Override
+		public int compareTo(ReleaseIndexEntry other) {
+			int result = Long.compare(this.releaseTime, other.releaseTime);
+			return result != 0 ? result : this.messageId.compareTo(other.messageId);
+		}
+
+	}
+
+
 	public static final class DelayedMessageWrapper implements Serializable {
 
 		private static final long serialVersionUID = -4739802369074947045L;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.history;
 
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -42,13 +43,21 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 /**
+ * An immutable list of the components a message has passed through.
+ * <p>
+ * Since version 5.1, the history is a persistent list: each {@link #write} shares the
+ * entries of the previous history and only appends the new one, so tracking costs O(1)
+ * per component, rather than a copy of the whole history.
+ * The indexed {@link List} view is materialized lazily, when it is first read.
+ *
  * @author Mark Fisher
  * @author Artem Bilan
  * @since 2.0
  */
-@SuppressWarnings("serial")
 public final class MessageHistory implements List<Properties>, Serializable {
 
+	private static final long serialVersionUID = 1426799817181873282L;
+
 	private static final Log logger = LogFactory.getLog(MessageHistory.class);
 
 	public static final String HEADER_NAME = "history";
@@ -81,10 +90,8 @@ public final class MessageHistory implements List<Properties>, Serializable {
 		Properties metadata = extractMetadata(component);
 		if (!metadata.isEmpty()) {
 			MessageHistory previousHistory = message.getHeaders().get(HEADER_NAME, MessageHistory.class);
-			List<Properties> components = (previousHistory != null) ?
-					new ArrayList<Properties>(previousHistory) : new ArrayList<Properties>();
-			components.add(metadata);
-			MessageHistory history = new MessageHistory(components);
+			List<Properties> previousComponents = previousHistory != null ? previousHistory.components : null;
+			MessageHistory history = new MessageHistory(new HistoryList(previousComponents, metadata));
 
 			if (message instanceof MutableMessage) {
 				message.getHeaders().put(HEADER_NAME, history);
@@ -278,9 +285,82 @@ public final class MessageHistory implements List<Properties>, Serializable {
 	}
 
 
+	/**
+	 * A persistent list of history entries: the previous entries are shared, not copied.
+	 * The array for the indexed access is built on the first read.
+	 * Serialized as a plain {@link ArrayList}, the same as before version 5.1.
+	 */
+	private static final class HistoryList extends AbstractList<Properties> implements Serializable {
+
+		private static final long serialVersionUID = -6150395183402932385L;
+
+		private final List<Properties> previous;
+
+		private final Properties last;
+
+		private final int size;
+
+		private transient volatile Properties[] entries;
+
+		HistoryList(List<Properties> previous, Properties last) {
+			this.previous = previous;
+			this.last = last;
+			this.size = (previous != null ? previous.size() : 0) + 1;
+		}
+
+		@Override
+		public Properties get(int index) {
+			if (index == this.size - 1) {
+				return this.last;
+			}
+			return entries()[index];
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		private Properties[] entries() {
+			Properties[] entries = this.entries;
+			if (entries == null) {
+				entries = new Properties[this.size];
+				int index = this.size - 1;
+				List<Properties> list = this;
+				while (list instanceof HistoryList) {
+					HistoryList node = (HistoryList) list;
+					Properties[] nodeEntries = node.entries;
+					if (nodeEntries != null) {
+						System.arraycopy(nodeEntries, 0, entries, 0, index + 1);
+						index = -1;
+						list = null;
+					}
+					else {
+						entries[index--] = node.last;
+						list = node.previous;
+					}
+				}
+				if (list != null) {
+					// a deserialized history
+					Object[] first = list.toArray();
+					System.arraycopy(first, 0, entries, 0, first.length);
+				}
+				this.entries = entries;
+			}
+			return entries;
+		}
+
+		private Object writeReplace() {
+			return new ArrayList<>(this);
+		}
+
+	}
+
+
 	/**
 	 * Inner class for each Entry in the history.
 	 */
+	@SuppressWarnings("serial")
 	public static class Entry extends Properties {
 
 		public String getName() {
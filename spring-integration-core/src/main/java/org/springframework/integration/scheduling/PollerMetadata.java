@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -60,6 +60,8 @@ public class PollerMetadata {
 
 	private volatile TransactionSynchronizationFactory transactionSynchronizationFactory;
 
+	private volatile boolean batchReceive;
+
 
 	public void setTransactionSynchronizationFactory(
 			TransactionSynchronizationFactory transactionSynchronizationFactory) {
@@ -114,6 +116,23 @@ public class PollerMetadata {
 		return this.receiveTimeout;
 	}
 
+	/**
+	 * Set to true to let polling consumers take up to {@link #setMaxMessagesPerPoll
+	 * maxMessagesPerPoll} messages from a batch-capable channel in a single operation per
+	 * poll; the whole batch is then handled within one advice chain (and transaction)
+	 * invocation.
+	 * @param batchReceive true to enable batch receive.
+	 * @since 5.1
+	 * @see org.springframework.integration.endpoint.PollingConsumer#setBatchReceive(boolean)
+	 */
+	public void setBatchReceive(boolean batchReceive) {
+		this.batchReceive = batchReceive;
+	}
+
+	public boolean isBatchReceive() {
+		return this.batchReceive;
+	}
+
 	public void setAdviceChain(List<Advice> adviceChain) {
 		this.adviceChain = adviceChain;
 	}
@@ -0,0 +1,604 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadFactory;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * A {@link TaskScheduler} based on a hierarchical timing wheel, for a very large number of
+ * short-lived timeouts which are mostly cancelled before they expire, such as the
+ * {@code groupTimeout} of the aggregator and resequencer.
+ * <p>
+ * Scheduling and cancelling are O(1) and lock-free for the caller: the task is queued and
+ * placed into a wheel bucket by a single worker thread on its next tick; a cancelled task
+ * is unlinked from its bucket. The worker advances the wheel every {@code tickDuration};
+ * the tasks are executed (no earlier than their scheduled time and up to a tick later)
+ * in a batch per tick, on the worker thread or on the provided {@link Executor}.
+ * <p>
+ * {@code mayInterruptIfRunning} is ignored by {@link ScheduledFuture#cancel(boolean)}:
+ * a task which is already running is not interrupted.
+ *
+ * @since 5.1
+ */
+public class TimingWheelTaskScheduler implements TaskScheduler, DisposableBean {
+
+	/**
+	 * The default duration of a tick in milliseconds.
+	 */
+	public static final long DEFAULT_TICK_DURATION = 10;
+
+	private static final Log logger = LogFactory.getLog(TimingWheelTaskScheduler.class);
+
+	private static final int WHEEL_BITS = 9;
+
+	private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private static final int LEVELS = 7;
+
+	private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+	private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 2;
+
+	private static final int SCHEDULED = 0;
+
+	private static final int RUNNING = 1;
+
+	private static final int CANCELLED = 2;
+
+	private static final int DONE = 3;
+
+	private final long tickNanos;
+
+	private final Queue<TimeoutTask> pending = new ConcurrentLinkedQueue<>();
+
+	private final Queue<TimeoutTask> cancelled = new ConcurrentLinkedQueue<>();
+
+	private final Bucket[][] levels = new Bucket[LEVELS][];
+
+	private final Object lifecycleMonitor = new Object();
+
+	private ThreadFactory threadFactory = new CustomizableThreadFactory("timing-wheel-");
+
+	private volatile Executor executor;
+
+	private volatile ErrorHandler errorHandler = TaskUtils.LOG_AND_SUPPRESS_ERROR_HANDLER;
+
+	private volatile Thread worker;
+
+	private volatile boolean shutdown;
+
+	private long startTime;
+
+	private long currentTick;
+
+	public TimingWheelTaskScheduler() {
+		this(DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a scheduler with the provided tick duration - the resolution of the timeouts.
+	 * @param tickDuration the tick duration.
+	 * @param timeUnit the time unit of the tick duration.
+	 */
+	public TimingWheelTaskScheduler(long tickDuration, TimeUnit timeUnit) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be greater than 0");
+		Assert.notNull(timeUnit, "'timeUnit' must not be null");
+		this.tickNanos = timeUnit.toNanos(tickDuration);
+		Assert.isTrue(this.tickNanos >= TimeUnit.MILLISECONDS.toNanos(1), "'tickDuration' must be at least 1ms");
+	}
+
+	/**
+	 * Set the {@link ThreadFactory} for the worker thread.
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set an {@link Executor} to run the batches of expired tasks, so long-running tasks
+	 * do not delay the ticks. By default the tasks run on the worker thread.
+	 * @param executor the executor.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the {@link ErrorHandler} for the exceptions thrown by the tasks.
+	 * Defaults to logging the exception.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		Assert.notNull(trigger, "'trigger' must not be null");
+		TimeoutTask timeoutTask = new TimeoutTask(task, trigger, 0, false);
+		Date next = trigger.nextExecutionTime(timeoutTask.triggerContext);
+		if (next == null) {
+			return null;
+		}
+		return submit(timeoutTask, next.getTime());
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		return submit(new TimeoutTask(task, null, 0, false), startTime.getTime());
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		Assert.isTrue(period > 0, "'period' must be greater than 0");
+		return submit(new TimeoutTask(task, null, period, true), startTime.getTime());
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		return scheduleAtFixedRate(task, new Date(), period);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		Assert.isTrue(delay > 0, "'delay' must be greater than 0");
+		return submit(new TimeoutTask(task, null, delay, false), startTime.getTime());
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		return scheduleWithFixedDelay(task, new Date(), delay);
+	}
+
+	@Override
+	public void destroy() {
+		Thread thread;
+		synchronized (this.lifecycleMonitor) {
+			this.shutdown = true;
+			thread = this.worker;
+		}
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	private TimeoutTask submit(TimeoutTask task, long startTime) {
+		Assert.notNull(task.task, "'task' must not be null");
+		ensureStarted();
+		task.setScheduledTime(startTime);
+		this.pending.add(task);
+		if (this.shutdown) {
+			// the worker may have stopped before it could see the task
+			this.pending.remove(task);
+			task.cancel(false);
+			throw new TaskRejectedException("The TimingWheelTaskScheduler has been shut down");
+		}
+		return task;
+	}
+
+	private void ensureStarted() {
+		if (this.worker == null) {
+			synchronized (this.lifecycleMonitor) {
+				if (this.shutdown) {
+					throw new TaskRejectedException("The TimingWheelTaskScheduler has been shut down");
+				}
+				if (this.worker == null) {
+					this.startTime = System.nanoTime();
+					Thread thread = this.threadFactory.newThread(this::runWorker);
+					thread.start();
+					this.worker = thread;
+				}
+			}
+		}
+		else if (this.shutdown) {
+			throw new TaskRejectedException("The TimingWheelTaskScheduler has been shut down");
+		}
+	}
+
+	private void runWorker() {
+		while (!this.shutdown) {
+			long nextTick = this.startTime + (this.currentTick + 1) * this.tickNanos;
+			long sleep = nextTick - System.nanoTime();
+			if (sleep > 0) {
+				LockSupport.parkNanos(this, sleep);
+				continue;
+			}
+			transferPending();
+			processCancelled();
+			long tick = ++this.currentTick;
+			cascade(tick);
+			List<TimeoutTask> expired = expire(tick);
+			if (expired != null) {
+				execute(expired);
+			}
+		}
+		cancelRemaining();
+	}
+
+	private void cancelRemaining() {
+		TimeoutTask task;
+		while ((task = this.pending.poll()) != null) {
+			task.cancel(false);
+		}
+		for (Bucket[] buckets : this.levels) {
+			if (buckets != null) {
+				for (Bucket bucket : buckets) {
+					task = bucket.clear();
+					while (task != null) {
+						TimeoutTask next = task.next;
+						task.next = null;
+						task.cancel(false);
+						task = next;
+					}
+				}
+			}
+		}
+		this.cancelled.clear();
+	}
+
+	private void transferPending() {
+		for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+			TimeoutTask task = this.pending.poll();
+			if (task == null) {
+				break;
+			}
+			if (task.state.get() == SCHEDULED) {
+				place(task, this.currentTick + 1);
+			}
+		}
+	}
+
+	private void processCancelled() {
+		TimeoutTask task;
+		while ((task = this.cancelled.poll()) != null) {
+			if (task.bucket != null) {
+				task.bucket.remove(task);
+			}
+		}
+	}
+
+	/**
+	 * Place the task into the bucket of the lowest level which covers its deadline
+	 * from the given tick (the next tick to be processed): the level 0 bucket of the
+	 * deadline tick, or a bucket of a higher level, which is cascaded into the lower
+	 * levels when the wheel reaches its range.
+	 */
+	private void place(TimeoutTask task, long fromTick) {
+		long deadlineTick = (task.deadline - this.startTime + this.tickNanos - 1) / this.tickNanos;
+		if (deadlineTick < fromTick) {
+			deadlineTick = fromTick;
+		}
+		long delta = deadlineTick - fromTick;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+			level++;
+		}
+		Bucket[] buckets = this.levels[level];
+		if (buckets == null) {
+			buckets = new Bucket[WHEEL_SIZE];
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				buckets[i] = new Bucket();
+			}
+			this.levels[level] = buckets;
+		}
+		buckets[(int) ((deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(task);
+	}
+
+	private void cascade(long tick) {
+		for (int level = LEVELS - 1; level > 0; level--) {
+			Bucket[] buckets = this.levels[level];
+			int shift = WHEEL_BITS * level;
+			if (buckets != null && (tick & ((1L << shift) - 1)) == 0) {
+				TimeoutTask task = buckets[(int) ((tick >>> shift) & WHEEL_MASK)].clear();
+				while (task != null) {
+					TimeoutTask next = task.next;
+					task.next = null;
+					if (task.state.get() == SCHEDULED) {
+						place(task, tick);
+					}
+					task = next;
+				}
+			}
+		}
+	}
+
+	private List<TimeoutTask> expire(long tick) {
+		Bucket[] buckets = this.levels[0];
+		if (buckets == null) {
+			return null;
+		}
+		TimeoutTask task = buckets[(int) (tick & WHEEL_MASK)].clear();
+		List<TimeoutTask> expired = null;
+		while (task != null) {
+			TimeoutTask next = task.next;
+			task.next = null;
+			if (task.state.compareAndSet(SCHEDULED, RUNNING)) {
+				if (expired == null) {
+					expired = new ArrayList<>();
+				}
+				expired.add(task);
+			}
+			task = next;
+		}
+		return expired;
+	}
+
+	private void execute(List<TimeoutTask> batch) {
+		Executor executor = this.executor;
+		if (executor != null) {
+			try {
+				executor.execute(() -> batch.forEach(TimeoutTask::run));
+				return;
+			}
+			catch (RejectedExecutionException e) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Executor rejected the expired tasks; running them on the worker thread", e);
+				}
+			}
+		}
+		batch.forEach(TimeoutTask::run);
+	}
+
+	/**
+	 * A doubly-linked list of the tasks in a wheel slot; only accessed by the worker.
+	 */
+	private static final class Bucket {
+
+		private TimeoutTask head;
+
+		private TimeoutTask tail;
+
+		Bucket() {
+			super();
+		}
+
+		void add(TimeoutTask task) {
+			task.bucket = this;
+			task.prev = this.tail;
+			task.next = null;
+			if (this.tail == null) {
+				this.head = task;
+			}
+			else {
+				this.tail.next = task;
+			}
+			this.tail = task;
+		}
+
+		void remove(TimeoutTask task) {
+			if (task.prev == null) {
+				this.head = task.next;
+			}
+			else {
+				task.prev.next = task.next;
+			}
+			if (task.next == null) {
+				this.tail = task.prev;
+			}
+			else {
+				task.next.prev = task.prev;
+			}
+			task.prev = null;
+			task.next = null;
+			task.bucket = null;
+		}
+
+		/**
+		 * Detach all the tasks.
+		 * @return the first task; the others are linked through {@code next}.
+		 */
+		TimeoutTask clear() {
+			TimeoutTask task = this.head;
+			this.head = null;
+			this.tail = null;
+			for (TimeoutTask t = task; t != null; t = t.next) {
+				t.prev = null;
+				t.bucket = null;
+			}
+			return task;
+		}
+
+	}
+
+	private final class TimeoutTask implements ScheduledFuture<Object> {
+
+		private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+
+		private final Runnable task;
+
+		private final Trigger trigger;
+
+		private final SimpleTriggerContext triggerContext;
+
+		private final long period;
+
+		private final boolean fixedRate;
+
+		private volatile long deadline;
+
+		private volatile long scheduledTime;
+
+		private volatile Throwable failure;
+
+		private Bucket bucket;
+
+		private TimeoutTask prev;
+
+		private TimeoutTask next;
+
+		TimeoutTask(Runnable task, Trigger trigger, long period, boolean fixedRate) {
+			this.task = task;
+			this.trigger = trigger;
+			this.triggerContext = trigger != null ? new SimpleTriggerContext() : null;
+			this.period = period;
+			this.fixedRate = fixedRate;
+		}
+
+		void setScheduledTime(long scheduledTime) {
+			this.scheduledTime = scheduledTime;
+			long delay = TimeUnit.MILLISECONDS.toNanos(scheduledTime - System.currentTimeMillis());
+			this.deadline = System.nanoTime() + Math.max(-MAX_DELAY_NANOS, Math.min(delay, MAX_DELAY_NANOS));
+		}
+
+		void run() {
+			long start = System.currentTimeMillis();
+			try {
+				this.task.run();
+			}
+			catch (Throwable t) {
+				this.failure = t;
+				TimingWheelTaskScheduler.this.errorHandler.handleError(t);
+			}
+			long next = nextExecutionTime(start);
+			if (next >= 0 && this.state.compareAndSet(RUNNING, SCHEDULED)) {
+				setScheduledTime(next);
+				TimingWheelTaskScheduler.this.pending.add(this);
+				if (TimingWheelTaskScheduler.this.shutdown) {
+					TimingWheelTaskScheduler.this.pending.remove(this);
+					cancel(false);
+				}
+			}
+			else {
+				this.state.compareAndSet(RUNNING, DONE);
+				complete();
+			}
+		}
+
+		private long nextExecutionTime(long start) {
+			if (this.trigger != null) {
+				this.triggerContext.update(new Date(this.scheduledTime), new Date(start), new Date());
+				Date next = this.trigger.nextExecutionTime(this.triggerContext);
+				return next != null ? next.getTime() : -1;
+			}
+			else if (this.period > 0) {
+				return this.fixedRate ? this.scheduledTime + this.period : System.currentTimeMillis() + this.period;
+			}
+			return -1;
+		}
+
+		private synchronized void complete() {
+			notifyAll();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (this.state.compareAndSet(SCHEDULED, CANCELLED)) {
+				TimingWheelTaskScheduler.this.cancelled.add(this);
+				complete();
+				return true;
+			}
+			if (this.state.compareAndSet(RUNNING, CANCELLED)) {
+				complete();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return this.state.get() == CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			int current = this.state.get();
+			return current == CANCELLED || current == DONE;
+		}
+
+		@Override
+		public Object get() throws InterruptedException, ExecutionException {
+			synchronized (this) {
+				while (!isDone()) {
+					wait();
+				}
+			}
+			return report();
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit)
+				throws InterruptedException, ExecutionException, TimeoutException {
+
+			long waitUntil = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (this) {
+				while (!isDone()) {
+					long remaining = waitUntil - System.nanoTime();
+					if (remaining <= 0) {
+						throw new TimeoutException();
+					}
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+			}
+			return report();
+		}
+
+		private Object report() throws ExecutionException {
+			if (isCancelled()) {
+				throw new CancellationException();
+			}
+			if (this.failure != null) {
+				throw new ExecutionException(this.failure);
+			}
+			return null;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+	}
+
+}
@@ -16,7 +16,7 @@
 
 package org.springframework.integration.selector;
 
-import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.integration.core.MessageSelector;
 import org.springframework.messaging.Message;
 
@@ -30,7 +30,7 @@ import org.springframework.messaging.Message;
 public class UnexpiredMessageSelector implements MessageSelector {
 
 	public boolean accept(Message<?> message) {
-		Long expirationDate = new IntegrationMessageHeaderAccessor(message).getExpirationDate();
+		Long expirationDate = StaticMessageHeaderAccessor.getExpirationDate(message);
 		if (expirationDate == null) {
 			return true;
 		}
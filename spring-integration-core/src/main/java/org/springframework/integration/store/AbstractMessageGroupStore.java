@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -118,7 +118,7 @@ public abstract class AbstractMessageGroupStore extends AbstractBatchingMessageG
 	public synchronized int expireMessageGroups(long timeout) {
 		int count = 0;
 		long threshold = System.currentTimeMillis() - timeout;
-		for (MessageGroup group : this) {
+		for (MessageGroup group : expiryCandidates(threshold)) {
 
 			long timestamp = group.getTimestamp();
 			if (this.isTimeoutOnIdle() && group.getLastModified() > 0) {
@@ -133,6 +133,21 @@ public abstract class AbstractMessageGroupStore extends AbstractBatchingMessageG
 		return count;
 	}
 
+	/**
+	 * Used by expireMessageGroups to find the groups which may have expired: the result
+	 * must contain at least each group whose timestamp (or last modified time, if
+	 * {@link #isTimeoutOnIdle()}) is not after the threshold. The candidates are checked
+	 * again before expiry. This implementation returns all the groups in the store;
+	 * stores which can look the expired groups up (in an index) should override it, so
+	 * the cost of a reap depends on the number of expired groups, not on the store size.
+	 * @param threshold the time in milliseconds before which the groups have expired.
+	 * @return the groups to check.
+	 * @since 5.1
+	 */
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		return this;
+	}
+
 	/**
 	 * Used by expireMessageGroups. We need to return a snapshot of the group
 	 * at the time the reaper runs, so we can properly detect if the
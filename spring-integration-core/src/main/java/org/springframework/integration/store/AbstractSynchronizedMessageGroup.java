@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Base class for the {@link SimpleMessageGroup} implementations which keep the messages
+ * in their own structure guarded by the group monitor. Provides the unmodifiable live
+ * {@link #getMessages()} view, whose iterator fails fast on concurrent modification;
+ * the subclasses call {@link #modified()} on each change.
+ *
+ * @since 5.1
+ */
+public abstract class AbstractSynchronizedMessageGroup extends SimpleMessageGroup {
+
+	private final Collection<Message<?>> view = new MessagesView();
+
+	private int modCount;
+
+	protected AbstractSynchronizedMessageGroup(Object groupId, long timestamp, boolean complete) {
+		super(Collections.emptyList(), null, groupId, timestamp, complete, true);
+	}
+
+	@Override
+	public Collection<Message<?>> getMessages() {
+		return this.view;
+	}
+
+	/**
+	 * Record a structural change of the group; must be called with the group monitor held.
+	 */
+	protected void modified() {
+		this.modCount++;
+	}
+
+	/**
+	 * Create an iterator over the messages; it is created and used with the group
+	 * monitor held, so it does not have to guard against concurrent modification.
+	 * @return the iterator.
+	 */
+	protected abstract Iterator<Message<?>> messagesIterator();
+
+	/**
+	 * Return true if the candidate is the message or has the same id and content.
+	 * @param candidate the message of the group.
+	 * @param message the message to match.
+	 * @return true if the messages match.
+	 */
+	protected static boolean matches(Message<?> candidate, Message<?> message) {
+		return candidate == message
+				|| (ObjectUtils.nullSafeEquals(candidate.getHeaders().getId(), message.getHeaders().getId())
+						&& candidate.equals(message));
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" +
+				"groupId=" + getGroupId() +
+				", messages=" + this.view +
+				", timestamp=" + getTimestamp() +
+				", lastModified=" + getLastModified() +
+				'}';
+	}
+
+	/**
+	 * The unmodifiable live view of the messages.
+	 */
+	private final class MessagesView extends AbstractCollection<Message<?>> {
+
+		MessagesView() {
+			super();
+		}
+
+		@Override
+		public Iterator<Message<?>> iterator() {
+			synchronized (AbstractSynchronizedMessageGroup.this) {
+				return new FailFastIterator(messagesIterator());
+			}
+		}
+
+		@Override
+		public int size() {
+			return AbstractSynchronizedMessageGroup.this.size();
+		}
+
+	}
+
+	private final class FailFastIterator implements Iterator<Message<?>> {
+
+		private final int expectedModCount = AbstractSynchronizedMessageGroup.this.modCount;
+
+		private final Iterator<Message<?>> delegate;
+
+		FailFastIterator(Iterator<Message<?>> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean hasNext() {
+			synchronized (AbstractSynchronizedMessageGroup.this) {
+				checkForComodification();
+				return this.delegate.hasNext();
+			}
+		}
+
+		@Override
+		public Message<?> next() {
+			synchronized (AbstractSynchronizedMessageGroup.this) {
+				checkForComodification();
+				return this.delegate.next();
+			}
+		}
+
+		private void checkForComodification() {
+			if (AbstractSynchronizedMessageGroup.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+
+/**
+ * A {@link SimpleMessageGroup} for very large groups: the messages are kept in a growable
+ * array, in the order they are added, and the sequence numbers in a bitmap, so a message
+ * costs an array slot and a bit instead of the hash entries and boxed {@link Integer} of
+ * the default group. The bitmap starts at the lowest sequence number seen and its size is
+ * bounded by the group size; the sequence numbers too sparse to fit are kept in a set.
+ * {@link #add}, {@link #size()} and {@link #getOne()} are O(1); {@link #remove} is O(1)
+ * for the oldest message and a scan otherwise.
+ * <p>
+ * Like the {@link SimpleMessageGroupFactory.GroupType#LIST} group, the same message may be
+ * added twice. The group is guarded by its monitor; the {@link #getMessages()} view is
+ * live and fails fast on concurrent modification.
+ *
+ * @since 5.1
+ *
+ * @see ArrayMessageGroupFactory
+ */
+public class ArrayMessageGroup extends AbstractSynchronizedMessageGroup {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The bitmap may always grow to this number of words, regardless of the group size.
+	 */
+	private static final int MIN_BITMAP_WORDS = 64;
+
+	private Message<?>[] messages;
+
+	private int head;
+
+	private int tail;
+
+	private int size;
+
+	private long[] sequences = new long[1];
+
+	/**
+	 * The word index of the first bitmap word, or -1 before the first sequence is added.
+	 */
+	private int sequencesBase = -1;
+
+	private Set<Integer> outOfRangeSequences;
+
+	public ArrayMessageGroup(Object groupId) {
+		this(Collections.emptyList(), groupId);
+	}
+
+	public ArrayMessageGroup(Collection<? extends Message<?>> messages, Object groupId) {
+		this(messages, groupId, System.currentTimeMillis(), false);
+	}
+
+	public ArrayMessageGroup(Collection<? extends Message<?>> messages, Object groupId, long timestamp,
+			boolean complete) {
+
+		super(groupId, timestamp, complete);
+		this.messages = new Message<?>[Math.max(messages.size(), DEFAULT_CAPACITY)];
+		for (Message<?> message : messages) {
+			if (message != null) {
+				add(message);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void add(Message<?> messageToAdd) {
+		if (this.tail == this.messages.length) {
+			ensureCapacity();
+		}
+		this.messages[this.tail++] = messageToAdd;
+		this.size++;
+		modified();
+		addSequence(StaticMessageHeaderAccessor.getSequenceNumber(messageToAdd));
+	}
+
+	@Override
+	public synchronized boolean remove(Message<?> message) {
+		for (int i = this.head; i < this.tail; i++) {
+			Message<?> candidate = this.messages[i];
+			if (candidate != null && matches(candidate, message)) {
+				this.messages[i] = null;
+				this.size--;
+				modified();
+				removeSequence(StaticMessageHeaderAccessor.getSequenceNumber(message));
+				if (this.size == 0) {
+					this.head = 0;
+					this.tail = 0;
+					resetSequences();
+				}
+				else if (i == this.head) {
+					while (this.messages[this.head] == null) {
+						this.head++;
+					}
+				}
+				else if (i == this.tail - 1) {
+					while (this.messages[this.tail - 1] == null) {
+						this.tail--;
+					}
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return this.size;
+	}
+
+	@Override
+	public synchronized Message<?> getOne() {
+		return this.size > 0 ? this.messages[this.head] : null;
+	}
+
+	@Override
+	public synchronized void clear() {
+		Arrays.fill(this.messages, this.head, this.tail, null);
+		this.head = 0;
+		this.tail = 0;
+		this.size = 0;
+		modified();
+		resetSequences();
+	}
+
+	@Override
+	public synchronized boolean containsSequence(Integer sequence) {
+		if (sequence == null) {
+			return false;
+		}
+		int sequenceNumber = sequence;
+		int index = bitmapIndex(sequenceNumber);
+		if (index >= 0 && (this.sequences[index] & (1L << sequenceNumber)) != 0) {
+			return true;
+		}
+		return this.outOfRangeSequences != null && this.outOfRangeSequences.contains(sequenceNumber);
+	}
+
+	private void ensureCapacity() {
+		int length = this.messages.length;
+		if (this.size <= length >> 1) {
+			compact();
+		}
+		else {
+			this.messages = Arrays.copyOf(this.messages, length + (length >> 1) + 1);
+		}
+	}
+
+	/**
+	 * Move the remaining messages to the start of the array, removing the holes.
+	 */
+	private void compact() {
+		int target = 0;
+		for (int i = this.head; i < this.tail; i++) {
+			Message<?> message = this.messages[i];
+			if (message != null) {
+				this.messages[target++] = message;
+			}
+		}
+		Arrays.fill(this.messages, target, this.tail, null);
+		this.head = 0;
+		this.tail = target;
+	}
+
+	private void addSequence(int sequenceNumber) {
+		if (sequenceNumber >= 0 && ensureBitmapCovers(sequenceNumber >>> 6)) {
+			this.sequences[(sequenceNumber >>> 6) - this.sequencesBase] |= 1L << sequenceNumber;
+		}
+		else {
+			if (this.outOfRangeSequences == null) {
+				this.outOfRangeSequences = new HashSet<>();
+			}
+			this.outOfRangeSequences.add(sequenceNumber);
+		}
+	}
+
+	private void removeSequence(int sequenceNumber) {
+		int index = bitmapIndex(sequenceNumber);
+		if (index >= 0) {
+			this.sequences[index] &= ~(1L << sequenceNumber);
+		}
+		if (this.outOfRangeSequences != null) {
+			this.outOfRangeSequences.remove(sequenceNumber);
+		}
+	}
+
+	/**
+	 * Return the bitmap index of the word for the sequence number.
+	 * @param sequenceNumber the sequence number.
+	 * @return the index, or -1 if the bitmap does not cover the sequence number.
+	 */
+	private int bitmapIndex(int sequenceNumber) {
+		if (sequenceNumber < 0 || this.sequencesBase < 0) {
+			return -1;
+		}
+		int index = (sequenceNumber >>> 6) - this.sequencesBase;
+		return index < this.sequences.length ? index : -1;
+	}
+
+	/**
+	 * Grow or shift the bitmap to cover the word, unless it would then exceed the
+	 * maximum size for the current group size.
+	 * @param word the word of the sequence number.
+	 * @return true if the bitmap covers the word.
+	 */
+	private boolean ensureBitmapCovers(int word) {
+		if (this.sequencesBase < 0) {
+			this.sequencesBase = word;
+			return true;
+		}
+		int length = this.sequences.length;
+		int maxWords = Math.max(MIN_BITMAP_WORDS, this.size >>> 3);
+		if (word < this.sequencesBase) {
+			int shift = this.sequencesBase - word;
+			if (length + shift > maxWords) {
+				return false;
+			}
+			long[] shifted = new long[length + shift];
+			System.arraycopy(this.sequences, 0, shifted, shift, length);
+			this.sequences = shifted;
+			this.sequencesBase = word;
+		}
+		else if (word - this.sequencesBase >= length) {
+			int needed = word - this.sequencesBase + 1;
+			if (needed > maxWords) {
+				return false;
+			}
+			this.sequences = Arrays.copyOf(this.sequences, Math.min(Math.max(needed, length << 1), maxWords));
+		}
+		return true;
+	}
+
+	private void resetSequences() {
+		this.sequences = new long[1];
+		this.sequencesBase = -1;
+		this.outOfRangeSequences = null;
+	}
+
+	@Override
+	protected Iterator<Message<?>> messagesIterator() {
+		return new MessagesIterator();
+	}
+
+	/**
+	 * Iterates the array slots, skipping the holes of the removed messages.
+	 */
+	private final class MessagesIterator implements Iterator<Message<?>> {
+
+		private int index = ArrayMessageGroup.this.head;
+
+		MessagesIterator() {
+			super();
+		}
+
+		@Override
+		public boolean hasNext() {
+			Message<?>[] messages = ArrayMessageGroup.this.messages;
+			while (this.index < ArrayMessageGroup.this.tail && messages[this.index] == null) {
+				this.index++;
+			}
+			return this.index < ArrayMessageGroup.this.tail;
+		}
+
+		@Override
+		public Message<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return ArrayMessageGroup.this.messages[this.index++];
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,11 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
 
 /**
  * A marker interface that indicates this message store has optimizations for
@@ -28,4 +32,26 @@ import org.springframework.integration.channel.QueueChannel;
  */
 public interface ChannelMessageStore extends BasicMessageGroupStore {
 
+	/**
+	 * Poll up to {@code maxMessages} messages from the group, in the order of
+	 * {@link #pollMessageFromGroup(Object)}. The default implementation polls them
+	 * one by one; stores which can claim several messages in one round trip
+	 * override it.
+	 * @param groupId the group id.
+	 * @param maxMessages the maximum number of messages to poll.
+	 * @return the polled messages; an empty list if there are none.
+	 * @since 5.1
+	 */
+	default List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		List<Message<?>> messages = new ArrayList<>();
+		while (messages.size() < maxMessages) {
+			Message<?> message = pollMessageFromGroup(groupId);
+			if (message == null) {
+				break;
+			}
+			messages.add(message);
+		}
+		return messages;
+	}
+
 }
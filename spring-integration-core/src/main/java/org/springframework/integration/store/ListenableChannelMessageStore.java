@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+/**
+ * A {@link ChannelMessageStore} which notifies listeners when messages become available
+ * in a group, possibly added by other instances of the store or other processes. A
+ * {@link MessageGroupQueue} registers a listener to wake up its waiting consumers instead
+ * of relying on their receive timeout only.
+ * <p>
+ * A notification is only a hint: listeners are expected to poll the group afterwards and
+ * to tolerate spurious notifications. Listeners may be invoked on the thread adding the
+ * message, while it holds locks of its own, so they must not block.
+ *
+ * @since 5.1
+ */
+public interface ListenableChannelMessageStore extends ChannelMessageStore {
+
+	/**
+	 * Register a listener to be invoked when messages are added to the group.
+	 * @param groupId the group id.
+	 * @param listener the listener.
+	 */
+	void addMessageGroupListener(Object groupId, Runnable listener);
+
+	/**
+	 * Unregister a listener previously registered for the group.
+	 * @param groupId the group id.
+	 * @param listener the listener.
+	 */
+	void removeMessageGroupListener(Object groupId, Runnable listener);
+
+}
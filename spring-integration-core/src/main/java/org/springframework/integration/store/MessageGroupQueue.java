@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -29,6 +30,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 
@@ -46,12 +48,17 @@ import org.springframework.util.Assert;
  * @since 2.0
  *
  */
-public class MessageGroupQueue extends AbstractQueue<Message<?>> implements BlockingQueue<Message<?>> {
+public class MessageGroupQueue extends AbstractQueue<Message<?>> implements BlockingQueue<Message<?>>,
+		DisposableBean {
 
 	private final Log logger = LogFactory.getLog(getClass());
 
 	private static final int DEFAULT_CAPACITY = Integer.MAX_VALUE;
 
+	private static final int MAX_DRAIN_CHUNK = 100;
+
+	private static final long DEFAULT_NOTIFICATION_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
 	private final BasicMessageGroupStore messageGroupStore;
 
 	private final Object groupId;
@@ -65,6 +72,12 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 
 	private final Condition messageStoreNotEmpty;
 
+	private final Runnable messageGroupListener;
+
+	private volatile boolean messagesAdded;
+
+	private volatile long notificationTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NOTIFICATION_TIMEOUT);
+
 	public MessageGroupQueue(BasicMessageGroupStore messageGroupStore, Object groupId) {
 		this(messageGroupStore, groupId, DEFAULT_CAPACITY, new ReentrantLock(true));
 	}
@@ -92,6 +105,14 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 			this.logger.warn(messageGroupStore.getClass().getSimpleName() + " is not optimized for use "
 					+ "in a 'MessageGroupQueue'; consider using a `ChannelMessageStore'");
 		}
+		if (messageGroupStore instanceof ListenableChannelMessageStore) {
+			this.messageGroupListener = this::messagesAdded;
+			((ListenableChannelMessageStore) messageGroupStore).addMessageGroupListener(groupId,
+					this.messageGroupListener);
+		}
+		else {
+			this.messageGroupListener = null;
+		}
 	}
 
 	/**
@@ -116,6 +137,29 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		}
 	}
 
+	/**
+	 * Set the maximum time to wait for a notification of a {@link ListenableChannelMessageStore}
+	 * before checking the store again. A notification arriving while a consumer is about to
+	 * wait can be missed, so this bounds the delay in that case. Default 60 seconds.
+	 * @param notificationTimeout the timeout in milliseconds.
+	 * @since 5.1
+	 */
+	public void setNotificationTimeout(long notificationTimeout) {
+		Assert.isTrue(notificationTimeout > 0, "'notificationTimeout' must be greater than 0");
+		this.notificationTimeout = TimeUnit.MILLISECONDS.toNanos(notificationTimeout);
+	}
+
+	/**
+	 * Unregister the listener of this queue from the {@link ListenableChannelMessageStore}.
+	 */
+	@Override
+	public void destroy() {
+		if (this.messageGroupListener != null) {
+			((ListenableChannelMessageStore) this.messageGroupStore).removeMessageGroupListener(this.groupId,
+					this.messageGroupListener);
+		}
+	}
+
 	@Override
 	public Iterator<Message<?>> iterator() {
 		return getMessages().iterator();
@@ -139,7 +183,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 				}
 			}
 			finally {
-				storeLock.unlock();
+				unlockStore();
 			}
 		}
 		catch (InterruptedException e) {
@@ -157,13 +201,13 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 
 		try {
 			while (this.size() == 0 && timeoutInNanos > 0) {
-				timeoutInNanos = this.messageStoreNotEmpty.awaitNanos(timeoutInNanos);
+				timeoutInNanos = awaitNotEmpty(timeoutInNanos);
 			}
 			message = this.doPoll();
 
 		}
 		finally {
-			storeLock.unlock();
+			unlockStore();
 		}
 		return message;
 	}
@@ -178,7 +222,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 				message = this.doPoll();
 			}
 			finally {
-				storeLock.unlock();
+				unlockStore();
 			}
 		}
 		catch (InterruptedException e) {
@@ -201,15 +245,24 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		try {
 			storeLock.lockInterruptibly();
 			try {
-				Message<?> message = this.messageGroupStore.pollMessageFromGroup(this.groupId);
-				for (int i = 0; i < maxElements && message != null; i++) {
-					list.add(message);
-					message = this.messageGroupStore.pollMessageFromGroup(this.groupId);
+				if (this.messageGroupStore instanceof ChannelMessageStore) {
+					drainChannelMessageStore(list, maxElements);
+				}
+				else {
+					while (list.size() < maxElements) {
+						Message<?> message = this.messageGroupStore.pollMessageFromGroup(this.groupId);
+						if (message == null) {
+							break;
+						}
+						list.add(message);
+					}
+				}
+				if (!list.isEmpty()) {
+					this.messageStoreNotFull.signalAll();
 				}
-				this.messageStoreNotFull.signal();
 			}
 			finally {
-				storeLock.unlock();
+				unlockStore();
 			}
 		}
 		catch (InterruptedException e) {
@@ -220,6 +273,22 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		return collection.size() - originalSize;
 	}
 
+	/**
+	 * Poll the messages in chunks of at most {@link #MAX_DRAIN_CHUNK}, so an unbounded
+	 * drain doesn't claim the whole group in a single round trip.
+	 */
+	private void drainChannelMessageStore(List<Message<?>> list, int maxElements) {
+		ChannelMessageStore channelMessageStore = (ChannelMessageStore) this.messageGroupStore;
+		while (list.size() < maxElements) {
+			int chunk = Math.min(maxElements - list.size(), MAX_DRAIN_CHUNK);
+			List<Message<?>> messages = channelMessageStore.pollMessagesFromGroup(this.groupId, chunk);
+			list.addAll(messages);
+			if (messages.size() < chunk) {
+				break;
+			}
+		}
+	}
+
 	@Override
 	public boolean offer(Message<?> message) {
 		boolean offered = true;
@@ -230,7 +299,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 				offered = this.doOffer(message);
 			}
 			finally {
-				storeLock.unlock();
+				unlockStore();
 			}
 		}
 		catch (InterruptedException e) {
@@ -257,7 +326,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 			}
 		}
 		finally {
-			storeLock.unlock();
+			unlockStore();
 		}
 		return offered;
 	}
@@ -275,7 +344,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 			this.doOffer(message);
 		}
 		finally {
-			storeLock.unlock();
+			unlockStore();
 		}
 	}
 
@@ -295,13 +364,13 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 
 		try {
 			while (this.size() == 0) {
-				this.messageStoreNotEmpty.await();
+				awaitNotEmpty(Long.MAX_VALUE);
 			}
 			message = this.doPoll();
 
 		}
 		finally {
-			storeLock.unlock();
+			unlockStore();
 		}
 		return message;
 	}
@@ -333,4 +402,61 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		}
 		return offered;
 	}
+
+	/**
+	 * Wake up the consumers waiting for messages which have been added to the store
+	 * outside of this queue. The store may invoke it on a thread holding the lock of
+	 * another queue, so it must not block: when the 'storeLock' is busy, the signal is
+	 * left to its holder (see {@link #unlockStore()} and {@link #awaitNotEmpty(long)}).
+	 */
+	private void messagesAdded() {
+		this.messagesAdded = true;
+		if (this.storeLock.tryLock()) {
+			unlockStore();
+		}
+	}
+
+	/**
+	 * It is assumed that the 'storeLock' is being held by the caller, otherwise
+	 * IllegalMonitorStateException may be thrown
+	 */
+	private boolean signalIfMessagesAdded() {
+		if (this.messagesAdded) {
+			this.messagesAdded = false;
+			this.messageStoreNotEmpty.signalAll();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Signal the messages added while the 'storeLock' was held and release it.
+	 */
+	private void unlockStore() {
+		try {
+			signalIfMessagesAdded();
+		}
+		finally {
+			this.storeLock.unlock();
+		}
+	}
+
+	/**
+	 * Wait for the 'messageStoreNotEmpty' condition; it is assumed that the 'storeLock'
+	 * is being held by the caller. When listening to the store, the wait is bounded by
+	 * the {@link #setNotificationTimeout(long) notificationTimeout}: a notification arriving
+	 * between the size check and the wait finds the lock busy and would be missed otherwise.
+	 * @param nanos the maximum time to wait.
+	 * @return the remaining time.
+	 */
+	private long awaitNotEmpty(long nanos) throws InterruptedException {
+		if (this.messageGroupListener == null) {
+			return this.messageStoreNotEmpty.awaitNanos(nanos);
+		}
+		if (signalIfMessagesAdded()) {
+			return nanos;
+		}
+		long delay = Math.min(nanos, this.notificationTimeout);
+		return nanos - delay + this.messageStoreNotEmpty.awaitNanos(delay);
+	}
 }
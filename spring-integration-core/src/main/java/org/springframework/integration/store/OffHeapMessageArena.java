@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.support.MutableMessageHeaders;
+import org.springframework.integration.util.UpperBound;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * Encodes messages into chunks of direct memory for the {@link SimpleMessageStore}
+ * off-heap mode. A message is represented on the heap by a {@link StoredMessage} which
+ * keeps only the headers the message groups are indexed by; the message is decoded
+ * when it is read.
+ * <p>
+ * The messages are appended to the current chunk; a chunk is recycled when all of its
+ * messages are freed and it is no longer the current one. The chunks are bounded by an
+ * {@link UpperBound}, like the message capacities of the store.
+ *
+ * @since 5.1
+ */
+final class OffHeapMessageArena {
+
+	static final int CHUNK_SIZE = 1024 * 1024;
+
+	private static final int MAX_SPARE_CHUNKS = 4;
+
+	private static final String[] INDEX_HEADERS = {
+			IntegrationMessageHeaderAccessor.CORRELATION_ID,
+			IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+			IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+			IntegrationMessageHeaderAccessor.PRIORITY
+	};
+
+	private final Deque<ByteBuffer> spareChunks = new ArrayDeque<>();
+
+	private final Codec codec;
+
+	private final long capacity;
+
+	private final UpperBound chunkBound;
+
+	private final long upperBoundTimeout;
+
+	private Chunk current;
+
+	OffHeapMessageArena(Codec codec, long capacity, long upperBoundTimeout) {
+		this.codec = codec;
+		this.capacity = capacity;
+		this.chunkBound = new UpperBound(capacity > 0 ? (int) (capacity / CHUNK_SIZE) : 0);
+		this.upperBoundTimeout = upperBoundTimeout;
+	}
+
+	Codec getCodec() {
+		return this.codec;
+	}
+
+	/**
+	 * Encode the message into the arena.
+	 * @param message the message.
+	 * @return the on-heap representation of the message.
+	 */
+	StoredMessage store(Message<?> message) {
+		byte[] bytes;
+		try {
+			bytes = this.codec.encode(message);
+		}
+		catch (IOException e) {
+			throw new MessagingException(message, "Failed to encode the message", e);
+		}
+		Chunk chunk = null;
+		while (true) {
+			synchronized (this) {
+				if (this.current != null && this.current.live == 0) {
+					this.current.position = 0;
+				}
+				if (chunk != null && !fits(this.current, bytes.length)) {
+					Chunk previous = this.current;
+					this.current = chunk;
+					if (previous != null && previous.live == 0) {
+						recycle(previous);
+					}
+				}
+				else if (chunk != null) {
+					// another thread has rolled the current chunk meanwhile
+					recycle(chunk);
+				}
+				if (fits(this.current, bytes.length)) {
+					chunk = this.current;
+					int offset = chunk.position;
+					ByteBuffer buffer = chunk.buffer.duplicate();
+					buffer.position(offset);
+					buffer.put(bytes);
+					chunk.position += bytes.length;
+					chunk.live++;
+					return new StoredMessage(this, indexHeaders(message), chunk, offset, bytes.length);
+				}
+			}
+			chunk = allocate(bytes.length);
+		}
+	}
+
+	private static boolean fits(Chunk chunk, int length) {
+		return chunk != null && chunk.buffer.capacity() - chunk.position >= length;
+	}
+
+	/**
+	 * Decode the message.
+	 * @param stored the stored message.
+	 * @return the message or null if it has been freed.
+	 */
+	Message<?> read(Message<?> stored) {
+		byte[] bytes = ((StoredMessage) stored).copy();
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			return this.codec.decode(bytes, Message.class);
+		}
+		catch (IOException e) {
+			throw new MessagingException("Failed to decode the message " + stored.getHeaders().getId(), e);
+		}
+	}
+
+	/**
+	 * Release the memory of the message; it can't be read after that.
+	 * @param stored the stored message.
+	 */
+	void free(Message<?> stored) {
+		Chunk chunk = ((StoredMessage) stored).free();
+		if (chunk != null) {
+			synchronized (this) {
+				if (--chunk.live == 0 && chunk != this.current) {
+					recycle(chunk);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocate a chunk for the message; the capacity is awaited outside of the monitor,
+	 * so the messages can be freed meanwhile.
+	 */
+	private Chunk allocate(int length) {
+		if (length <= CHUNK_SIZE) {
+			synchronized (this) {
+				if (!this.spareChunks.isEmpty()) {
+					return new Chunk(this.spareChunks.poll(), 1);
+				}
+			}
+		}
+		int permits = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		for (int i = 0; i < permits; i++) {
+			if (!this.chunkBound.tryAcquire(this.upperBoundTimeout)) {
+				this.chunkBound.release(i);
+				throw new MessagingException(SimpleMessageStore.class.getSimpleName()
+						+ " was out of off-heap capacity (" + this.capacity
+						+ " bytes), try constructing it with a larger capacity.");
+			}
+		}
+		return new Chunk(ByteBuffer.allocateDirect(Math.max(length, CHUNK_SIZE)), permits);
+	}
+
+	private void recycle(Chunk chunk) {
+		if (chunk.permits == 1 && this.spareChunks.size() < MAX_SPARE_CHUNKS) {
+			chunk.buffer.clear();
+			this.spareChunks.add(chunk.buffer);
+		}
+		else {
+			this.chunkBound.release(chunk.permits);
+		}
+	}
+
+	private static MessageHeaders indexHeaders(Message<?> message) {
+		MessageHeaders headers = message.getHeaders();
+		Map<String, Object> indexHeaders = new HashMap<>();
+		indexHeaders.put(MessageHeaders.ID, headers.getId());
+		indexHeaders.put(MessageHeaders.TIMESTAMP, headers.getTimestamp());
+		for (String header : INDEX_HEADERS) {
+			Object value = headers.get(header);
+			if (value != null) {
+				indexHeaders.put(header, value);
+			}
+		}
+		return new MutableMessageHeaders(indexHeaders);
+	}
+
+	/**
+	 * A chunk of direct memory.
+	 */
+	private static final class Chunk {
+
+		private final ByteBuffer buffer;
+
+		/**
+		 * The number of {@link UpperBound} permits it holds.
+		 */
+		private final int permits;
+
+		private int position;
+
+		private int live;
+
+		Chunk(ByteBuffer buffer, int permits) {
+			this.buffer = buffer;
+			this.permits = permits;
+		}
+
+	}
+
+	/**
+	 * The on-heap representation of a message stored in the arena: only the headers the
+	 * message groups are indexed by (id, timestamp, correlation id, sequence details and
+	 * priority). The payload is decoded on each access.
+	 */
+	static final class StoredMessage implements Message<Object> {
+
+		private final OffHeapMessageArena arena;
+
+		private final MessageHeaders headers;
+
+		private final int offset;
+
+		private final int length;
+
+		private Chunk chunk;
+
+		StoredMessage(OffHeapMessageArena arena, MessageHeaders headers, Chunk chunk, int offset, int length) {
+			this.arena = arena;
+			this.headers = headers;
+			this.chunk = chunk;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public Object getPayload() {
+			Message<?> message = this.arena.read(this);
+			if (message == null) {
+				throw new IllegalStateException("The message " + this.headers.getId()
+						+ " has been removed from the store and its payload released");
+			}
+			return message.getPayload();
+		}
+
+		@Override
+		public MessageHeaders getHeaders() {
+			return this.headers;
+		}
+
+		synchronized byte[] copy() {
+			if (this.chunk == null) {
+				return null;
+			}
+			byte[] bytes = new byte[this.length];
+			ByteBuffer buffer = this.chunk.buffer.duplicate();
+			buffer.position(this.offset);
+			buffer.get(bytes);
+			return bytes;
+		}
+
+		synchronized Chunk free() {
+			Chunk freed = this.chunk;
+			this.chunk = null;
+			return freed;
+		}
+
+		@Override
+		public String toString() {
+			return "StoredMessage [headers=" + this.headers + ", length=" + this.length + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+
+/**
+ * A {@link SimpleMessageGroup} for resequencing long out-of-order streams: the messages
+ * are kept in a ring indexed by their sequence number, so the group is always ordered
+ * without sorting. {@link #add}, {@link #remove}, {@link #getOne()} and
+ * {@link #containsSequence(Integer)} are O(1) and {@link #getContiguousSequence()} is
+ * O(k) for a run of k messages, instead of sorting the group on each arrival.
+ * <p>
+ * The ring grows to span the pending sequence numbers up to {@value #MAX_WINDOW}; the
+ * messages outside of it, without a sequence number or with a duplicate sequence number
+ * are kept in a sorted map. The group is guarded by its monitor; the
+ * {@link #getMessages()} view is live, iterates in sequence order and fails fast on
+ * concurrent modification.
+ *
+ * @since 5.1
+ *
+ * @see SequenceWindowMessageGroupFactory
+ */
+public class SequenceWindowMessageGroup extends AbstractSynchronizedMessageGroup {
+
+	/**
+	 * The maximum span of sequence numbers kept in the ring.
+	 */
+	public static final int MAX_WINDOW = 1 << 16;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final TreeMap<Integer, List<Message<?>>> overflow = new TreeMap<>();
+
+	private Message<?>[] ring = new Message<?>[DEFAULT_CAPACITY];
+
+	private int low;
+
+	private int high;
+
+	private int ringSize;
+
+	private int overflowSize;
+
+	public SequenceWindowMessageGroup(Object groupId) {
+		this(Collections.emptyList(), groupId);
+	}
+
+	public SequenceWindowMessageGroup(Collection<? extends Message<?>> messages, Object groupId) {
+		this(messages, groupId, System.currentTimeMillis(), false);
+	}
+
+	public SequenceWindowMessageGroup(Collection<? extends Message<?>> messages, Object groupId, long timestamp,
+			boolean complete) {
+
+		super(groupId, timestamp, complete);
+		for (Message<?> message : messages) {
+			if (message != null) {
+				add(message);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void add(Message<?> messageToAdd) {
+		int sequence = StaticMessageHeaderAccessor.getSequenceNumber(messageToAdd);
+		if (sequence > 0 && fitsInRing(sequence) && this.ring[slot(sequence)] == null) {
+			this.ring[slot(sequence)] = messageToAdd;
+			if (this.ringSize++ == 0) {
+				this.low = sequence;
+				this.high = sequence;
+			}
+			else {
+				this.low = Math.min(this.low, sequence);
+				this.high = Math.max(this.high, sequence);
+			}
+		}
+		else {
+			this.overflow.computeIfAbsent(sequence, k -> new ArrayList<>(1)).add(messageToAdd);
+			this.overflowSize++;
+		}
+		modified();
+	}
+
+	@Override
+	public synchronized boolean remove(Message<?> message) {
+		int sequence = StaticMessageHeaderAccessor.getSequenceNumber(message);
+		Message<?> candidate = ringGet(sequence);
+		if (candidate != null && matches(candidate, message)) {
+			this.ring[slot(sequence)] = null;
+			modified();
+			if (--this.ringSize > 0) {
+				if (sequence == this.low) {
+					while (this.ring[slot(this.low)] == null) {
+						this.low++;
+					}
+				}
+				else if (sequence == this.high) {
+					while (this.ring[slot(this.high)] == null) {
+						this.high--;
+					}
+				}
+			}
+			return true;
+		}
+		List<Message<?>> messages = this.overflow.get(sequence);
+		if (messages != null) {
+			for (Iterator<Message<?>> iterator = messages.iterator(); iterator.hasNext(); ) {
+				if (matches(iterator.next(), message)) {
+					iterator.remove();
+					if (messages.isEmpty()) {
+						this.overflow.remove(sequence);
+					}
+					this.overflowSize--;
+					modified();
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return this.ringSize + this.overflowSize;
+	}
+
+	/**
+	 * Return the message with the lowest sequence number.
+	 * @return the message or null if the group is empty.
+	 */
+	@Override
+	public synchronized Message<?> getOne() {
+		Map.Entry<Integer, List<Message<?>>> first = this.overflow.firstEntry();
+		if (this.ringSize > 0 && (first == null || this.low <= first.getKey())) {
+			return this.ring[slot(this.low)];
+		}
+		return first != null ? first.getValue().get(0) : null;
+	}
+
+	@Override
+	public synchronized void clear() {
+		for (int i = 0; i < this.ring.length; i++) {
+			this.ring[i] = null;
+		}
+		this.ringSize = 0;
+		this.overflow.clear();
+		this.overflowSize = 0;
+		modified();
+	}
+
+	@Override
+	public synchronized boolean containsSequence(Integer sequence) {
+		return sequence != null && (ringGet(sequence) != null || this.overflow.containsKey(sequence));
+	}
+
+	/**
+	 * Return the messages with consecutive sequence numbers starting from the lowest one,
+	 * in sequence order.
+	 * @return the contiguous sequence; empty if the group is empty.
+	 */
+	public synchronized List<Message<?>> getContiguousSequence() {
+		List<Message<?>> sequence = new ArrayList<>();
+		Message<?> first = getOne();
+		if (first == null) {
+			return sequence;
+		}
+		int next = StaticMessageHeaderAccessor.getSequenceNumber(first);
+		while (true) {
+			boolean found = false;
+			Message<?> message = ringGet(next);
+			if (message != null) {
+				sequence.add(message);
+				found = true;
+			}
+			if (this.overflowSize > 0) {
+				List<Message<?>> messages = this.overflow.get(next);
+				if (messages != null) {
+					sequence.addAll(messages);
+					found = true;
+				}
+			}
+			if (!found || next == Integer.MAX_VALUE) {
+				return sequence;
+			}
+			next++;
+		}
+	}
+
+	private int slot(int sequence) {
+		return sequence & (this.ring.length - 1);
+	}
+
+	private Message<?> ringGet(int sequence) {
+		if (this.ringSize == 0 || sequence < this.low || sequence > this.high) {
+			return null;
+		}
+		return this.ring[slot(sequence)];
+	}
+
+	private boolean fitsInRing(int sequence) {
+		if (this.ringSize == 0) {
+			return true;
+		}
+		long span = (long) Math.max(this.high, sequence) - Math.min(this.low, sequence) + 1;
+		if (span <= this.ring.length) {
+			return true;
+		}
+		if (span > MAX_WINDOW) {
+			return false;
+		}
+		int capacity = this.ring.length;
+		while (capacity < span) {
+			capacity <<= 1;
+		}
+		Message<?>[] newRing = new Message<?>[capacity];
+		for (int i = this.low; i <= this.high; i++) {
+			newRing[i & (capacity - 1)] = this.ring[slot(i)];
+		}
+		this.ring = newRing;
+		return true;
+	}
+
+	@Override
+	protected Iterator<Message<?>> messagesIterator() {
+		return new MessagesIterator();
+	}
+
+	/**
+	 * Merges the ring and the overflow messages in sequence order.
+	 */
+	private final class MessagesIterator implements Iterator<Message<?>> {
+
+		private final Iterator<List<Message<?>>> overflowIterator =
+				SequenceWindowMessageGroup.this.overflow.values().iterator();
+
+		private long ringCursor = SequenceWindowMessageGroup.this.low;
+
+		private List<Message<?>> overflowMessages;
+
+		private int overflowIndex;
+
+		private Message<?> next;
+
+		MessagesIterator() {
+			super();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null) {
+				this.next = advance();
+			}
+			return this.next != null;
+		}
+
+		@Override
+		public Message<?> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Message<?> message = this.next;
+			this.next = null;
+			return message;
+		}
+
+		private Message<?> advance() {
+			SequenceWindowMessageGroup group = SequenceWindowMessageGroup.this;
+			if (this.overflowMessages == null || this.overflowIndex == this.overflowMessages.size()) {
+				this.overflowMessages = this.overflowIterator.hasNext() ? this.overflowIterator.next() : null;
+				this.overflowIndex = 0;
+			}
+			Message<?> overflowMessage =
+					this.overflowMessages != null ? this.overflowMessages.get(this.overflowIndex) : null;
+			if (group.ringSize > 0) {
+				while (this.ringCursor <= group.high && group.ring[group.slot((int) this.ringCursor)] == null) {
+					this.ringCursor++;
+				}
+				if (this.ringCursor <= group.high && (overflowMessage == null
+						|| this.ringCursor <= StaticMessageHeaderAccessor.getSequenceNumber(overflowMessage))) {
+					return group.ring[group.slot((int) this.ringCursor++)];
+				}
+			}
+			if (overflowMessage != null) {
+				this.overflowIndex++;
+			}
+			return overflowMessage;
+		}
+
+	}
+
+}
@@ -24,6 +24,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 
@@ -164,7 +165,7 @@ public class SimpleMessageGroup implements MessageGroup {
 		if (size() == 0) {
 			return 0;
 		}
-		return new IntegrationMessageHeaderAccessor(getOne()).getSequenceSize();
+		return StaticMessageHeaderAccessor.getSequenceSize(getOne());
 	}
 
 	@Override
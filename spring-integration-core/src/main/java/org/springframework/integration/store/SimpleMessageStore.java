@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,22 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
+import org.springframework.integration.codec.Codec;
 import org.springframework.integration.support.locks.DefaultLockRegistry;
 import org.springframework.integration.support.locks.LockRegistry;
 import org.springframework.integration.util.UpperBound;
@@ -36,6 +44,11 @@ import org.springframework.util.CollectionUtils;
 /**
  * Map-based in-memory implementation of {@link MessageStore} and {@link MessageGroupStore}.
  * Enforces a maximum capacity for the store.
+ * <p>
+ * With an {@link #setOffHeapCodec(Codec) off-heap codec}, the messages are encoded into
+ * direct memory and only their ids and the headers the groups are indexed by are kept
+ * on the heap; they are decoded when they are read. The groups are then returned as
+ * lazy-load views, like the ones of the persistent stores.
  *
  * @author Iwein Fuld
  * @author Mark Fisher
@@ -57,6 +70,14 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	private final ConcurrentMap<Object, UpperBound> groupToUpperBound = new ConcurrentHashMap<Object, UpperBound>();
 
+	private final ConcurrentSkipListSet<ExpiryIndexEntry> expiryIndex = new ConcurrentSkipListSet<>();
+
+	private final ConcurrentMap<Object, ExpiryIndexEntry> groupToExpiryIndexEntry = new ConcurrentHashMap<>();
+
+	private final AtomicLong expiryIndexSequence = new AtomicLong();
+
+	private final ConcurrentMap<Object, Map<UUID, Message<?>>> groupToOffHeapIndex = new ConcurrentHashMap<>();
+
 	private final int groupCapacity;
 
 	private final int individualCapacity;
@@ -71,6 +92,10 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	private final long upperBoundTimeout;
 
+	private volatile OffHeapMessageArena offHeapArena;
+
+	private volatile long offHeapCapacity;
+
 	/**
 	 * Creates a SimpleMessageStore with a maximum size limited by the given capacity, or unlimited size if the given
 	 * capacity is less than 1. The capacities are applied independently to messages stored via
@@ -156,6 +181,53 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		this.copyOnGet = copyOnGet;
 	}
 
+	@Override
+	public void setTimeoutOnIdle(boolean timeoutOnIdle) {
+		super.setTimeoutOnIdle(timeoutOnIdle);
+		// the group timestamps are the lower bound for both modes
+		this.groupIdToMessageGroup.forEach((groupId, group) -> indexForExpiry(groupId, group.getTimestamp()));
+	}
+
+	/**
+	 * Store the messages off-heap, encoded with this codec, for example a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}. This keeps large
+	 * payloads out of the old generation of the heap, at the cost of encoding each
+	 * message when it is stored and decoding it each time it is read.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see #setOffHeapCapacity(long)
+	 */
+	public void setOffHeapCodec(Codec codec) {
+		Assert.notNull(codec, "'codec' must not be null");
+		assertNotUsed();
+		this.offHeapArena = new OffHeapMessageArena(codec, this.offHeapCapacity, this.upperBoundTimeout);
+	}
+
+	/**
+	 * Set the maximum amount of direct memory for the off-heap messages, rounded down to
+	 * 1 megabyte chunks. Like the message capacities, storing a message waits for the
+	 * {@code upperBoundTimeout} when it is reached, and then fails. Unlimited by default.
+	 * @param offHeapCapacity the capacity in bytes, at least 1 megabyte; unlimited if less
+	 * than 1.
+	 * @since 5.1
+	 * @see #setOffHeapCodec(Codec)
+	 */
+	public void setOffHeapCapacity(long offHeapCapacity) {
+		Assert.isTrue(offHeapCapacity < 1 || offHeapCapacity >= OffHeapMessageArena.CHUNK_SIZE,
+				"'offHeapCapacity' must be at least 1 megabyte, or less than 1 for unlimited");
+		assertNotUsed();
+		this.offHeapCapacity = offHeapCapacity;
+		OffHeapMessageArena arena = this.offHeapArena;
+		if (arena != null) {
+			this.offHeapArena = new OffHeapMessageArena(arena.getCodec(), offHeapCapacity, this.upperBoundTimeout);
+		}
+	}
+
+	private void assertNotUsed() {
+		Assert.isTrue(!this.isUsed && this.groupIdToMessageGroup.isEmpty(),
+				"Cannot change the off-heap storage after the store has been used");
+	}
+
 	public void setLockRegistry(LockRegistry lockRegistry) {
 		Assert.notNull(lockRegistry, "The LockRegistry cannot be null");
 		Assert.isTrue(!(this.isUsed), "Cannot change the lock registry after the store has been used");
@@ -182,18 +254,31 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 					+ this.individualCapacity
 					+ "), try constructing it with a larger capacity.");
 		}
-		this.idToMessage.put(message.getHeaders().getId(), message);
+		Message<?> stored = message;
+		if (this.offHeapArena != null) {
+			try {
+				stored = this.offHeapArena.store(message);
+			}
+			catch (RuntimeException e) {
+				this.individualUpperBound.release();
+				throw e;
+			}
+		}
+		Message<?> replaced = this.idToMessage.put(message.getHeaders().getId(), stored);
+		if (replaced != null && this.offHeapArena != null) {
+			this.offHeapArena.free(replaced);
+		}
 		return message;
 	}
 
 	@Override
 	public Message<?> getMessage(UUID key) {
-		return (key != null) ? this.idToMessage.get(key) : null;
+		return (key != null) ? fromStored(this.idToMessage.get(key)) : null;
 	}
 
 	@Override
 	public MessageMetadata getMessageMetadata(UUID id) {
-		Message<?> message = getMessage(id);
+		Message<?> message = (id != null) ? this.idToMessage.get(id) : null;
 		if (message != null) {
 			MessageMetadata messageMetadata = new MessageMetadata(id);
 			messageMetadata.setTimestamp(message.getHeaders().getTimestamp());
@@ -207,10 +292,12 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 	@Override
 	public Message<?> removeMessage(UUID key) {
 		if (key != null) {
-			Message<?> message = this.idToMessage.remove(key);
-			if (message != null) {
+			Message<?> stored = this.idToMessage.remove(key);
+			if (stored != null) {
 				this.individualUpperBound.release();
 			}
+			Message<?> message = fromStored(stored);
+			freeStored(stored);
 			return message;
 		}
 		else {
@@ -226,6 +313,9 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		if (group == null) {
 			return getMessageGroupFactory().create(groupId);
 		}
+		if (this.offHeapArena != null) {
+			return new PersistentMessageGroup(this, group);
+		}
 		if (this.copyOnGet) {
 			return copy(group);
 		}
@@ -262,6 +352,8 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messages, "'messages' must not be null");
 
+		Message<?>[] messagesToAdd = toStored(messages);
+		int added = 0;
 		Lock lock = this.lockRegistry.obtain(groupId);
 		try {
 			lock.lockInterruptibly();
@@ -279,24 +371,27 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 					}
 					group = getMessageGroupFactory().create(groupId);
 					this.groupIdToMessageGroup.put(groupId, group);
+					indexForExpiry(groupId, group.getTimestamp());
 					upperBound = new UpperBound(this.groupCapacity);
-					for (Message<?> message : messages) {
+					for (Message<?> message : messagesToAdd) {
 						upperBound.tryAcquire(-1);
-						group.add(message);
+						addToGroup(groupId, group, message);
+						added++;
 					}
 					this.groupToUpperBound.put(groupId, upperBound);
 				}
 				else {
 					upperBound = this.groupToUpperBound.get(groupId);
 					Assert.state(upperBound != null, "'upperBound' must not be null.");
-					for (Message<?> message : messages) {
+					for (Message<?> message : messagesToAdd) {
 						lock.unlock();
 						if (!upperBound.tryAcquire(this.upperBoundTimeout)) {
 							unlocked = true;
 							throw outOfCapacityException;
 						}
 						lock.lockInterruptibly();
-						group.add(message);
+						addToGroup(groupId, group, message);
+						added++;
 					}
 				}
 
@@ -312,6 +407,23 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 			Thread.currentThread().interrupt();
 			throw new MessagingException("Interrupted while obtaining lock", e);
 		}
+		finally {
+			for (int i = added; i < messagesToAdd.length; i++) {
+				freeStored(messagesToAdd[i]);
+			}
+		}
+	}
+
+	private void addToGroup(Object groupId, MessageGroup group, Message<?> message) {
+		if (this.offHeapArena != null) {
+			Map<UUID, Message<?>> index = this.groupToOffHeapIndex.computeIfAbsent(groupId, key -> new HashMap<>());
+			if (index.putIfAbsent(message.getHeaders().getId(), message) != null) {
+				// already in the group
+				this.offHeapArena.free(message);
+				return;
+			}
+		}
+		group.add(message);
 	}
 
 	@Override
@@ -322,9 +434,11 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 			try {
 				MessageGroup messageGroup = this.groupIdToMessageGroup.remove(groupId);
 				if (messageGroup != null) {
+					removeFromExpiryIndex(groupId);
 					UpperBound upperBound = this.groupToUpperBound.remove(groupId);
 					Assert.state(upperBound != null, "'upperBound' must not be null.");
 					upperBound.release(this.groupCapacity);
+					freeOffHeapGroup(groupId);
 				}
 			}
 			finally {
@@ -346,18 +460,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 				MessageGroup group = this.groupIdToMessageGroup.get(groupId);
 				Assert.notNull(group, "MessageGroup for groupId '" + groupId + "' " +
 						"can not be located while attempting to remove Message(s) from the MessageGroup");
-				UpperBound upperBound = this.groupToUpperBound.get(groupId);
-				Assert.state(upperBound != null, "'upperBound' must not be null.");
-				boolean modified = false;
-				for (Message<?> messageToRemove : messages) {
-					if (group.remove(messageToRemove)) {
-						upperBound.release();
-						modified = true;
-					}
-				}
-				if (modified) {
-					group.setLastModified(System.currentTimeMillis());
-				}
+				removeFromGroup(groupId, group, messages);
 			}
 			finally {
 				lock.unlock();
@@ -369,11 +472,87 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		}
 	}
 
+	private void removeFromGroup(Object groupId, MessageGroup group, Collection<Message<?>> messages) {
+		UpperBound upperBound = this.groupToUpperBound.get(groupId);
+		Assert.state(upperBound != null, "'upperBound' must not be null.");
+		boolean modified = false;
+		for (Message<?> messageToRemove : messages) {
+			Message<?> stored = storedInGroup(groupId, messageToRemove);
+			if (stored != null && group.remove(stored)) {
+				upperBound.release();
+				modified = true;
+			}
+			freeStored(stored);
+		}
+		if (modified) {
+			group.setLastModified(System.currentTimeMillis());
+		}
+	}
+
 	@Override
 	public Iterator<MessageGroup> iterator() {
+		if (this.offHeapArena != null) {
+			List<MessageGroup> groups = new ArrayList<>();
+			for (MessageGroup group : this.groupIdToMessageGroup.values()) {
+				groups.add(new PersistentMessageGroup(this, group));
+			}
+			return groups.iterator();
+		}
 		return new HashSet<MessageGroup>(this.groupIdToMessageGroup.values()).iterator();
 	}
 
+	/**
+	 * Look the candidates up in the index of the groups by their expiry time.
+	 * The index is updated lazily: a group is indexed by its timestamp when it is created
+	 * and is moved to its actual expiry time (e.g. the last modified time) only when it
+	 * turns out not to be expired yet. So a reap touches only the groups which have
+	 * expired or have been indexed before the threshold since the previous reap.
+	 */
+	@Override
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		List<MessageGroup> candidates = new ArrayList<>();
+		ExpiryIndexEntry bound = new ExpiryIndexEntry(threshold, Long.MAX_VALUE, null);
+		for (ExpiryIndexEntry entry : this.expiryIndex.headSet(bound, true)) {
+			MessageGroup group = this.groupIdToMessageGroup.get(entry.groupId);
+			if (group == null) {
+				this.expiryIndex.remove(entry);
+				this.groupToExpiryIndexEntry.remove(entry.groupId, entry);
+			}
+			else {
+				long timestamp = group.getTimestamp();
+				if (isTimeoutOnIdle() && group.getLastModified() > 0) {
+					timestamp = group.getLastModified();
+				}
+				if (timestamp <= threshold) {
+					candidates.add(this.offHeapArena != null ? new PersistentMessageGroup(this, group) : group);
+				}
+				else {
+					indexForExpiry(entry.groupId, timestamp);
+				}
+			}
+		}
+		return candidates;
+	}
+
+	private void indexForExpiry(Object groupId, long timestamp) {
+		this.groupToExpiryIndexEntry.compute(groupId, (key, existing) -> {
+			if (existing != null) {
+				this.expiryIndex.remove(existing);
+			}
+			ExpiryIndexEntry entry =
+					new ExpiryIndexEntry(timestamp, this.expiryIndexSequence.incrementAndGet(), groupId);
+			this.expiryIndex.add(entry);
+			return entry;
+		});
+	}
+
+	private void removeFromExpiryIndex(Object groupId) {
+		this.groupToExpiryIndexEntry.computeIfPresent(groupId, (key, existing) -> {
+			this.expiryIndex.remove(existing);
+			return null;
+		});
+	}
+
 	@Override
 	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
 		Lock lock = this.lockRegistry.obtain(groupId);
@@ -420,6 +599,30 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	@Override
 	public Message<?> pollMessageFromGroup(Object groupId) {
+		if (this.offHeapArena != null) {
+			// read and remove under the group lock, so the stored message cannot be freed meanwhile
+			Lock lock = this.lockRegistry.obtain(groupId);
+			try {
+				lock.lockInterruptibly();
+				try {
+					MessageGroup group = this.groupIdToMessageGroup.get(groupId);
+					Message<?> stored = group != null ? group.getOne() : null;
+					if (stored == null) {
+						return null;
+					}
+					Message<?> message = this.offHeapArena.read(stored);
+					removeFromGroup(groupId, group, Collections.singletonList(stored));
+					return message;
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted while obtaining lock", e);
+			}
+		}
 		Collection<Message<?>> messageList = getMessageGroup(groupId).getMessages();
 		Message<?> message = null;
 		if (!CollectionUtils.isEmpty(messageList)) {
@@ -433,21 +636,36 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	@Override
 	public int messageGroupSize(Object groupId) {
+		if (this.offHeapArena != null) {
+			MessageGroup group = this.groupIdToMessageGroup.get(groupId);
+			return group != null ? group.size() : 0;
+		}
 		return getMessageGroup(groupId).size();
 	}
 
 	@Override
 	public MessageGroupMetadata getGroupMetadata(Object groupId) {
+		if (this.offHeapArena != null) {
+			// the ids are on the heap
+			MessageGroup group = this.groupIdToMessageGroup.get(groupId);
+			return new MessageGroupMetadata(group != null ? group : getMessageGroupFactory().create(groupId));
+		}
 		return new MessageGroupMetadata(getMessageGroup(groupId));
 	}
 
 	@Override
 	public Message<?> getOneMessageFromGroup(Object groupId) {
+		if (this.offHeapArena != null) {
+			return readOneOffHeap(groupId);
+		}
 		return getMessageGroup(groupId).getOne();
 	}
 
 	@Override
 	public Collection<Message<?>> getMessagesForGroup(Object groupId) {
+		if (this.offHeapArena != null) {
+			return readOffHeapGroup(groupId);
+		}
 		return getMessageGroup(groupId).getMessages();
 	}
 
@@ -464,6 +682,26 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 				UpperBound upperBound = this.groupToUpperBound.get(groupId);
 				Assert.state(upperBound != null, "'upperBound' must not be null.");
 				upperBound.release(this.groupCapacity);
+				freeOffHeapGroup(groupId);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	private Message<?> readOneOffHeap(Object groupId) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				// under the group lock, so the chunk can't be freed by a concurrent removal
+				MessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				return group != null ? fromStored(group.getOne()) : null;
 			}
 			finally {
 				lock.unlock();
@@ -475,4 +713,100 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		}
 	}
 
+	private List<Message<?>> readOffHeapGroup(Object groupId) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				List<Message<?>> messages = new ArrayList<>();
+				MessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				if (group != null) {
+					for (Message<?> stored : group.getMessages()) {
+						Message<?> message = this.offHeapArena.read(stored);
+						if (message != null) {
+							messages.add(message);
+						}
+					}
+				}
+				return messages;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	private Message<?>[] toStored(Message<?>[] messages) {
+		if (this.offHeapArena == null) {
+			return messages;
+		}
+		Message<?>[] stored = new Message<?>[messages.length];
+		try {
+			for (int i = 0; i < messages.length; i++) {
+				stored[i] = this.offHeapArena.store(messages[i]);
+			}
+		}
+		catch (RuntimeException e) {
+			for (Message<?> message : stored) {
+				freeStored(message);
+			}
+			throw e;
+		}
+		return stored;
+	}
+
+	private Message<?> storedInGroup(Object groupId, Message<?> message) {
+		if (this.offHeapArena == null) {
+			return message;
+		}
+		Map<UUID, Message<?>> index = this.groupToOffHeapIndex.get(groupId);
+		return index != null ? index.remove(message.getHeaders().getId()) : null;
+	}
+
+	private Message<?> fromStored(Message<?> stored) {
+		return (stored != null && this.offHeapArena != null) ? this.offHeapArena.read(stored) : stored;
+	}
+
+	private void freeStored(Message<?> stored) {
+		if (stored != null && this.offHeapArena != null) {
+			this.offHeapArena.free(stored);
+		}
+	}
+
+	private void freeOffHeapGroup(Object groupId) {
+		Map<UUID, Message<?>> index = this.groupToOffHeapIndex.remove(groupId);
+		if (index != null) {
+			index.values().forEach(this::freeStored);
+		}
+	}
+
+	/**
+	 * A group in the expiry index: ordered by the time, then by the order of indexing.
+	 */
+	private static final class ExpiryIndexEntry implements Comparable<ExpiryIndexEntry> {
+
+		private final long timestamp;
+
+		private final long sequence;
+
+		private final Object groupId;
+
+		ExpiryIndexEntry(long timestamp, long sequence, Object groupId) {
+			this.timestamp = timestamp;
+			this.sequence = sequence;
+			this.groupId = groupId;
+		}
+
+		@Override
+		public int compareTo(ExpiryIndexEntry other) {
+			int result = Long.compare(this.timestamp, other.timestamp);
+			return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+		}
+
+	}
+
 }
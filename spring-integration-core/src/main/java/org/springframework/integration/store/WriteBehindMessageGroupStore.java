@@ -0,0 +1,650 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.support.locks.DefaultLockRegistry;
+import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadFactory;
+
+/**
+ * A {@link MessageGroupStore} decorator which coalesces the mutations from all threads into
+ * batched writes to a persistent delegate store, instead of a round trip per mutation.
+ * <p>
+ * The mutations of each group are merged into their net effect: a message added and
+ * removed within the same window, as an aggregator does with a group released before the
+ * flush, is never written, and only the last {@link #completeGroup(Object)} or
+ * {@link #setLastReleasedSequenceNumberForGroup(Object, int)} is. A single flusher thread
+ * writes a batch when it reaches the {@link #setBatchSize(int) batchSize} number of
+ * mutations or when the {@link #setFlushInterval(long) flushInterval} has elapsed since
+ * the first one.
+ * <p>
+ * The reads of a group with unwritten mutations apply them to the delegate's group, so a
+ * thread always sees the writes made through this store (but not other applications'
+ * unwritten writes). The iteration, the group counts, the metadata and the expiry
+ * flush the pending mutations first.
+ * <p>
+ * With the default {@link DurabilityMode#AFTER_FLUSH} a mutation returns when it has been
+ * written, so many threads share the round trips without losing durability; with
+ * {@link DurabilityMode#IMMEDIATE} it returns at once and a failed write is only logged.
+ * The writes are performed on the flusher thread, outside of the callers' transactions;
+ * a caller waits at most the {@link #setWriteTimeout(long) writeTimeout} for them.
+ *
+ * @since 5.1
+ */
+public class WriteBehindMessageGroupStore extends AbstractMessageGroupStore implements DisposableBean {
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	private static final long DEFAULT_FLUSH_INTERVAL = 10;
+
+	private static final long DEFAULT_WRITE_TIMEOUT = 30000;
+
+	/**
+	 * When a mutation returns to the caller.
+	 */
+	public enum DurabilityMode {
+
+		/**
+		 * When it has been written to the delegate store.
+		 */
+		AFTER_FLUSH,
+
+		/**
+		 * Immediately; the write to the delegate store happens later.
+		 */
+		IMMEDIATE
+
+	}
+
+	private final MessageGroupStore delegate;
+
+	private final Object monitor = new Object();
+
+	private ThreadFactory threadFactory;
+
+	private LockRegistry lockRegistry = new DefaultLockRegistry();
+
+	private volatile long writeTimeout = DEFAULT_WRITE_TIMEOUT;
+
+	private volatile DurabilityMode durabilityMode = DurabilityMode.AFTER_FLUSH;
+
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+	private volatile long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_INTERVAL);
+
+	private Map<Object, PendingGroup> pending = new LinkedHashMap<>();
+
+	private Map<Object, PendingGroup> flushing = Collections.emptyMap();
+
+	private int pendingMutations;
+
+	private long windowStart;
+
+	private boolean flushRequested;
+
+	private Thread flusher;
+
+	private boolean shutdown;
+
+	public WriteBehindMessageGroupStore(MessageGroupStore delegate) {
+		super(false);
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("write-behind-");
+		threadFactory.setDaemon(true);
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set when a mutation returns to the caller. Default {@link DurabilityMode#AFTER_FLUSH}.
+	 * @param durabilityMode the durability mode.
+	 */
+	public void setDurabilityMode(DurabilityMode durabilityMode) {
+		Assert.notNull(durabilityMode, "'durabilityMode' must not be null");
+		this.durabilityMode = durabilityMode;
+	}
+
+	/**
+	 * Set the number of mutations which triggers a write without waiting for the flush
+	 * interval. Default 100.
+	 * @param batchSize the batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a mutation waits for other ones to be written
+	 * with. Default 10.
+	 * @param flushInterval the flush interval.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "'flushInterval' must not be negative");
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+	}
+
+	/**
+	 * Set the {@link ThreadFactory} for the flusher thread. Default a daemon thread named
+	 * {@code write-behind-}.
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set the {@link LockRegistry} for the per-group locks which make
+	 * {@link #pollMessageFromGroup(Object)} atomic. Default a {@link DefaultLockRegistry}.
+	 * @param lockRegistry the lock registry.
+	 */
+	public void setLockRegistry(LockRegistry lockRegistry) {
+		Assert.notNull(lockRegistry, "'lockRegistry' must not be null");
+		this.lockRegistry = lockRegistry;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds to wait for the mutations to be written, when
+	 * waiting for them; a {@link MessageStoreException} is thrown when it is exceeded.
+	 * Default 30 seconds.
+	 * @param writeTimeout the write timeout.
+	 */
+	public void setWriteTimeout(long writeTimeout) {
+		Assert.isTrue(writeTimeout > 0, "'writeTimeout' must be greater than 0");
+		this.writeTimeout = writeTimeout;
+	}
+
+	@Override
+	public void setTimeoutOnIdle(boolean timeoutOnIdle) {
+		super.setTimeoutOnIdle(timeoutOnIdle);
+		if (this.delegate instanceof AbstractMessageGroupStore) {
+			((AbstractMessageGroupStore) this.delegate).setTimeoutOnIdle(timeoutOnIdle);
+		}
+	}
+
+	public MessageGroupStore getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(messages, "'messages' must not be null");
+		mutate(groupId, group -> group.add(messages));
+	}
+
+	@Override
+	public void removeMessagesFromGroup(Object key, Collection<Message<?>> messages) {
+		Assert.notNull(key, "'key' must not be null");
+		Assert.notNull(messages, "'messages' must not be null");
+		mutate(key, group -> group.remove(messages));
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		mutate(groupId, PendingGroup::clear);
+	}
+
+	@Override
+	public void completeGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		mutate(groupId, PendingGroup::complete);
+	}
+
+	@Override
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		mutate(groupId, group -> group.setLastReleased(sequenceNumber));
+	}
+
+	/**
+	 * Poll a message from the group; the read and the removal are performed under a
+	 * per-group lock, so concurrent pollers never get the same message.
+	 */
+	@Override
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Message<?> message;
+		CompletableFuture<Void> written;
+		Lock lock = this.lockRegistry.obtain(groupId);
+		lock.lock();
+		try {
+			List<PendingGroup> layers = layers(groupId);
+			if (layers == null) {
+				return this.delegate.pollMessageFromGroup(groupId);
+			}
+			message = merge(groupId, layers).getOne();
+			if (message == null) {
+				return null;
+			}
+			Collection<Message<?>> removed = Collections.singletonList(message);
+			written = enqueue(groupId, group -> group.remove(removed));
+		}
+		finally {
+			lock.unlock();
+		}
+		if (DurabilityMode.AFTER_FLUSH.equals(this.durabilityMode)) {
+			await(written);
+		}
+		return message;
+	}
+
+	@Override
+	public MessageGroup getMessageGroup(Object groupId) {
+		List<PendingGroup> layers = layers(groupId);
+		return layers == null ? this.delegate.getMessageGroup(groupId) : merge(groupId, layers);
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		List<PendingGroup> layers = layers(groupId);
+		return layers == null ? this.delegate.messageGroupSize(groupId) : merge(groupId, layers).size();
+	}
+
+	@Override
+	public Message<?> getOneMessageFromGroup(Object groupId) {
+		List<PendingGroup> layers = layers(groupId);
+		return layers == null ? this.delegate.getOneMessageFromGroup(groupId) : merge(groupId, layers).getOne();
+	}
+
+	@Override
+	public Collection<Message<?>> getMessagesForGroup(Object groupId) {
+		List<PendingGroup> layers = layers(groupId);
+		return layers == null
+				? this.delegate.getMessagesForGroup(groupId)
+				: merge(groupId, layers).getMessages();
+	}
+
+	@Override
+	public MessageGroupMetadata getGroupMetadata(Object groupId) {
+		flush();
+		return this.delegate.getGroupMetadata(groupId);
+	}
+
+	@Override
+	public int getMessageCountForAllMessageGroups() {
+		flush();
+		return this.delegate.getMessageCountForAllMessageGroups();
+	}
+
+	@Override
+	public int getMessageGroupCount() {
+		flush();
+		return this.delegate.getMessageGroupCount();
+	}
+
+	@Override
+	public Iterator<MessageGroup> iterator() {
+		flush();
+		return this.delegate.iterator();
+	}
+
+	@Override
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		flush();
+		if (this.delegate instanceof AbstractMessageGroupStore) {
+			return ((AbstractMessageGroupStore) this.delegate).expiryCandidates(threshold);
+		}
+		return this.delegate::iterator;
+	}
+
+	/**
+	 * Write the pending mutations now and wait for them to be written.
+	 */
+	public void flush() {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		synchronized (this.monitor) {
+			for (PendingGroup group : this.flushing.values()) {
+				futures.add(group.written);
+			}
+			for (PendingGroup group : this.pending.values()) {
+				futures.add(group.written);
+			}
+			if (futures.isEmpty()) {
+				return;
+			}
+			this.flushRequested = true;
+			this.monitor.notifyAll();
+		}
+		for (CompletableFuture<Void> future : futures) {
+			await(future);
+		}
+	}
+
+	/**
+	 * Write the pending mutations and stop the flusher thread; the mutations are then
+	 * written directly to the delegate store.
+	 */
+	@Override
+	public void destroy() {
+		Thread thread;
+		synchronized (this.monitor) {
+			this.shutdown = true;
+			this.monitor.notifyAll();
+			thread = this.flusher;
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void mutate(Object groupId, Consumer<PendingGroup> mutation) {
+		CompletableFuture<Void> written = enqueue(groupId, mutation);
+		if (DurabilityMode.AFTER_FLUSH.equals(this.durabilityMode)) {
+			await(written);
+		}
+	}
+
+	/**
+	 * Add the mutation to the pending ones, or write it directly after the shutdown.
+	 * @return the future completed when the mutation has been written.
+	 */
+	private CompletableFuture<Void> enqueue(Object groupId, Consumer<PendingGroup> mutation) {
+		synchronized (this.monitor) {
+			if (this.shutdown) {
+				PendingGroup group = new PendingGroup(groupId);
+				mutation.accept(group);
+				write(group);
+				return CompletableFuture.completedFuture(null);
+			}
+			if (this.flusher == null) {
+				this.flusher = this.threadFactory.newThread(this::runFlusher);
+				this.flusher.start();
+			}
+			PendingGroup group = this.pending.computeIfAbsent(groupId, PendingGroup::new);
+			mutation.accept(group);
+			if (this.pendingMutations++ == 0 || this.pendingMutations >= this.batchSize) {
+				if (this.pendingMutations == 1) {
+					this.windowStart = System.nanoTime();
+				}
+				this.monitor.notifyAll();
+			}
+			return group.written;
+		}
+	}
+
+	/**
+	 * Return copies of the in-flight and pending mutations of the group, oldest first.
+	 */
+	private List<PendingGroup> layers(Object groupId) {
+		synchronized (this.monitor) {
+			PendingGroup inFlight = this.flushing.get(groupId);
+			PendingGroup unwritten = this.pending.get(groupId);
+			if (inFlight == null && unwritten == null) {
+				return null;
+			}
+			List<PendingGroup> layers = new ArrayList<>(2);
+			if (inFlight != null) {
+				layers.add(new PendingGroup(inFlight));
+			}
+			if (unwritten != null) {
+				layers.add(new PendingGroup(unwritten));
+			}
+			return layers;
+		}
+	}
+
+	/**
+	 * Apply the mutations to the delegate's group. The delegate may have written some of
+	 * the in-flight ones already, so they are applied idempotently.
+	 */
+	private MessageGroup merge(Object groupId, List<PendingGroup> layers) {
+		int from = 0;
+		for (int i = layers.size() - 1; i >= 0; i--) {
+			if (layers.get(i).cleared) {
+				from = i;
+				break;
+			}
+		}
+		Map<UUID, Message<?>> messages = new LinkedHashMap<>();
+		long timestamp;
+		long lastModified;
+		boolean complete;
+		int lastReleased;
+		PendingGroup first = layers.get(from);
+		if (first.cleared) {
+			timestamp = first.timestamp;
+			lastModified = first.timestamp;
+			complete = false;
+			lastReleased = 0;
+		}
+		else {
+			MessageGroup base = this.delegate.getMessageGroup(groupId);
+			for (Message<?> message : base.getMessages()) {
+				messages.put(message.getHeaders().getId(), message);
+			}
+			timestamp = base.getTimestamp();
+			lastModified = base.getLastModified();
+			complete = base.isComplete();
+			lastReleased = base.getLastReleasedMessageSequenceNumber();
+		}
+		for (PendingGroup layer : layers.subList(from, layers.size())) {
+			messages.keySet().removeAll(layer.removed.keySet());
+			messages.putAll(layer.added);
+			complete |= layer.complete;
+			if (layer.lastReleased != null) {
+				lastReleased = layer.lastReleased;
+			}
+			lastModified = Math.max(lastModified, layer.lastModified);
+		}
+		MessageGroup group = getMessageGroupFactory().create(messages.values(), groupId, timestamp, complete);
+		group.setLastModified(lastModified);
+		group.setLastReleasedMessageSequenceNumber(lastReleased);
+		return group;
+	}
+
+	private void runFlusher() {
+		while (true) {
+			Map<Object, PendingGroup> batch;
+			synchronized (this.monitor) {
+				try {
+					while (this.pending.isEmpty() && !this.shutdown) {
+						this.monitor.wait();
+					}
+					while (!this.shutdown && !this.flushRequested && this.pendingMutations < this.batchSize) {
+						long remaining = this.windowStart + this.flushIntervalNanos - System.nanoTime();
+						if (remaining <= 0) {
+							break;
+						}
+						TimeUnit.NANOSECONDS.timedWait(this.monitor, remaining);
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					this.shutdown = true;
+				}
+				if (this.pending.isEmpty()) {
+					this.flusher = null;
+					return;
+				}
+				batch = this.pending;
+				this.flushing = batch;
+				this.pending = new LinkedHashMap<>();
+				this.pendingMutations = 0;
+				this.flushRequested = false;
+			}
+			for (PendingGroup group : batch.values()) {
+				try {
+					write(group);
+					group.written.complete(null);
+				}
+				catch (Throwable e) {
+					group.written.completeExceptionally(e);
+					if (DurabilityMode.IMMEDIATE.equals(this.durabilityMode) || e instanceof Error) {
+						this.logger.error("Failed to write the mutations of the group [" + group.groupId + "]", e);
+					}
+				}
+			}
+			synchronized (this.monitor) {
+				this.flushing = Collections.emptyMap();
+			}
+		}
+	}
+
+	private void write(PendingGroup group) {
+		Object groupId = group.groupId;
+		if (group.cleared) {
+			this.delegate.removeMessageGroup(groupId);
+		}
+		if (!group.removed.isEmpty()) {
+			this.delegate.removeMessagesFromGroup(groupId, group.removed.values());
+		}
+		if (group.addPending) {
+			this.delegate.addMessagesToGroup(groupId, group.added.values().toArray(new Message<?>[0]));
+		}
+		if (group.lastReleased != null) {
+			this.delegate.setLastReleasedSequenceNumberForGroup(groupId, group.lastReleased);
+		}
+		if (group.complete) {
+			this.delegate.completeGroup(groupId);
+		}
+	}
+
+	private void await(CompletableFuture<Void> future) {
+		try {
+			future.get(this.writeTimeout, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageStoreException("Interrupted while waiting for the write to the message store", e);
+		}
+		catch (TimeoutException e) {
+			throw new MessageStoreException("Timed out after " + this.writeTimeout
+					+ "ms waiting for the write to the message store", e);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new MessageStoreException("Failed to write to the message store", cause);
+		}
+	}
+
+	/**
+	 * The net effect of the unwritten mutations of a group.
+	 */
+	private static final class PendingGroup {
+
+		private final Object groupId;
+
+		private final CompletableFuture<Void> written;
+
+		private final Map<UUID, Message<?>> added;
+
+		private final Map<UUID, Message<?>> removed;
+
+		private boolean cleared;
+
+		private boolean addPending;
+
+		private boolean complete;
+
+		private Integer lastReleased;
+
+		private long timestamp = System.currentTimeMillis();
+
+		private long lastModified = this.timestamp;
+
+		PendingGroup(Object groupId) {
+			this.groupId = groupId;
+			this.written = new CompletableFuture<>();
+			this.added = new LinkedHashMap<>();
+			this.removed = new LinkedHashMap<>();
+		}
+
+		PendingGroup(PendingGroup group) {
+			this.groupId = group.groupId;
+			this.written = group.written;
+			this.added = new LinkedHashMap<>(group.added);
+			this.removed = new LinkedHashMap<>(group.removed);
+			this.cleared = group.cleared;
+			this.addPending = group.addPending;
+			this.complete = group.complete;
+			this.lastReleased = group.lastReleased;
+			this.timestamp = group.timestamp;
+			this.lastModified = group.lastModified;
+		}
+
+		void add(Message<?>[] messages) {
+			for (Message<?> message : messages) {
+				this.added.put(message.getHeaders().getId(), message);
+			}
+			this.addPending = true;
+			this.lastModified = System.currentTimeMillis();
+		}
+
+		void remove(Collection<Message<?>> messages) {
+			for (Message<?> message : messages) {
+				UUID id = message.getHeaders().getId();
+				if (this.added.remove(id) == null) {
+					this.removed.put(id, message);
+				}
+			}
+			this.lastModified = System.currentTimeMillis();
+		}
+
+		void clear() {
+			this.cleared = true;
+			this.addPending = false;
+			this.added.clear();
+			this.removed.clear();
+			this.complete = false;
+			this.lastReleased = null;
+			this.timestamp = System.currentTimeMillis();
+			this.lastModified = this.timestamp;
+		}
+
+		void complete() {
+			this.complete = true;
+			this.lastModified = System.currentTimeMillis();
+		}
+
+		void setLastReleased(int sequenceNumber) {
+			this.lastReleased = sequenceNumber;
+			this.lastModified = System.currentTimeMillis();
+		}
+
+	}
+
+}
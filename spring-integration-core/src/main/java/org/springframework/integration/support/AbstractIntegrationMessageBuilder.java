@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2017 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.lang.Nullable;
@@ -204,4 +205,18 @@ public abstract class AbstractIntegrationMessageBuilder<T> {
 
 	public abstract Message<T> build();
 
+	/**
+	 * Build the message like {@link #build()}, but create a new non-error message with
+	 * the provided function instead of a {@link org.springframework.messaging.support.GenericMessage}.
+	 * The headers passed to the function are either the {@link MessageHeaders} to use as is
+	 * or the entries for new {@link MessageHeaders}. The default implementation ignores the
+	 * function and delegates to {@link #build()}.
+	 * @param messageCreator the function to create a message from the payload and headers.
+	 * @return the message.
+	 * @since 5.1
+	 */
+	protected Message<T> build(BiFunction<T, Map<String, Object>, Message<T>> messageCreator) {
+		return build();
+	}
+
 }
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A message builder which creates immutable {@link GenericMessage}s with
+ * {@link LayeredMessageHeaders}: only the headers changed by this builder are stored
+ * in the new message, on top of the headers of the message it was created from (or
+ * of the {@link MessageHeaders} copied into an otherwise empty builder).
+ * <p>
+ * The semantics, including read-only headers, are the same as for the {@link MessageBuilder}.
+ *
+ * @param <T> the payload type.
+ *
+ * @since 5.1
+ *
+ * @see LayeredMessageBuilderFactory
+ */
+public final class LayeredMessageBuilder<T> extends AbstractIntegrationMessageBuilder<T> {
+
+	private static final Log logger = LogFactory.getLog(LayeredMessageBuilder.class);
+
+	private static final HeaderTypeVerifier HEADER_TYPE_VERIFIER = new HeaderTypeVerifier();
+
+	private final T payload;
+
+	@Nullable
+	private final Message<T> originalMessage;
+
+	private final int maxDepth;
+
+	@Nullable
+	private MessageHeaders parent;
+
+	private Map<String, Object> delta;
+
+	private Set<String> removed;
+
+	private boolean modified;
+
+	private String[] readOnlyHeaders;
+
+	private LayeredMessageBuilder(T payload, @Nullable Message<T> originalMessage, int maxDepth) {
+		Assert.notNull(payload, "payload must not be null");
+		this.payload = payload;
+		this.originalMessage = originalMessage;
+		this.maxDepth = maxDepth;
+		if (originalMessage != null) {
+			this.parent = immutableParent(originalMessage.getHeaders());
+			this.modified = !payload.equals(originalMessage.getPayload());
+		}
+	}
+
+	/**
+	 * Create a builder for a new {@link Message} instance layered over the headers of
+	 * the provided message. The payload of the provided Message will also be used as the
+	 * payload for the new message.
+	 * @param message the Message from which the payload and the headers will be used.
+	 * @param maxDepth the number of layers after which the headers are flattened.
+	 * @param <T> The type of the payload.
+	 * @return A LayeredMessageBuilder.
+	 */
+	public static <T> LayeredMessageBuilder<T> fromMessage(Message<T> message, int maxDepth) {
+		Assert.notNull(message, "message must not be null");
+		return new LayeredMessageBuilder<>(message.getPayload(), message, maxDepth);
+	}
+
+	/**
+	 * Create a builder for a new {@link Message} instance with the provided payload.
+	 * @param payload the payload for the new message.
+	 * @param maxDepth the number of layers after which the headers are flattened.
+	 * @param <T> The type of the payload.
+	 * @return A LayeredMessageBuilder.
+	 */
+	public static <T> LayeredMessageBuilder<T> withPayload(T payload, int maxDepth) {
+		return new LayeredMessageBuilder<>(payload, null, maxDepth);
+	}
+
+	@Override
+	public T getPayload() {
+		return this.payload;
+	}
+
+	/**
+	 * Return a copy of the current headers.
+	 * @return the headers.
+	 */
+	@Override
+	public Map<String, Object> getHeaders() {
+		Map<String, Object> headers = this.parent != null ? new HashMap<>(this.parent) : new HashMap<>();
+		if (this.removed != null) {
+			headers.keySet().removeAll(this.removed);
+		}
+		if (this.delta != null) {
+			headers.putAll(this.delta);
+		}
+		return headers;
+	}
+
+	@Override
+	public LayeredMessageBuilder<T> setHeader(String headerName, @Nullable Object headerValue) {
+		Assert.isTrue(!isReadOnly(headerName), () -> "'" + headerName + "' header is read-only");
+		HEADER_TYPE_VERIFIER.verify(headerName, headerValue);
+		if (headerValue == null) {
+			if (containsHeader(headerName)) {
+				doRemoveHeader(headerName);
+			}
+		}
+		else if (!ObjectUtils.nullSafeEquals(headerValue, getHeader(headerName))) {
+			if (this.delta == null) {
+				this.delta = new HashMap<>();
+			}
+			this.delta.put(headerName, headerValue);
+			if (this.removed != null) {
+				this.removed.remove(headerName);
+			}
+			this.modified = true;
+		}
+		return this;
+	}
+
+	@Override
+	public LayeredMessageBuilder<T> setHeaderIfAbsent(String headerName, Object headerValue) {
+		if (getHeader(headerName) == null) {
+			setHeader(headerName, headerValue);
+		}
+		return this;
+	}
+
+	@Override
+	public LayeredMessageBuilder<T> removeHeaders(String... headerPatterns) {
+		List<String> headersToRemove = new ArrayList<>();
+		for (String pattern : headerPatterns) {
+			if (StringUtils.hasLength(pattern)) {
+				if (pattern.contains("*")) {
+					for (String headerName : getHeaders().keySet()) {
+						if (PatternMatchUtils.simpleMatch(pattern, headerName)) {
+							headersToRemove.add(headerName);
+						}
+					}
+				}
+				else {
+					headersToRemove.add(pattern);
+				}
+			}
+		}
+		for (String headerToRemove : headersToRemove) {
+			if (!isReadOnly(headerToRemove)) {
+				setHeader(headerToRemove, null);
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public LayeredMessageBuilder<T> removeHeader(String headerName) {
+		if (!isReadOnly(headerName)) {
+			if (StringUtils.hasLength(headerName)) {
+				setHeader(headerName, null);
+			}
+		}
+		else if (logger.isInfoEnabled()) {
+			logger.info("The header [" + headerName + "] is ignored for removal because it is is readOnly.");
+		}
+		return this;
+	}
+
+	/**
+	 * Copy the name-value pairs from the provided Map. When nothing has been set on this
+	 * builder yet and the map is a {@link MessageHeaders}, the new headers are layered
+	 * over it instead of copying its entries.
+	 * @param headersToCopy The headers to copy.
+	 * @return this builder.
+	 */
+	@Override
+	public LayeredMessageBuilder<T> copyHeaders(@Nullable Map<String, ?> headersToCopy) {
+		if (!adoptAsParent(headersToCopy) && headersToCopy != null) {
+			for (Map.Entry<String, ?> entry : headersToCopy.entrySet()) {
+				if (!isReadOnly(entry.getKey())) {
+					setHeader(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Copy the name-value pairs from the provided Map, not overwriting any existing values.
+	 * When nothing has been set on this builder yet and the map is a {@link MessageHeaders},
+	 * the new headers are layered over it instead of copying its entries.
+	 * @param headersToCopy The headers to copy.
+	 * @return this builder.
+	 */
+	@Override
+	public LayeredMessageBuilder<T> copyHeadersIfAbsent(@Nullable Map<String, ?> headersToCopy) {
+		if (!adoptAsParent(headersToCopy) && headersToCopy != null) {
+			for (Map.Entry<String, ?> entry : headersToCopy.entrySet()) {
+				if (!isReadOnly(entry.getKey())) {
+					setHeaderIfAbsent(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return this;
+	}
+
+	private boolean adoptAsParent(@Nullable Map<String, ?> headersToCopy) {
+		if (headersToCopy instanceof MessageHeaders && this.parent == null
+				&& this.delta == null && this.removed == null) {
+
+			this.parent = immutableParent((MessageHeaders) headersToCopy);
+			this.modified = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Only plain {@link MessageHeaders} and {@link LayeredMessageHeaders} are known to be
+	 * immutable and can be shared as a parent; any other headers (for example the
+	 * {@link MutableMessageHeaders} of a {@link MutableMessage}) may change in place
+	 * afterwards, so they are copied instead.
+	 */
+	private static MessageHeaders immutableParent(MessageHeaders headers) {
+		if (headers.getClass() == MessageHeaders.class || headers instanceof LayeredMessageHeaders) {
+			return headers;
+		}
+		return new MessageHeaders(headers);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected List<List<Object>> getSequenceDetails() {
+		return (List<List<Object>>) getHeader(IntegrationMessageHeaderAccessor.SEQUENCE_DETAILS);
+	}
+
+	@Override
+	protected Object getCorrelationId() {
+		return getHeader(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+	}
+
+	@Override
+	protected Object getSequenceNumber() {
+		return getHeader(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER);
+	}
+
+	@Override
+	protected Object getSequenceSize() {
+		return getHeader(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE);
+	}
+
+	/**
+	 * Specify a list of headers which should be considered as read only
+	 * and prohibited from being populated in the message.
+	 * @param readOnlyHeaders the list of headers for {@code readOnly} mode.
+	 * Defaults to {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP}.
+	 * @return the current {@link LayeredMessageBuilder}
+	 */
+	public LayeredMessageBuilder<T> readOnlyHeaders(String... readOnlyHeaders) {
+		Assert.noNullElements(readOnlyHeaders, "'readOnlyHeaders' must not be contain null items.");
+		this.readOnlyHeaders = readOnlyHeaders;
+		return this;
+	}
+
+	@Override
+	public Message<T> build() {
+		return build((payload, headers) -> new GenericMessage<>(payload, (MessageHeaders) headers));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected Message<T> build(BiFunction<T, Map<String, Object>, Message<T>> messageCreator) {
+		if (!this.modified && this.originalMessage != null && !containsReadOnly(this.originalMessage.getHeaders())) {
+			return this.originalMessage;
+		}
+		Map<String, Object> headers = this.delta != null ? new HashMap<>(this.delta) : new HashMap<>(4);
+		Set<String> removedHeaders =
+				!CollectionUtils.isEmpty(this.removed) ? new HashSet<>(this.removed) : Collections.emptySet();
+		if (!ObjectUtils.isEmpty(this.readOnlyHeaders) && this.parent != null) {
+			for (String readOnly : this.readOnlyHeaders) {
+				if (this.parent.containsKey(readOnly)) {
+					if (removedHeaders.isEmpty()) {
+						removedHeaders = new HashSet<>();
+					}
+					removedHeaders.add(readOnly);
+				}
+			}
+		}
+		MessageHeaders messageHeaders =
+				LayeredMessageHeaders.newHeaders(this.parent, headers, removedHeaders, this.maxDepth);
+		if (this.payload instanceof Throwable) {
+			return (Message<T>) new ErrorMessage((Throwable) this.payload, messageHeaders);
+		}
+		return messageCreator.apply(this.payload, messageHeaders);
+	}
+
+	private boolean containsReadOnly(MessageHeaders headers) {
+		if (!ObjectUtils.isEmpty(this.readOnlyHeaders)) {
+			for (String readOnly : this.readOnlyHeaders) {
+				if (headers.containsKey(readOnly)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isReadOnly(String headerName) {
+		return MessageHeaders.ID.equals(headerName) || MessageHeaders.TIMESTAMP.equals(headerName)
+				|| ObjectUtils.containsElement(this.readOnlyHeaders, headerName);
+	}
+
+	@Nullable
+	private Object getHeader(String headerName) {
+		if (this.delta != null && this.delta.containsKey(headerName)) {
+			return this.delta.get(headerName);
+		}
+		if (this.parent == null || (this.removed != null && this.removed.contains(headerName))) {
+			return null;
+		}
+		return this.parent.get(headerName);
+	}
+
+	private boolean containsHeader(String headerName) {
+		if (this.delta != null && this.delta.containsKey(headerName)) {
+			return true;
+		}
+		return this.parent != null && (this.removed == null || !this.removed.contains(headerName))
+				&& this.parent.containsKey(headerName);
+	}
+
+	private void doRemoveHeader(String headerName) {
+		if (this.delta != null) {
+			this.delta.remove(headerName);
+		}
+		if (this.parent != null && this.parent.containsKey(headerName)) {
+			if (this.removed == null) {
+				this.removed = new HashSet<>();
+			}
+			this.removed.add(headerName);
+		}
+		this.modified = true;
+	}
+
+
+	/**
+	 * Exposes the {@link IntegrationMessageHeaderAccessor} header type verification.
+	 */
+	private static final class HeaderTypeVerifier extends IntegrationMessageHeaderAccessor {
+
+		HeaderTypeVerifier() {
+			super(null);
+		}
+
+		void verify(String headerName, @Nullable Object headerValue) {
+			verifyType(headerName, headerValue);
+		}
+
+	}
+
+}
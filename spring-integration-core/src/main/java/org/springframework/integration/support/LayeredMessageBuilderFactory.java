@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.Arrays;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageBuilderFactory} which creates {@link LayeredMessageBuilder}s, so that
+ * each new message only stores the headers changed relative to the message it is built
+ * from. Register it as the {@code messageBuilderFactory} bean to use it for
+ * the framework components.
+ *
+ * @since 5.1
+ *
+ * @see LayeredMessageHeaders
+ */
+public class LayeredMessageBuilderFactory implements MessageBuilderFactory {
+
+	/**
+	 * The default number of layers after which the headers are flattened.
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 8;
+
+	private int maxDepth = DEFAULT_MAX_DEPTH;
+
+	private String[] readOnlyHeaders;
+
+	/**
+	 * Set the number of header layers after which the headers are flattened into a
+	 * single map, bounding the cost of lookups and the parent headers retained.
+	 * Defaults to {@value #DEFAULT_MAX_DEPTH}; 0 means always flatten.
+	 * @param maxDepth the maximum depth.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		Assert.isTrue(maxDepth >= 0, "'maxDepth' must not be negative");
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Specify a list of headers which should be considered as a read only
+	 * and prohibited from the population to the message.
+	 * @param readOnlyHeaders the list of headers for {@code readOnly} mode.
+	 * Defaults to {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP}.
+	 */
+	public void setReadOnlyHeaders(String... readOnlyHeaders) {
+		this.readOnlyHeaders = Arrays.copyOf(readOnlyHeaders, readOnlyHeaders.length);
+	}
+
+	/**
+	 * Add headers to the configured list of read only headers.
+	 * @param readOnlyHeaders the additional headers.
+	 */
+	public void addReadOnlyHeaders(String... readOnlyHeaders) {
+		String[] headers = this.readOnlyHeaders;
+		if (headers == null || headers.length == 0) {
+			headers = Arrays.copyOf(readOnlyHeaders, readOnlyHeaders.length);
+		}
+		else {
+			headers = Arrays.copyOf(headers, headers.length + readOnlyHeaders.length);
+			System.arraycopy(readOnlyHeaders, 0, headers, this.readOnlyHeaders.length, readOnlyHeaders.length);
+		}
+		this.readOnlyHeaders = headers;
+	}
+
+	@Override
+	public <T> LayeredMessageBuilder<T> fromMessage(Message<T> message) {
+		return LayeredMessageBuilder.fromMessage(message, this.maxDepth)
+				.readOnlyHeaders(this.readOnlyHeaders);
+	}
+
+	@Override
+	public <T> LayeredMessageBuilder<T> withPayload(T payload) {
+		return LayeredMessageBuilder.withPayload(payload, this.maxDepth)
+				.readOnlyHeaders(this.readOnlyHeaders);
+	}
+
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * A {@link MessageHeaders} implementation which stores only the entries changed
+ * (added, replaced or removed) relative to an immutable parent {@link MessageHeaders},
+ * instead of copying the whole header map for each new message.
+ * <p>
+ * Lookups fall through to the parent for headers not changed in this layer; iteration
+ * exposes the merged view, so these headers are indistinguishable from a regular
+ * {@link MessageHeaders} with the same entries. When the layer depth exceeds the
+ * configured maximum, the headers are flattened into a single layer.
+ * <p>
+ * Note that a layer keeps a reference to its parent headers, so header values removed
+ * by a downstream component are retained until the message is discarded.
+ *
+ * @since 5.1
+ *
+ * @see LayeredMessageBuilderFactory
+ */
+public final class LayeredMessageHeaders extends MessageHeaders {
+
+	private static final long serialVersionUID = -2472407183291342561L;
+
+	/*
+	 * MessageHeaders.equals() compares the raw header map of the other instance; the
+	 * merged view is installed there so that a plain MessageHeaders can be equal to a
+	 * LayeredMessageHeaders, as the other way around.
+	 */
+	private static final Field HEADERS_FIELD = ReflectionUtils.findField(MessageHeaders.class, "headers");
+
+	static {
+		ReflectionUtils.makeAccessible(HEADERS_FIELD);
+	}
+
+	@Nullable
+	private final MessageHeaders parent;
+
+	private final Map<String, Object> delta;
+
+	private final Set<String> removed;
+
+	private final int depth;
+
+	private final int size;
+
+	private transient Map<String, Object> view;
+
+	/**
+	 * Create an instance with the given changes on top of the parent headers.
+	 * The {@code delta} must contain the {@link #ID} and {@link #TIMESTAMP} of the new headers.
+	 * The {@code delta} and {@code removed} collections are used directly.
+	 * @param parent the parent headers, if any.
+	 * @param delta the added or replaced entries.
+	 * @param removed the keys removed from the parent.
+	 * @param maxDepth the depth after which the layers are flattened.
+	 */
+	private LayeredMessageHeaders(@Nullable MessageHeaders parent, Map<String, Object> delta, Set<String> removed,
+			int maxDepth) {
+
+		super(null, ID_VALUE_NONE, -1L);
+		int parentDepth = depthOf(parent);
+		if (parentDepth >= maxDepth) {
+			Map<String, Object> flattened = new HashMap<>(parent);
+			flattened.keySet().removeAll(removed);
+			flattened.putAll(delta);
+			this.parent = null;
+			this.delta = flattened;
+			this.removed = Collections.emptySet();
+			this.depth = 0;
+			this.size = flattened.size();
+		}
+		else {
+			this.parent = parent;
+			this.delta = delta;
+			this.removed = removed;
+			this.depth = parent == null ? 0 : parentDepth + 1;
+			int size = parent == null ? 0 : parent.size();
+			for (String key : removed) {
+				if (parent != null && parent.containsKey(key)) {
+					size--;
+				}
+			}
+			for (String key : delta.keySet()) {
+				if (parent == null || !parent.containsKey(key) || removed.contains(key)) {
+					size++;
+				}
+			}
+			this.size = size;
+		}
+		// a root layer is a plain (serializable) map; see writeReplace()
+		ReflectionUtils.setField(HEADERS_FIELD, this,
+				this.parent == null ? Collections.unmodifiableMap(this.delta) : getView());
+	}
+
+	/**
+	 * Create headers with the given changes on top of the parent headers, and a new
+	 * {@link #ID} and {@link #TIMESTAMP}.
+	 * @param parent the parent headers, if any.
+	 * @param delta the added or replaced entries; this map is used directly.
+	 * @param removed the keys removed from the parent; this set is used directly.
+	 * @param maxDepth the depth after which the layers are flattened.
+	 * @return the headers.
+	 */
+	static LayeredMessageHeaders newHeaders(@Nullable MessageHeaders parent, Map<String, Object> delta,
+			Set<String> removed, int maxDepth) {
+
+		delta.put(ID, getIdGenerator().generateId());
+		delta.put(TIMESTAMP, System.currentTimeMillis());
+		removed.remove(ID);
+		removed.remove(TIMESTAMP);
+		return new LayeredMessageHeaders(parent, delta, removed, maxDepth);
+	}
+
+	private static int depthOf(@Nullable MessageHeaders headers) {
+		if (headers instanceof LayeredMessageHeaders) {
+			return ((LayeredMessageHeaders) headers).depth;
+		}
+		return headers == null ? -1 : 0;
+	}
+
+	/**
+	 * Return the number of layers above the root headers.
+	 * @return the depth.
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	@Override
+	public UUID getId() {
+		return get(ID, UUID.class);
+	}
+
+	@Override
+	public Long getTimestamp() {
+		return get(TIMESTAMP, Long.class);
+	}
+
+	@Override
+	public Object getReplyChannel() {
+		return get(REPLY_CHANNEL);
+	}
+
+	@Override
+	public Object getErrorChannel() {
+		return get(ERROR_CHANNEL);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	@Nullable
+	public <T> T get(Object key, Class<T> type) {
+		Object value = get(key);
+		if (value == null) {
+			return null;
+		}
+		if (!type.isAssignableFrom(value.getClass())) {
+			throw new IllegalArgumentException("Incorrect type specified for header '" +
+					key + "'. Expected [" + type + "] but actual type is [" + value.getClass() + "]");
+		}
+		return (T) value;
+	}
+
+	@Override
+	public Object get(Object key) {
+		Object value = this.delta.get(key);
+		if (value != null || this.delta.containsKey(key)) {
+			return value;
+		}
+		if (this.parent == null || this.removed.contains(key)) {
+			return null;
+		}
+		return this.parent.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (this.delta.containsKey(key)) {
+			return true;
+		}
+		return this.parent != null && !this.removed.contains(key) && this.parent.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		return getView().containsValue(value);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return getView().entrySet();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return getView().keySet();
+	}
+
+	@Override
+	public Collection<Object> values() {
+		return getView().values();
+	}
+
+	@Override
+	protected Map<String, Object> getRawHeaders() {
+		return getView();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return this == other || (other instanceof MessageHeaders && getView().equals(other));
+	}
+
+	@Override
+	public int hashCode() {
+		return getView().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getView().toString();
+	}
+
+	private Map<String, Object> getView() {
+		if (this.view == null) {
+			this.view = new LayeredView();
+		}
+		return this.view;
+	}
+
+	/**
+	 * Serialize a flattened copy, without the parent layers; like {@link MessageHeaders},
+	 * non-serializable values are skipped.
+	 * @return the flattened headers.
+	 */
+	private Object writeReplace() {
+		if (this.parent == null && allSerializable(this.delta)) {
+			return this;
+		}
+		Map<String, Object> flattened = new HashMap<>();
+		for (Map.Entry<String, Object> entry : entrySet()) {
+			if (entry.getValue() instanceof Serializable) {
+				flattened.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new LayeredMessageHeaders(null, flattened, Collections.emptySet(), 0);
+	}
+
+	private static boolean allSerializable(Map<String, Object> map) {
+		for (Object value : map.values()) {
+			if (!(value instanceof Serializable)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * A read-only merged view of the layers; iterates the changed entries first,
+	 * then the parent entries which are neither replaced nor removed.
+	 */
+	private final class LayeredView extends AbstractMap<String, Object> {
+
+		private final Set<Map.Entry<String, Object>> entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+
+			@Override
+			public Iterator<Map.Entry<String, Object>> iterator() {
+				return new LayeredIterator();
+			}
+
+			@Override
+			public int size() {
+				return LayeredMessageHeaders.this.size;
+			}
+
+		};
+
+		LayeredView() {
+			super();
+		}
+
+		@Override
+		public Set<Map.Entry<String, Object>> entrySet() {
+			return this.entrySet;
+		}
+
+		@Override
+		public int size() {
+			return LayeredMessageHeaders.this.size;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return LayeredMessageHeaders.this.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			return LayeredMessageHeaders.this.get(key);
+		}
+
+	}
+
+	private final class LayeredIterator implements Iterator<Map.Entry<String, Object>> {
+
+		private final Iterator<Map.Entry<String, Object>> deltaIterator =
+				Collections.unmodifiableMap(LayeredMessageHeaders.this.delta).entrySet().iterator();
+
+		private final Iterator<Map.Entry<String, Object>> parentIterator =
+				LayeredMessageHeaders.this.parent == null
+						? Collections.emptyIterator()
+						: LayeredMessageHeaders.this.parent.entrySet().iterator();
+
+		private Map.Entry<String, Object> next;
+
+		LayeredIterator() {
+			super();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next != null) {
+				return true;
+			}
+			if (this.deltaIterator.hasNext()) {
+				this.next = this.deltaIterator.next();
+				return true;
+			}
+			while (this.parentIterator.hasNext()) {
+				Map.Entry<String, Object> candidate = this.parentIterator.next();
+				String key = candidate.getKey();
+				if (!LayeredMessageHeaders.this.delta.containsKey(key)
+						&& !LayeredMessageHeaders.this.removed.contains(key)) {
+					this.next = candidate;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Map.Entry<String, Object> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String, Object> entry = this.next;
+			this.next = null;
+			return entry;
+		}
+
+	}
+
+}
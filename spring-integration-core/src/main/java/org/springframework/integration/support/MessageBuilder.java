@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.support;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -313,8 +314,13 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public Message<T> build() {
+		return build(GenericMessage::new);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected Message<T> build(BiFunction<T, Map<String, Object>, Message<T>> messageCreator) {
 		if (!this.modified && !this.headerAccessor.isModified() && this.originalMessage != null
 				&& !containsReadOnly(this.originalMessage.getHeaders())) {
 			return this.originalMessage;
@@ -322,7 +328,7 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 		if (this.payload instanceof Throwable) {
 			return (Message<T>) new ErrorMessage((Throwable) this.payload, this.headerAccessor.toMap());
 		}
-		return new GenericMessage<T>(this.payload, this.headerAccessor.toMap());
+		return messageCreator.apply(this.payload, this.headerAccessor.toMap());
 	}
 
 	private boolean containsReadOnly(MessageHeaders headers) {
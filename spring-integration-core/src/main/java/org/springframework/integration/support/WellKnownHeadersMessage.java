@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * A {@link GenericMessage} which also holds the well-known integration headers
+ * ({@code correlationId}, {@code sequenceNumber}, {@code sequenceSize}, {@code priority}
+ * and {@code expirationDate}) in dedicated (primitive) fields, resolved once when the
+ * message is created. The {@link MessageHeaders} are used as is, so the map view is
+ * unchanged; the {@link StaticMessageHeaderAccessor} reads the fields instead of
+ * looking up (and unboxing) the map entries.
+ * <p>
+ * A header which is present with an unexpected type is not cached; the accessors fall
+ * back to the map lookup for it, with the same error semantics as for other messages.
+ *
+ * @param <T> the payload type.
+ *
+ * @since 5.1
+ *
+ * @see WellKnownHeadersMessageBuilderFactory
+ */
+public class WellKnownHeadersMessage<T> extends GenericMessage<T> {
+
+	private static final long serialVersionUID = 4868431726402351787L;
+
+	private static final int SEQUENCE_NUMBER = 1;
+
+	private static final int SEQUENCE_SIZE = 1 << 1;
+
+	private static final int PRIORITY = 1 << 2;
+
+	private static final int EXPIRATION_DATE = 1 << 3;
+
+	private transient int resolved;
+
+	private transient int present;
+
+	private transient Object correlationId;
+
+	private transient int sequenceNumber;
+
+	private transient int sequenceSize;
+
+	private transient int priority;
+
+	private transient long expirationDate;
+
+	/**
+	 * Create a message with the given payload and headers; the headers are used directly.
+	 * @param payload the payload.
+	 * @param headers the headers.
+	 */
+	public WellKnownHeadersMessage(T payload, MessageHeaders headers) {
+		super(payload, headers);
+		resolveHeaders();
+	}
+
+	private void resolveHeaders() {
+		MessageHeaders headers = getHeaders();
+		this.correlationId = headers.get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+		this.resolved = 0;
+		this.present = 0;
+
+		Object value = headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER);
+		if (value == null || value instanceof Number) {
+			this.sequenceNumber = value != null ? ((Number) value).intValue() : 0;
+			this.resolved |= SEQUENCE_NUMBER;
+		}
+
+		value = headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE);
+		if (value == null || value instanceof Number) {
+			this.sequenceSize = value != null ? ((Number) value).intValue() : 0;
+			this.resolved |= SEQUENCE_SIZE;
+		}
+
+		value = headers.get(IntegrationMessageHeaderAccessor.PRIORITY);
+		if (value == null || value instanceof Number) {
+			if (value != null) {
+				this.priority = ((Number) value).intValue();
+				this.present |= PRIORITY;
+			}
+			this.resolved |= PRIORITY;
+		}
+
+		value = headers.get(IntegrationMessageHeaderAccessor.EXPIRATION_DATE);
+		if (value == null || value instanceof Long) {
+			if (value != null) {
+				this.expirationDate = (Long) value;
+				this.present |= EXPIRATION_DATE;
+			}
+			this.resolved |= EXPIRATION_DATE;
+		}
+	}
+
+	@Nullable
+	public Object getCorrelationId() {
+		return this.correlationId;
+	}
+
+	/**
+	 * Return true if the {@code sequenceNumber} is resolved into a field.
+	 * @return true if the field can be used.
+	 */
+	public boolean isSequenceNumberResolved() {
+		return (this.resolved & SEQUENCE_NUMBER) != 0;
+	}
+
+	/**
+	 * Return the {@code sequenceNumber}, or 0 if the header is absent.
+	 * @return the sequence number.
+	 */
+	public int getSequenceNumber() {
+		return this.sequenceNumber;
+	}
+
+	/**
+	 * Return true if the {@code sequenceSize} is resolved into a field.
+	 * @return true if the field can be used.
+	 */
+	public boolean isSequenceSizeResolved() {
+		return (this.resolved & SEQUENCE_SIZE) != 0;
+	}
+
+	/**
+	 * Return the {@code sequenceSize}, or 0 if the header is absent.
+	 * @return the sequence size.
+	 */
+	public int getSequenceSize() {
+		return this.sequenceSize;
+	}
+
+	/**
+	 * Return true if the {@code priority} is resolved into a field.
+	 * @return true if the field can be used.
+	 */
+	public boolean isPriorityResolved() {
+		return (this.resolved & PRIORITY) != 0;
+	}
+
+	public boolean hasPriority() {
+		return (this.present & PRIORITY) != 0;
+	}
+
+	/**
+	 * Return the {@code priority}; only meaningful if {@link #hasPriority()}.
+	 * @return the priority.
+	 */
+	public int getPriority() {
+		return this.priority;
+	}
+
+	/**
+	 * Return true if the {@code expirationDate} is resolved into a field.
+	 * @return true if the field can be used.
+	 */
+	public boolean isExpirationDateResolved() {
+		return (this.resolved & EXPIRATION_DATE) != 0;
+	}
+
+	public boolean hasExpirationDate() {
+		return (this.present & EXPIRATION_DATE) != 0;
+	}
+
+	/**
+	 * Return the {@code expirationDate}; only meaningful if {@link #hasExpirationDate()}.
+	 * @return the expiration date.
+	 */
+	public long getExpirationDate() {
+		return this.expirationDate;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		resolveHeaders();
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+
+/**
+ * A message builder which delegates to another {@link AbstractIntegrationMessageBuilder}
+ * and builds a {@link WellKnownHeadersMessage} directly from its headers, instead of
+ * a {@link GenericMessage}. Other message types, e.g.
+ * {@link org.springframework.messaging.support.ErrorMessage}s, as well as the unmodified
+ * original message, are returned as is.
+ *
+ * @param <T> the payload type.
+ *
+ * @since 5.1
+ *
+ * @see WellKnownHeadersMessageBuilderFactory
+ */
+public final class WellKnownHeadersMessageBuilder<T> extends AbstractIntegrationMessageBuilder<T> {
+
+	private final AbstractIntegrationMessageBuilder<T> delegate;
+
+	@Nullable
+	private final Message<T> originalMessage;
+
+	/**
+	 * Create an instance delegating to the provided builder.
+	 * @param delegate the builder to delegate to.
+	 * @param originalMessage the message the delegate was created from, if any.
+	 */
+	public WellKnownHeadersMessageBuilder(AbstractIntegrationMessageBuilder<T> delegate,
+			@Nullable Message<T> originalMessage) {
+
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+		this.originalMessage = originalMessage;
+	}
+
+	@Override
+	public T getPayload() {
+		return this.delegate.getPayload();
+	}
+
+	@Override
+	public Map<String, Object> getHeaders() {
+		return this.delegate.getHeaders();
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> setHeader(String headerName, @Nullable Object headerValue) {
+		this.delegate.setHeader(headerName, headerValue);
+		return this;
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> setHeaderIfAbsent(String headerName, Object headerValue) {
+		this.delegate.setHeaderIfAbsent(headerName, headerValue);
+		return this;
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> removeHeaders(String... headerPatterns) {
+		this.delegate.removeHeaders(headerPatterns);
+		return this;
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> removeHeader(String headerName) {
+		this.delegate.removeHeader(headerName);
+		return this;
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> copyHeaders(@Nullable Map<String, ?> headersToCopy) {
+		this.delegate.copyHeaders(headersToCopy);
+		return this;
+	}
+
+	@Override
+	public WellKnownHeadersMessageBuilder<T> copyHeadersIfAbsent(@Nullable Map<String, ?> headersToCopy) {
+		this.delegate.copyHeadersIfAbsent(headersToCopy);
+		return this;
+	}
+
+	@Override
+	protected List<List<Object>> getSequenceDetails() {
+		return this.delegate.getSequenceDetails();
+	}
+
+	@Override
+	protected Object getCorrelationId() {
+		return this.delegate.getCorrelationId();
+	}
+
+	@Override
+	protected Object getSequenceNumber() {
+		return this.delegate.getSequenceNumber();
+	}
+
+	@Override
+	protected Object getSequenceSize() {
+		return this.delegate.getSequenceSize();
+	}
+
+	@Override
+	public Message<T> build() {
+		Message<T> message = this.delegate.build(WellKnownHeadersMessageBuilder::newMessage);
+		if (message == this.originalMessage || !GenericMessage.class.equals(message.getClass())) {
+			return message;
+		}
+		// the delegate doesn't support the message creator
+		return new WellKnownHeadersMessage<>(message.getPayload(), message.getHeaders());
+	}
+
+	private static <T> Message<T> newMessage(T payload, Map<String, Object> headers) {
+		return headers instanceof MessageHeaders
+				? new WellKnownHeadersMessage<>(payload, (MessageHeaders) headers)
+				: new WellKnownHeadersMessage<>(payload, new MessageHeaders(headers));
+	}
+
+}
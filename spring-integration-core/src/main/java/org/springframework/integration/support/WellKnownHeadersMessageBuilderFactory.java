@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageBuilderFactory} which builds {@link WellKnownHeadersMessage}s, so the
+ * well-known integration headers can be read from fields via the
+ * {@link org.springframework.integration.StaticMessageHeaderAccessor}. The headers
+ * themselves are built by a delegate factory; by default a {@link DefaultMessageBuilderFactory}.
+ * Register it as the {@code messageBuilderFactory} bean to use it for the framework components.
+ *
+ * @since 5.1
+ */
+public class WellKnownHeadersMessageBuilderFactory implements MessageBuilderFactory {
+
+	private final MessageBuilderFactory delegate;
+
+	public WellKnownHeadersMessageBuilderFactory() {
+		this(new DefaultMessageBuilderFactory());
+	}
+
+	/**
+	 * Create an instance delegating to the provided factory, e.g. a
+	 * {@link LayeredMessageBuilderFactory}.
+	 * @param delegate the factory to build the messages' headers.
+	 */
+	public WellKnownHeadersMessageBuilderFactory(MessageBuilderFactory delegate) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public <T> WellKnownHeadersMessageBuilder<T> fromMessage(Message<T> message) {
+		return new WellKnownHeadersMessageBuilder<>(this.delegate.fromMessage(message), message);
+	}
+
+	@Override
+	public <T> WellKnownHeadersMessageBuilder<T> withPayload(T payload) {
+		return new WellKnownHeadersMessageBuilder<>(this.delegate.withPayload(payload), null);
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.locks;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link LockRegistry} which gives each key its own {@link ReentrantLock}, so operations
+ * on different keys never wait for each other, unlike the {@link DefaultLockRegistry}
+ * where keys with the same masked hash code share a lock.
+ * <p>
+ * A key's lock exists only while some thread holds it or waits for it: every acquisition
+ * counts a reference to it and every {@link Lock#unlock()} releases one; when the last
+ * reference is released the lock is removed from the registry and kept in a pool (up to
+ * {@link #setMaxPoolSize(int) maxPoolSize}) for the next key. Therefore the registry does
+ * not grow with the number of keys ever seen, and it does not need expiring.
+ * <p>
+ * The registry counts the acquisitions, the acquisitions which had to wait for another
+ * thread and the time spent waiting, to help sizing the concurrency of the components
+ * using it.
+ * <p>
+ * The {@link Lock} returned from {@link #obtain(Object)} is a lightweight handle for the
+ * key and may be kept and used for several acquisitions; {@link Lock#newCondition()} is
+ * not supported.
+ *
+ * @since 5.1
+ */
+public final class PooledLockRegistry implements LockRegistry {
+
+	private static final int DEFAULT_MAX_POOL_SIZE = 256;
+
+	private final ConcurrentMap<Object, KeyLock> locks = new ConcurrentHashMap<>();
+
+	private final Queue<ReentrantLock> pool = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger poolSize = new AtomicInteger();
+
+	private final LongAdder acquisitions = new LongAdder();
+
+	private final LongAdder contendedAcquisitions = new LongAdder();
+
+	private final LongAdder waitTime = new LongAdder();
+
+	private volatile int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+
+	/**
+	 * Set the maximum number of released locks to keep for reuse; further released locks
+	 * are left to the garbage collector. Default 256.
+	 * @param maxPoolSize the maximum number of pooled locks.
+	 */
+	public void setMaxPoolSize(int maxPoolSize) {
+		Assert.isTrue(maxPoolSize >= 0, "'maxPoolSize' must not be negative");
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	@Override
+	public Lock obtain(Object lockKey) {
+		Assert.notNull(lockKey, "'lockKey' must not be null");
+		return new PooledLock(lockKey);
+	}
+
+	/**
+	 * Return the number of keys currently locked or waited for.
+	 * @return the number of active keys.
+	 */
+	public int getActiveKeyCount() {
+		return this.locks.size();
+	}
+
+	/**
+	 * Return the number of released locks kept for reuse.
+	 * @return the pool size.
+	 */
+	public int getPoolSize() {
+		return this.poolSize.get();
+	}
+
+	/**
+	 * Return the number of successful lock acquisitions, including reentrant ones.
+	 * @return the acquisition count.
+	 */
+	public long getAcquisitionCount() {
+		return this.acquisitions.sum();
+	}
+
+	/**
+	 * Return the number of lock attempts which found the lock held by another thread,
+	 * whether they then waited for it or gave up.
+	 * @return the contended attempt count.
+	 */
+	public long getContendedCount() {
+		return this.contendedAcquisitions.sum();
+	}
+
+	/**
+	 * Return the total time threads have spent waiting for locks held by other threads.
+	 * @return the wait time in milliseconds.
+	 */
+	public long getWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.waitTime.sum());
+	}
+
+	/**
+	 * Reset the acquisition, contention and wait time statistics.
+	 */
+	public void resetStatistics() {
+		this.acquisitions.reset();
+		this.contendedAcquisitions.reset();
+		this.waitTime.reset();
+	}
+
+	private KeyLock reference(Object key) {
+		return this.locks.compute(key, (k, keyLock) -> {
+			KeyLock referenced = keyLock;
+			if (referenced == null) {
+				referenced = new KeyLock(borrow());
+			}
+			referenced.references++;
+			return referenced;
+		});
+	}
+
+	private void release(Object key) {
+		this.locks.computeIfPresent(key, (k, keyLock) -> {
+			if (--keyLock.references == 0) {
+				giveBack(keyLock.delegate);
+				return null;
+			}
+			return keyLock;
+		});
+	}
+
+	private ReentrantLock borrow() {
+		ReentrantLock lock = this.pool.poll();
+		if (lock != null) {
+			this.poolSize.decrementAndGet();
+			return lock;
+		}
+		return new ReentrantLock();
+	}
+
+	private void giveBack(ReentrantLock lock) {
+		if (this.poolSize.incrementAndGet() <= this.maxPoolSize) {
+			this.pool.offer(lock);
+		}
+		else {
+			this.poolSize.decrementAndGet();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PooledLockRegistry{" +
+				"activeKeys=" + getActiveKeyCount() +
+				", pooled=" + getPoolSize() +
+				", acquisitions=" + getAcquisitionCount() +
+				", contended=" + getContendedCount() +
+				", waitTime=" + getWaitTime() +
+				'}';
+	}
+
+	/**
+	 * The lock of an active key; the references are only changed under the map's lock for
+	 * the key.
+	 */
+	private static final class KeyLock {
+
+		private final ReentrantLock delegate;
+
+		private int references;
+
+		KeyLock(ReentrantLock delegate) {
+			this.delegate = delegate;
+		}
+
+	}
+
+	private final class PooledLock implements Lock {
+
+		private final Object lockKey;
+
+		PooledLock(Object lockKey) {
+			this.lockKey = lockKey;
+		}
+
+		@Override
+		public void lock() {
+			ReentrantLock delegate = reference(this.lockKey).delegate;
+			if (!delegate.tryLock()) {
+				PooledLockRegistry.this.contendedAcquisitions.increment();
+				long start = System.nanoTime();
+				delegate.lock();
+				PooledLockRegistry.this.waitTime.add(System.nanoTime() - start);
+			}
+			PooledLockRegistry.this.acquisitions.increment();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			ReentrantLock delegate = reference(this.lockKey).delegate;
+			if (!delegate.tryLock()) {
+				PooledLockRegistry.this.contendedAcquisitions.increment();
+				long start = System.nanoTime();
+				try {
+					delegate.lockInterruptibly();
+				}
+				catch (InterruptedException e) {
+					release(this.lockKey);
+					throw e;
+				}
+				finally {
+					PooledLockRegistry.this.waitTime.add(System.nanoTime() - start);
+				}
+			}
+			PooledLockRegistry.this.acquisitions.increment();
+		}
+
+		@Override
+		public boolean tryLock() {
+			ReentrantLock delegate = reference(this.lockKey).delegate;
+			if (delegate.tryLock()) {
+				PooledLockRegistry.this.acquisitions.increment();
+				return true;
+			}
+			PooledLockRegistry.this.contendedAcquisitions.increment();
+			release(this.lockKey);
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			ReentrantLock delegate = reference(this.lockKey).delegate;
+			if (!delegate.tryLock()) {
+				PooledLockRegistry.this.contendedAcquisitions.increment();
+				long start = System.nanoTime();
+				boolean locked = false;
+				try {
+					locked = delegate.tryLock(time, unit);
+				}
+				finally {
+					PooledLockRegistry.this.waitTime.add(System.nanoTime() - start);
+					if (!locked) {
+						release(this.lockKey);
+					}
+				}
+				if (!locked) {
+					return false;
+				}
+			}
+			PooledLockRegistry.this.acquisitions.increment();
+			return true;
+		}
+
+		@Override
+		public void unlock() {
+			KeyLock keyLock = PooledLockRegistry.this.locks.get(this.lockKey);
+			if (keyLock == null || !keyLock.delegate.isHeldByCurrentThread()) {
+				throw new IllegalMonitorStateException("The lock for [" + this.lockKey
+						+ "] is not held by the current thread");
+			}
+			keyLock.delegate.unlock();
+			release(this.lockKey);
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		@Override
+		public String toString() {
+			return "PooledLock [lockKey=" + this.lockKey + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, lock-free multi-producer/multi-consumer {@link BlockingQueue} backed by a
+ * preallocated array ring buffer. Each slot carries a sequence number, so producers and
+ * consumers only compete on a single CAS for their own end of the buffer and no node is
+ * allocated per element.
+ * <p>
+ * The capacity is rounded up to the next power of two.
+ * Blocking operations do not use locks or conditions; instead a thread that cannot make
+ * progress waits according to the configured {@link WaitStrategy}.
+ * <p>
+ * The {@link #iterator()} is a weakly consistent snapshot and does not support removal.
+ * {@link #remove(Object)} marks the element as removed in its slot; the slot is released
+ * when the consumers reach it, so it still counts against the {@link #remainingCapacity()}
+ * until then.
+ *
+ * @param <E> the element type.
+ *
+ * @since 5.1
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private static final long PARK_NANOS = 1000L;
+
+	private static final Object REMOVED = new Object();
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final AtomicReferenceArray<Object> buffer;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicLong removed = new AtomicLong();
+
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Create a queue with at least the provided capacity and the {@link WaitStrategy#PARK}
+	 * wait strategy.
+	 * @param capacity the minimum capacity; rounded up to the next power of two.
+	 */
+	public RingBufferBlockingQueue(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Create a queue with at least the provided capacity and wait strategy.
+	 * @param capacity the minimum capacity; rounded up to the next power of two.
+	 * @param waitStrategy the {@link WaitStrategy} for blocking operations.
+	 */
+	public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+		Assert.isTrue(capacity > 0, "'capacity' must be a positive integer");
+		Assert.isTrue(capacity <= 1 << 30, "'capacity' must not be greater than 2^30");
+		Assert.notNull(waitStrategy, "'waitStrategy' must not be null");
+		this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.buffer = new AtomicReferenceArray<>(this.capacity);
+		this.sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			this.sequences.set(i, i);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Return the actual (power of two) capacity of this queue.
+	 * @return the capacity.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Assert.notNull(e, "'e' must not be null");
+		long position = this.tail.get();
+		int index;
+		while (true) {
+			index = (int) (position & this.mask);
+			long difference = this.sequences.get(index) - position;
+			if (difference == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = this.tail.get();
+			}
+			else if (difference < 0) {
+				return false;
+			}
+			else {
+				position = this.tail.get();
+			}
+		}
+		this.buffer.lazySet(index, e);
+		this.sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		while (true) {
+			long position = this.head.get();
+			int index;
+			while (true) {
+				index = (int) (position & this.mask);
+				long difference = this.sequences.get(index) - (position + 1);
+				if (difference == 0) {
+					if (this.head.compareAndSet(position, position + 1)) {
+						break;
+					}
+					position = this.head.get();
+				}
+				else if (difference < 0) {
+					return null;
+				}
+				else {
+					position = this.head.get();
+				}
+			}
+			// getAndSet() so a concurrent remove(Object) either wins the element or misses it
+			Object element = this.buffer.getAndSet(index, null);
+			this.sequences.lazySet(index, position + this.capacity);
+			if (element != REMOVED) {
+				return (E) element;
+			}
+			this.removed.decrementAndGet();
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		while (true) {
+			long currentHead = this.head.get();
+			long currentTail = this.tail.get();
+			for (long position = currentHead; position < currentTail; position++) {
+				int index = (int) (position & this.mask);
+				if (this.sequences.get(index) != position + 1) {
+					break;
+				}
+				Object element = this.buffer.get(index);
+				if (element == null) {
+					break;
+				}
+				if (element != REMOVED) {
+					if (this.head.get() <= position) {
+						return (E) element;
+					}
+					break;
+				}
+			}
+			if (this.head.get() == currentHead) {
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		int attempt = 0;
+		while (!offer(e)) {
+			idle(attempt++);
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (offer(e)) {
+			return true;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int attempt = 0;
+		while (!offer(e)) {
+			if (deadline - System.nanoTime() <= 0) {
+				return false;
+			}
+			idle(attempt++);
+		}
+		return true;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		int attempt = 0;
+		E element;
+		while ((element = poll()) == null) {
+			idle(attempt++);
+		}
+		return element;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if (element != null) {
+			return element;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int attempt = 0;
+		while ((element = poll()) == null) {
+			if (deadline - System.nanoTime() <= 0) {
+				return null;
+			}
+			idle(attempt++);
+		}
+		return element;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return this.capacity - occupied();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		Assert.notNull(c, "'c' must not be null");
+		Assert.isTrue(c != this, "Cannot drain a queue to itself");
+		int drained = 0;
+		while (drained < maxElements) {
+			E element = poll();
+			if (element == null) {
+				break;
+			}
+			c.add(element);
+			drained++;
+		}
+		return drained;
+	}
+
+	@Override
+	public int size() {
+		return (int) Math.max(0, occupied() - this.removed.get());
+	}
+
+	/**
+	 * Return the number of slots in use, including the ones of removed elements.
+	 */
+	private int occupied() {
+		while (true) {
+			long currentHead = this.head.get();
+			long currentTail = this.tail.get();
+			if (this.head.get() == currentHead) {
+				long size = currentTail - currentHead;
+				return (int) Math.max(0, Math.min(size, this.capacity));
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Remove a single instance of the element, if present. The element is replaced with a
+	 * marker in its slot, which the consumers skip.
+	 * @param o the element to remove.
+	 * @return true if the element was removed.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+		long currentTail = this.tail.get();
+		for (long position = this.head.get(); position < currentTail; position++) {
+			int index = (int) (position & this.mask);
+			if (this.sequences.get(index) != position + 1) {
+				continue;
+			}
+			Object element = this.buffer.get(index);
+			if (element != null && element != REMOVED && o.equals(element)
+					&& this.buffer.compareAndSet(index, element, REMOVED)) {
+				this.removed.incrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Iterator<E> iterator() {
+		long currentHead = this.head.get();
+		long currentTail = this.tail.get();
+		List<E> snapshot = new ArrayList<>((int) Math.max(0, Math.min(currentTail - currentHead, this.capacity)));
+		for (long position = currentHead; position < currentTail; position++) {
+			Object element = this.buffer.get((int) (position & this.mask));
+			if (element != null && element != REMOVED) {
+				snapshot.add((E) element);
+			}
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	private void idle(int attempt) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		this.waitStrategy.idle(attempt);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[capacity=" + this.capacity + ", size=" + size()
+				+ ", waitStrategy=" + this.waitStrategy + "]";
+	}
+
+	/**
+	 * The strategy for a thread which cannot make progress in a blocking operation.
+	 */
+	public enum WaitStrategy {
+
+		/**
+		 * Busy-spin; the lowest latency at the cost of a fully occupied core per waiting thread.
+		 */
+		SPIN {
+
+			@Override
+			void idle(int attempt) {
+				// busy spin
+			}
+
+		},
+
+		/**
+		 * Spin for a short while and then {@link Thread#yield()} to other threads.
+		 */
+		YIELD {
+
+			@Override
+			void idle(int attempt) {
+				if (attempt > SPIN_TRIES) {
+					Thread.yield();
+				}
+			}
+
+		},
+
+		/**
+		 * Spin, then yield and eventually park the thread for a short period; the most CPU-friendly option.
+		 */
+		PARK {
+
+			@Override
+			void idle(int attempt) {
+				if (attempt > SPIN_TRIES + YIELD_TRIES) {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+				else if (attempt > SPIN_TRIES) {
+					Thread.yield();
+				}
+			}
+
+		};
+
+		private static final int SPIN_TRIES = 100;
+
+		private static final int YIELD_TRIES = 100;
+
+		abstract void idle(int attempt);
+
+	}
+
+}
@@ -17,15 +17,18 @@
 package org.springframework.integration.aggregator;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -41,6 +44,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.handler.AbstractMessageHandler;
@@ -48,6 +52,7 @@ import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.SimpleMessageGroupFactory;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.locks.PooledLockRegistry;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandlingException;
@@ -264,6 +269,33 @@ public class AggregatorTests {
 		assertEquals(reply.getPayload(), 105);
 	}
 
+	@Test
+	public void testPooledLockRegistry() {
+		PooledLockRegistry lockRegistry = new PooledLockRegistry();
+		AggregatingMessageHandler handler =
+				new AggregatingMessageHandler(new MultiplyingProcessor(),
+						new SimpleMessageStore(0, 0, lockRegistry));
+		handler.setLockRegistry(lockRegistry);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		QueueChannel replyChannel = new QueueChannel();
+		handler.handleMessage(createMessage(3, "ABC", 2, 1, replyChannel, null));
+		handler.handleMessage(createMessage(5, "DEF", 2, 1, replyChannel, null));
+		handler.handleMessage(createMessage(7, "DEF", 2, 2, replyChannel, null));
+		handler.handleMessage(createMessage(11, "ABC", 2, 2, replyChannel, null));
+
+		Message<?> reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(35, reply.getPayload());
+		reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(33, reply.getPayload());
+		assertEquals(0, lockRegistry.getActiveKeyCount());
+		assertThat(lockRegistry.getAcquisitionCount(), greaterThan(4L));
+		assertEquals(0, lockRegistry.getContendedCount());
+	}
+
 	@Test
 	public void testShouldNotSendPartialResultOnTimeoutByDefault() throws InterruptedException {
 		QueueChannel discardChannel = new QueueChannel();
@@ -306,6 +338,102 @@ public class AggregatorTests {
 		assertEquals(1, this.store.getMessageGroup("ABC").size());
 	}
 
+	@Test
+	public void testIncrementalAggregation() {
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new MultiplyingProcessor(), this.store);
+		handler.setIncrementalAggregator(new MultiplyingAggregator());
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		handler.handleMessage(createMessage(3, "ABC", 3, 1, replyChannel, null));
+		Message<?> firstState = this.store.getMessageGroup("ABC").getOne();
+		handler.handleMessage(createMessage(5, "ABC", 3, 2, replyChannel, null));
+		MessageGroup group = this.store.getMessageGroup("ABC");
+		assertEquals(1, group.size());
+		assertEquals(replyChannel, group.getOne().getHeaders().getReplyChannel());
+		// the previous state message is not modified
+		assertEquals(BitSet.valueOf(new long[] { 0b10 }), accumulatedSequences(firstState));
+		assertEquals(BitSet.valueOf(new long[] { 0b110 }), accumulatedSequences(group.getOne()));
+		assertNull(replyChannel.receive(0));
+		handler.handleMessage(createMessage(7, "ABC", 3, 3, replyChannel, null));
+		Message<?> reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(105, reply.getPayload());
+		assertNull(accumulatedSequences(reply));
+		group = this.store.getMessageGroup("ABC");
+		assertEquals(0, group.size());
+		assertTrue(group.isComplete());
+	}
+
+	@Test
+	public void testIncrementalAggregationDiscardsDuplicateSequence() {
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new MultiplyingProcessor(), this.store);
+		handler.setIncrementalAggregator(new MultiplyingAggregator());
+		QueueChannel discardChannel = new QueueChannel();
+		handler.setDiscardChannel(discardChannel);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		handler.handleMessage(createMessage(3, "ABC", 3, 1, replyChannel, null));
+		handler.handleMessage(createMessage(5, "ABC", 3, 2, replyChannel, null));
+		Message<?> duplicate = createMessage(11, "ABC", 3, 2, replyChannel, null);
+		handler.handleMessage(duplicate);
+		assertSame(duplicate, discardChannel.receive(0));
+		handler.handleMessage(createMessage(13, "ABC", 3, 1, replyChannel, null));
+		assertNotNull(discardChannel.receive(0));
+		assertNull(replyChannel.receive(0));
+		handler.handleMessage(createMessage(7, "ABC", 3, 3, replyChannel, null));
+		Message<?> reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(105, reply.getPayload());
+	}
+
+	@Test
+	public void testIncrementalAggregationPartialResultOnTimeout() {
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new MultiplyingProcessor(), this.store);
+		handler.setIncrementalAggregator(new MultiplyingAggregator());
+		handler.setSendPartialResultOnExpiry(true);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		handler.handleMessage(createMessage(3, "ABC", 3, 1, replyChannel, null));
+		handler.handleMessage(createMessage(5, "ABC", 3, 2, replyChannel, null));
+		this.store.expireMessageGroups(-10000);
+		Message<?> reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(15, reply.getPayload());
+		assertNull(accumulatedSequences(reply));
+		assertEquals(0, this.store.getMessageGroupCount());
+	}
+
+	@Test
+	public void testIncrementalAggregationDiscardOnTimeout() {
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new MultiplyingProcessor(), this.store);
+		handler.setIncrementalAggregator(new MultiplyingAggregator());
+		QueueChannel discardChannel = new QueueChannel();
+		handler.setDiscardChannel(discardChannel);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		handler.handleMessage(createMessage(3, "ABC", 3, 1, replyChannel, null));
+		handler.handleMessage(createMessage(5, "ABC", 3, 2, replyChannel, null));
+		this.store.expireMessageGroups(-10000);
+		assertNull(replyChannel.receive(0));
+		Message<?> discarded = discardChannel.receive(0);
+		assertNotNull(discarded);
+		assertNull(accumulatedSequences(discarded));
+		assertNull(discardChannel.receive(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testIncrementalAggregationWithReleaseStrategy() {
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(new MultiplyingProcessor(), this.store);
+		handler.setIncrementalAggregator(new MultiplyingAggregator());
+		handler.setReleaseStrategy(group -> true);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+	}
+
 	@Test
 	public void testGroupRemainsAfterTimeout() throws InterruptedException {
 		this.aggregator.setSendPartialResultOnExpiry(true);
@@ -457,6 +585,46 @@ public class AggregatorTests {
 	}
 
 
+	private static BitSet accumulatedSequences(Message<?> message) {
+		return message.getHeaders().entrySet().stream()
+				.filter(header -> header.getKey().endsWith(".accumulatedSequences"))
+				.map(header -> (BitSet) header.getValue())
+				.findFirst()
+				.orElse(null);
+	}
+
+	/**
+	 * The state is {count, sequence size, product}.
+	 */
+	private static class MultiplyingAggregator implements IncrementalAggregator<int[]> {
+
+		MultiplyingAggregator() {
+			super();
+		}
+
+		@Override
+		public int[] initialState(Message<?> message) {
+			return new int[] { 0, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+					Integer.class), 1 };
+		}
+
+		@Override
+		public int[] accumulate(int[] state, Message<?> message) {
+			return new int[] { state[0] + 1, state[1], state[2] * (Integer) message.getPayload() };
+		}
+
+		@Override
+		public boolean canRelease(int[] state) {
+			return state[0] == state[1];
+		}
+
+		@Override
+		public Object finish(int[] state) {
+			return state[2];
+		}
+
+	}
+
 	private class MultiplyingProcessor implements MessageGroupProcessor {
 
 		MultiplyingProcessor() {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,8 @@ import static org.mockito.Mockito.mock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -36,7 +38,9 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.scheduling.TimingWheelTaskScheduler;
 import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.store.SequenceWindowMessageGroupFactory;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
@@ -107,6 +111,33 @@ public class ResequencerTests {
 		assertNull(replyChannel.receive(0));
 	}
 
+	@Test
+	public void testSequenceWindowResequencing() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setMessageGroupFactory(new SequenceWindowMessageGroupFactory());
+		this.resequencer = new ResequencingMessageHandler(this.processor, store);
+		this.resequencer.setReleasePartialSequences(true);
+		this.resequencer.setBeanFactory(mock(BeanFactory.class));
+		this.resequencer.afterPropertiesSet();
+
+		QueueChannel replyChannel = new QueueChannel();
+		List<Integer> sequences = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++) {
+			sequences.add(i);
+		}
+		Collections.shuffle(sequences, new Random(42));
+		for (int sequence : sequences) {
+			this.resequencer.handleMessage(createMessage("foo", "ABC", 1000, sequence, replyChannel));
+		}
+		for (int i = 1; i <= 1000; i++) {
+			Message<?> reply = replyChannel.receive(0);
+			assertNotNull(reply);
+			assertThat(new IntegrationMessageHeaderAccessor(reply).getSequenceNumber(), is(i));
+		}
+		assertNull(replyChannel.receive(0));
+		assertEquals(0, store.getMessageGroup("ABC").size());
+	}
+
 	@Test
 	public void testBasicUnboundedResequencing() throws InterruptedException {
 		SequenceSizeReleaseStrategy releaseStrategy = new SequenceSizeReleaseStrategy();
@@ -374,6 +405,29 @@ public class ResequencerTests {
 		assertNotNull(out3);
 	}
 
+	@Test
+	public void testTimeoutWithTimingWheelScheduler() throws Exception {
+		this.resequencer.setGroupTimeoutExpression(new SpelExpressionParser().parseExpression("100"));
+		TimingWheelTaskScheduler taskScheduler = new TimingWheelTaskScheduler();
+		this.resequencer.setTaskScheduler(taskScheduler);
+		QueueChannel discardChannel = new QueueChannel();
+		this.resequencer.setDiscardChannel(discardChannel);
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setOutputChannel(replyChannel);
+
+		this.resequencer.handleMessage(createMessage("789", "ABC", 3, 3, null));
+		this.resequencer.handleMessage(createMessage("456", "ABC", 3, 2, null));
+		this.resequencer.handleMessage(createMessage("987", "CBA", 2, 2, null));
+		this.resequencer.handleMessage(createMessage("654", "CBA", 2, 1, null));
+		assertNotNull(replyChannel.receive(0));
+		assertNotNull(replyChannel.receive(0));
+		assertNull(replyChannel.receive(0));
+		assertNotNull(discardChannel.receive(10000));
+		assertNotNull(discardChannel.receive(10000));
+		assertNull(discardChannel.receive(200));
+		taskScheduler.destroy();
+	}
+
 	@Test
 	public void testTimeoutDontExpire() throws InterruptedException {
 		this.resequencer.setGroupTimeoutExpression(new SpelExpressionParser().parseExpression("100"));
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class PartitionedChannelTests {
+
+	@Test
+	public void testOrderPerPartitionKey() throws Exception {
+		PartitionedChannel channel = new PartitionedChannel(3, message -> message.getHeaders().get("key"));
+		channel.setBeanName("testChannel");
+		channel.afterPropertiesSet();
+		int perKey = 100;
+		int keys = 5;
+		CountDownLatch latch = new CountDownLatch(perKey * keys);
+		Map<Object, List<Integer>> received = new ConcurrentHashMap<>();
+		Map<Object, String> threads = new ConcurrentHashMap<>();
+		channel.subscribe(message -> {
+			Object key = message.getHeaders().get("key");
+			received.computeIfAbsent(key, k -> new ArrayList<>()).add((Integer) message.getPayload());
+			String previous = threads.put(key, Thread.currentThread().getName());
+			assertThat(previous).isIn(null, Thread.currentThread().getName());
+			latch.countDown();
+		});
+		for (int i = 0; i < perKey; i++) {
+			for (int key = 0; key < keys; key++) {
+				channel.send(MessageBuilder.withPayload(i).setHeader("key", key).build());
+			}
+		}
+		assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(received).hasSize(keys);
+		for (List<Integer> payloads : received.values()) {
+			assertThat(payloads).hasSize(perKey).isSorted();
+		}
+		assertThat(threads.values()).allMatch(name -> name.startsWith("testChannel-partition-thread-"));
+		assertThat(threads.values().stream().distinct().count()).isGreaterThan(1);
+		channel.destroy();
+	}
+
+	@Test
+	public void testExpressionPartitionKeyAndExecutorInterceptor() throws Exception {
+		PartitionedChannel channel =
+				new PartitionedChannel(2, new SpelExpressionParser().parseExpression("payload % 2"));
+		channel.afterPropertiesSet();
+		CountDownLatch interceptorLatch = new CountDownLatch(4);
+		channel.addInterceptor(new ExecutorChannelInterceptor() {
+
+			@Override
+			public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+				return message;
+			}
+
+			@Override
+			public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+					Exception ex) {
+
+				interceptorLatch.countDown();
+			}
+
+		});
+		Map<Integer, String> threads = new ConcurrentHashMap<>();
+		channel.subscribe(message -> threads.put((Integer) message.getPayload(), Thread.currentThread().getName()));
+		for (int i = 0; i < 4; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		assertThat(interceptorLatch.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(threads.get(0)).isEqualTo(threads.get(2));
+		assertThat(threads.get(1)).isEqualTo(threads.get(3));
+		assertThat(threads.get(0)).isNotEqualTo(threads.get(1));
+		channel.destroy();
+	}
+
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +32,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
@@ -285,6 +287,84 @@ public class PriorityChannelTests {
 		assertEquals("test-2", message2.getPayload());
 	}
 
+	@Test
+	public void testReceiveBatch() {
+		PriorityChannel channel = new PriorityChannel(4);
+		channel.send(createPriorityMessage(1));
+		channel.send(createPriorityMessage(5));
+		channel.send(createPriorityMessage(3));
+		channel.send(createPriorityMessage(5));
+		assertEquals(0, channel.getRemainingCapacity());
+		List<Message<?>> messages = channel.receiveBatch(3, 0);
+		assertEquals(3, messages.size());
+		assertEquals("test:5", messages.get(0).getPayload());
+		assertEquals("test:5", messages.get(1).getPayload());
+		assertEquals("test:3", messages.get(2).getPayload());
+		assertEquals(3, channel.getRemainingCapacity());
+		messages = channel.receiveBatch(3, 10);
+		assertEquals(1, messages.size());
+		assertEquals("test:1", messages.get(0).getPayload());
+		assertEquals(4, channel.getRemainingCapacity());
+	}
+
+	@Test
+	public void testBucketedFifoWithinPriority() {
+		PriorityChannel channel = new PriorityChannel(0, 0, 9);
+		channel.send(MessageBuilder.withPayload("a").setPriority(3).build());
+		channel.send(MessageBuilder.withPayload("b").build());
+		channel.send(MessageBuilder.withPayload("c").setPriority(3).build());
+		channel.send(MessageBuilder.withPayload("d").setPriority(7).build());
+		channel.send(MessageBuilder.withPayload("e").setPriority(0).build());
+		assertEquals(5, channel.getQueueSize());
+		assertEquals("d", channel.receive(0).getPayload());
+		assertEquals("a", channel.receive(0).getPayload());
+		assertEquals("c", channel.receive(0).getPayload());
+		assertEquals("b", channel.receive(0).getPayload());
+		assertEquals("e", channel.receive(0).getPayload());
+		assertNull(channel.receive(0));
+	}
+
+	@Test
+	public void testBucketedPurgeAndBatch() {
+		PriorityChannel channel = new PriorityChannel(3, 1, 3);
+		channel.send(createPriorityMessage(1));
+		channel.send(createPriorityMessage(2));
+		channel.send(createPriorityMessage(3));
+		assertFalse(channel.send(createPriorityMessage(3), 0));
+		List<Message<?>> purged = channel.purge(m -> !"test:2".equals(m.getPayload()));
+		assertEquals(1, purged.size());
+		assertEquals(2, channel.getQueueSize());
+		List<Message<?>> messages = channel.receiveBatch(10, 0);
+		assertEquals(2, messages.size());
+		assertEquals("test:3", messages.get(0).getPayload());
+		assertEquals("test:1", messages.get(1).getPayload());
+	}
+
+	@Test
+	public void testBucketedConcurrentOrderPerPriority() throws Exception {
+		PriorityChannel channel = new PriorityChannel(0, 0, 3);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		int perPriority = 2000;
+		for (int p = 0; p < 4; p++) {
+			int priority = p;
+			executor.execute(() -> {
+				for (int i = 0; i < perPriority; i++) {
+					channel.send(MessageBuilder.withPayload(i).setPriority(priority).build());
+				}
+			});
+		}
+		int[] last = { -1, -1, -1, -1 };
+		for (int i = 0; i < perPriority * 4; i++) {
+			Message<?> message = channel.receive(10000);
+			assertNotNull(message);
+			int priority = new IntegrationMessageHeaderAccessor(message).getPriority();
+			int payload = (Integer) message.getPayload();
+			assertTrue(payload > last[priority]);
+			last[priority] = payload;
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
 
 	private static Message<String> createPriorityMessage(int priority) {
 		return MessageBuilder.withPayload("test:" + priority).setPriority(priority).build();
@@ -16,17 +16,22 @@
 
 package org.springframework.integration.channel;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,6 +40,8 @@ import org.junit.rules.TemporaryFolder;
 import org.springframework.integration.selector.UnexpiredMessageSelector;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.GenericMessage;
 
 /**
@@ -340,4 +347,91 @@ public class QueueChannelTests {
 		assertTrue(latch4.await(1000, TimeUnit.MILLISECONDS));
 	}
 */
+	@Test
+	public void testReceiveBatch() {
+		QueueChannel channel = new QueueChannel();
+		AtomicInteger preReceive = new AtomicInteger();
+		AtomicInteger postReceive = new AtomicInteger();
+		AtomicInteger afterReceiveCompletion = new AtomicInteger();
+		channel.addInterceptor(new ChannelInterceptor() {
+
+			@Override
+			public boolean preReceive(MessageChannel channel) {
+				preReceive.incrementAndGet();
+				return true;
+			}
+
+			@Override
+			public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+				postReceive.incrementAndGet();
+				return "drop".equals(message.getPayload()) ? null : message;
+			}
+
+			@Override
+			public void afterReceiveCompletion(Message<?> message, MessageChannel channel, Exception ex) {
+				afterReceiveCompletion.incrementAndGet();
+			}
+
+		});
+		channel.send(new GenericMessage<>("foo"));
+		channel.send(new GenericMessage<>("drop"));
+		channel.send(new GenericMessage<>("bar"));
+		channel.send(new GenericMessage<>("baz"));
+		List<Message<?>> messages = channel.receiveBatch(3, 0);
+		assertEquals(2, messages.size());
+		assertEquals("foo", messages.get(0).getPayload());
+		assertEquals("bar", messages.get(1).getPayload());
+		assertEquals(1, preReceive.get());
+		assertEquals(3, postReceive.get());
+		assertEquals(1, afterReceiveCompletion.get());
+		assertEquals(1, channel.getQueueSize());
+		messages = channel.receiveBatch(10, 100);
+		assertEquals(1, messages.size());
+		assertEquals("baz", messages.get(0).getPayload());
+		assertTrue(channel.receiveBatch(10, 10).isEmpty());
+		assertEquals(3, preReceive.get());
+		assertEquals(3, afterReceiveCompletion.get());
+	}
+
+	@Test
+	public void testReceiveBatchPostReceiveFailure() {
+		QueueChannel channel = new QueueChannel();
+		List<Exception> completions = new ArrayList<>();
+		channel.addInterceptor(new ChannelInterceptor() {
+
+			@Override
+			public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+				if ("bad".equals(message.getPayload())) {
+					throw new IllegalStateException("bad message");
+				}
+				return message;
+			}
+
+			@Override
+			public void afterReceiveCompletion(Message<?> message, MessageChannel channel, Exception ex) {
+				completions.add(ex);
+			}
+
+		});
+		channel.send(new GenericMessage<>("foo"));
+		channel.send(new GenericMessage<>("bad"));
+		channel.send(new GenericMessage<>("bar"));
+		List<Message<?>> messages = channel.receiveBatch(3, 0);
+		assertEquals(2, messages.size());
+		assertEquals("foo", messages.get(0).getPayload());
+		assertEquals("bar", messages.get(1).getPayload());
+		assertEquals(1, completions.size());
+		assertThat(completions.get(0), instanceOf(IllegalStateException.class));
+		channel.send(new GenericMessage<>("bad"));
+		try {
+			channel.receiveBatch(3, 0);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertEquals("bad message", e.getMessage());
+		}
+		assertEquals(2, completions.size());
+		assertEquals(0, channel.getQueueSize());
+	}
+
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class RingBufferQueueChannelTests {
+
+	@Test
+	public void testCapacityIsRoundedUpAndBounded() {
+		RingBufferQueueChannel channel = new RingBufferQueueChannel(3, WaitStrategy.SPIN);
+		assertThat(channel.getRemainingCapacity()).isEqualTo(4);
+		for (int i = 0; i < 4; i++) {
+			assertThat(channel.send(new GenericMessage<>(i), 0)).isTrue();
+		}
+		assertThat(channel.send(new GenericMessage<>(4), 0)).isFalse();
+		assertThat(channel.send(new GenericMessage<>(4), 10)).isFalse();
+		assertThat(channel.getQueueSize()).isEqualTo(4);
+		assertThat(channel.getRemainingCapacity()).isEqualTo(0);
+		for (int i = 0; i < 4; i++) {
+			assertThat(channel.receive(0).getPayload()).isEqualTo(i);
+		}
+		assertThat(channel.receive(0)).isNull();
+		assertThat(channel.receive(10)).isNull();
+	}
+
+	@Test
+	public void testPurgeRetainsOrder() {
+		RingBufferQueueChannel channel = new RingBufferQueueChannel(8);
+		for (int i = 0; i < 6; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		List<Message<?>> purged = channel.purge(m -> (Integer) m.getPayload() % 2 == 0);
+		assertThat(purged.stream().map(Message::getPayload).collect(Collectors.toList())).containsExactly(1, 3, 5);
+		assertThat(channel.clear().stream().map(Message::getPayload).collect(Collectors.toList()))
+				.containsExactly(0, 2, 4);
+		assertThat(channel.getQueueSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void testPurgedSlotsAreReleasedOnReceive() {
+		RingBufferQueueChannel channel = new RingBufferQueueChannel(4);
+		for (int i = 0; i < 4; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		List<Message<?>> purged = channel.purge(m -> (Integer) m.getPayload() > 1);
+		assertThat(purged).hasSize(2);
+		assertThat(channel.getQueueSize()).isEqualTo(2);
+		// the slots of the purged messages are released when the consumers pass them
+		assertThat(channel.getRemainingCapacity()).isEqualTo(0);
+		assertThat(channel.receive(0).getPayload()).isEqualTo(2);
+		assertThat(channel.getRemainingCapacity()).isEqualTo(3);
+		assertThat(channel.receive(0).getPayload()).isEqualTo(3);
+		assertThat(channel.receive(0)).isNull();
+		assertThat(channel.getRemainingCapacity()).isEqualTo(4);
+	}
+
+	@Test
+	public void testPurgeDoesNotBlockWithConcurrentSenders() throws Exception {
+		RingBufferQueueChannel channel = new RingBufferQueueChannel(4);
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		AtomicBoolean running = new AtomicBoolean(true);
+		exec.execute(() -> {
+			while (running.get()) {
+				channel.send(new GenericMessage<>("foo"), 0);
+			}
+		});
+		try {
+			Future<?> purges = exec.submit(() -> {
+				for (int i = 0; i < 1000; i++) {
+					assertThat(channel.purge(m -> true)).isEmpty();
+					channel.receive(0);
+				}
+			});
+			purges.get(30, TimeUnit.SECONDS);
+			assertThat(channel.getQueueSize()).isLessThanOrEqualTo(4);
+		}
+		finally {
+			running.set(false);
+			exec.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		// SPIN is not exercised here: busy-spinning threads starve each other on single-core build agents
+		for (WaitStrategy waitStrategy : new WaitStrategy[] { WaitStrategy.YIELD, WaitStrategy.PARK }) {
+			RingBufferQueueChannel channel = new RingBufferQueueChannel(16, waitStrategy);
+			int producers = 4;
+			int perProducer = 5000;
+			ExecutorService exec = Executors.newFixedThreadPool(producers * 2);
+			Set<Object> received = ConcurrentHashMap.newKeySet();
+			CountDownLatch latch = new CountDownLatch(producers * perProducer);
+			for (int p = 0; p < producers; p++) {
+				int producer = p;
+				exec.execute(() -> {
+					for (int i = 0; i < perProducer; i++) {
+						channel.send(new GenericMessage<>(producer * perProducer + i));
+					}
+				});
+				exec.execute(() -> {
+					while (latch.getCount() > 0) {
+						Message<?> message = channel.receive(10);
+						if (message != null) {
+							received.add(message.getPayload());
+							latch.countDown();
+						}
+					}
+				});
+			}
+			assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+			assertThat(received).hasSize(producers * perProducer);
+			exec.shutdownNow();
+		}
+	}
+
+}
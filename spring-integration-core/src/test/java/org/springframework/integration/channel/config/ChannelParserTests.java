@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -40,6 +40,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.channel.PriorityBucketQueue;
 import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.config.TestChannelInterceptor;
@@ -253,6 +254,21 @@ public class ChannelParserTests {
 		assertEquals("low", reply3.getPayload());
 	}
 
+	@Test
+	public void testBucketedPriorityChannel() {
+		PollableChannel channel = this.context.getBean("bucketedPriorityChannel", PollableChannel.class);
+		assertThat(TestUtils.getPropertyValue(channel, "queue"), instanceOf(PriorityBucketQueue.class));
+		channel.send(MessageBuilder.withPayload("low").setPriority(-14).build());
+		channel.send(MessageBuilder.withPayload("high1").setPriority(99).build());
+		channel.send(MessageBuilder.withPayload("mid").setPriority(5).build());
+		channel.send(MessageBuilder.withPayload("high2").setPriority(9).build());
+		assertEquals("high1", channel.receive(0).getPayload());
+		assertEquals("high2", channel.receive(0).getPayload());
+		assertEquals("mid", channel.receive(0).getPayload());
+		assertEquals("low", channel.receive(0).getPayload());
+		assertEquals(10, ((QueueChannel) channel).getRemainingCapacity());
+	}
+
 	@Test
 	public void testPriorityChannelWithCustomComparator() {
 		PollableChannel channel = this.context.getBean("priorityChannelWithCustomComparator", PollableChannel.class);
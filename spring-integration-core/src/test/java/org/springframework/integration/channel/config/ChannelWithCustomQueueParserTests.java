@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.integration.channel.config;
 
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
@@ -31,6 +32,10 @@ import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.channel.RingBufferQueueChannel;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.RingBufferBlockingQueue;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
@@ -52,6 +57,18 @@ public class ChannelWithCustomQueueParserTests {
 	@Autowired
 	QueueChannel customQueueChannel;
 
+	@Qualifier("ringBufferChannel")
+	@Autowired
+	RingBufferQueueChannel ringBufferChannel;
+
+	@Qualifier("placeholderRingBufferChannel")
+	@Autowired
+	QueueChannel placeholderRingBufferChannel;
+
+	@Qualifier("placeholderQueueChannel")
+	@Autowired
+	QueueChannel placeholderQueueChannel;
+
 	@Test
 	public void parseConfig() throws Exception {
 		assertNotNull(customQueueChannel);
@@ -66,4 +83,22 @@ public class ChannelWithCustomQueueParserTests {
 		assertThat(((BlockingQueue<?>) queue).remainingCapacity(), is(2));
 	}
 
+	@Test
+	public void ringBufferQueue() {
+		assertThat(this.ringBufferChannel.getWaitStrategy(), is(WaitStrategy.YIELD));
+		assertThat(this.ringBufferChannel.getRemainingCapacity(), is(8));
+		Object queue = TestUtils.getPropertyValue(this.ringBufferChannel, "queue");
+		assertThat(queue, is(instanceOf(RingBufferBlockingQueue.class)));
+	}
+
+	@Test
+	public void ringBufferFromPlaceholder() {
+		assertThat(this.placeholderRingBufferChannel, is(instanceOf(RingBufferQueueChannel.class)));
+		assertThat(((RingBufferQueueChannel) this.placeholderRingBufferChannel).getWaitStrategy(),
+				is(WaitStrategy.PARK));
+		assertThat(this.placeholderRingBufferChannel.getRemainingCapacity(), is(4));
+		assertThat(this.placeholderQueueChannel, not(instanceOf(RingBufferQueueChannel.class)));
+		assertThat(this.placeholderQueueChannel.getRemainingCapacity(), is(3));
+	}
+
 }
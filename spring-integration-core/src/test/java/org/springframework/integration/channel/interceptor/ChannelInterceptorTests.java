@@ -180,6 +180,40 @@ public class ChannelInterceptorTests {
 		assertFalse(interceptor2.wasAfterCompletionInvoked());
 	}
 
+	@Test
+	public void afterSendCompletionInReverseOrderAndPipelineRebuiltOnChange() {
+		final List<String> completions = new ArrayList<>();
+		ChannelInterceptor first = new ChannelInterceptor() {
+
+			@Override
+			public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+				completions.add("first");
+			}
+
+		};
+		ChannelInterceptor second = new ChannelInterceptor() {
+
+			@Override
+			public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+				completions.add("second");
+			}
+
+		};
+		this.channel.addInterceptor(first);
+		this.channel.addInterceptor(second);
+		assertTrue(this.channel.send(new GenericMessage<>("test")));
+		assertEquals("[second, first]", completions.toString());
+		this.channel.removeInterceptor(second);
+		completions.clear();
+		assertTrue(this.channel.send(new GenericMessage<>("test")));
+		assertEquals("[first]", completions.toString());
+		this.channel.removeInterceptor(first);
+		this.channel.addInterceptor(new ChannelInterceptor() { });
+		completions.clear();
+		assertTrue(this.channel.send(new GenericMessage<>("test")));
+		assertTrue(completions.isEmpty());
+	}
+
 	@Test
 	public void testPreReceiveInterceptorReturnsTrue() {
 		PreReceiveReturnsTrueInterceptor interceptor = new PreReceiveReturnsTrueInterceptor();
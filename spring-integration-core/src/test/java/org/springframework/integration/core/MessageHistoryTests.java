@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Properties;
 
 import org.junit.Test;
@@ -129,6 +133,45 @@ public class MessageHistoryTests {
 	}
 
 
+	@Test
+	public void testHistorySharedBetweenWrites() {
+		Message<String> message = new GenericMessage<>("foo");
+		Message<String> result1 = null;
+		for (int i = 1; i <= 10; i++) {
+			message = MessageHistory.write(message, new TestComponent(i));
+			if (i == 1) {
+				result1 = message;
+			}
+		}
+		MessageHistory history = MessageHistory.read(message);
+		assertEquals(10, history.size());
+		assertEquals("testComponent-1", history.get(0).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals("testComponent-5", history.get(4).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals("type-10", history.get(9).getProperty(MessageHistory.TYPE_PROPERTY));
+		assertSame(MessageHistory.read(result1).get(0), history.get(0));
+		assertEquals(1, MessageHistory.read(result1).size());
+		assertEquals(4, history.indexOf(history.get(4)));
+		assertEquals(3, history.subList(1, 4).size());
+	}
+
+	@Test
+	public void testSerializedAsPlainList() throws Exception {
+		Message<String> message = new GenericMessage<>("foo");
+		message = MessageHistory.write(message, new TestComponent(1));
+		message = MessageHistory.write(message, new TestComponent(2));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ObjectOutputStream(out).writeObject(message);
+		@SuppressWarnings("unchecked")
+		Message<String> deserialized = (Message<String>) new ObjectInputStream(
+				new ByteArrayInputStream(out.toByteArray())).readObject();
+		assertEquals("testComponent-1,testComponent-2", MessageHistory.read(deserialized).toString());
+		deserialized = MessageHistory.write(deserialized, new TestComponent(3));
+		MessageHistory history = MessageHistory.read(deserialized);
+		assertEquals("testComponent-1,testComponent-2,testComponent-3", history.toString());
+		assertEquals("testComponent-2", history.get(1).getProperty(MessageHistory.NAME_PROPERTY));
+	}
+
+
 	private static class TestComponent implements NamedComponent {
 
 		private final int id;
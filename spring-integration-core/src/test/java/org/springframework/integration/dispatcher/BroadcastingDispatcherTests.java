@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,11 @@
 
 package org.springframework.integration.dispatcher;
 
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.eq;
@@ -27,6 +31,10 @@ import static org.mockito.Mockito.verify;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
@@ -38,6 +46,7 @@ import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.MessageDispatchingException;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.GenericMessage;
@@ -332,6 +341,148 @@ public class BroadcastingDispatcherTests {
 		}
 	}
 
+	@Test
+	public void testParallelAllAggregatesFailures() {
+		dispatcher = new BroadcastingDispatcher(taskExecutorMock);
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.ALL);
+		dispatcher.addHandler(targetMock1);
+		dispatcher.addHandler(targetMock2);
+		dispatcher.addHandler(targetMock3);
+		RuntimeException failure = new RuntimeException("fail");
+		doThrow(failure).when(targetMock2).handleMessage(Mockito.any(Message.class));
+		try {
+			dispatcher.dispatch(messageMock);
+			fail("Expected Exception");
+		}
+		catch (AggregateMessageDeliveryException e) {
+			assertEquals(1, e.getAggregatedExceptions().size());
+			assertEquals(failure, e.getAggregatedExceptions().get(0));
+			assertEquals(messageMock, e.getFailedMessage());
+		}
+		verify(targetMock1).handleMessage(eq(messageMock));
+		verify(targetMock3).handleMessage(eq(messageMock));
+
+		dispatcher.setIgnoreFailures(true);
+		dispatcher.setMinSubscribers(3);
+		assertFalse(dispatcher.dispatch(messageMock));
+		dispatcher.setMinSubscribers(2);
+		assertTrue(dispatcher.dispatch(messageMock));
+	}
+
+	@Test
+	public void testParallelQuorum() {
+		dispatcher = new BroadcastingDispatcher(taskExecutorMock);
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.QUORUM);
+		dispatcher.addHandler(targetMock1);
+		dispatcher.addHandler(targetMock2);
+		dispatcher.addHandler(targetMock3);
+		doThrow(new RuntimeException("fail")).when(targetMock2).handleMessage(Mockito.any(Message.class));
+		assertTrue(dispatcher.dispatch(messageMock));
+
+		doThrow(new RuntimeException("fail")).when(targetMock3).handleMessage(Mockito.any(Message.class));
+		try {
+			dispatcher.dispatch(messageMock);
+			fail("Expected Exception");
+		}
+		catch (AggregateMessageDeliveryException e) {
+			assertEquals(2, e.getAggregatedExceptions().size());
+		}
+
+		dispatcher.setQuorum(1);
+		assertTrue(dispatcher.dispatch(messageMock));
+	}
+
+	@Test
+	public void testParallelFirstDoesNotWaitForSlowSubscriber() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch slowDone = new CountDownLatch(1);
+		dispatcher = new BroadcastingDispatcher(executor);
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.FIRST);
+		dispatcher.setApplySequence(true);
+		List<Message<?>> fast = Collections.synchronizedList(new ArrayList<>());
+		dispatcher.addHandler(message -> {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			slowDone.countDown();
+		});
+		dispatcher.addHandler(new MessageStoringTestEndpoint(fast));
+		assertTrue(dispatcher.dispatch(new GenericMessage<>("foo")));
+		assertEquals(1, fast.size());
+		assertEquals(Integer.valueOf(2),
+				fast.get(0).getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER, Integer.class));
+		assertEquals(1, slowDone.getCount());
+		release.countDown();
+		assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testParallelTimeout() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		CountDownLatch release = new CountDownLatch(1);
+		dispatcher = new BroadcastingDispatcher(executor);
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.ALL);
+		dispatcher.setCompletionTimeout(100);
+		dispatcher.setMinSubscribers(1);
+		dispatcher.addHandler(targetMock1);
+		dispatcher.addHandler(message -> {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		Message<?> message = new GenericMessage<>("foo");
+		try {
+			dispatcher.dispatch(message);
+			fail("Expected Exception");
+		}
+		catch (MessageDeliveryException e) {
+			assertThat(e, not(instanceOf(AggregateMessageDeliveryException.class)));
+			assertTrue(e.getMessage().contains("1 of 2"));
+		}
+
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.TIMEOUT);
+		assertTrue(dispatcher.dispatch(message));
+		release.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testParallelConfigurationValidated() {
+		dispatcher = new BroadcastingDispatcher();
+		try {
+			dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.ALL);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("'executor' is required"));
+		}
+		dispatcher = new BroadcastingDispatcher(taskExecutorMock);
+		try {
+			dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.TIMEOUT);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("'completionTimeout' is required"));
+		}
+		dispatcher.setCompletionTimeout(100);
+		dispatcher.setCompletionPolicy(BroadcastCompletionPolicy.TIMEOUT);
+		try {
+			dispatcher.setCompletionTimeout(-1);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("'completionTimeout' is required"));
+		}
+	}
+
 	private void defaultTaskExecutorMock() {
 		doAnswer(invocation -> {
 			((Runnable) invocation.getArgument(0)).run();
@@ -103,6 +103,29 @@ public class RoundRobinDispatcherTests {
 		verify(differentHandler, atLeast(18)).handleMessage(message);
 	}
 
+	@Test
+	public void failoverAndRemovalReflectedInHandlerSnapshot() throws Exception {
+		dispatcher.addHandler(handler);
+		dispatcher.addHandler(differentHandler);
+		doThrow(new MessagingException("Mock Exception")).when(handler).handleMessage(message);
+		for (int i = 0; i < 4; i++) {
+			dispatcher.dispatch(message);
+		}
+		verify(handler, times(2)).handleMessage(message);
+		verify(differentHandler, times(4)).handleMessage(message);
+		dispatcher.removeHandler(handler);
+		dispatcher.addHandler(handler);
+		dispatcher.removeHandler(differentHandler);
+		try {
+			dispatcher.dispatch(message);
+			fail("Expected Exception");
+		}
+		catch (MessagingException e) {
+			assertEquals(message, e.getFailedMessage());
+		}
+		verify(handler, times(3)).handleMessage(message);
+	}
+
 	/**
 	 * Verifies that the dispatcher adds the message to the exception if it
 	 * was not attached by the handler.
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dispatcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import org.springframework.integration.test.support.LongRunningIntegrationTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.StopWatch;
+
+/**
+ * Compares the latency of a round-robin {@link UnicastingDispatcher} dispatching over its
+ * handler snapshot with the same dispatcher building a handler iterator per message.
+ *
+ * @since 5.1
+ */
+public class UnicastingDispatcherBenchmarkTests {
+
+	@ClassRule
+	public static LongRunningIntegrationTest longTests = new LongRunningIntegrationTest();
+
+	private static final Log logger = LogFactory.getLog(UnicastingDispatcherBenchmarkTests.class);
+
+	private static final int HANDLER_COUNT = 4;
+
+	private static final int MESSAGE_COUNT = 5_000_000;
+
+	@Test
+	public void testRoundRobin() {
+		RoundRobinLoadBalancingStrategy snapshotStrategy = new RoundRobinLoadBalancingStrategy();
+		RoundRobinLoadBalancingStrategy iteratorStrategy = new RoundRobinLoadBalancingStrategy();
+		AtomicInteger[] snapshotCounts = new AtomicInteger[HANDLER_COUNT];
+		AtomicInteger[] iteratorCounts = new AtomicInteger[HANDLER_COUNT];
+		// a strategy which doesn't provide a start index makes the dispatcher use the iterator
+		UnicastingDispatcher snapshotDispatcher = dispatcher(snapshotStrategy, snapshotCounts);
+		UnicastingDispatcher iteratorDispatcher = dispatcher(iteratorStrategy::getHandlerIterator, iteratorCounts);
+		Message<?> message = new GenericMessage<>("foo");
+		StopWatch stopWatch = new StopWatch("Round-robin dispatch of " + MESSAGE_COUNT + " messages to "
+				+ HANDLER_COUNT + " handlers");
+
+		// warm up
+		dispatch(snapshotDispatcher, message, MESSAGE_COUNT / 10);
+		dispatch(iteratorDispatcher, message, MESSAGE_COUNT / 10);
+
+		stopWatch.start("iterator");
+		dispatch(iteratorDispatcher, message, MESSAGE_COUNT);
+		stopWatch.stop();
+		stopWatch.start("snapshot");
+		dispatch(snapshotDispatcher, message, MESSAGE_COUNT);
+		stopWatch.stop();
+
+		logger.warn(stopWatch.prettyPrint());
+
+		int expected = (MESSAGE_COUNT + MESSAGE_COUNT / 10) / HANDLER_COUNT;
+		for (int i = 0; i < HANDLER_COUNT; i++) {
+			assertEquals(expected, snapshotCounts[i].get());
+			assertEquals(expected, iteratorCounts[i].get());
+		}
+	}
+
+	private static UnicastingDispatcher dispatcher(LoadBalancingStrategy strategy, AtomicInteger[] counts) {
+		UnicastingDispatcher dispatcher = new UnicastingDispatcher();
+		dispatcher.setLoadBalancingStrategy(strategy);
+		for (int i = 0; i < HANDLER_COUNT; i++) {
+			AtomicInteger count = new AtomicInteger();
+			counts[i] = count;
+			dispatcher.addHandler(m -> count.incrementAndGet());
+		}
+		return dispatcher;
+	}
+
+	private static void dispatch(UnicastingDispatcher dispatcher, Message<?> message, int count) {
+		for (int i = 0; i < count; i++) {
+			dispatcher.dispatch(message);
+		}
+	}
+
+}
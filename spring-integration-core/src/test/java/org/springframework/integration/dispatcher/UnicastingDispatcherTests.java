@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,10 @@ package org.springframework.integration.dispatcher;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import org.springframework.context.support.ClassPathXmlApplicationContext;
@@ -56,4 +60,28 @@ public class UnicastingDispatcherTests {
 		context.close();
 	}
 
+	@Test
+	public void subclassHandlersAreHonored() {
+		AtomicInteger first = new AtomicInteger();
+		AtomicInteger second = new AtomicInteger();
+		MessageHandler firstHandler = message -> first.incrementAndGet();
+		MessageHandler secondHandler = message -> second.incrementAndGet();
+		UnicastingDispatcher dispatcher = new UnicastingDispatcher() {
+
+			@Override
+			protected Set<MessageHandler> getHandlers() {
+				return Collections.singleton(secondHandler);
+			}
+
+		};
+		dispatcher.setLoadBalancingStrategy(new RoundRobinLoadBalancingStrategy());
+		dispatcher.addHandler(firstHandler);
+		dispatcher.addHandler(secondHandler);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(dispatcher.dispatch(new GenericMessage<>("foo")));
+		}
+		assertEquals(0, first.get());
+		assertEquals(4, second.get());
+	}
+
 }
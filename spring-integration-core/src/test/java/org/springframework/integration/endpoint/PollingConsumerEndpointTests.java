@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,10 +17,15 @@
 package org.springframework.integration.endpoint;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,7 +37,10 @@ import org.mockito.Mockito;
 
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.support.MessagingExceptionWrapper;
+import org.springframework.integration.transaction.PseudoTransactionManager;
+import org.springframework.integration.transaction.TransactionInterceptorBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.PollableChannel;
@@ -173,6 +181,68 @@ public class PollingConsumerEndpointTests {
 		assertEquals(1, consumer.counter.get());
 	}
 
+	@Test
+	public void batchReceive() throws Throwable {
+		QueueChannel channel = new QueueChannel();
+		for (int i = 0; i < 7; i++) {
+			channel.send(i == 2 ? this.badMessage : this.message);
+		}
+		PollingConsumer batchEndpoint = new PollingConsumer(channel, this.consumer);
+		batchEndpoint.setErrorHandler(this.errorHandler);
+		batchEndpoint.setTaskScheduler(this.taskScheduler);
+		batchEndpoint.setTrigger(this.trigger);
+		batchEndpoint.setBeanFactory(mock(BeanFactory.class));
+		batchEndpoint.setReceiveTimeout(0);
+		batchEndpoint.setMaxMessagesPerPoll(5);
+		batchEndpoint.setBatchReceive(true);
+		batchEndpoint.afterPropertiesSet();
+		batchEndpoint.start();
+		this.trigger.await();
+		batchEndpoint.stop();
+		assertEquals(5, this.consumer.counter.get());
+		assertEquals(2, channel.getQueueSize());
+		try {
+			this.errorHandler.throwLastErrorIfAvailable();
+			fail("MessageRejectedException expected");
+		}
+		catch (MessageRejectedException e) {
+			assertSame(this.badMessage, e.getFailedMessage());
+		}
+	}
+
+	@Test
+	public void batchReceiveTransactionalFailureIsRethrown() throws Throwable {
+		QueueChannel channel = new QueueChannel();
+		for (int i = 0; i < 7; i++) {
+			channel.send(i == 2 ? this.badMessage : this.message);
+		}
+		PollingConsumer batchEndpoint = new PollingConsumer(channel, this.consumer);
+		batchEndpoint.setErrorHandler(this.errorHandler);
+		batchEndpoint.setTaskScheduler(this.taskScheduler);
+		batchEndpoint.setTrigger(this.trigger);
+		batchEndpoint.setBeanFactory(mock(BeanFactory.class));
+		batchEndpoint.setAdviceChain(Collections.singletonList(new TransactionInterceptorBuilder()
+				.transactionManager(new PseudoTransactionManager())
+				.build()));
+		batchEndpoint.setReceiveTimeout(0);
+		batchEndpoint.setMaxMessagesPerPoll(5);
+		batchEndpoint.setBatchReceive(true);
+		batchEndpoint.afterPropertiesSet();
+		batchEndpoint.start();
+		this.trigger.await();
+		batchEndpoint.stop();
+		assertEquals(3, this.consumer.counter.get());
+		assertEquals(2, channel.getQueueSize());
+		// the rest of the batch is restored by the rollback, so only the failure is reported
+		assertEquals(1, this.errorHandler.errors.size());
+		try {
+			this.errorHandler.throwLastErrorIfAvailable();
+			fail("MessageRejectedException expected");
+		}
+		catch (MessageRejectedException e) {
+			assertSame(this.badMessage, e.getFailedMessage());
+		}
+	}
 
 	private static class TestConsumer implements MessageHandler {
 
@@ -233,6 +303,8 @@ public class PollingConsumerEndpointTests {
 
 	private static class TestErrorHandler implements ErrorHandler {
 
+		private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+
 		private volatile Throwable lastError;
 
 		TestErrorHandler() {
@@ -241,6 +313,7 @@ public class PollingConsumerEndpointTests {
 
 		@Override
 		public void handleError(Throwable t) {
+			this.errors.add(t);
 			this.lastError = t;
 		}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,7 +26,9 @@ import static org.mockito.Mockito.mock;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -483,6 +485,60 @@ public class DelayHandlerTests {
 	}
 
 
+	@Test
+	public void testIndexedReleaseInBatches() throws Exception {
+		QueueChannel results = new QueueChannel();
+		this.delayHandler.setOutputChannel(results);
+		this.delayHandler.setDefaultDelay(200);
+		this.delayHandler.setIndexedRelease(true);
+		this.delayHandler.setReleaseBatchSize(2);
+		startDelayerHandler();
+
+		for (int i = 0; i < 5; i++) {
+			this.input.send(new GenericMessage<>(i));
+		}
+		Queue<?> works = TestUtils.getPropertyValue(this.taskScheduler, "scheduledExecutor.workQueue", Queue.class);
+		assertEquals(1, works.size());
+		Set<Object> payloads = new HashSet<>();
+		for (int i = 0; i < 5; i++) {
+			Message<?> message = results.receive(10000);
+			assertNotNull(message);
+			payloads.add(message.getPayload());
+		}
+		assertEquals(5, payloads.size());
+		assertNull(results.receive(100));
+		assertEquals(0, this.delayHandler.getDelayedMessageCount());
+	}
+
+	@Test
+	public void testIndexedReleaseOfPersistedMessages() throws Exception {
+		MessageGroupStore messageGroupStore = new SimpleMessageStore();
+		this.delayHandler.setDefaultDelay(2000);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.startDelayerHandler();
+		Message<?> message = MessageBuilder.withPayload("test").build();
+		this.input.send(message);
+
+		// emulate restart
+		this.taskScheduler.destroy();
+		assertEquals(1, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
+
+		this.taskScheduler.afterPropertiesSet();
+		this.delayHandler = new DelayHandler(DELAYER_MESSAGE_GROUP_ID, this.taskScheduler);
+		this.delayHandler.setOutputChannel(this.output);
+		this.delayHandler.setDefaultDelay(200);
+		this.delayHandler.setIndexedRelease(true);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setBeanFactory(mock(BeanFactory.class));
+		this.startDelayerHandler();
+
+		waitForLatch(10000);
+
+		assertSame(message.getPayload(), this.resultHandler.lastMessage.getPayload());
+		assertEquals(0, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
+	}
+
+
 	private void waitForLatch(long timeout) {
 		try {
 			this.latch.await(timeout, TimeUnit.MILLISECONDS);
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * @since 5.1
+ */
+public class TimingWheelTaskSchedulerTests {
+
+	private final TimingWheelTaskScheduler scheduler = new TimingWheelTaskScheduler(1, TimeUnit.MILLISECONDS);
+
+	@After
+	public void tearDown() {
+		this.scheduler.destroy();
+	}
+
+	@Test
+	public void testNotBeforeScheduledTime() throws Exception {
+		CountDownLatch latch = new CountDownLatch(100);
+		AtomicInteger early = new AtomicInteger();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 100; i++) {
+			long time = now + i * 7;
+			this.scheduler.schedule(() -> {
+				if (System.currentTimeMillis() < time) {
+					early.incrementAndGet();
+				}
+				latch.countDown();
+			}, new Date(time));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(0, early.get());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		AtomicInteger count = new AtomicInteger();
+		List<ScheduledFuture<?>> futures = new ArrayList<>();
+		long time = System.currentTimeMillis() + 200;
+		for (int i = 0; i < 1000; i++) {
+			futures.add(this.scheduler.schedule(count::incrementAndGet, new Date(time)));
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			assertTrue(futures.get(i).cancel(false));
+			assertTrue(futures.get(i).isCancelled());
+		}
+		for (int i = 1; i < 1000; i += 2) {
+			futures.get(i).get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(500, count.get());
+		try {
+			futures.get(0).get();
+			fail("CancellationException expected");
+		}
+		catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCascadeFromHigherLevel() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		long time = System.currentTimeMillis() + 1300;
+		this.scheduler.schedule(latch::countDown, new Date(time));
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertThat(System.currentTimeMillis(), greaterThanOrEqualTo(time));
+	}
+
+	@Test
+	public void testFixedRate() throws Exception {
+		CountDownLatch latch = new CountDownLatch(3);
+		ScheduledFuture<?> future = this.scheduler.scheduleAtFixedRate(latch::countDown, 10);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertFalse(future.isDone());
+		future.cancel(false);
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		ScheduledFuture<?> future = this.scheduler.schedule(() -> {
+			throw new IllegalStateException("test");
+		}, new Date());
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("ExecutionException expected");
+		}
+		catch (ExecutionException e) {
+			assertEquals("test", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testDestroy() throws Exception {
+		ScheduledFuture<?> future = this.scheduler.schedule(() -> { }, new Date(System.currentTimeMillis() + 60000));
+		this.scheduler.destroy();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("CancellationException expected");
+		}
+		catch (CancellationException e) {
+			// expected
+		}
+		try {
+			this.scheduler.schedule(() -> { }, new Date());
+			fail("TaskRejectedException expected");
+		}
+		catch (TaskRejectedException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testScheduleConcurrentWithDestroy() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			TimingWheelTaskScheduler scheduler = new TimingWheelTaskScheduler(1, TimeUnit.MILLISECONDS);
+			List<ScheduledFuture<?>> futures = new ArrayList<>();
+			CountDownLatch started = new CountDownLatch(1);
+			Thread submitter = new Thread(() -> {
+				try {
+					while (true) {
+						futures.add(scheduler.schedule(() -> { }, new Date(System.currentTimeMillis() + 60000)));
+						started.countDown();
+					}
+				}
+				catch (TaskRejectedException e) {
+					// expected
+				}
+			});
+			submitter.start();
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			scheduler.destroy();
+			submitter.join(10000);
+			assertFalse(submitter.isAlive());
+			// no task accepted around the destroy() is left behind
+			for (ScheduledFuture<?> future : futures) {
+				try {
+					future.get(10, TimeUnit.SECONDS);
+					fail("CancellationException expected");
+				}
+				catch (CancellationException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+}
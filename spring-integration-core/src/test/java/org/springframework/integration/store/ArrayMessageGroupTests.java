@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class ArrayMessageGroupTests {
+
+	@Test
+	public void testAddRemoveAndSequences() {
+		ArrayMessageGroup group = new ArrayMessageGroup("foo");
+		assertNull(group.getOne());
+		assertEquals(0, group.getSequenceSize());
+		List<Message<?>> messages = new ArrayList<>();
+		for (int i = 1; i <= 100; i++) {
+			Message<?> message = MessageBuilder.withPayload(i).setSequenceNumber(i).setSequenceSize(100).build();
+			messages.add(message);
+			group.add(message);
+		}
+		assertEquals(100, group.size());
+		assertSame(messages.get(0), group.getOne());
+		assertEquals(100, group.getSequenceSize());
+		assertTrue(group.containsSequence(64));
+		assertFalse(group.containsSequence(101));
+
+		assertTrue(group.remove(messages.get(0)));
+		assertSame(messages.get(1), group.getOne());
+		assertFalse(group.containsSequence(1));
+		assertTrue(group.remove(messages.get(63)));
+		assertFalse(group.containsSequence(64));
+		assertFalse(group.remove(messages.get(63)));
+		assertTrue(group.remove(messages.get(99)));
+		assertEquals(97, group.size());
+
+		List<Message<?>> expected = new ArrayList<>(messages.subList(1, 99));
+		expected.remove(messages.get(63));
+		assertEquals(expected, new ArrayList<>(group.getMessages()));
+
+		for (int i = 0; i < 200; i++) {
+			group.add(new GenericMessage<>("bar"));
+		}
+		assertEquals(297, group.size());
+		assertSame(messages.get(1), group.getOne());
+
+		group.clear();
+		assertEquals(0, group.size());
+		assertTrue(group.getMessages().isEmpty());
+		assertFalse(group.containsSequence(2));
+	}
+
+	@Test
+	public void testOutOfRangeSequence() {
+		ArrayMessageGroup group = new ArrayMessageGroup("foo");
+		Message<?> message = MessageBuilder.withPayload("foo").setSequenceNumber(Integer.MAX_VALUE).build();
+		group.add(message);
+		assertTrue(group.containsSequence(Integer.MAX_VALUE));
+		group.remove(message);
+		assertFalse(group.containsSequence(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testSparseSequencesKeepBitmapSmall() {
+		ArrayMessageGroup group = new ArrayMessageGroup("foo");
+		Message<?> high = MessageBuilder.withPayload("foo").setSequenceNumber(1 << 24).build();
+		Message<?> low = MessageBuilder.withPayload("bar").setSequenceNumber(1).build();
+		group.add(high);
+		group.add(low);
+		for (int i = 1; i <= 100; i++) {
+			group.add(MessageBuilder.withPayload(i).setSequenceNumber((1 << 24) - i).build());
+		}
+		assertThat(TestUtils.getPropertyValue(group, "sequences", long[].class).length, lessThanOrEqualTo(64));
+		assertTrue(group.containsSequence(1 << 24));
+		assertTrue(group.containsSequence((1 << 24) - 100));
+		assertTrue(group.containsSequence(1));
+		assertFalse(group.containsSequence(2));
+		group.remove(low);
+		assertFalse(group.containsSequence(1));
+		group.remove(high);
+		assertFalse(group.containsSequence(1 << 24));
+		assertTrue(group.containsSequence((1 << 24) - 1));
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testViewFailsFast() {
+		ArrayMessageGroup group = new ArrayMessageGroup("foo");
+		group.add(new GenericMessage<>("foo"));
+		Iterator<Message<?>> iterator = group.getMessages().iterator();
+		group.add(new GenericMessage<>("bar"));
+		iterator.next();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewIsUnmodifiable() {
+		ArrayMessageGroup group = new ArrayMessageGroup("foo");
+		group.add(new GenericMessage<>("foo"));
+		group.getMessages().clear();
+	}
+
+	@Test
+	public void testWithSimpleMessageStore() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setMessageGroupFactory(new ArrayMessageGroupFactory());
+		Message<?> message1 = MessageBuilder.withPayload("foo").setSequenceNumber(1).build();
+		Message<?> message2 = MessageBuilder.withPayload("bar").setSequenceNumber(2).build();
+		store.addMessagesToGroup("group", message1, message2);
+		MessageGroup group = store.getMessageGroup("group");
+		assertThat(group, instanceOf(ArrayMessageGroup.class));
+		assertEquals(2, group.size());
+		store.removeMessagesFromGroup("group", message1);
+		group = store.getMessageGroup("group");
+		assertEquals(1, group.size());
+		assertSame(message2, group.getOne());
+		assertEquals(message2, store.pollMessageFromGroup("group"));
+		assertEquals(0, store.messageGroupSize("group"));
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.store;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.HashSet;
@@ -27,6 +28,8 @@ import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -90,6 +93,60 @@ public class MessageGroupQueueTests {
 		assertNotNull(result);
 	}
 
+	@Test
+	public void testListenableStoreWakesUpConsumer() throws Exception {
+		ListenableMessageStore messageGroupStore = new ListenableMessageStore();
+		MessageGroupQueue queue = new MessageGroupQueue(messageGroupStore, "FOO");
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		Future<Message<?>> result = executorService.submit(() -> queue.poll(20, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		// added outside of the queue, e.g. by another process
+		Message<?> message = new GenericMessage<>("foo");
+		messageGroupStore.addMessagesToGroup("FOO", message);
+		assertSame(message, result.get(10, TimeUnit.SECONDS));
+		executorService.shutdown();
+		queue.destroy();
+		assertTrue(messageGroupStore.listeners.isEmpty());
+	}
+
+	@Test
+	public void testNotificationTimeoutRecoversMissedNotification() throws Exception {
+		ListenableMessageStore messageGroupStore = new ListenableMessageStore();
+		MessageGroupQueue queue = new MessageGroupQueue(messageGroupStore, "FOO");
+		queue.setNotificationTimeout(100);
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		Future<Message<?>> result = executorService.submit(() -> queue.poll(20, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		// added without notifying the listeners, e.g. a lost notification
+		Message<?> message = new GenericMessage<>("foo");
+		messageGroupStore.addMessagesToGroupSilently("FOO", message);
+		assertSame(message, result.get(10, TimeUnit.SECONDS));
+		executorService.shutdown();
+		queue.destroy();
+	}
+
+	@Test
+	public void testQueuesSharingGroupDoNotDeadlock() throws Exception {
+		ListenableMessageStore messageGroupStore = new ListenableMessageStore();
+		MessageGroupQueue queue1 = new MessageGroupQueue(messageGroupStore, "FOO");
+		MessageGroupQueue queue2 = new MessageGroupQueue(messageGroupStore, "FOO");
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+		Future<?> offers1 = executorService.submit(() -> {
+			for (int i = 0; i < 1000; i++) {
+				queue1.offer(new GenericMessage<>("foo" + i));
+			}
+		});
+		Future<?> offers2 = executorService.submit(() -> {
+			for (int i = 0; i < 1000; i++) {
+				queue2.offer(new GenericMessage<>("bar" + i));
+			}
+		});
+		offers1.get(10, TimeUnit.SECONDS);
+		offers2.get(10, TimeUnit.SECONDS);
+		assertEquals(2000, queue1.size());
+		executorService.shutdown();
+	}
+
 	@Test
 	public void testConcurrentAccess() throws Exception {
 		doTestConcurrentAccess(50, 20, new HashSet<String>());
@@ -161,4 +218,34 @@ public class MessageGroupQueueTests {
 
 	}
 
+	private static class ListenableMessageStore extends SimpleMessageStore implements ListenableChannelMessageStore {
+
+		private final Set<Runnable> listeners = new CopyOnWriteArraySet<>();
+
+		ListenableMessageStore() {
+			super();
+		}
+
+		@Override
+		public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+			super.addMessagesToGroup(groupId, messages);
+			this.listeners.forEach(Runnable::run);
+		}
+
+		void addMessagesToGroupSilently(Object groupId, Message<?>... messages) {
+			super.addMessagesToGroup(groupId, messages);
+		}
+
+		@Override
+		public void addMessageGroupListener(Object groupId, Runnable listener) {
+			this.listeners.add(listener);
+		}
+
+		@Override
+		public void removeMessageGroupListener(Object groupId, Runnable listener) {
+			this.listeners.remove(listener);
+		}
+
+	}
+
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class SequenceWindowMessageGroupTests {
+
+	@Test
+	public void testOutOfOrderArrivals() {
+		SequenceWindowMessageGroup group = new SequenceWindowMessageGroup("foo");
+		assertNull(group.getOne());
+		assertTrue(group.getContiguousSequence().isEmpty());
+		for (int sequence : new int[] { 5, 3, 4, 1, 7 }) {
+			group.add(message(sequence));
+		}
+		assertEquals(5, group.size());
+		assertEquals(1, sequenceOf(group.getOne()));
+		assertThat(sequences(group.getMessages()), contains(1, 3, 4, 5, 7));
+		assertThat(sequences(group.getContiguousSequence()), contains(1));
+		assertTrue(group.containsSequence(4));
+		assertFalse(group.containsSequence(2));
+
+		assertTrue(group.remove(group.getOne()));
+		assertThat(sequences(group.getContiguousSequence()), contains(3, 4, 5));
+		group.add(message(6));
+		assertThat(sequences(group.getContiguousSequence()), contains(3, 4, 5, 6, 7));
+		assertEquals(5, group.size());
+
+		group.clear();
+		assertEquals(0, group.size());
+		assertNull(group.getOne());
+		assertFalse(group.containsSequence(3));
+	}
+
+	@Test
+	public void testWindowGrowthAndOverflow() {
+		SequenceWindowMessageGroup group = new SequenceWindowMessageGroup("foo");
+		List<Message<?>> messages = new ArrayList<>();
+		for (int sequence = 1000; sequence >= 1; sequence--) {
+			Message<?> message = message(sequence);
+			messages.add(message);
+			group.add(message);
+		}
+		Message<?> far = message(SequenceWindowMessageGroup.MAX_WINDOW * 2);
+		Message<?> duplicate = message(500);
+		Message<?> unsequenced = new GenericMessage<>("foo");
+		group.add(far);
+		group.add(duplicate);
+		group.add(unsequenced);
+		assertEquals(1003, group.size());
+		assertSame(unsequenced, group.getOne());
+		assertTrue(group.remove(unsequenced));
+		assertEquals(1, sequenceOf(group.getOne()));
+
+		List<Message<?>> run = group.getContiguousSequence();
+		assertEquals(1001, run.size());
+		assertEquals(1, sequenceOf(run.get(0)));
+		assertEquals(1000, sequenceOf(run.get(1000)));
+
+		List<Integer> all = sequences(group.getMessages());
+		assertEquals(1002, all.size());
+		assertEquals(Integer.valueOf(SequenceWindowMessageGroup.MAX_WINDOW * 2), all.get(1001));
+
+		assertTrue(group.remove(duplicate));
+		assertFalse(group.remove(duplicate));
+		for (Message<?> message : messages) {
+			assertTrue(group.remove(message));
+		}
+		assertEquals(1, group.size());
+		assertSame(far, group.getOne());
+		run = group.getContiguousSequence();
+		assertEquals(1, run.size());
+		assertSame(far, run.get(0));
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testViewFailsFast() {
+		SequenceWindowMessageGroup group = new SequenceWindowMessageGroup("foo");
+		group.add(message(1));
+		Iterator<Message<?>> iterator = group.getMessages().iterator();
+		group.add(message(2));
+		iterator.next();
+	}
+
+	@Test
+	public void testWithSimpleMessageStore() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setMessageGroupFactory(new SequenceWindowMessageGroupFactory());
+		Message<?> message1 = message(2);
+		Message<?> message2 = message(1);
+		store.addMessagesToGroup("group", message1, message2);
+		MessageGroup group = store.getMessageGroup("group");
+		assertThat(group, instanceOf(SequenceWindowMessageGroup.class));
+		assertSame(message2, group.getOne());
+		store.removeMessagesFromGroup("group", message2);
+		assertSame(message1, store.getMessageGroup("group").getOne());
+	}
+
+	private static Message<?> message(int sequence) {
+		return MessageBuilder.withPayload(sequence).setSequenceNumber(sequence).build();
+	}
+
+	private static int sequenceOf(Message<?> message) {
+		return StaticMessageHeaderAccessor.getSequenceNumber(message);
+	}
+
+	private static List<Integer> sequences(Iterable<Message<?>> messages) {
+		List<Integer> sequences = new ArrayList<>();
+		for (Message<?> message : messages) {
+			sequences.add(sequenceOf(message));
+		}
+		return sequences;
+	}
+
+}
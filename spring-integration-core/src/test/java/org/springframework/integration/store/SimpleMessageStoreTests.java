@@ -21,6 +21,7 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -28,7 +29,10 @@ import static org.junit.Assert.fail;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,6 +40,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import org.springframework.integration.codec.kryo.MessageCodec;
 import org.springframework.integration.store.MessageGroupStore.MessageGroupCallback;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
@@ -283,6 +288,38 @@ public class SimpleMessageStoreTests {
 
 	}
 
+	@Test
+	public void testExpireFromIndexWithoutScan() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore() {
+
+			@Override
+			public Iterator<MessageGroup> iterator() {
+				throw new UnsupportedOperationException("full scan");
+			}
+
+		};
+		store.setTimeoutOnIdle(true);
+		List<Object> expired = new ArrayList<>();
+		store.registerMessageGroupExpiryCallback((messageGroupStore, group) -> {
+			expired.add(group.getGroupId());
+			messageGroupStore.removeMessageGroup(group.getGroupId());
+		});
+
+		store.addMessageToGroup("idle", new GenericMessage<>("foo"));
+		store.addMessageToGroup("active", new GenericMessage<>("foo"));
+		Thread.sleep(100);
+		store.addMessageToGroup("active", new GenericMessage<>("bar"));
+		store.addMessageToGroup("new", new GenericMessage<>("foo"));
+
+		assertEquals(1, store.expireMessageGroups(50));
+		assertEquals(Collections.singletonList("idle"), expired);
+		assertEquals(2, store.getMessageGroup("active").size());
+		assertEquals(1, store.getMessageGroup("new").size());
+
+		assertEquals(2, store.expireMessageGroups(-1000));
+		assertEquals(3, expired.size());
+	}
+
 	@Test
 	public void testAddAndRemoveMessagesFromMessageGroup() throws Exception {
 		SimpleMessageStore messageStore = new SimpleMessageStore();
@@ -300,4 +337,105 @@ public class SimpleMessageStoreTests {
 		assertEquals(0, group.size());
 	}
 
+	@Test
+	public void testOffHeapMessages() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setOffHeapCodec(new MessageCodec());
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		store.addMessage(message);
+		assertEquals("foo", store.getMessage(message.getHeaders().getId()).getPayload());
+		assertEquals(message.getHeaders().getTimestamp(),
+				store.getMessageMetadata(message.getHeaders().getId()).getTimestamp());
+		assertEquals("foo", store.removeMessage(message.getHeaders().getId()).getPayload());
+		assertNull(store.getMessage(message.getHeaders().getId()));
+
+		for (int i = 1; i <= 3; i++) {
+			store.addMessageToGroup("bar", MessageBuilder.withPayload("bar" + i)
+					.setSequenceNumber(i)
+					.setSequenceSize(3)
+					.build());
+		}
+		MessageGroup group = store.getMessageGroup("bar");
+		assertEquals(3, group.size());
+		assertEquals(3, group.getSequenceSize());
+		assertEquals(3, store.getGroupMetadata("bar").size());
+		List<Object> payloads = new ArrayList<>();
+		for (Message<?> groupMessage : group.getMessages()) {
+			payloads.add(groupMessage.getPayload());
+		}
+		assertEquals(Arrays.asList("bar1", "bar2", "bar3"), payloads);
+
+		assertEquals("bar1", store.pollMessageFromGroup("bar").getPayload());
+		store.removeMessagesFromGroup("bar", store.getOneMessageFromGroup("bar"));
+		assertEquals(1, store.messageGroupSize("bar"));
+		assertEquals("bar3", store.getMessagesForGroup("bar").iterator().next().getPayload());
+		store.removeMessageGroup("bar");
+		assertEquals(0, store.messageGroupSize("bar"));
+	}
+
+	@Test
+	public void testOffHeapPollRacingGroupRemoval() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setOffHeapCodec(new MessageCodec());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 4; i++) {
+			executor.execute(() -> {
+				for (int j = 0; j < 10000; j++) {
+					store.pollMessageFromGroup("foo");
+				}
+			});
+		}
+		for (int i = 0; i < 1000; i++) {
+			store.addMessagesToGroup("foo", new GenericMessage<>("foo"), new GenericMessage<>("bar"));
+			store.removeMessageGroup("foo");
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testOffHeapPayloadAfterRemoval() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setOffHeapCodec(new MessageCodec());
+		store.addMessageToGroup("foo", new GenericMessage<>("foo"));
+		Message<?> stored = ((Map<Object, MessageGroup>) ReflectionTestUtils.getField(store, "groupIdToMessageGroup"))
+				.get("foo")
+				.getOne();
+		assertEquals("foo", stored.getPayload());
+		store.removeMessageGroup("foo");
+		try {
+			stored.getPayload();
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("payload released"));
+		}
+	}
+
+	@Test
+	public void testOffHeapCapacity() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setOffHeapCodec(new MessageCodec());
+		store.setOffHeapCapacity(1024 * 1024);
+		Message<byte[]> message1 = new GenericMessage<>(new byte[600 * 1024]);
+		store.addMessageToGroup("foo", message1);
+		try {
+			store.addMessageToGroup("foo", new GenericMessage<>(new byte[600 * 1024]));
+			fail("Expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertThat(e.getMessage(), containsString("out of off-heap capacity"));
+		}
+		assertEquals(1, store.messageGroupSize("foo"));
+		store.removeMessagesFromGroup("foo", message1);
+		store.addMessageToGroup("foo", new GenericMessage<>(new byte[600 * 1024]));
+		assertEquals(1, store.messageGroupSize("foo"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOffHeapCapacityBelowOneChunk() {
+		new SimpleMessageStore().setOffHeapCapacity(512 * 1024);
+	}
+
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.integration.store.WriteBehindMessageGroupStore.DurabilityMode;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class WriteBehindMessageGroupStoreTests {
+
+	private final CountingMessageStore delegate = new CountingMessageStore();
+
+	private final WriteBehindMessageGroupStore store = new WriteBehindMessageGroupStore(this.delegate);
+
+	@After
+	public void tearDown() {
+		this.store.destroy();
+	}
+
+	@Test
+	public void testConcurrentMutationsAreCoalesced() throws Exception {
+		this.store.setFlushInterval(50);
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < 10; i++) {
+			executor.execute(() -> {
+				try {
+					start.await();
+					for (int j = 0; j < 10; j++) {
+						this.store.addMessagesToGroup("foo", new GenericMessage<>(j));
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(100, this.delegate.messageGroupSize("foo"));
+		assertThat(this.delegate.adds.get(), lessThan(100));
+	}
+
+	@Test
+	public void testReadYourWritesBeforeFlush() {
+		this.store.setDurabilityMode(DurabilityMode.IMMEDIATE);
+		this.store.setFlushInterval(60000);
+		this.store.setBatchSize(1000);
+		Message<?> message1 = new GenericMessage<>("foo");
+		Message<?> message2 = new GenericMessage<>("bar");
+		this.store.addMessagesToGroup("foo", message1, message2);
+		assertEquals(2, this.store.messageGroupSize("foo"));
+		assertEquals(0, this.delegate.messageGroupSize("foo"));
+
+		this.store.removeMessagesFromGroup("foo", message1);
+		this.store.completeGroup("foo");
+		this.store.setLastReleasedSequenceNumberForGroup("foo", 3);
+		MessageGroup group = this.store.getMessageGroup("foo");
+		assertThat(group.getMessages(), contains(message2));
+		assertTrue(group.isComplete());
+		assertEquals(3, group.getLastReleasedMessageSequenceNumber());
+		assertSame(message2, this.store.pollMessageFromGroup("foo"));
+		assertEquals(0, this.store.messageGroupSize("foo"));
+
+		this.store.flush();
+		group = this.delegate.getMessageGroup("foo");
+		assertEquals(0, group.size());
+		assertTrue(group.isComplete());
+		assertEquals(3, group.getLastReleasedMessageSequenceNumber());
+		assertEquals(1, this.delegate.adds.get());
+		assertEquals(0, this.delegate.removes.get());
+	}
+
+	@Test
+	public void testRemoveGroupBeforeFlush() {
+		this.store.setDurabilityMode(DurabilityMode.IMMEDIATE);
+		this.store.setFlushInterval(60000);
+		Message<?> message1 = new GenericMessage<>("foo");
+		Message<?> message2 = new GenericMessage<>("bar");
+		this.delegate.addMessagesToGroup("foo", message1);
+		this.delegate.completeGroup("foo");
+		this.store.removeMessageGroup("foo");
+		this.store.addMessagesToGroup("foo", message2);
+		MessageGroup group = this.store.getMessageGroup("foo");
+		assertThat(group.getMessages(), contains(message2));
+		assertFalse(group.isComplete());
+		assertSame(message1, this.delegate.getOneMessageFromGroup("foo"));
+
+		assertEquals(1, this.store.getMessageGroupCount());
+		group = this.delegate.getMessageGroup("foo");
+		assertThat(group.getMessages(), contains(message2));
+		assertFalse(group.isComplete());
+	}
+
+	@Test
+	public void testAfterFlushWaitsForTheWrite() {
+		Message<?> message = new GenericMessage<>("foo");
+		this.store.addMessagesToGroup("foo", message);
+		assertSame(message, this.delegate.getOneMessageFromGroup("foo"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAfterFlushPropagatesFailure() {
+		this.delegate.failure = new IllegalStateException("expected");
+		this.store.addMessagesToGroup("foo", new GenericMessage<>("foo"));
+	}
+
+	@Test
+	public void testConcurrentPollsDoNotShareMessages() throws Exception {
+		this.store.setDurabilityMode(DurabilityMode.IMMEDIATE);
+		this.store.setFlushInterval(60000);
+		this.store.setBatchSize(10000);
+		for (int i = 0; i < 1000; i++) {
+			this.store.addMessagesToGroup("foo", new GenericMessage<>(i));
+		}
+		Set<Object> polled = ConcurrentHashMap.newKeySet();
+		AtomicInteger duplicates = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		for (int i = 0; i < 10; i++) {
+			executor.execute(() -> {
+				Message<?> message;
+				while ((message = this.store.pollMessageFromGroup("foo")) != null) {
+					if (!polled.add(message.getPayload())) {
+						duplicates.incrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(0, duplicates.get());
+		assertEquals(1000, polled.size());
+		this.store.flush();
+		assertEquals(0, this.delegate.messageGroupSize("foo"));
+	}
+
+	@Test
+	public void testAfterFlushPropagatesError() {
+		this.delegate.error = new NoClassDefFoundError("expected");
+		try {
+			this.store.addMessagesToGroup("foo", new GenericMessage<>("foo"));
+			fail("MessageStoreException expected");
+		}
+		catch (MessageStoreException e) {
+			assertSame(this.delegate.error, e.getCause());
+		}
+		this.delegate.error = null;
+		this.store.addMessagesToGroup("foo", new GenericMessage<>("bar"));
+		assertEquals(1, this.delegate.messageGroupSize("foo"));
+	}
+
+	@Test
+	public void testAfterFlushWaitIsBounded() throws Exception {
+		this.delegate.blocker = new CountDownLatch(1);
+		this.store.setWriteTimeout(100);
+		try {
+			this.store.addMessagesToGroup("foo", new GenericMessage<>("foo"));
+			fail("MessageStoreException expected");
+		}
+		catch (MessageStoreException e) {
+			assertTrue(e.getMessage().contains("Timed out"));
+		}
+		finally {
+			this.delegate.blocker.countDown();
+		}
+	}
+
+	@Test
+	public void testDestroyWritesPendingMutations() {
+		this.store.setDurabilityMode(DurabilityMode.IMMEDIATE);
+		this.store.setFlushInterval(60000);
+		this.store.addMessagesToGroup("foo", new GenericMessage<>("foo"));
+		this.store.destroy();
+		assertEquals(1, this.delegate.messageGroupSize("foo"));
+		this.store.addMessagesToGroup("foo", new GenericMessage<>("bar"));
+		assertEquals(2, this.delegate.messageGroupSize("foo"));
+	}
+
+	private static class CountingMessageStore extends SimpleMessageStore {
+
+		private final AtomicInteger adds = new AtomicInteger();
+
+		private final AtomicInteger removes = new AtomicInteger();
+
+		private volatile RuntimeException failure;
+
+		private volatile Error error;
+
+		private volatile CountDownLatch blocker;
+
+		CountingMessageStore() {
+			super();
+		}
+
+		@Override
+		public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+			if (this.failure != null) {
+				throw this.failure;
+			}
+			if (this.error != null) {
+				throw this.error;
+			}
+			if (this.blocker != null) {
+				try {
+					this.blocker.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			this.adds.incrementAndGet();
+			super.addMessagesToGroup(groupId, messages);
+		}
+
+		@Override
+		public void removeMessagesFromGroup(Object groupId, Collection<Message<?>> messages) {
+			this.removes.incrementAndGet();
+			super.removeMessagesFromGroup(groupId, messages);
+		}
+
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * @since 5.1
+ */
+public class LayeredMessageBuilderTests {
+
+	private final LayeredMessageBuilderFactory factory = new LayeredMessageBuilderFactory();
+
+	@Test
+	public void testLayeredHeadersSameAsFlat() {
+		Message<String> root = MessageBuilder.withPayload("foo")
+				.setHeader("a", 1)
+				.setHeader("b", 2)
+				.setHeader("c", 3)
+				.build();
+		Message<String> layered = this.factory.fromMessage(root)
+				.setHeader("b", 20)
+				.removeHeader("c")
+				.setHeader("d", 4)
+				.build();
+		assertThat(layered.getHeaders(), instanceOf(LayeredMessageHeaders.class));
+		assertNotEquals(root.getHeaders().getId(), layered.getHeaders().getId());
+
+		Message<String> flat = MessageBuilder.fromMessage(root)
+				.setHeader("b", 20)
+				.removeHeader("c")
+				.setHeader("d", 4)
+				.build();
+		Map<String, Object> expected = new HashMap<>(flat.getHeaders());
+		expected.put(MessageHeaders.ID, layered.getHeaders().getId());
+		expected.put(MessageHeaders.TIMESTAMP, layered.getHeaders().getTimestamp());
+		MessageHeaders plain = new MutableMessageHeaders(expected);
+		assertEquals(plain, layered.getHeaders());
+		assertEquals(layered.getHeaders(), plain);
+		assertEquals(plain.hashCode(), layered.getHeaders().hashCode());
+		assertEquals(expected.size(), layered.getHeaders().size());
+		assertEquals(new MessageHeaders(expected).keySet(), layered.getHeaders().keySet());
+		assertEquals(expected.hashCode(), layered.getHeaders().hashCode());
+		assertEquals(20, layered.getHeaders().get("b"));
+		assertNull(layered.getHeaders().get("c"));
+		assertFalse(layered.getHeaders().containsKey("c"));
+		assertTrue(layered.getHeaders().containsKey("a"));
+		assertEquals(Integer.valueOf(4), layered.getHeaders().get("d", Integer.class));
+	}
+
+	@Test
+	public void testEqualsIsSymmetric() {
+		Message<String> root = this.factory.withPayload("foo").setHeader("a", 1).build();
+		Message<String> layered = this.factory.fromMessage(root).setHeader("b", 2).build();
+		assertEquals(1, ((LayeredMessageHeaders) layered.getHeaders()).getDepth());
+		for (Message<?> message : new Message<?>[] { root, layered }) {
+			MessageHeaders plain = new MutableMessageHeaders(new HashMap<>(message.getHeaders()));
+			assertEquals(plain, message.getHeaders());
+			assertEquals(message.getHeaders(), plain);
+			MessageHeaders other = new MutableMessageHeaders(plain);
+			other.put("c", 3);
+			assertNotEquals(other, message.getHeaders());
+			assertNotEquals(message.getHeaders(), other);
+		}
+	}
+
+	@Test
+	public void testCopyHeadersLayersOverMessageHeaders() {
+		Message<String> root = MessageBuilder.withPayload("foo").setHeader("a", 1).build();
+		Message<String> transformed = this.factory.withPayload("bar")
+				.copyHeaders(root.getHeaders())
+				.build();
+		assertEquals("bar", transformed.getPayload());
+		assertEquals(1, transformed.getHeaders().get("a"));
+		assertEquals(3, transformed.getHeaders().size());
+		assertEquals(1, ((LayeredMessageHeaders) transformed.getHeaders()).getDepth());
+	}
+
+	@Test
+	public void testMutableHeadersAreCopied() {
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("a", 1);
+		MutableMessage<String> mutable = new MutableMessage<>("foo", headers);
+		Message<String> fromMessage = this.factory.fromMessage(mutable).setHeader("b", 2).build();
+		Message<String> copied = this.factory.withPayload("bar").copyHeaders(mutable.getHeaders()).build();
+		mutable.getHeaders().put("a", 10);
+		mutable.getHeaders().put("c", 3);
+		assertEquals(1, fromMessage.getHeaders().get("a"));
+		assertFalse(fromMessage.getHeaders().containsKey("c"));
+		assertEquals(1, copied.getHeaders().get("a"));
+		assertFalse(copied.getHeaders().containsKey("c"));
+	}
+
+	@Test
+	public void testUnmodifiedReturnsOriginal() {
+		Message<String> root = MessageBuilder.withPayload("foo").setHeader("a", 1).build();
+		assertSame(root, this.factory.fromMessage(root).setHeader("a", 1).build());
+	}
+
+	@Test
+	public void testFlattenAfterMaxDepth() {
+		this.factory.setMaxDepth(2);
+		Message<?> message = MessageBuilder.withPayload("foo").setHeader("a", 0).build();
+		for (int i = 1; i <= 3; i++) {
+			message = this.factory.fromMessage(message).setHeader("a", i).setHeader("h" + i, i).build();
+		}
+		LayeredMessageHeaders headers = (LayeredMessageHeaders) message.getHeaders();
+		assertEquals(0, headers.getDepth());
+		assertEquals(3, headers.get("a"));
+		assertEquals(6, headers.size());
+	}
+
+	@Test
+	public void testReadOnlyHeaders() {
+		this.factory.setReadOnlyHeaders("foo");
+		Message<String> root = MessageBuilder.withPayload("bar").setHeader("foo", "baz").build();
+		Message<String> message = this.factory.fromMessage(root).build();
+		assertNotEquals(root, message);
+		assertFalse(message.getHeaders().containsKey("foo"));
+		assertEquals(2, message.getHeaders().size());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Message<String> root = MessageBuilder.withPayload("foo").setHeader("a", 1).setHeader("b", new Object()).build();
+		Message<String> layered = this.factory.fromMessage(root).setHeader("c", 3).build();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ObjectOutputStream(out).writeObject(layered);
+		@SuppressWarnings("unchecked")
+		Message<String> deserialized = (Message<String>) new ObjectInputStream(
+				new ByteArrayInputStream(out.toByteArray())).readObject();
+		assertEquals(layered.getHeaders().getId(), deserialized.getHeaders().getId());
+		assertEquals(1, deserialized.getHeaders().get("a"));
+		assertEquals(3, deserialized.getHeaders().get("c"));
+		assertFalse(deserialized.getHeaders().containsKey("b"));
+		assertEquals(4, deserialized.getHeaders().size());
+		assertEquals(new MutableMessageHeaders(new HashMap<>(deserialized.getHeaders())), deserialized.getHeaders());
+	}
+
+}
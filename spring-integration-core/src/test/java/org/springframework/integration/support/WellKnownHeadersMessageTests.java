@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+import org.junit.Test;
+
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+
+/**
+ * @since 5.1
+ */
+public class WellKnownHeadersMessageTests {
+
+	private final WellKnownHeadersMessageBuilderFactory factory = new WellKnownHeadersMessageBuilderFactory();
+
+	@Test
+	public void testFieldsAndMapView() {
+		Message<String> message = this.factory.withPayload("foo")
+				.pushSequenceDetails("bar", 2, 5)
+				.setPriority(7)
+				.setExpirationDate(42L)
+				.build();
+		assertThat(message, instanceOf(WellKnownHeadersMessage.class));
+		WellKnownHeadersMessage<String> wellKnown = (WellKnownHeadersMessage<String>) message;
+		assertEquals("bar", wellKnown.getCorrelationId());
+		assertEquals(2, wellKnown.getSequenceNumber());
+		assertEquals(5, wellKnown.getSequenceSize());
+		assertTrue(wellKnown.hasPriority());
+		assertEquals(7, wellKnown.getPriority());
+		assertEquals(42L, wellKnown.getExpirationDate());
+
+		assertEquals("bar", StaticMessageHeaderAccessor.getCorrelationId(message));
+		assertEquals(2, StaticMessageHeaderAccessor.getSequenceNumber(message));
+		assertEquals(5, StaticMessageHeaderAccessor.getSequenceSize(message));
+		assertEquals(Integer.valueOf(7), StaticMessageHeaderAccessor.getPriority(message));
+		assertEquals(Long.valueOf(42L), StaticMessageHeaderAccessor.getExpirationDate(message));
+
+		assertEquals(2, message.getHeaders().get("sequenceNumber"));
+	}
+
+	@Test
+	public void testAbsentHeaders() {
+		Message<String> message = this.factory.withPayload("foo").build();
+		assertNull(StaticMessageHeaderAccessor.getCorrelationId(message));
+		assertEquals(0, StaticMessageHeaderAccessor.getSequenceNumber(message));
+		assertNull(StaticMessageHeaderAccessor.getPriority(message));
+		assertNull(StaticMessageHeaderAccessor.getExpirationDate(message));
+		assertFalse(((WellKnownHeadersMessage<?>) message).hasPriority());
+	}
+
+	@Test
+	public void testUnexpectedTypeFallsBackToMap() {
+		Message<String> message = new WellKnownHeadersMessage<>("foo",
+				MessageBuilder.withPayload("foo").setHeader("expirationDate", new Date()).build()
+						.getHeaders());
+		assertFalse(((WellKnownHeadersMessage<?>) message).isExpirationDateResolved());
+		try {
+			StaticMessageHeaderAccessor.getExpirationDate(message);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("expirationDate"));
+		}
+	}
+
+	@Test
+	public void testOriginalAndErrorMessagesAsIs() {
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		assertSame(message, this.factory.fromMessage(message).build());
+		assertThat(this.factory.withPayload(new RuntimeException()).build(), instanceOf(ErrorMessage.class));
+	}
+
+	@Test
+	public void testLayeredHeadersUsedDirectly() {
+		WellKnownHeadersMessageBuilderFactory layeredFactory =
+				new WellKnownHeadersMessageBuilderFactory(new LayeredMessageBuilderFactory());
+		Message<String> root = MessageBuilder.withPayload("foo").setHeader("a", 1).build();
+		Message<String> message = layeredFactory.fromMessage(root).setSequenceNumber(3).build();
+		assertThat(message, instanceOf(WellKnownHeadersMessage.class));
+		assertThat(message.getHeaders(), instanceOf(LayeredMessageHeaders.class));
+		assertEquals(1, message.getHeaders().get("a"));
+		assertEquals(3, StaticMessageHeaderAccessor.getSequenceNumber(message));
+		assertThat(new WellKnownHeadersMessageBuilderFactory(new MutableMessageBuilderFactory())
+				.withPayload("foo").build(), instanceOf(MutableMessage.class));
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Message<String> message = this.factory.withPayload("foo").setSequenceNumber(3).build();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ObjectOutputStream(out).writeObject(message);
+		Message<?> deserialized = (Message<?>) new ObjectInputStream(
+				new ByteArrayInputStream(out.toByteArray())).readObject();
+		assertThat(deserialized, instanceOf(WellKnownHeadersMessage.class));
+		assertEquals(3, ((WellKnownHeadersMessage<?>) deserialized).getSequenceNumber());
+		assertEquals(message, deserialized);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.locks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+/**
+ * @since 5.1
+ */
+public class PooledLockRegistryTests {
+
+	@Test
+	public void testKeysWithSameHashDoNotShareLock() throws Exception {
+		PooledLockRegistry registry = new PooledLockRegistry();
+		Lock lock1 = registry.obtain(new HashKey("foo"));
+		lock1.lock();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> other = executor.submit(() -> {
+				Lock lock2 = registry.obtain(new HashKey("bar"));
+				boolean locked = lock2.tryLock();
+				if (locked) {
+					lock2.unlock();
+				}
+				return locked;
+			});
+			assertTrue(other.get(10, TimeUnit.SECONDS));
+			Future<Boolean> same = executor.submit(() -> registry.obtain(new HashKey("foo")).tryLock());
+			assertFalse(same.get(10, TimeUnit.SECONDS));
+		}
+		finally {
+			lock1.unlock();
+			executor.shutdownNow();
+		}
+		assertEquals(0, registry.getActiveKeyCount());
+		assertEquals(2, registry.getAcquisitionCount());
+		assertEquals(1, registry.getContendedCount());
+	}
+
+	@Test
+	public void testReleasedLocksArePooled() {
+		PooledLockRegistry registry = new PooledLockRegistry();
+		registry.setMaxPoolSize(1);
+		Lock lock1 = registry.obtain("foo");
+		Lock lock2 = registry.obtain("bar");
+		lock1.lock();
+		lock1.lock();
+		lock2.lock();
+		assertEquals(2, registry.getActiveKeyCount());
+		lock1.unlock();
+		assertEquals(2, registry.getActiveKeyCount());
+		lock1.unlock();
+		lock2.unlock();
+		assertEquals(0, registry.getActiveKeyCount());
+		assertEquals(1, registry.getPoolSize());
+		assertTrue(registry.obtain("baz").tryLock());
+		assertEquals(0, registry.getPoolSize());
+		assertEquals(1, registry.getActiveKeyCount());
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockNotHeld() {
+		new PooledLockRegistry().obtain("foo").unlock();
+	}
+
+	@Test
+	public void testContentionIsMeasured() throws Exception {
+		PooledLockRegistry registry = new PooledLockRegistry();
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		CountDownLatch waiting = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> waiter = executor.submit(() -> {
+				Lock sameLock = registry.obtain("foo");
+				waiting.countDown();
+				sameLock.lock();
+				sameLock.unlock();
+			});
+			assertTrue(waiting.await(10, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			assertFalse(registry.obtain("foo").tryLock(10, TimeUnit.MILLISECONDS));
+			lock.unlock();
+			waiter.get(10, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(0, registry.getActiveKeyCount());
+		assertEquals(2, registry.getAcquisitionCount());
+		assertEquals(2, registry.getContendedCount());
+		assertTrue(registry.getWaitTime() >= 50);
+		registry.resetStatistics();
+		assertEquals(0, registry.getAcquisitionCount());
+	}
+
+	private static final class HashKey {
+
+		private final String name;
+
+		HashKey(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof HashKey && ((HashKey) o).name.equals(this.name);
+		}
+
+		@Override
+		public int hashCode() {
+			return 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,583 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupFactory;
+import org.springframework.integration.store.MessageStoreException;
+import org.springframework.integration.store.PriorityCapableChannelMessageStore;
+import org.springframework.integration.store.SimpleMessageGroupFactory;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link PriorityCapableChannelMessageStore} which appends the serialized messages to
+ * memory-mapped segment files in a local directory, for durable
+ * {@link org.springframework.integration.channel.QueueChannel}s without an external
+ * server and at the speed of sequential disk writes.
+ * <p>
+ * Each group (channel) has its own sub-directory, named after the
+ * {@link UUIDConverter#getUUID(Object) UUID} of the group id, with segment files of
+ * {@link #setSegmentSize(int) segmentSize} bytes. A message is appended as a record
+ * with a header holding its length, its state and its priority; a poll marks the record
+ * as consumed in place, and a segment is unmapped and deleted as soon as all of its records
+ * are consumed; a segment file which cannot be deleted yet is retried on the next roll.
+ * The live records are indexed in memory and the index is rebuilt by scanning the
+ * segments when a group is first accessed after a restart.
+ * <p>
+ * The messages are serialized with Java serialization by default; another
+ * {@link Serializer}/{@link Deserializer} pair or a {@link Codec} (such as the Kryo
+ * {@link org.springframework.integration.codec.kryo.MessageCodec}) can be configured.
+ * The written records survive a crash of the process; set {@link #setSyncWrites(boolean)}
+ * to force them to the storage device so that they also survive a crash of the system.
+ * <p>
+ * A directory must be used by only one store instance at a time.
+ *
+ * @since 5.1
+ */
+public class MappedFileChannelMessageStore
+		implements PriorityCapableChannelMessageStore, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(MappedFileChannelMessageStore.class);
+
+	/**
+	 * The default size of a segment file: 16 megabytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private static final String SEGMENT_SUFFIX = ".segment";
+
+	/**
+	 * The record header: the length of the message (int), its state (byte) and its
+	 * priority (int).
+	 */
+	private static final int HEADER_SIZE = 9;
+
+	private static final int STATE_OFFSET = 4;
+
+	private static final int PRIORITY_OFFSET = 5;
+
+	private static final byte LIVE = 1;
+
+	private static final byte CONSUMED = 2;
+
+	private final ConcurrentMap<String, GroupLog> logs = new ConcurrentHashMap<>();
+
+	private final File directory;
+
+	private Serializer<? super Message<?>> serializer = new DefaultSerializer();
+
+	private Deserializer<? extends Message<?>> deserializer =
+			inputStream -> (Message<?>) new DefaultDeserializer().deserialize(inputStream);
+
+	private MessageGroupFactory messageGroupFactory = new SimpleMessageGroupFactory();
+
+	private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	private boolean priorityEnabled;
+
+	private boolean syncWrites;
+
+	public MappedFileChannelMessageStore(File directory) {
+		Assert.notNull(directory, "'directory' must not be null");
+		this.directory = directory;
+	}
+
+	/**
+	 * Set the serializer for the messages. Default Java serialization.
+	 * @param serializer the serializer.
+	 */
+	public void setSerializer(Serializer<? super Message<?>> serializer) {
+		Assert.notNull(serializer, "'serializer' must not be null");
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Set the deserializer for the messages. Default Java serialization.
+	 * @param deserializer the deserializer.
+	 */
+	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
+		Assert.notNull(deserializer, "'deserializer' must not be null");
+		this.deserializer = deserializer;
+	}
+
+	/**
+	 * Serialize the messages with the {@link Codec}, for example a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}.
+	 * @param codec the codec.
+	 */
+	public void setCodec(Codec codec) {
+		Assert.notNull(codec, "'codec' must not be null");
+		this.serializer = codec::encode;
+		this.deserializer = inputStream -> codec.decode(inputStream, Message.class);
+	}
+
+	public void setMessageGroupFactory(MessageGroupFactory messageGroupFactory) {
+		Assert.notNull(messageGroupFactory, "'messageGroupFactory' must not be null");
+		this.messageGroupFactory = messageGroupFactory;
+	}
+
+	/**
+	 * Set the size of the segment files; a larger message gets a segment of its own.
+	 * Default {@link #DEFAULT_SEGMENT_SIZE}.
+	 * @param segmentSize the segment size in bytes.
+	 */
+	public void setSegmentSize(int segmentSize) {
+		Assert.isTrue(segmentSize > HEADER_SIZE, "'segmentSize' must be greater than " + HEADER_SIZE);
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set to true to poll the messages in the order of their
+	 * {@link org.springframework.integration.IntegrationMessageHeaderAccessor#PRIORITY}
+	 * header, highest first, and then in the order of arrival; the messages without
+	 * priority come last.
+	 * @param priorityEnabled true to enable the priority.
+	 */
+	public void setPriorityEnabled(boolean priorityEnabled) {
+		this.priorityEnabled = priorityEnabled;
+	}
+
+	@Override
+	public boolean isPriorityEnabled() {
+		return this.priorityEnabled;
+	}
+
+	/**
+	 * Set to true to force each write to the storage device before returning. Default
+	 * false: the records are written to the page cache and survive a crash of the
+	 * process, but not of the system.
+	 * @param syncWrites true to force each write.
+	 */
+	public void setSyncWrites(boolean syncWrites) {
+		this.syncWrites = syncWrites;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (!this.directory.exists() && !this.directory.mkdirs()) {
+			throw new IllegalStateException("Cannot create directory: " + this.directory);
+		}
+		Assert.isTrue(this.directory.isDirectory(), () -> "Not a directory: " + this.directory);
+	}
+
+	@Override
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		Assert.notNull(message, "'message' must not be null");
+		int priority = Integer.MIN_VALUE;
+		if (this.priorityEnabled) {
+			Integer messagePriority = StaticMessageHeaderAccessor.getPriority(message);
+			if (messagePriority != null) {
+				priority = messagePriority;
+			}
+		}
+		getLog(groupId).append(serialize(message), priority);
+		return this.messageGroupFactory.create(groupId);
+	}
+
+	@Override
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		byte[] record = getLog(groupId).poll();
+		return record != null ? deserialize(record) : null;
+	}
+
+	/**
+	 * Return a group with a snapshot of the messages, in the polling order.
+	 */
+	@Override
+	public MessageGroup getMessageGroup(Object groupId) {
+		List<Message<?>> messages = new ArrayList<>();
+		for (byte[] record : getLog(groupId).snapshot()) {
+			messages.add(deserialize(record));
+		}
+		return this.messageGroupFactory.create(messages, groupId);
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		return getLog(groupId).size();
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		getLog(groupId).clear();
+	}
+
+	@Override
+	public void destroy() {
+		for (GroupLog log : this.logs.values()) {
+			log.close();
+		}
+		this.logs.clear();
+	}
+
+	private GroupLog getLog(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		return this.logs.computeIfAbsent(UUIDConverter.getUUID(groupId).toString(),
+				key -> new GroupLog(new File(this.directory, key)));
+	}
+
+	private byte[] serialize(Message<?> message) {
+		try {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+			this.serializer.serialize(message, outputStream);
+			return outputStream.toByteArray();
+		}
+		catch (IOException e) {
+			throw new MessageStoreException(message, "Failed to serialize the message", e);
+		}
+	}
+
+	private Message<?> deserialize(byte[] record) {
+		try {
+			return this.deserializer.deserialize(new ByteArrayInputStream(record));
+		}
+		catch (IOException e) {
+			throw new MessageStoreException("Failed to deserialize a message", e);
+		}
+	}
+
+	/**
+	 * The segments and the index of the live records of a group.
+	 */
+	private final class GroupLog {
+
+		private final File directory;
+
+		private final List<Segment> segments = new ArrayList<>();
+
+		private final NavigableMap<Integer, Deque<Record>> index = new TreeMap<>(Comparator.reverseOrder());
+
+		private final List<File> undeletedFiles = new ArrayList<>();
+
+		private Segment active;
+
+		private long nextSegmentId;
+
+		private int size;
+
+		GroupLog(File directory) {
+			this.directory = directory;
+			if (!directory.exists() && !directory.mkdirs()) {
+				throw new MessageStoreException("Cannot create directory: " + directory);
+			}
+			File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+			Arrays.sort(files);
+			try {
+				for (File file : files) {
+					String name = file.getName();
+					long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+					this.nextSegmentId = Math.max(this.nextSegmentId, id + 1);
+					Segment segment = new Segment(file, 0);
+					recover(segment);
+					if (segment.live > 0) {
+						this.segments.add(segment);
+						this.active = segment;
+					}
+					else {
+						delete(segment);
+					}
+				}
+			}
+			catch (IOException e) {
+				throw new MessageStoreException("Failed to open the segments in " + directory, e);
+			}
+		}
+
+		private void recover(Segment segment) {
+			MappedByteBuffer buffer = segment.buffer;
+			int position = 0;
+			while (position + HEADER_SIZE <= buffer.capacity()) {
+				int length = buffer.getInt(position);
+				if (length <= 0 || length > buffer.capacity() - position - HEADER_SIZE) {
+					break;
+				}
+				if (buffer.get(position + STATE_OFFSET) == LIVE) {
+					index(new Record(segment, position, length), buffer.getInt(position + PRIORITY_OFFSET));
+				}
+				position += HEADER_SIZE + length;
+			}
+			segment.writePosition = position;
+		}
+
+		synchronized void append(byte[] bytes, int priority) {
+			int recordSize = HEADER_SIZE + bytes.length;
+			try {
+				if (this.active == null || this.active.buffer.capacity() - this.active.writePosition < recordSize) {
+					roll(recordSize);
+				}
+			}
+			catch (IOException e) {
+				throw new MessageStoreException("Failed to create a segment in " + this.directory, e);
+			}
+			Segment segment = this.active;
+			int position = segment.writePosition;
+			ByteBuffer buffer = segment.buffer.duplicate();
+			buffer.position(position + HEADER_SIZE);
+			buffer.put(bytes);
+			segment.buffer.put(position + STATE_OFFSET, LIVE);
+			segment.buffer.putInt(position + PRIORITY_OFFSET, priority);
+			// The length is written last: a record without it is not recovered
+			segment.buffer.putInt(position, bytes.length);
+			if (MappedFileChannelMessageStore.this.syncWrites) {
+				segment.buffer.force();
+			}
+			segment.writePosition += recordSize;
+			index(new Record(segment, position, bytes.length), priority);
+		}
+
+		private void roll(int recordSize) throws IOException {
+			retryDeletes();
+			if (this.active != null && this.active.live == 0) {
+				this.segments.remove(this.active);
+				delete(this.active);
+			}
+			String name = String.format("%020d", this.nextSegmentId++) + SEGMENT_SUFFIX;
+			this.active = new Segment(new File(this.directory, name),
+					Math.max(MappedFileChannelMessageStore.this.segmentSize, recordSize));
+			this.segments.add(this.active);
+		}
+
+		private void index(Record record, int priority) {
+			int key = MappedFileChannelMessageStore.this.priorityEnabled ? priority : 0;
+			this.index.computeIfAbsent(key, k -> new ArrayDeque<>()).add(record);
+			record.segment.live++;
+			this.size++;
+		}
+
+		synchronized byte[] poll() {
+			Map.Entry<Integer, Deque<Record>> first = this.index.firstEntry();
+			if (first == null) {
+				return null;
+			}
+			Record record = first.getValue().poll();
+			if (first.getValue().isEmpty()) {
+				this.index.remove(first.getKey());
+			}
+			byte[] bytes = record.read();
+			Segment segment = record.segment;
+			segment.buffer.put(record.position + STATE_OFFSET, CONSUMED);
+			if (MappedFileChannelMessageStore.this.syncWrites) {
+				segment.buffer.force();
+			}
+			this.size--;
+			if (--segment.live == 0 && segment != this.active) {
+				this.segments.remove(segment);
+				delete(segment);
+			}
+			return bytes;
+		}
+
+		synchronized List<byte[]> snapshot() {
+			List<byte[]> records = new ArrayList<>(this.size);
+			for (Deque<Record> deque : this.index.values()) {
+				for (Record record : deque) {
+					records.add(record.read());
+				}
+			}
+			return records;
+		}
+
+		synchronized int size() {
+			return this.size;
+		}
+
+		synchronized void clear() {
+			retryDeletes();
+			for (Segment segment : this.segments) {
+				delete(segment);
+			}
+			this.segments.clear();
+			this.index.clear();
+			this.active = null;
+			this.size = 0;
+		}
+
+		synchronized void close() {
+			for (Segment segment : this.segments) {
+				segment.close();
+			}
+			retryDeletes();
+		}
+
+		private void delete(Segment segment) {
+			if (!segment.delete()) {
+				this.undeletedFiles.add(segment.file);
+			}
+		}
+
+		private void retryDeletes() {
+			this.undeletedFiles.removeIf(file -> file.delete() || !file.exists());
+			if (!this.undeletedFiles.isEmpty() && logger.isWarnEnabled()) {
+				logger.warn("Failed to delete the consumed segments " + this.undeletedFiles + "; will retry");
+			}
+		}
+
+	}
+
+	/**
+	 * A memory-mapped segment file.
+	 */
+	private static final class Segment {
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		private MappedByteBuffer buffer;
+
+		private int writePosition;
+
+		private int live;
+
+		/**
+		 * Open the file, creating it with the capacity if it is greater than 0.
+		 */
+		Segment(File file, int capacity) throws IOException {
+			this.file = file;
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				if (capacity > 0) {
+					randomAccessFile.setLength(capacity);
+				}
+				this.channel = randomAccessFile.getChannel();
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.channel.size());
+			}
+			catch (IOException e) {
+				randomAccessFile.close();
+				throw e;
+			}
+		}
+
+		void close() {
+			try {
+				this.channel.close();
+			}
+			catch (IOException e) {
+				logger.debug("Failed to close " + this.file, e);
+			}
+		}
+
+		/**
+		 * Close the channel, unmap the buffer and delete the file.
+		 * @return false if the file could not be deleted.
+		 */
+		boolean delete() {
+			close();
+			MappedByteBuffer buffer = this.buffer;
+			this.buffer = null;
+			unmap(buffer);
+			return this.file.delete() || !this.file.exists();
+		}
+
+		/**
+		 * Release the mapping now instead of when the buffer is garbage collected, because
+		 * a mapped file cannot be deleted on some platforms. There is no public API for it
+		 * before Java 9, so the JDK internals are used on a best-effort basis.
+		 */
+		private static void unmap(MappedByteBuffer buffer) {
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner;
+				try {
+					invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				}
+				catch (NoSuchMethodException e) {
+					// Java 8
+					Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+					cleanerMethod.setAccessible(true);
+					Object cleaner = cleanerMethod.invoke(buffer);
+					if (cleaner != null) {
+						cleaner.getClass().getMethod("clean").invoke(cleaner);
+					}
+					return;
+				}
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			}
+			catch (Exception e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Failed to unmap a segment buffer; it is released when garbage collected", e);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The location of a live record.
+	 */
+	private static final class Record {
+
+		private final Segment segment;
+
+		private final int position;
+
+		private final int length;
+
+		Record(Segment segment, int position, int length) {
+			this.segment = segment;
+			this.position = position;
+			this.length = length;
+		}
+
+		byte[] read() {
+			byte[] bytes = new byte[this.length];
+			ByteBuffer buffer = this.segment.buffer.duplicate();
+			buffer.position(this.position + HEADER_SIZE);
+			buffer.get(bytes);
+			return bytes;
+		}
+
+	}
+
+}
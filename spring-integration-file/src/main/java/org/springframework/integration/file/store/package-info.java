@@ -0,0 +1,4 @@
+/**
+ * Provides classes for the file-based message stores.
+ */
+package org.springframework.integration.file.store;
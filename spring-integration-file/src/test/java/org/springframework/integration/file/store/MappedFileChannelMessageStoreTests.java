@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.file.store;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class MappedFileChannelMessageStoreTests {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private MappedFileChannelMessageStore store;
+
+	@After
+	public void tearDown() {
+		if (this.store != null) {
+			this.store.destroy();
+		}
+	}
+
+	@Test
+	public void testQueueChannel() {
+		this.store = createStore(false, MappedFileChannelMessageStore.DEFAULT_SEGMENT_SIZE);
+		QueueChannel channel = new QueueChannel(new MessageGroupQueue(this.store, "foo"));
+		for (int i = 0; i < 10; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		assertEquals(10, channel.getQueueSize());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, channel.receive(0).getPayload());
+		}
+		assertNull(channel.receive(0));
+	}
+
+	@Test
+	public void testRecoveryAndCompaction() {
+		this.store = createStore(false, 1024);
+		for (int i = 0; i < 50; i++) {
+			this.store.addMessageToGroup("foo", new GenericMessage<>("message" + i));
+		}
+		File groupDirectory = new File(this.folder.getRoot(), UUIDConverter.getUUID("foo").toString());
+		assertThat(groupDirectory.list().length, greaterThan(1));
+		for (int i = 0; i < 20; i++) {
+			assertEquals("message" + i, this.store.pollMessageFromGroup("foo").getPayload());
+		}
+		this.store.destroy();
+
+		this.store = createStore(false, 1024);
+		assertEquals(30, this.store.messageGroupSize("foo"));
+		assertEquals(30, this.store.getMessageGroup("foo").size());
+		for (int i = 20; i < 50; i++) {
+			assertEquals("message" + i, this.store.pollMessageFromGroup("foo").getPayload());
+		}
+		assertNull(this.store.pollMessageFromGroup("foo"));
+		assertEquals(1, groupDirectory.list().length);
+
+		this.store.addMessageToGroup("foo", new GenericMessage<>("bar"));
+		this.store.removeMessageGroup("foo");
+		assertEquals(0, this.store.messageGroupSize("foo"));
+		assertEquals(0, groupDirectory.list().length);
+	}
+
+	@Test
+	public void testPriority() {
+		this.store = createStore(true, MappedFileChannelMessageStore.DEFAULT_SEGMENT_SIZE);
+		this.store.addMessageToGroup("foo", MessageBuilder.withPayload("low").setPriority(1).build());
+		this.store.addMessageToGroup("foo", MessageBuilder.withPayload("high1").setPriority(5).build());
+		this.store.addMessageToGroup("foo", new GenericMessage<>("none"));
+		this.store.addMessageToGroup("foo", MessageBuilder.withPayload("high2").setPriority(5).build());
+		this.store.destroy();
+
+		this.store = createStore(true, MappedFileChannelMessageStore.DEFAULT_SEGMENT_SIZE);
+		List<Object> payloads = new ArrayList<>();
+		Message<?> message;
+		while ((message = this.store.pollMessageFromGroup("foo")) != null) {
+			payloads.add(message.getPayload());
+		}
+		assertThat(payloads, contains("high1", "high2", "low", "none"));
+	}
+
+	private MappedFileChannelMessageStore createStore(boolean priorityEnabled, int segmentSize) {
+		MappedFileChannelMessageStore messageStore = new MappedFileChannelMessageStore(this.folder.getRoot());
+		messageStore.setPriorityEnabled(priorityEnabled);
+		messageStore.setSegmentSize(segmentSize);
+		messageStore.afterPropertiesSet();
+		return messageStore;
+	}
+
+}
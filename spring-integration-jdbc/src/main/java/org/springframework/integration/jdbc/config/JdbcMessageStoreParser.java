@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -65,6 +65,7 @@ public class JdbcMessageStoreParser extends AbstractBeanDefinitionParser {
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "deserializer");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "table-prefix", "tablePrefix");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "region", "region");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "page-size", "pageSize");
 
 		return builder.getBeanDefinition();
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,11 @@
 
 package org.springframework.integration.jdbc.lock;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import javax.sql.DataSource;
@@ -59,6 +63,12 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	 */
 	public static final int DEFAULT_TTL = 10000;
 
+	/**
+	 * The maximum number of locks renewed with a single statement, e.g. the Oracle limit
+	 * of the expressions in an {@code IN} list.
+	 */
+	private static final int MAX_RENEW_KEYS = 1000;
+
 	private final String id;
 
 	private final JdbcTemplate template;
@@ -71,11 +81,12 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 
 	private String deleteQuery = "DELETE FROM %SLOCK WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
 
-	private String deleteExpiredQuery = "DELETE FROM %SLOCK WHERE REGION=? AND LOCK_KEY=? AND CREATED_DATE<?";
-
 	private String deleteAllQuery = "DELETE FROM %SLOCK WHERE REGION=? AND CLIENT_ID=?";
 
-	private String updateQuery = "UPDATE %SLOCK SET CREATED_DATE=? WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
+	private String updateQuery = "UPDATE %SLOCK SET CLIENT_ID=?, CREATED_DATE=? "
+			+ "WHERE REGION=? AND LOCK_KEY=? AND (CLIENT_ID=? OR CREATED_DATE<?)";
+
+	private String renewQuery = "UPDATE %SLOCK SET CREATED_DATE=? WHERE REGION=? AND CLIENT_ID=? AND LOCK_KEY IN ";
 
 	private String insertQuery = "INSERT INTO %SLOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) VALUES (?, ?, ?, ?)";
 
@@ -134,9 +145,9 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	@Override
 	public void afterPropertiesSet() {
 		this.deleteQuery = String.format(this.deleteQuery, this.prefix);
-		this.deleteExpiredQuery = String.format(this.deleteExpiredQuery, this.prefix);
 		this.deleteAllQuery = String.format(this.deleteAllQuery, this.prefix);
 		this.updateQuery = String.format(this.updateQuery, this.prefix);
+		this.renewQuery = String.format(this.renewQuery, this.prefix);
 		this.insertQuery = String.format(this.insertQuery, this.prefix);
 		this.countQuery = String.format(this.countQuery, this.prefix);
 	}
@@ -154,12 +165,14 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	@Transactional(isolation = Isolation.SERIALIZABLE, timeout = 1)
 	@Override
 	public boolean acquire(String lock) {
-		deleteExpired(lock);
-		if (this.template.update(this.updateQuery, new Date(), this.region, lock, this.id) > 0) {
+		Date now = new Date();
+		// refresh our own lock or take over an expired one with a single statement
+		if (this.template.update(this.updateQuery, this.id, now, this.region, lock, this.id,
+				new Date(now.getTime() - this.ttl)) > 0) {
 			return true;
 		}
 		try {
-			return this.template.update(this.insertQuery, this.region, lock, this.id, new Date()) > 0;
+			return this.template.update(this.insertQuery, this.region, lock, this.id, now) > 0;
 		}
 		catch (DuplicateKeyException e) {
 			return false;
@@ -168,14 +181,33 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 
 	@Override
 	public boolean isAcquired(String lock) {
-		deleteExpired(lock);
 		return this.template.queryForObject(this.countQuery, Integer.class, this.region, lock, this.id,
 				new Date(System.currentTimeMillis() - this.ttl)) == 1;
 	}
 
-	private int deleteExpired(String lock) {
-		return this.template.update(this.deleteExpiredQuery, this.region, lock,
-				new Date(System.currentTimeMillis() - this.ttl));
+	/**
+	 * Refresh the created date of the provided locks held by this client with an
+	 * {@code UPDATE ... WHERE LOCK_KEY IN (...)} statement per 1000 locks.
+	 * The released or taken over locks are not updated, so they are not renewed.
+	 * @param locks the locks to renew.
+	 * @return the number of renewed locks.
+	 */
+	@Override
+	public int renew(Collection<String> locks) {
+		List<String> keys = new ArrayList<>(locks);
+		Date now = new Date();
+		int renewed = 0;
+		for (int from = 0; from < keys.size(); from += MAX_RENEW_KEYS) {
+			List<String> chunk = keys.subList(from, Math.min(from + MAX_RENEW_KEYS, keys.size()));
+			List<Object> args = new ArrayList<>(chunk.size() + 3);
+			args.add(now);
+			args.add(this.region);
+			args.add(this.id);
+			args.addAll(chunk);
+			String inClause = "(" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+			renewed += this.template.update(this.renewQuery + inClause, args.toArray());
+		}
+		return renewed;
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,10 @@
 
 package org.springframework.integration.jdbc.lock;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -42,6 +45,12 @@ import org.springframework.util.Assert;
  * same semantics as the {@link DefaultLockRegistry}, but the locks taken will be global,
  * as long as the underlying database supports the "serializable" isolation level in its
  * transactions.
+ * <p>
+ * The reentrant acquisitions of a lock held by the current thread and the contention
+ * between the threads of this process are resolved locally, without any database round
+ * trip. The attempts to acquire a lock held by another process are retried with an
+ * exponential back off. The locks held for longer than the repository time-to-live must
+ * be renewed with {@link #renewLocks()}; a reentrant acquisition doesn't renew the lock.
  *
  * @author Dave Syer
  * @author Artem Bilan
@@ -52,19 +61,56 @@ import org.springframework.util.Assert;
  */
 public class JdbcLockRegistry implements ExpirableLockRegistry {
 
+	/**
+	 * Default value for the initial idle between the attempts to acquire a lock.
+	 */
+	public static final long DEFAULT_IDLE_BETWEEN_TRIES = 10;
+
+	/**
+	 * Default value for the maximum idle between the attempts to acquire a lock.
+	 */
+	public static final long DEFAULT_MAX_IDLE_BETWEEN_TRIES = 1000;
+
 	private final Map<String, JdbcLock> locks = new ConcurrentHashMap<>();
 
 	private final LockRepository client;
 
+	private volatile long idleBetweenTries = DEFAULT_IDLE_BETWEEN_TRIES;
+
+	private volatile long maxIdleBetweenTries = DEFAULT_MAX_IDLE_BETWEEN_TRIES;
+
 	public JdbcLockRegistry(LockRepository client) {
 		this.client = client;
 	}
 
+	/**
+	 * Specify the initial time (in milliseconds) to sleep between the attempts to acquire
+	 * a lock held by another process; it is doubled after each failed attempt, up to the
+	 * {@link #setMaxIdleBetweenTries(long) maximum}. Defaults to 10.
+	 * @param idleBetweenTries the initial idle between tries.
+	 * @since 5.1
+	 */
+	public void setIdleBetweenTries(long idleBetweenTries) {
+		Assert.isTrue(idleBetweenTries > 0, "'idleBetweenTries' must be greater than 0");
+		this.idleBetweenTries = idleBetweenTries;
+	}
+
+	/**
+	 * Specify the maximum time (in milliseconds) to sleep between the attempts to acquire
+	 * a lock held by another process. Defaults to 1000.
+	 * @param maxIdleBetweenTries the maximum idle between tries.
+	 * @since 5.1
+	 */
+	public void setMaxIdleBetweenTries(long maxIdleBetweenTries) {
+		Assert.isTrue(maxIdleBetweenTries > 0, "'maxIdleBetweenTries' must be greater than 0");
+		this.maxIdleBetweenTries = maxIdleBetweenTries;
+	}
+
 	@Override
 	public Lock obtain(Object lockKey) {
 		Assert.isInstanceOf(String.class, lockKey);
 		String path = pathFor((String) lockKey);
-		return this.locks.computeIfAbsent(path, p -> new JdbcLock(this.client, p));
+		return this.locks.computeIfAbsent(path, JdbcLock::new);
 	}
 
 	private String pathFor(String input) {
@@ -84,9 +130,29 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		}
 	}
 
-	private static final class JdbcLock implements Lock {
+	/**
+	 * Renew the time-to-live of all the locks held by this registry with a single
+	 * {@link LockRepository#renew(Collection)} call. Should be invoked periodically, more
+	 * often than the repository time-to-live expires, to hold the locks for longer than that.
+	 * A lock released concurrently is not renewed, since the repository only refreshes the
+	 * existing locks.
+	 * @since 5.1
+	 */
+	public void renewLocks() {
+		List<String> heldLocks = new ArrayList<>();
+		for (JdbcLock lock : this.locks.values()) {
+			if (lock.delegate.isLocked()) {
+				heldLocks.add(lock.path);
+			}
+		}
+		if (!heldLocks.isEmpty()) {
+			this.client.renew(heldLocks);
+		}
+	}
+
+	private final class JdbcLock implements Lock {
 
-		private final LockRepository mutex;
+		private final LockRepository mutex = JdbcLockRegistry.this.client;
 
 		private final String path;
 
@@ -94,8 +160,7 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 
 		private final ReentrantLock delegate = new ReentrantLock();
 
-		JdbcLock(LockRepository client, String path) {
-			this.mutex = client;
+		JdbcLock(String path) {
 			this.path = path;
 		}
 
@@ -106,10 +171,15 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		@Override
 		public void lock() {
 			this.delegate.lock();
+			if (isReentrant()) {
+				return;
+			}
+			long idle = JdbcLockRegistry.this.idleBetweenTries;
 			while (true) {
 				try {
 					while (!doLock()) {
-						Thread.sleep(100); //NOSONAR
+						Thread.sleep(idle); //NOSONAR
+						idle = backOff(idle);
 					}
 					break;
 				}
@@ -137,10 +207,15 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		@Override
 		public void lockInterruptibly() throws InterruptedException {
 			this.delegate.lockInterruptibly();
+			if (isReentrant()) {
+				return;
+			}
+			long idle = JdbcLockRegistry.this.idleBetweenTries;
 			while (true) {
 				try {
 					while (!doLock()) {
-						Thread.sleep(100); //NOSONAR
+						Thread.sleep(idle); //NOSONAR
+						idle = backOff(idle);
 						if (Thread.currentThread().isInterrupted()) {
 							throw new InterruptedException();
 						}
@@ -179,12 +254,17 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 			if (!this.delegate.tryLock(time, unit)) {
 				return false;
 			}
+			if (isReentrant()) {
+				return true;
+			}
 			long expire = now + TimeUnit.MILLISECONDS.convert(time, unit);
+			long idle = JdbcLockRegistry.this.idleBetweenTries;
 			boolean acquired;
 			while (true) {
 				try {
 					while (!(acquired = doLock()) && System.currentTimeMillis() < expire) { //NOSONAR
-						Thread.sleep(100); //NOSONAR
+						Thread.sleep(Math.max(1, Math.min(idle, expire - System.currentTimeMillis()))); //NOSONAR
+						idle = backOff(idle);
 					}
 					if (!acquired) {
 						this.delegate.unlock();
@@ -201,6 +281,22 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 			}
 		}
 
+		/**
+		 * The lock is already held by the current thread, so it is held in the database too.
+		 * Its time-to-live is not refreshed: that is left to {@link #renewLocks()}.
+		 */
+		private boolean isReentrant() {
+			if (this.delegate.getHoldCount() > 1) {
+				this.lastUsed = System.currentTimeMillis();
+				return true;
+			}
+			return false;
+		}
+
+		private long backOff(long idle) {
+			return Math.min(idle * 2, JdbcLockRegistry.this.maxIdleBetweenTries);
+		}
+
 		private boolean doLock() {
 			boolean acquired = this.mutex.acquire(this.path);
 			if (acquired) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc.lock;
 
 import java.io.Closeable;
+import java.util.Collection;
 
 /**
  * Encapsulation of the SQL shunting that is needed for locks. A {@link JdbcLockRegistry}
@@ -34,6 +35,19 @@ public interface LockRepository extends Closeable {
 
 	boolean acquire(String lock);
 
+	/**
+	 * Renew the time-to-live of the provided locks, if they are still held by this
+	 * repository. Implementations must only refresh the existing locks of this client and
+	 * never create a lock, since it may have been released concurrently. The default
+	 * implementation doesn't renew anything: the locks expire after the time-to-live.
+	 * @param locks the locks to renew.
+	 * @return the number of renewed locks.
+	 * @since 5.1
+	 */
+	default int renew(Collection<String> locks) {
+		return 0;
+	}
+
 	@Override
 	void close();
 
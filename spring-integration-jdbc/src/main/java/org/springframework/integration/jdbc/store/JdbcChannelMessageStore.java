@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,17 @@
 
 package org.springframework.integration.jdbc.store;
 
+import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -41,6 +45,7 @@ import org.springframework.integration.jdbc.store.channel.ChannelMessageStorePre
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.MessageRowMapper;
 import org.springframework.integration.jdbc.store.channel.OracleChannelMessageStoreQueryProvider;
+import org.springframework.integration.store.ListenableChannelMessageStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupFactory;
 import org.springframework.integration.store.MessageGroupStore;
@@ -60,6 +65,8 @@ import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.messaging.Message;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -89,7 +96,8 @@ import org.springframework.util.StringUtils;
  * @since 2.2
  */
 @ManagedResource
-public class JdbcChannelMessageStore implements PriorityCapableChannelMessageStore, InitializingBean {
+public class JdbcChannelMessageStore
+		implements PriorityCapableChannelMessageStore, ListenableChannelMessageStore, InitializingBean {
 
 	private static final Log logger = LogFactory.getLog(JdbcChannelMessageStore.class);
 
@@ -128,6 +136,8 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private final Lock idCacheWriteLock = this.idCacheLock.writeLock();
 
+	private final Map<String, Set<Runnable>> groupListeners = new ConcurrentHashMap<>();
+
 	private ChannelMessageStoreQueryProvider channelMessageStoreQueryProvider;
 
 	private String region = DEFAULT_REGION;
@@ -154,6 +164,8 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private boolean priorityEnabled;
 
+	private boolean remoteNotificationsEnabled;
+
 	/**
 	 * Convenient constructor for configuration use.
 	 */
@@ -349,6 +361,20 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return this.priorityEnabled;
 	}
 
+	/**
+	 * Set to true to notify other processes about the added messages with the
+	 * {@link ChannelMessageStoreQueryProvider#getNotifyMessageAddedQuery()} executed
+	 * after each insert, in the same transaction. The notifications are received with a
+	 * {@link org.springframework.integration.jdbc.store.channel.PostgresChannelMessageStoreSubscriber}.
+	 * The listeners in this process are notified regardless of this option.
+	 * Defaults to false.
+	 * @param remoteNotificationsEnabled true to notify other processes.
+	 * @since 5.1
+	 */
+	public void setRemoteNotificationsEnabled(boolean remoteNotificationsEnabled) {
+		this.remoteNotificationsEnabled = remoteNotificationsEnabled;
+	}
+
 	/**
 	 * Specify the {@link MessageGroupFactory} to create {@link MessageGroup} object where
 	 * it is necessary.
@@ -383,6 +409,9 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	public void afterPropertiesSet() throws Exception {
 		Assert.state(this.jdbcTemplate != null, "A DataSource or JdbcTemplate must be provided");
 		Assert.notNull(this.channelMessageStoreQueryProvider, "A channelMessageStoreQueryProvider must be provided.");
+		Assert.state(!this.remoteNotificationsEnabled
+						|| this.channelMessageStoreQueryProvider.getNotifyMessageAddedQuery() != null,
+				"The channelMessageStoreQueryProvider doesn't support remote notifications.");
 
 		if (this.messageRowMapper == null) {
 			this.messageRowMapper = new MessageRowMapper(this.deserializer, this.lobHandler);
@@ -412,6 +441,7 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 			this.jdbcTemplate.update(getQuery(this.channelMessageStoreQueryProvider.getCreateMessageQuery()),
 					ps -> this.preparedStatementSetter.setValues(ps, message, groupId, this.region,
 							this.priorityEnabled));
+			messageAdded(getKey(groupId));
 		}
 		catch (DuplicateKeyException e) {
 			if (logger.isDebugEnabled()) {
@@ -422,6 +452,77 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return getMessageGroup(groupId);
 	}
 
+	private void messageAdded(String groupKey) {
+		if (this.remoteNotificationsEnabled) {
+			this.jdbcTemplate.queryForList(getQuery(this.channelMessageStoreQueryProvider.getNotifyMessageAddedQuery()),
+					groupKey + ' ' + this.region);
+		}
+		if (this.groupListeners.containsKey(groupKey)) {
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+					@Override
+					public void afterCommit() {
+						notifyMessageGroupListeners(groupKey);
+					}
+
+				});
+			}
+			else {
+				notifyMessageGroupListeners(groupKey);
+			}
+		}
+	}
+
+	@Override
+	public void addMessageGroupListener(Object groupId, Runnable listener) {
+		this.groupListeners.computeIfAbsent(getKey(groupId), k -> new CopyOnWriteArraySet<>()).add(listener);
+	}
+
+	@Override
+	public void removeMessageGroupListener(Object groupId, Runnable listener) {
+		Set<Runnable> listeners = this.groupListeners.get(getKey(groupId));
+		if (listeners != null) {
+			listeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Notify the listeners about messages added to the group by another process.
+	 * Notifications for other regions are ignored.
+	 * @param region the region of the message store which has added the messages.
+	 * @param groupKey the group key (the UUID of the group id).
+	 * @since 5.1
+	 */
+	public void notifyMessageGroupListeners(String region, String groupKey) {
+		if (this.region.equals(region)) {
+			notifyMessageGroupListeners(groupKey);
+		}
+	}
+
+	/**
+	 * Notify the listeners of all the groups, e.g. when notifications from other
+	 * processes may have been missed.
+	 * @since 5.1
+	 */
+	public void notifyAllMessageGroupListeners() {
+		this.groupListeners.keySet().forEach(this::notifyMessageGroupListeners);
+	}
+
+	private void notifyMessageGroupListeners(String groupKey) {
+		Set<Runnable> listeners = this.groupListeners.get(groupKey);
+		if (listeners != null) {
+			for (Runnable listener : listeners) {
+				try {
+					listener.run();
+				}
+				catch (RuntimeException e) {
+					logger.error("Message group listener failed", e);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Helper method that converts the channel id to a UUID using
 	 * {@link UUIDConverter#getUUID(Object)}.
@@ -508,6 +609,90 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return polledMessage;
 	}
 
+	/**
+	 * Claim up to {@code maxMessages} of the oldest messages of the group with a single
+	 * query and remove them with a single JDBC batch. Requires the
+	 * {@link ChannelMessageStoreQueryProvider#getPollBatchFromGroupQuery()} (or its
+	 * priority variant) to be supported; otherwise, or if the {@link #setUsingIdCache(boolean)
+	 * id cache} is used, the messages are polled one by one.
+	 * <p>The claimed rows are locked skipping those locked by other transactions, so the
+	 * poll should be performed within a transaction: in this case concurrent consumers
+	 * claim distinct messages and the whole batch is rolled back together.
+	 * @since 5.1
+	 */
+	@Override
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		String pollBatchQuery =
+				this.priorityEnabled
+						? this.channelMessageStoreQueryProvider.getPriorityPollBatchFromGroupQuery()
+						: this.channelMessageStoreQueryProvider.getPollBatchFromGroupQuery();
+
+		if (pollBatchQuery == null || this.usingIdCache || maxMessages < 2) {
+			return PriorityCapableChannelMessageStore.super.pollMessagesFromGroup(groupId, maxMessages);
+		}
+
+		final NamedParameterJdbcTemplate namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+		final MapSqlParameterSource parameters = new MapSqlParameterSource();
+
+		parameters.addValue("region", this.region);
+		parameters.addValue("group_key", getKey(groupId));
+		parameters.addValue("max_rows", maxMessages);
+
+		List<Message<?>> polledMessages =
+				namedParameterJdbcTemplate.query(getQuery(pollBatchQuery), parameters, rs -> {
+					List<Message<?>> results = new ArrayList<>(maxMessages);
+					int rowNum = 0;
+					while (rowNum < maxMessages && rs.next()) {
+						results.add(this.messageRowMapper.mapRow(rs, rowNum++));
+					}
+					return results;
+				});
+
+		if (polledMessages.isEmpty()) {
+			return polledMessages;
+		}
+
+		List<Object[]> batchArgs = new ArrayList<>(polledMessages.size());
+		for (Message<?> message : polledMessages) {
+			batchArgs.add(new Object[] { getKey(message.getHeaders().getId()), getKey(groupId), this.region });
+		}
+
+		int[] updated = this.jdbcTemplate.batchUpdate(getQuery(this.channelMessageStoreQueryProvider.getDeleteMessageQuery()),
+				batchArgs, new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR });
+
+		List<Message<?>> messages = new ArrayList<>(polledMessages.size());
+		for (int i = 0; i < updated.length; i++) {
+			Message<?> message = polledMessages.get(i);
+			if (updated[i] > 0 || (updated[i] == Statement.SUCCESS_NO_INFO && confirmDeleted(message, groupId))) {
+				messages.add(message);
+			}
+			else {
+				logger.warn(String.format("Message with id '%s' was not deleted.", message.getHeaders().getId()));
+			}
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Polled %d messages from group '%s'.", messages.size(), groupId));
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Verify a delete reported by the driver as {@link Statement#SUCCESS_NO_INFO}: the
+	 * row is locked by the batch poll query, so it is gone only if the batch deleted it;
+	 * otherwise, it is deleted now.
+	 */
+	private boolean confirmDeleted(Message<?> message, Object groupId) {
+		String messageId = getKey(message.getHeaders().getId());
+		String groupKey = getKey(groupId);
+		List<Map<String, Object>> rows = this.jdbcTemplate.queryForList(
+				getQuery(this.channelMessageStoreQueryProvider.getMessageQuery()), messageId, groupKey, this.region);
+		return rows.isEmpty()
+				|| this.jdbcTemplate.update(getQuery(this.channelMessageStoreQueryProvider.getDeleteMessageQuery()),
+						messageId, groupKey, this.region) > 0;
+	}
+
 	/**
 	 * This method executes a call to the DB to get the oldest Message in the
 	 * MessageGroup which in the context of the {@link JdbcChannelMessageStore}
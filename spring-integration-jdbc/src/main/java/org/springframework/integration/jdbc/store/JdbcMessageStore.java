@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,12 @@
 
 package org.springframework.integration.jdbc.store;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -26,7 +29,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
@@ -45,6 +50,7 @@ import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -86,9 +92,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	 */
 	public static final String DEFAULT_TABLE_PREFIX = "INT_";
 
-	private enum Query {
-		GROUP_EXISTS("SELECT COUNT(GROUP_KEY) FROM %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?"),
+	private static final int INSERT_BATCH_SIZE = 100;
 
+	private enum Query {
 		CREATE_MESSAGE_GROUP("INSERT into %PREFIX%MESSAGE_GROUP" +
 				"(GROUP_KEY, REGION, MARKED, COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE)"
 				+ " values (?, ?, 0, 0, 0, ?, ?)"),
@@ -106,7 +112,13 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		LIST_MESSAGES_BY_GROUP_KEY("SELECT MESSAGE_ID, MESSAGE_BYTES, CREATED_DATE " +
 				"from %PREFIX%MESSAGE where MESSAGE_ID in " +
 				"(SELECT MESSAGE_ID from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY = ? and REGION = ?) and REGION = ? " +
-				"ORDER BY CREATED_DATE"),
+				"ORDER BY CREATED_DATE, MESSAGE_ID"),
+
+		LIST_MESSAGES_BY_GROUP_KEY_AFTER("SELECT MESSAGE_ID, MESSAGE_BYTES, CREATED_DATE " +
+				"from %PREFIX%MESSAGE where MESSAGE_ID in " +
+				"(SELECT MESSAGE_ID from %PREFIX%GROUP_TO_MESSAGE where GROUP_KEY = ? and REGION = ?) and REGION = ? " +
+				"and (CREATED_DATE > ? or (CREATED_DATE = ? and MESSAGE_ID > ?)) " +
+				"ORDER BY CREATED_DATE, MESSAGE_ID"),
 
 		POLL_FROM_GROUP("SELECT %PREFIX%MESSAGE.MESSAGE_ID, %PREFIX%MESSAGE.MESSAGE_BYTES from %PREFIX%MESSAGE " +
 				"where %PREFIX%MESSAGE.MESSAGE_ID = " +
@@ -151,7 +163,13 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 		UPDATE_GROUP("UPDATE %PREFIX%MESSAGE_GROUP set UPDATED_DATE=? where GROUP_KEY=? and REGION=?"),
 
-		LIST_GROUP_KEYS("SELECT distinct GROUP_KEY as CREATED from %PREFIX%MESSAGE_GROUP where REGION=?");
+		LIST_GROUP_KEYS("SELECT distinct GROUP_KEY as CREATED from %PREFIX%MESSAGE_GROUP where REGION=?"),
+
+		LIST_GROUP_KEYS_CREATED_BEFORE("SELECT GROUP_KEY from %PREFIX%MESSAGE_GROUP " +
+				"where REGION=? and CREATED_DATE <= ?"),
+
+		LIST_GROUP_KEYS_UPDATED_BEFORE("SELECT GROUP_KEY from %PREFIX%MESSAGE_GROUP " +
+				"where REGION=? and UPDATED_DATE <= ?");
 
 		private String sql;
 
@@ -195,6 +213,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private volatile Map<Query, String> queryCache = new HashMap<Query, String>();
 
+	private volatile int pageSize;
+
 	/**
 	 * Create a {@link MessageStore} with all mandatory properties.
 	 * @param dataSource a {@link DataSource}
@@ -277,6 +297,22 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		this.deserializer.addWhiteListPatterns(patterns);
 	}
 
+	/**
+	 * Set the number of messages to load per query when the messages of a group are
+	 * iterated. When greater than 0, {@link #getMessagesForGroup(Object)} returns a
+	 * collection which streams the messages in pages of this size (the page size is also
+	 * used as the JDBC fetch size), so only one page is deserialized and held in memory at
+	 * a time; each iteration queries the database again. The size of the collection is
+	 * counted without reading the messages. Defaults to 0: all the messages are loaded with
+	 * a single query.
+	 * @param pageSize the page size.
+	 * @since 5.1
+	 */
+	public void setPageSize(int pageSize) {
+		Assert.isTrue(pageSize >= 0, "'pageSize' must not be negative");
+		this.pageSize = pageSize;
+	}
+
 	@Override
 	public Message<?> removeMessage(UUID id) {
 		Message<?> message = getMessage(id);
@@ -323,8 +359,12 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public <T> Message<T> addMessage(final Message<T> message) {
+		return doAddMessage(message, new Timestamp(System.currentTimeMillis()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Message<T> doAddMessage(final Message<T> message, final Timestamp createdDate) {
 		UUID id = message.getHeaders().getId();
 		final String messageId = getKey(id);
 		final byte[] messageBytes = this.serializer.convert(message);
@@ -337,7 +377,7 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 			this.jdbcTemplate.update(getQuery(Query.CREATE_MESSAGE), ps -> {
 				ps.setString(1, messageId);
 				ps.setString(2, this.region);
-				ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+				ps.setTimestamp(3, createdDate);
 
 				this.lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes);
 			});
@@ -355,15 +395,13 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	@Override
 	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
 		final String groupKey = getKey(groupId);
-		boolean groupNotExist = this.jdbcTemplate.queryForObject(this.getQuery(Query.GROUP_EXISTS),
-				Integer.class, groupKey, this.region) < 1;
+		List<Timestamp> createdDates = this.jdbcTemplate.query(getQuery(Query.GET_GROUP_CREATED_DATE),
+				new SingleColumnRowMapper<Timestamp>(), groupKey, this.region);
+		boolean groupNotExist = createdDates.isEmpty();
 
 		final Timestamp updatedDate = new Timestamp(System.currentTimeMillis());
 
-		final Timestamp createdDate = groupNotExist ?
-				updatedDate :
-				this.jdbcTemplate.queryForObject(getQuery(Query.GET_GROUP_CREATED_DATE), Timestamp.class, groupKey,
-						this.region);
+		final Timestamp createdDate = groupNotExist ? updatedDate : createdDates.get(0);
 
 		if (groupNotExist) {
 			try {
@@ -378,12 +416,11 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 			doUpdateMessageGroup(groupKey, updatedDate);
 		}
 
-		for (Message<?> message : messages) {
-			addMessage(message);
-		}
+		doAddMessages(messages);
+
 		this.jdbcTemplate.batchUpdate(getQuery(Query.CREATE_GROUP_TO_MESSAGE),
 				Arrays.asList(messages),
-				100,
+				INSERT_BATCH_SIZE,
 				(ps, messageToAdd) -> {
 					String messageId = getKey(messageToAdd.getHeaders().getId());
 					if (logger.isDebugEnabled()) {
@@ -396,6 +433,51 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				});
 	}
 
+	/**
+	 * Insert the messages with JDBC batches. If some of them already exist, the messages
+	 * are inserted one by one, ignoring the existing ones as {@link #addMessage(Message)} does.
+	 * The messages get increasing created dates, one microsecond apart, so they keep their
+	 * order in the group; the one by one inserts reuse the same dates.
+	 * @param messages the messages to insert.
+	 */
+	private void doAddMessages(Message<?>... messages) {
+		if (messages.length == 1) {
+			addMessage(messages[0]);
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		final AtomicInteger sequence = new AtomicInteger();
+		try {
+			this.jdbcTemplate.batchUpdate(getQuery(Query.CREATE_MESSAGE),
+					Arrays.asList(messages),
+					INSERT_BATCH_SIZE,
+					(ps, message) -> {
+						String messageId = getKey(message.getHeaders().getId());
+						if (logger.isDebugEnabled()) {
+							logger.debug("Inserting message with id key=" + messageId);
+						}
+						ps.setString(1, messageId);
+						ps.setString(2, this.region);
+						ps.setTimestamp(3, createdDate(now, sequence.getAndIncrement()));
+						this.lobHandler.getLobCreator().setBlobAsBytes(ps, 4, this.serializer.convert(message));
+					});
+		}
+		catch (DuplicateKeyException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Some of the messages already exist.\nInserting them one by one...");
+			}
+			for (int i = 0; i < messages.length; i++) {
+				doAddMessage(messages[i], createdDate(now, i));
+			}
+		}
+	}
+
+	private static Timestamp createdDate(long millis, int sequence) {
+		Timestamp createdDate = new Timestamp(millis + sequence / 1000);
+		createdDate.setNanos(createdDate.getNanos() + (sequence % 1000) * 1000);
+		return createdDate;
+	}
+
 	@Override
 	@ManagedAttribute
 	public int getMessageGroupCount() {
@@ -553,6 +635,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	@Override
 	public Collection<Message<?>> getMessagesForGroup(Object groupId) {
+		if (this.pageSize > 0) {
+			return new PagedMessageCollection(getKey(groupId), this.pageSize);
+		}
 		return this.jdbcTemplate.query(getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY), this.mapper, getKey(groupId),
 				this.region, this.region);
 	}
@@ -583,6 +668,21 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		};
 	}
 
+	/**
+	 * Select the keys of the groups created (or, if {@link #isTimeoutOnIdle()}, updated)
+	 * before the threshold with a range query on the {@code MESSAGE_GROUP} table, instead
+	 * of loading all the groups.
+	 */
+	@Override
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		Query query = isTimeoutOnIdle() ? Query.LIST_GROUP_KEYS_UPDATED_BEFORE : Query.LIST_GROUP_KEYS_CREATED_BEFORE;
+		List<String> groupKeys = this.jdbcTemplate.query(getQuery(query), new SingleColumnRowMapper<String>(),
+				this.region, new Timestamp(threshold));
+		return () -> groupKeys.stream()
+				.map(this::getMessageGroup)
+				.iterator();
+	}
+
 	/**
 	 * Replace patterns in the input to produce a valid SQL query. This implementation lazily initializes a
 	 * simple map-based cache, only replacing the table prefix on the first access to a named query. Further
@@ -667,6 +767,106 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		return input == null ? null : UUIDConverter.getUUID(input).toString();
 	}
 
+	/**
+	 * The messages of a group loaded on demand in pages, using a keyset on the
+	 * {@code CREATED_DATE} and {@code MESSAGE_ID} of the last message of the previous page.
+	 */
+	private final class PagedMessageCollection extends AbstractCollection<Message<?>> {
+
+		private final String groupKey;
+
+		private final int pageSize;
+
+		PagedMessageCollection(String groupKey, int pageSize) {
+			this.groupKey = groupKey;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		public Iterator<Message<?>> iterator() {
+			return new PagedMessageIterator();
+		}
+
+		@Override
+		public int size() {
+			return JdbcMessageStore.this.jdbcTemplate.queryForObject(getQuery(Query.COUNT_ALL_MESSAGES_IN_GROUP),
+					Integer.class, this.groupKey, JdbcMessageStore.this.region);
+		}
+
+		private final class PagedMessageIterator implements Iterator<Message<?>> {
+
+			private List<Message<?>> page = new ArrayList<>();
+
+			private int index;
+
+			private boolean lastPage;
+
+			private Timestamp lastCreatedDate;
+
+			private String lastMessageId;
+
+			PagedMessageIterator() {
+				super();
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (this.index < this.page.size()) {
+					return true;
+				}
+				if (this.lastPage) {
+					return false;
+				}
+				loadNextPage();
+				return this.index < this.page.size();
+			}
+
+			@Override
+			public Message<?> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return this.page.get(this.index++);
+			}
+
+			private void loadNextPage() {
+				String region = JdbcMessageStore.this.region;
+				String groupKey = PagedMessageCollection.this.groupKey;
+				int pageSize = PagedMessageCollection.this.pageSize;
+				String query;
+				Object[] args;
+				if (this.lastMessageId == null) {
+					query = getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY);
+					args = new Object[] { groupKey, region, region };
+				}
+				else {
+					query = getQuery(Query.LIST_MESSAGES_BY_GROUP_KEY_AFTER);
+					args = new Object[] { groupKey, region, region, this.lastCreatedDate, this.lastCreatedDate,
+							this.lastMessageId };
+				}
+				this.page = JdbcMessageStore.this.jdbcTemplate.query(con -> {
+					PreparedStatement ps = con.prepareStatement(query);
+					ps.setFetchSize(pageSize);
+					ps.setMaxRows(pageSize);
+					new ArgumentPreparedStatementSetter(args).setValues(ps);
+					return ps;
+				}, rs -> {
+					List<Message<?>> messages = new ArrayList<>(pageSize);
+					while (messages.size() < pageSize && rs.next()) {
+						messages.add(JdbcMessageStore.this.mapper.mapRow(rs, messages.size()));
+						this.lastCreatedDate = rs.getTimestamp("CREATED_DATE");
+						this.lastMessageId = rs.getString("MESSAGE_ID");
+					}
+					return messages;
+				});
+				this.index = 0;
+				this.lastPage = this.page.size() < pageSize;
+			}
+
+		}
+
+	}
+
 	/**
 	 * Convenience class to be used to unpack a message from a result set row. Uses column named in the result set to
 	 * extract the required data, so that select clause ordering is unimportant.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -67,6 +67,33 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getPriorityPollFromGroupQuery();
 
+	/**
+	 * Get the query used to claim the oldest messages for a channel in one round trip.
+	 * The rows must be locked skipping those already locked by other transactions
+	 * (e.g. {@code FOR UPDATE SKIP LOCKED}), so concurrent consumers claim distinct
+	 * messages. The query may limit the result with the {@code :max_rows} parameter;
+	 * no more than that many rows are read from the result in any case.
+	 *
+	 * @return Sql Query or null if not supported, in which case the messages are
+	 * polled one by one.
+	 * @since 5.1
+	 */
+	default String getPollBatchFromGroupQuery() {
+		return null;
+	}
+
+	/**
+	 * Get the query used to claim the oldest messages by priority for a channel in one
+	 * round trip. See {@link #getPollBatchFromGroupQuery()} for the requirements.
+	 *
+	 * @return Sql Query or null if not supported, in which case the messages are
+	 * polled one by one.
+	 * @since 5.1
+	 */
+	default String getPriorityPollBatchFromGroupQuery() {
+		return null;
+	}
+
 	/**
 	 * Query that retrieves a message for the provided message id, channel and
 	 * region.
@@ -103,4 +130,18 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getDeleteMessageGroupQuery();
 
+	/**
+	 * Query to notify other processes that a message has been added to a channel,
+	 * executed in the transaction of the insert when
+	 * {@link JdbcChannelMessageStore#setRemoteNotificationsEnabled(boolean)} is set.
+	 * The only parameter is the payload of the notification: the group key and the region
+	 * separated by a space.
+	 *
+	 * @return Sql Query or null if not supported.
+	 * @since 5.1
+	 */
+	default String getNotifyMessageAddedQuery() {
+		return null;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -66,4 +66,26 @@ public class OracleChannelMessageStoreQueryProvider extends AbstractChannelMessa
 				"order by MESSAGE_PRIORITY DESC NULLS LAST, CREATED_DATE, MESSAGE_SEQUENCE FOR UPDATE SKIP LOCKED";
 	}
 
+	/**
+	 * The same query as {@link #getPollFromGroupQuery()}: Oracle locks the rows with
+	 * {@code SKIP LOCKED} as they are fetched. Since the driver prefetches rows, up to a
+	 * fetch size more than the ones read may stay locked (but are not removed) until the
+	 * transaction ends.
+	 */
+	@Override
+	public String getPollBatchFromGroupQuery() {
+		return getPollFromGroupQuery();
+	}
+
+	/**
+	 * The same query as {@link #getPriorityPollFromGroupQuery()}: Oracle locks the rows
+	 * with {@code SKIP LOCKED} as they are fetched. Since the driver prefetches rows, up to
+	 * a fetch size more than the ones read may stay locked (but are not removed) until the
+	 * transaction ends.
+	 */
+	@Override
+	public String getPriorityPollBatchFromGroupQuery() {
+		return getPriorityPollFromGroupQuery();
+	}
+
 }
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Receives the notifications sent by the {@link JdbcChannelMessageStore}s with
+ * {@link JdbcChannelMessageStore#setRemoteNotificationsEnabled(boolean) remote
+ * notifications} enabled and the {@link PostgresChannelMessageStoreQueryProvider}, so the
+ * consumers of the stores registered here are woken up as soon as messages are added by
+ * other processes.
+ * <p>
+ * The subscriber holds a dedicated connection of the {@link DataSource} to {@code LISTEN}
+ * on the {@link #NOTIFICATION_CHANNEL}; the connection is checked for the received
+ * notifications without querying the database and is validated periodically. When the
+ * connection is (re)established, all the listeners of the stores are notified since
+ * notifications may have been missed meanwhile. The receive timeout of the consumers
+ * remains the polling fallback.
+ *
+ * @since 5.1
+ */
+public class PostgresChannelMessageStoreSubscriber implements SmartLifecycle, DisposableBean {
+
+	/**
+	 * The Postgres notification channel used by the
+	 * {@link PostgresChannelMessageStoreQueryProvider#getNotifyMessageAddedQuery()}.
+	 */
+	public static final String NOTIFICATION_CHANNEL = "int_channel_message";
+
+	private static final Log logger = LogFactory.getLog(PostgresChannelMessageStoreSubscriber.class);
+
+	private final Object lifecycleMonitor = new Object();
+
+	private final Set<JdbcChannelMessageStore> messageStores = new CopyOnWriteArraySet<>();
+
+	private final DataSource dataSource;
+
+	private ExecutorService executorService =
+			Executors.newSingleThreadExecutor(new CustomizableThreadFactory("postgres-channel-subscriber-"));
+
+	private boolean executorServiceExplicitlySet;
+
+	private long notificationCheckInterval = 50;
+
+	private long connectionValidationInterval = 30000;
+
+	private long recoveryInterval = 5000;
+
+	private int phase = Integer.MAX_VALUE - 1000;
+
+	private boolean autoStartup = true;
+
+	private volatile boolean running;
+
+	private Future<?> future;
+
+	public PostgresChannelMessageStoreSubscriber(DataSource dataSource) {
+		Assert.notNull(dataSource, "'dataSource' must not be null");
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Register a message store to notify its listeners.
+	 * @param messageStore the message store.
+	 */
+	public void addMessageStore(JdbcChannelMessageStore messageStore) {
+		Assert.notNull(messageStore, "'messageStore' must not be null");
+		this.messageStores.add(messageStore);
+	}
+
+	/**
+	 * Unregister a message store.
+	 * @param messageStore the message store.
+	 */
+	public void removeMessageStore(JdbcChannelMessageStore messageStore) {
+		this.messageStores.remove(messageStore);
+	}
+
+	/**
+	 * Set the {@link ExecutorService} to run the subscriber; a single thread executor
+	 * is used by default.
+	 * @param executorService the executor service.
+	 */
+	public void setExecutorService(ExecutorService executorService) {
+		Assert.notNull(executorService, "'executorService' must not be null");
+		this.executorService = executorService;
+		this.executorServiceExplicitlySet = true;
+	}
+
+	/**
+	 * Set the time in milliseconds between the checks of the connection for the
+	 * received notifications. This is a local operation, no query is sent to the database.
+	 * Defaults to 50.
+	 * @param notificationCheckInterval the interval.
+	 */
+	public void setNotificationCheckInterval(long notificationCheckInterval) {
+		this.notificationCheckInterval = notificationCheckInterval;
+	}
+
+	/**
+	 * Set the time in milliseconds between the validations of the connection with the
+	 * database. Defaults to 30000.
+	 * @param connectionValidationInterval the interval.
+	 */
+	public void setConnectionValidationInterval(long connectionValidationInterval) {
+		this.connectionValidationInterval = connectionValidationInterval;
+	}
+
+	/**
+	 * Set the time in milliseconds to wait before reconnecting after a failure.
+	 * Defaults to 5000.
+	 * @param recoveryInterval the interval.
+	 */
+	public void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	/**
+	 * @param phase the phase
+	 * @see SmartLifecycle
+	 */
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	@Override
+	public int getPhase() {
+		return this.phase;
+	}
+
+	/**
+	 * @param autoStartup true to start automatically
+	 * @see SmartLifecycle
+	 */
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (!this.running) {
+				this.running = true;
+				this.future = this.executorService.submit(this::listen);
+				logger.debug("Started PostgresChannelMessageStoreSubscriber");
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				this.running = false;
+				if (this.future != null) {
+					this.future.cancel(true);
+				}
+				this.future = null;
+				logger.debug("Stopped PostgresChannelMessageStoreSubscriber");
+			}
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public void destroy() {
+		stop();
+		if (!this.executorServiceExplicitlySet) {
+			this.executorService.shutdown();
+		}
+	}
+
+	private void listen() {
+		while (this.running) {
+			try {
+				Connection connection = this.dataSource.getConnection();
+				try {
+					connection.setAutoCommit(true);
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("LISTEN " + NOTIFICATION_CHANNEL);
+					}
+					this.messageStores.forEach(JdbcChannelMessageStore::notifyAllMessageGroupListeners);
+					receiveNotifications(connection);
+				}
+				finally {
+					unlisten(connection);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (Exception e) {
+				if (this.running) {
+					logger.error("Failed to receive Postgres notifications; reconnecting in "
+							+ this.recoveryInterval + " ms", e);
+					try {
+						Thread.sleep(this.recoveryInterval);
+					}
+					catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	private void receiveNotifications(Connection connection) throws SQLException, InterruptedException {
+		PGConnection pgConnection = connection.unwrap(PGConnection.class);
+		long lastValidated = System.currentTimeMillis();
+		while (this.running) {
+			PGNotification[] notifications = pgConnection.getNotifications();
+			if (notifications != null) {
+				for (PGNotification notification : notifications) {
+					dispatch(notification.getParameter());
+				}
+			}
+			if (System.currentTimeMillis() - lastValidated >= this.connectionValidationInterval) {
+				if (!connection.isValid((int) Math.max(1, this.connectionValidationInterval / 1000))) {
+					throw new SQLException("The connection is not valid any more");
+				}
+				lastValidated = System.currentTimeMillis();
+			}
+			Thread.sleep(this.notificationCheckInterval);
+		}
+	}
+
+	private void dispatch(String payload) {
+		int separator = payload != null ? payload.indexOf(' ') : -1;
+		if (separator < 0) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Ignoring the notification with unexpected payload: " + payload);
+			}
+			return;
+		}
+		String groupKey = payload.substring(0, separator);
+		String region = payload.substring(separator + 1);
+		for (JdbcChannelMessageStore messageStore : this.messageStores) {
+			messageStore.notifyMessageGroupListeners(region, groupKey);
+		}
+	}
+
+	private static void unlisten(Connection connection) {
+		try {
+			if (!connection.isClosed()) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("UNLISTEN " + NOTIFICATION_CHANNEL);
+				}
+			}
+		}
+		catch (SQLException e) {
+			logger.debug("Failed to UNLISTEN before releasing the connection", e);
+		}
+		finally {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				logger.debug("Failed to close the connection", e);
+			}
+		}
+	}
+
+}
@@ -22,6 +22,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -46,6 +49,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -96,6 +100,50 @@ public class JdbcLockRegistryDifferentClientTests {
 		}
 	}
 
+	@Test
+	public void testRenewLocksKeepsLockAfterTimeToLive() throws Exception {
+		DefaultLockRepository client1 = new DefaultLockRepository(this.dataSource, "client1");
+		client1.afterPropertiesSet();
+		DefaultLockRepository client2 = new DefaultLockRepository(this.dataSource, "client2");
+		client2.afterPropertiesSet();
+		JdbcLockRegistry registry1 = new JdbcLockRegistry(client1);
+		JdbcLockRegistry registry2 = new JdbcLockRegistry(client2);
+		Lock lock1 = registry1.obtain("foo");
+		Lock lock2 = registry2.obtain("foo");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		// expire the lock of client1 without waiting for the time-to-live
+		String expireQuery = "UPDATE INT_LOCK SET CREATED_DATE=? WHERE CLIENT_ID='client1'";
+		lock1.lock();
+		try {
+			jdbcTemplate.update(expireQuery, new Date(System.currentTimeMillis() - 20000));
+			registry1.renewLocks();
+			assertFalse(lock2.tryLock());
+
+			jdbcTemplate.update(expireQuery, new Date(System.currentTimeMillis() - 20000));
+			assertTrue(lock2.tryLock());
+			lock2.unlock();
+		}
+		finally {
+			lock1.unlock();
+		}
+	}
+
+	@Test
+	public void testRenewDoesNotRecreateReleasedLocks() throws Exception {
+		DefaultLockRepository client1 = new DefaultLockRepository(this.dataSource, "client1");
+		client1.afterPropertiesSet();
+		DefaultLockRepository client2 = new DefaultLockRepository(this.dataSource, "client2");
+		client2.afterPropertiesSet();
+		assertTrue(client1.acquire("foo"));
+		assertTrue(client2.acquire("bar"));
+		assertEquals(1, client1.renew(Arrays.asList("foo", "bar", "baz")));
+		client1.delete("foo");
+		assertEquals(0, client1.renew(Collections.singletonList("foo")));
+		assertFalse(client1.isAcquired("foo"));
+		assertTrue(client2.acquire("foo"));
+		client2.close();
+	}
+
 	@Test
 	public void testSecondThreadLoses() throws Exception {
 		for (int i = 0; i < 100; i++) {
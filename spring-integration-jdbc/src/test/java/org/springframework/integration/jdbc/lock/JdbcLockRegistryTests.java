@@ -24,7 +24,14 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -40,6 +47,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.UUIDConverter;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -135,6 +143,49 @@ public class JdbcLockRegistryTests {
 		}
 	}
 
+	@Test
+	public void testReentrantLockDoesNotHitRepository() throws Exception {
+		LockRepository repository = mock(LockRepository.class);
+		given(repository.acquire(anyString())).willReturn(true);
+		JdbcLockRegistry registry = new JdbcLockRegistry(repository);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		try {
+			lock.lockInterruptibly();
+			assertTrue(lock.tryLock());
+			lock.unlock();
+			lock.unlock();
+			registry.renewLocks();
+		}
+		finally {
+			lock.unlock();
+		}
+		registry.renewLocks();
+		verify(repository).acquire(anyString());
+		verify(repository).delete(anyString());
+		verify(repository, times(1)).renew(Collections.singletonList(UUIDConverter.getUUID("foo").toString()));
+	}
+
+	@Test
+	public void testRenewLocksOnlyRenewsHeldLocks() throws Exception {
+		LockRepository repository = mock(LockRepository.class);
+		given(repository.acquire(anyString())).willReturn(true);
+		JdbcLockRegistry registry = new JdbcLockRegistry(repository);
+		Lock lock = registry.obtain("foo");
+		registry.obtain("bar");
+		registry.renewLocks();
+		lock.lock();
+		try {
+			registry.renewLocks();
+		}
+		finally {
+			lock.unlock();
+		}
+		verify(repository).acquire(anyString());
+		verify(repository).renew(Collections.singletonList(UUIDConverter.getUUID("foo").toString()));
+		verify(repository).renew(anyCollection());
+	}
+
 	@Test
 	public void testTwoLocks() throws Exception {
 		for (int i = 0; i < 10; i++) {
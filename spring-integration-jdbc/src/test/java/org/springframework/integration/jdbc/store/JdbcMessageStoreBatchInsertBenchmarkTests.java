@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import org.springframework.integration.test.support.LongRunningIntegrationTest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.StopWatch;
+
+/**
+ * Compares the number of statements and the latency of adding messages to a group
+ * one by one and with a single {@link JdbcMessageStore#addMessagesToGroup(Object, Message[])}
+ * call.
+ *
+ * @since 5.1
+ */
+public class JdbcMessageStoreBatchInsertBenchmarkTests {
+
+	@ClassRule
+	public static LongRunningIntegrationTest longTests = new LongRunningIntegrationTest();
+
+	private static final Log logger = LogFactory.getLog(JdbcMessageStoreBatchInsertBenchmarkTests.class);
+
+	private static final int MESSAGE_COUNT = 1000;
+
+	@Test
+	public void testH2() {
+		benchmark(EmbeddedDatabaseType.H2, "classpath:/org/springframework/integration/jdbc/schema-h2.sql");
+	}
+
+	@Test
+	public void testHsql() {
+		benchmark(EmbeddedDatabaseType.HSQL, "classpath:/org/springframework/integration/jdbc/schema-hsqldb.sql");
+	}
+
+	private void benchmark(EmbeddedDatabaseType type, String schema) {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(type)
+				.addScript(schema)
+				.build();
+		try {
+			StatementCountingDataSource dataSource = new StatementCountingDataSource(database);
+			JdbcMessageStore messageStore = new JdbcMessageStore(dataSource);
+			StopWatch stopWatch = new StopWatch(type + " addMessagesToGroup() with " + MESSAGE_COUNT + " messages");
+
+			stopWatch.start("one by one");
+			for (int i = 0; i < MESSAGE_COUNT; i++) {
+				messageStore.addMessagesToGroup("single", new GenericMessage<>(i));
+			}
+			stopWatch.stop();
+			int singleStatements = dataSource.statements.getAndSet(0);
+
+			Message<?>[] messages = new Message<?>[MESSAGE_COUNT];
+			for (int i = 0; i < MESSAGE_COUNT; i++) {
+				messages[i] = new GenericMessage<>(i);
+			}
+			stopWatch.start("batch");
+			messageStore.addMessagesToGroup("batch", messages);
+			stopWatch.stop();
+			int batchStatements = dataSource.statements.get();
+
+			logger.warn(stopWatch.prettyPrint());
+			logger.warn(type + " statements: one by one=" + singleStatements + ", batch=" + batchStatements);
+
+			assertEquals(MESSAGE_COUNT, messageStore.messageGroupSize("single"));
+			assertEquals(MESSAGE_COUNT, messageStore.messageGroupSize("batch"));
+			// a group query, a group insert and a JDBC batch per 100 rows for each of the two tables
+			assertThat(batchStatements, lessThanOrEqualTo(2 + 2 * MESSAGE_COUNT / 100));
+			// at least a group query and the two inserts for each message
+			assertThat(singleStatements, greaterThanOrEqualTo(3 * MESSAGE_COUNT));
+			assertThat(batchStatements * 100, lessThan(singleStatements));
+		}
+		finally {
+			database.shutdown();
+		}
+	}
+
+	/**
+	 * Counts the statements executed (a JDBC batch is counted once) on the connections
+	 * of the target data source.
+	 */
+	private static class StatementCountingDataSource extends DelegatingDataSource {
+
+		private final AtomicInteger statements = new AtomicInteger();
+
+		StatementCountingDataSource(DataSource targetDataSource) {
+			super(targetDataSource);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			Connection connection = super.getConnection();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						Object result = invoke(connection, method, args);
+						if (result instanceof Statement) {
+							return countingStatement((Statement) result);
+						}
+						return result;
+					});
+		}
+
+		private Object countingStatement(Statement statement) {
+			Class<?> statementType = statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+			return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { statementType },
+					(proxy, method, args) -> {
+						if (method.getName().startsWith("execute")) {
+							this.statements.incrementAndGet();
+						}
+						return invoke(statement, method, args);
+					});
+		}
+
+		private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc.store;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -28,8 +29,10 @@ import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -237,6 +240,72 @@ public class JdbcMessageStoreTests {
 		assertEquals(0, group.size());
 	}
 
+	@Test
+	public void testAddMessagesKeepsOrder() throws Exception {
+		String groupId = "X";
+		Message<?>[] messages = new Message<?>[25];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = MessageBuilder.withPayload(i).build();
+		}
+		this.messageStore.addMessagesToGroup(groupId, messages);
+		List<Object> payloads = new ArrayList<>();
+		this.messageStore.getMessageGroup(groupId).getMessages().forEach(message -> payloads.add(message.getPayload()));
+		assertEquals(25, payloads.size());
+		for (int i = 0; i < payloads.size(); i++) {
+			assertEquals(i, payloads.get(i));
+		}
+	}
+
+	@Test
+	public void testAddMessagesWithExistingMessagesKeepsOrder() throws Exception {
+		String groupId = "X";
+		Message<?>[] messages = new Message<?>[25];
+		for (int i = 0; i < messages.length; i++) {
+			messages[i] = MessageBuilder.withPayload(i).build();
+		}
+		// stored outside of the group, so the batch insert hits existing ids and falls back
+		this.messageStore.addMessage(messages[0]);
+		this.messageStore.addMessage(messages[1]);
+		Thread.sleep(1);
+		this.messageStore.addMessagesToGroup(groupId, messages);
+		assertEquals(25, this.messageStore.getMessageCount());
+		List<Object> payloads = new ArrayList<>();
+		this.messageStore.getMessageGroup(groupId).getMessages().forEach(message -> payloads.add(message.getPayload()));
+		assertEquals(25, payloads.size());
+		for (int i = 0; i < payloads.size(); i++) {
+			assertEquals(i, payloads.get(i));
+		}
+	}
+
+	@Test
+	public void testPagedMessageGroup() throws Exception {
+		String groupId = "X";
+		this.messageStore.setPageSize(2);
+		Set<Object> payloads = new HashSet<>();
+		for (int i = 0; i < 5; i++) {
+			this.messageStore.addMessagesToGroup(groupId, MessageBuilder.withPayload(i).build());
+			payloads.add(i);
+			Thread.sleep(1);
+		}
+		MessageGroup group = this.messageStore.getMessageGroup(groupId);
+		assertEquals(5, group.size());
+		List<Object> iterated = new ArrayList<>();
+		for (Message<?> message : group.getMessages()) {
+			iterated.add(message.getPayload());
+		}
+		assertEquals(5, iterated.size());
+		assertEquals(payloads, new HashSet<>(iterated));
+
+		Message<?> first = group.getMessages().iterator().next();
+		this.messageStore.removeMessagesFromGroup(groupId, first);
+		group = this.messageStore.getMessageGroup(groupId);
+		assertEquals(4, group.size());
+		iterated.clear();
+		group.getMessages().forEach(message -> iterated.add(message.getPayload()));
+		assertEquals(4, iterated.size());
+		assertFalse(iterated.contains(first.getPayload()));
+	}
+
 	@Test
 	public void testRemoveMessageGroup() throws Exception {
 		JdbcTemplate template = new JdbcTemplate(this.dataSource);
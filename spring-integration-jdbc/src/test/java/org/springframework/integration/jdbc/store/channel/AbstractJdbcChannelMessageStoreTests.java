@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertNull;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -133,6 +135,58 @@ public abstract class AbstractJdbcChannelMessageStoreTests {
 		assertEquals(message.getHeaders().getId(), messageFromDb.getHeaders().getId());
 	}
 
+	@Test
+	public void testPollMessagesFromGroup() {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.setIsolationLevel(Isolation.READ_COMMITTED.value());
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		for (int i = 0; i < 3; i++) {
+			Message<Integer> message = MessageBuilder.withPayload(i).build();
+			transactionTemplate.execute(status -> messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message));
+		}
+
+		List<Message<?>> messages =
+				transactionTemplate.execute(status -> messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2));
+
+		assertEquals(2, messages.size());
+		assertEquals(0, messages.get(0).getPayload());
+		assertEquals(1, messages.get(1).getPayload());
+		assertEquals(1, messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+
+		messages = transactionTemplate.execute(status -> messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2));
+
+		assertEquals(1, messages.size());
+		assertEquals(2, messages.get(0).getPayload());
+		assertEquals(0, messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
+	@Test
+	public void testMessageGroupListenerNotifiedAfterCommit() {
+		AtomicInteger notifications = new AtomicInteger();
+		messageStore.addMessageGroupListener(TEST_MESSAGE_GROUP, notifications::incrementAndGet);
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.execute(status -> {
+			messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("foo").build());
+			assertEquals(0, notifications.get());
+			return null;
+		});
+		assertEquals(1, notifications.get());
+
+		transactionTemplate.execute(status -> {
+			messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("bar").build());
+			status.setRollbackOnly();
+			return null;
+		});
+		assertEquals(1, notifications.get());
+
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("baz").build());
+		assertEquals(2, notifications.get());
+	}
+
 	private ChannelMessageStorePreparedStatementSetter getMessageGroupPreparedStatementSetter() {
 		return new ChannelMessageStorePreparedStatementSetter() {
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.messaging.Message;
+
+/**
+ * Runs the channel message store tests with a batch poll query on H2, which supports
+ * neither {@code SKIP LOCKED} nor a provider of its own for it, to cover the batch
+ * claim of {@link org.springframework.integration.jdbc.store.JdbcChannelMessageStore#pollMessagesFromGroup}.
+ *
+ * @since 5.1
+ */
+public class H2BatchPollJdbcChannelMessageStoreTests extends AbstractJdbcChannelMessageStoreTests {
+
+	@Test
+	public void testBatchPollPreservesOrder() {
+		for (int i = 0; i < 10; i++) {
+			this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload(i).build());
+		}
+		List<Message<?>> messages = this.messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 4);
+		assertEquals(4, messages.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, messages.get(i).getPayload());
+		}
+		assertEquals(6, this.messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+		messages = this.messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 100);
+		assertEquals(6, messages.size());
+		assertEquals(4, messages.get(0).getPayload());
+		assertEquals(0, this.messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
+	@Test
+	public void testBatchPollSkipsMessagesDeletedMeanwhile() {
+		Message<String> message1 = MessageBuilder.withPayload("foo").build();
+		Message<String> message2 = MessageBuilder.withPayload("bar").build();
+		Message<String> message3 = MessageBuilder.withPayload("baz").build();
+		this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message1);
+		this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message2);
+		this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message3);
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.messageStore.setMessageRowMapper(
+				new MessageRowMapper(new WhiteListDeserializingConverter(), new DefaultLobHandler()) {
+
+					@Override
+					public Message<?> mapRow(ResultSet rs, int rowNum) throws SQLException {
+						if (rowNum == 0) {
+							// another consumer claims the second message after the SELECT
+							jdbcTemplate.update("DELETE FROM INT_CHANNEL_MESSAGE WHERE MESSAGE_ID = ?",
+									UUIDConverter.getUUID(message2.getHeaders().getId()).toString());
+						}
+						return super.mapRow(rs, rowNum);
+					}
+
+				});
+		List<Message<?>> messages = this.messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(2, messages.size());
+		assertEquals(message1.getHeaders().getId(), messages.get(0).getHeaders().getId());
+		assertEquals(message3.getHeaders().getId(), messages.get(1).getHeaders().getId());
+		assertEquals(0, this.messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
+	@Test
+	public void testBatchPollVerifiesDeletesWithoutUpdateCounts() {
+		Message<String> message1 = MessageBuilder.withPayload("foo").build();
+		Message<String> message2 = MessageBuilder.withPayload("bar").build();
+		this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message1);
+		this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message2);
+		String skippedId = UUIDConverter.getUUID(message2.getHeaders().getId()).toString();
+		this.messageStore.setJdbcTemplate(new JdbcTemplate(this.dataSource) {
+
+			@Override
+			public int[] batchUpdate(String sql, List<Object[]> batchArgs, int[] argTypes) {
+				// a driver which reports no update counts, and misses the second row
+				List<Object[]> applied = batchArgs.stream()
+						.filter(args -> !skippedId.equals(args[0]))
+						.collect(Collectors.toList());
+				super.batchUpdate(sql, applied, argTypes);
+				int[] updated = new int[batchArgs.size()];
+				Arrays.fill(updated, Statement.SUCCESS_NO_INFO);
+				return updated;
+			}
+
+		});
+		List<Message<?>> messages = this.messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2);
+		assertEquals(2, messages.size());
+		assertEquals(message1.getHeaders().getId(), messages.get(0).getHeaders().getId());
+		assertEquals(message2.getHeaders().getId(), messages.get(1).getHeaders().getId());
+		assertEquals(0, this.messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
+	/**
+	 * The H2 queries with a batch poll query; without row locking, so only a single
+	 * consumer can use it safely.
+	 */
+	public static class BatchPollQueryProvider extends H2ChannelMessageStoreQueryProvider {
+
+		@Override
+		public String getPollBatchFromGroupQuery() {
+			return "SELECT %PREFIX%CHANNEL_MESSAGE.MESSAGE_ID, %PREFIX%CHANNEL_MESSAGE.MESSAGE_BYTES " +
+					"from %PREFIX%CHANNEL_MESSAGE " +
+					"where %PREFIX%CHANNEL_MESSAGE.GROUP_KEY = :group_key and %PREFIX%CHANNEL_MESSAGE.REGION = :region " +
+					"order by CREATED_DATE, MESSAGE_SEQUENCE LIMIT :max_rows";
+		}
+
+		@Override
+		public String getPriorityPollBatchFromGroupQuery() {
+			return "SELECT %PREFIX%CHANNEL_MESSAGE.MESSAGE_ID, %PREFIX%CHANNEL_MESSAGE.MESSAGE_BYTES " +
+					"from %PREFIX%CHANNEL_MESSAGE " +
+					"where %PREFIX%CHANNEL_MESSAGE.GROUP_KEY = :group_key and %PREFIX%CHANNEL_MESSAGE.REGION = :region " +
+					"order by MESSAGE_PRIORITY DESC NULLS LAST, CREATED_DATE, MESSAGE_SEQUENCE LIMIT :max_rows";
+		}
+
+	}
+
+}
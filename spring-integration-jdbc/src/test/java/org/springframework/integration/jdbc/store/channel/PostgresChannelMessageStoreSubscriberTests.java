@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.test.util.TestUtils;
+
+/**
+ * @since 5.1
+ */
+public class PostgresChannelMessageStoreSubscriberTests {
+
+	private final DataSource dataSource = mock(DataSource.class);
+
+	private final Connection connection = mock(Connection.class);
+
+	private final Statement statement = mock(Statement.class);
+
+	private final PGConnection pgConnection = mock(PGConnection.class);
+
+	private final JdbcChannelMessageStore messageStore = mock(JdbcChannelMessageStore.class);
+
+	private PostgresChannelMessageStoreSubscriber subscriber;
+
+	@Before
+	public void setup() throws SQLException {
+		given(this.connection.createStatement()).willReturn(this.statement);
+		given(this.connection.unwrap(PGConnection.class)).willReturn(this.pgConnection);
+		given(this.connection.isValid(anyInt())).willReturn(true);
+		this.subscriber = new PostgresChannelMessageStoreSubscriber(this.dataSource);
+		this.subscriber.setNotificationCheckInterval(1);
+		this.subscriber.setRecoveryInterval(1);
+		this.subscriber.addMessageStore(this.messageStore);
+	}
+
+	@Test
+	public void testReconnectAfterFailures() throws Exception {
+		given(this.dataSource.getConnection())
+				.willThrow(new SQLException("Connection refused"))
+				.willReturn(this.connection);
+		given(this.connection.isValid(anyInt())).willReturn(false, true);
+		PGNotification[] notifications = notifications("key1 region1");
+		given(this.pgConnection.getNotifications())
+				.willReturn(null)
+				.willReturn(notifications)
+				.willReturn(null);
+		this.subscriber.setConnectionValidationInterval(0);
+		this.subscriber.start();
+		try {
+			// the first connection fails, the second one is found invalid, the third one receives
+			verify(this.dataSource, timeout(10000).times(3)).getConnection();
+			verify(this.statement, timeout(10000).times(2)).execute("LISTEN int_channel_message");
+			verify(this.statement, timeout(10000)).execute("UNLISTEN int_channel_message");
+			verify(this.messageStore, timeout(10000).times(2)).notifyAllMessageGroupListeners();
+			verify(this.messageStore, timeout(10000)).notifyMessageGroupListeners("region1", "key1");
+		}
+		finally {
+			this.subscriber.destroy();
+		}
+		verify(this.connection, timeout(10000).times(2)).close();
+	}
+
+	@Test
+	public void testDispatchParsesPayload() throws Exception {
+		given(this.dataSource.getConnection()).willReturn(this.connection);
+		PGNotification[] notifications = notifications(null, "unexpected", "key1 region1", "key2 region with blanks");
+		given(this.pgConnection.getNotifications())
+				.willReturn(notifications)
+				.willReturn(null);
+		this.subscriber.start();
+		try {
+			verify(this.messageStore, timeout(10000)).notifyMessageGroupListeners("region with blanks", "key2");
+			verify(this.messageStore).notifyMessageGroupListeners("region1", "key1");
+			verify(this.messageStore, times(2)).notifyMessageGroupListeners(anyString(), anyString());
+		}
+		finally {
+			this.subscriber.destroy();
+		}
+	}
+
+	@Test
+	public void testStopWithProvidedExecutor() throws Exception {
+		CountDownLatch listening = new CountDownLatch(1);
+		given(this.dataSource.getConnection()).willReturn(this.connection);
+		willAnswer(invocation -> {
+			listening.countDown();
+			return null;
+		}).given(this.pgConnection).getNotifications();
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		this.subscriber.setExecutorService(executorService);
+		this.subscriber.start();
+		assertTrue(listening.await(10, TimeUnit.SECONDS));
+		this.subscriber.stop();
+		assertFalse(this.subscriber.isRunning());
+		verify(this.connection, timeout(10000)).close();
+		this.subscriber.destroy();
+		assertFalse(executorService.isShutdown());
+		// the executor is still usable, e.g. to restart the subscriber
+		this.subscriber.start();
+		verify(this.dataSource, timeout(10000).times(2)).getConnection();
+		this.subscriber.destroy();
+		verify(this.connection, timeout(10000).times(2)).close();
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void testDestroyShutsDownDefaultExecutor() throws Exception {
+		given(this.dataSource.getConnection()).willReturn(this.connection);
+		this.subscriber.start();
+		verify(this.pgConnection, timeout(10000).atLeastOnce()).getNotifications();
+		this.subscriber.destroy();
+		assertTrue(TestUtils.getPropertyValue(this.subscriber, "executorService", ExecutorService.class)
+				.isShutdown());
+		verify(this.connection, timeout(10000)).close();
+	}
+
+	private static PGNotification[] notifications(String... parameters) {
+		PGNotification[] notifications = new PGNotification[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			notifications[i] = mock(PGNotification.class);
+			given(notifications[i].getParameter()).willReturn(parameters[i]);
+		}
+		return notifications;
+	}
+
+}
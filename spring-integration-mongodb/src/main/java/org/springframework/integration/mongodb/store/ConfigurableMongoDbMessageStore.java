@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2017 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -88,6 +90,14 @@ public class ConfigurableMongoDbMessageStore extends AbstractConfigurableMongoDb
 		super(mongoDbFactory, mappingMongoConverter, collectionName);
 	}
 
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		super.afterPropertiesSet();
+		IndexOperations indexOperations = this.mongoTemplate.indexOps(this.collectionName);
+		indexOperations.ensureIndex(new Index(MessageDocumentFields.GROUP_CREATED_TIME, Sort.Direction.ASC));
+		indexOperations.ensureIndex(new Index(MessageDocumentFields.LAST_MODIFIED_TIME, Sort.Direction.ASC));
+	}
+
 	/**
 	 * Convenient injection point for expiry callbacks in the message store. Each of the callbacks provided will simply
 	 * be registered with the store using {@link #registerMessageGroupExpiryCallback(MessageGroupCallback)}.
@@ -269,6 +279,27 @@ public class ConfigurableMongoDbMessageStore extends AbstractConfigurableMongoDb
 		return messageGroups.iterator();
 	}
 
+	/**
+	 * Select the groups created (or, if {@link #isTimeoutOnIdle()}, modified) before the
+	 * threshold with an indexed range query, instead of loading all the groups.
+	 */
+	@Override
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		String timeField = isTimeoutOnIdle()
+				? MessageDocumentFields.LAST_MODIFIED_TIME
+				: MessageDocumentFields.GROUP_CREATED_TIME;
+		Query query = Query.query(Criteria.where(MessageDocumentFields.GROUP_ID).exists(true)
+				.and(timeField).lte(threshold));
+		Iterable<String> groupIds = this.mongoTemplate.getCollection(this.collectionName)
+				.distinct(MessageDocumentFields.GROUP_ID, query.getQueryObject(), String.class);
+
+		List<MessageGroup> messageGroups = new ArrayList<>();
+		for (Object groupId : groupIds) {
+			messageGroups.add(getMessageGroup(groupId));
+		}
+		return messageGroups;
+	}
+
 	@Override
 	public void registerMessageGroupExpiryCallback(MessageGroupCallback callback) {
 		this.expiryCallbacks.add(callback);
@@ -279,7 +310,7 @@ public class ConfigurableMongoDbMessageStore extends AbstractConfigurableMongoDb
 	public int expireMessageGroups(long timeout) {
 		int count = 0;
 		long threshold = System.currentTimeMillis() - timeout;
-		for (MessageGroup group : this) {
+		for (MessageGroup group : expiryCandidates(threshold)) {
 
 			long timestamp = group.getTimestamp();
 			if (this.isTimeoutOnIdle() && group.getLastModified() > 0) {
@@ -31,6 +31,8 @@ public final class MessageDocumentFields {
 
 	public static final String LAST_MODIFIED_TIME = "lastModifiedTime";
 
+	public static final String GROUP_CREATED_TIME = "groupCreatedTime";
+
 	public static final String SEQUENCE = "sequence";
 
 	public static final String LAST_RELEASED_SEQUENCE = "lastReleasedSequence";
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -201,6 +201,10 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore
 		indexOperations.ensureIndex(new Index(GROUP_ID_KEY, Sort.Direction.ASC)
 				.on(GROUP_UPDATE_TIMESTAMP_KEY, Sort.Direction.DESC)
 				.on(SEQUENCE, Sort.Direction.DESC));
+
+		indexOperations.ensureIndex(new Index(GROUP_TIMESTAMP_KEY, Sort.Direction.ASC));
+
+		indexOperations.ensureIndex(new Index(GROUP_UPDATE_TIMESTAMP_KEY, Sort.Direction.ASC));
 	}
 
 	@Override
@@ -363,6 +367,25 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore
 		return messageGroups.iterator();
 	}
 
+	/**
+	 * Select the groups created (or, if {@link #isTimeoutOnIdle()}, updated) before the
+	 * threshold with an indexed range query, instead of loading all the groups.
+	 */
+	@Override
+	protected Iterable<MessageGroup> expiryCandidates(long threshold) {
+		String timestampKey = isTimeoutOnIdle() ? GROUP_UPDATE_TIMESTAMP_KEY : GROUP_TIMESTAMP_KEY;
+		Query query = Query.query(Criteria.where(GROUP_ID_KEY).exists(true).and(timestampKey).lte(threshold));
+
+		Iterable<String> groupIds = this.template.getCollection(this.collectionName)
+				.distinct(GROUP_ID_KEY, query.getQueryObject(), String.class);
+
+		List<MessageGroup> messageGroups = new ArrayList<>();
+		for (Object groupId : groupIds) {
+			messageGroups.add(getMessageGroup(groupId));
+		}
+		return messageGroups;
+	}
+
 	@Override
 	public Message<?> pollMessageFromGroup(final Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");